@@ -23,22 +23,28 @@ public class LocalComputationConfig {
 
     private static final int DEFAULT_AVAILABLE_CORE = 1;
 
+    private static final int DEFAULT_PRIORITY_AGING_PERIOD = 60; // in seconds
+
     private final Path localDir;
 
     private final int availableCore;
 
+    private final int priorityAgingPeriod;
+
     public static LocalComputationConfig load() {
         Path localDir = DEFAULT_LOCAL_DIR;
         int availableCore = DEFAULT_AVAILABLE_CORE;
+        int priorityAgingPeriod = DEFAULT_PRIORITY_AGING_PERIOD;
         if (PlatformConfig.defaultConfig().moduleExists(CONFIG_MODULE_NAME)) {
             ModuleConfig config = PlatformConfig.defaultConfig().getModuleConfig(CONFIG_MODULE_NAME);
             localDir = config.getPathProperty("tmpDir", DEFAULT_LOCAL_DIR);
             availableCore = config.getIntProperty("availableCore", DEFAULT_AVAILABLE_CORE);
+            priorityAgingPeriod = config.getIntProperty("priorityAgingPeriod", DEFAULT_PRIORITY_AGING_PERIOD);
         }
         if (availableCore <= 0) {
             availableCore = Runtime.getRuntime().availableProcessors();
         }
-        return new LocalComputationConfig(localDir, availableCore);
+        return new LocalComputationConfig(localDir, availableCore, priorityAgingPeriod);
     }
 
     public LocalComputationConfig(Path localDir) {
@@ -46,8 +52,16 @@ public class LocalComputationConfig {
     }
 
     public LocalComputationConfig(Path localDir, int availableCore) {
+        this(localDir, availableCore, DEFAULT_PRIORITY_AGING_PERIOD);
+    }
+
+    public LocalComputationConfig(Path localDir, int availableCore, int priorityAgingPeriod) {
+        if (priorityAgingPeriod <= 0) {
+            throw new IllegalArgumentException("Invalid priority aging period " + priorityAgingPeriod);
+        }
         this.localDir = localDir;
         this.availableCore = availableCore;
+        this.priorityAgingPeriod = priorityAgingPeriod;
     }
 
     public Path getLocalDir() {
@@ -58,10 +72,18 @@ public class LocalComputationConfig {
         return availableCore;
     }
 
+    /**
+     * Waiting time in seconds after which the priority of a waiting execution is increased by one.
+     */
+    public int getPriorityAgingPeriod() {
+        return priorityAgingPeriod;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + " [localDir=" + localDir +
                 ", availableCore=" + availableCore +
+                ", priorityAgingPeriod=" + priorityAgingPeriod +
                 "]";
     }
 }
@@ -9,6 +9,8 @@ package eu.itesla_project.computation.local;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import eu.itesla_project.commons.io.WorkingDirectory;
 import eu.itesla_project.computation.*;
 import org.slf4j.Logger;
@@ -21,10 +23,8 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.GZIPInputStream;
@@ -48,7 +48,10 @@ public class LocalComputationManager implements ComputationManager {
 
     private final LocalComputationResourcesStatus status;
 
-    private final Semaphore permits;
+    private final PriorityPermits permits;
+
+    // runs command executions, the number of running threads is limited by the permits
+    private final ExecutorService threadPool;
 
     private static final Lock LOCK = new ReentrantLock();
 
@@ -90,8 +93,12 @@ public class LocalComputationManager implements ComputationManager {
 
     public LocalComputationManager(LocalComputationConfig config) throws IOException {
         this.config = Objects.requireNonNull(config, "config is null");
-        status = new LocalComputationResourcesStatus(config.getAvailableCore());
-        permits = new Semaphore(config.getAvailableCore());
+        permits = new PriorityPermits(config.getAvailableCore(), config.getPriorityAgingPeriod() * 1000L);
+        status = new LocalComputationResourcesStatus(config.getAvailableCore(), permits);
+        threadPool = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("local-computation-%d")
+                .setDaemon(true)
+                .build());
         //make sure the localdir exists
         Files.createDirectories(config.getLocalDir());
         commonDir = new WorkingDirectory(config.getLocalDir(), "itesla_common_", false);
@@ -127,32 +134,22 @@ public class LocalComputationManager implements ComputationManager {
 
             @Override
             public void start(CommandExecution execution, ExecutionListener listener) throws Exception {
-                enter();
-                try {
-                    if (listener != null) {
-                        listener.onExecutionStart(0, execution.getExecutionCount() - 1);
-                    }
-                    ExecutionReport report = execute(workingDir.toPath(), Arrays.asList(execution), env, (execution1, executionIndex) -> {
-                        if (listener != null) {
-                            listener.onExecutionCompletion(executionIndex);
-                        }
-                    });
+                if (listener != null) {
+                    listener.onExecutionStart(0, execution.getExecutionCount() - 1);
+                }
+                ExecutionReport report = execute(workingDir.toPath(), Arrays.asList(execution), env, (execution1, executionIndex) -> {
                     if (listener != null) {
-                        listener.onEnd(report);
+                        listener.onExecutionCompletion(executionIndex);
                     }
-                } finally {
-                    exit();
+                });
+                if (listener != null) {
+                    listener.onEnd(report);
                 }
             }
 
             @Override
             public ExecutionReport start(CommandExecution execution) throws Exception {
-                enter();
-                try {
-                    return execute(workingDir.toPath(), Arrays.asList(execution), env, null);
-                } finally {
-                    exit();
-                }
+                return execute(workingDir.toPath(), Arrays.asList(execution), env, null);
             }
 
             @Override
@@ -208,121 +205,210 @@ public class LocalComputationManager implements ComputationManager {
 
     }
 
+    private void preProcess(Path workingDir, Command command, int executionIndex) throws IOException {
+        for (InputFile file : command.getInputFiles(Integer.toString(executionIndex))) {
+            // first check if the file exists in the working directory
+            Path path = workingDir.resolve(file.getName());
+            if (!Files.exists(path)) {
+                // if not check if the file exists in the common directory
+                path = commonDir.toPath().resolve(file.getName());
+                if (!Files.exists(path)) {
+                    throw new RuntimeException("Input file '" + file.getName() + "' not found in the working and common directory");
+                }
+                if (file.getPreProcessor() == null) {
+                    Files.copy(path, workingDir.resolve(path.getFileName()));
+                }
+            }
+            if (file.getPreProcessor() != null) {
+                switch (file.getPreProcessor()) {
+                    case FILE_GUNZIP:
+                        // gunzip the file
+                        try (InputStream is = new GZIPInputStream(Files.newInputStream(path));
+                             OutputStream os = Files.newOutputStream(workingDir.resolve(file.getName().substring(0, file.getName().length() - 3)))) {
+                            ByteStreams.copy(is, os);
+                        }
+                        break;
+                    case ARCHIVE_UNZIP:
+                        // extract the archive
+                        try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                            for (ZipEntry ze : Collections.list(zipFile.entries())) {
+                                Files.copy(zipFile.getInputStream(ze), workingDir.resolve(ze.getName()), REPLACE_EXISTING);
+                            }
+                        }
+                        break;
+
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+    }
+
+    private void postProcess(Path workingDir, Command command, int executionIndex) throws IOException {
+        for (OutputFile file : command.getOutputFiles(Integer.toString(executionIndex))) {
+            Path path = workingDir.resolve(file.getName());
+            if (file.getPostProcessor() != null && Files.isRegularFile(path)) {
+                switch (file.getPostProcessor()) {
+                    case FILE_GZIP:
+                        // gzip the file
+                        try (InputStream is = Files.newInputStream(path);
+                             OutputStream os = new GZIPOutputStream(Files.newOutputStream(workingDir.resolve(file.getName() + ".gz")))) {
+                            ByteStreams.copy(is, os);
+                        }
+                        break;
+
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+    }
+
+    private ExecutionError execute(Path workingDir, Command command, int executionIndex, Map<String, String> variables,
+                                   Object preProcessingLock) throws IOException, InterruptedException {
+        LOGGER.debug("Executing command {} in working directory {}",
+                command.toString(Integer.toString(executionIndex)), workingDir);
+
+        // pre-processing, input files may be shared by executions running in parallel in the same working directory
+        synchronized (preProcessingLock) {
+            preProcess(workingDir, command, executionIndex);
+        }
+
+        int exitValue = 0;
+        File out = workingDir.resolve(command.getId() + "_" + executionIndex + ".out").toFile();
+        switch (command.getType()) {
+            case SIMPLE:
+                SimpleCommand simpleCmd = (SimpleCommand) command;
+                exitValue = execute(simpleCmd.getProgram(),
+                        simpleCmd.getArgs(Integer.toString(executionIndex)),
+                        out,
+                        workingDir,
+                        variables);
+                break;
+            case GROUP:
+                for (GroupCommand.SubCommand subCmd : ((GroupCommand) command).getSubCommands()) {
+                    exitValue = execute(subCmd.getProgram(),
+                            subCmd.getArgs(Integer.toString(executionIndex)),
+                            out,
+                            workingDir,
+                            variables);
+                    if (exitValue != 0) {
+                        break;
+                    }
+                }
+                break;
+            default:
+                throw new InternalError();
+        }
+
+        if (exitValue != 0) {
+            return new ExecutionError(command, executionIndex, exitValue);
+        }
+
+        // post processing
+        postProcess(workingDir, command, executionIndex);
+
+        return null;
+    }
+
+    /**
+     * Execute commands one after the other. Executions of a same command are
+     * run in parallel, each one using one core, and the next command starts
+     * once all executions of the previous one are finished.
+     */
     private ExecutionReport execute(Path workingDir, List<CommandExecution> commandExecutionList, Map<String, String> variables, ExecutionMonitor monitor)
             throws IOException, InterruptedException {
         List<ExecutionError> errors = new ArrayList<>();
 
         // set TMPDIR to working dir to avoid issue with /tmp
-        ImmutableMap variables2 = ImmutableMap.builder()
+        ImmutableMap<String, String> variables2 = ImmutableMap.<String, String>builder()
                 .putAll(variables)
                 .put("TMPDIR", workingDir.toAbsolutePath().toString())
                 .build();
 
+        Object preProcessingLock = new Object();
+
         for (CommandExecution commandExecution : commandExecutionList) {
             Command command = commandExecution.getCommand();
 
-            for (int executionIndex = 0; executionIndex < commandExecution.getExecutionCount(); executionIndex++) {
-                LOGGER.debug("Executing command {} in working directory {}",
-                        command.toString(Integer.toString(executionIndex)), workingDir);
-
-                // pre-processing
-                for (InputFile file : command.getInputFiles(Integer.toString(executionIndex))) {
-                    // first check if the file exists in the working directory
-                    Path path = workingDir.resolve(file.getName());
-                    if (!Files.exists(path)) {
-                        // if not check if the file exists in the common directory
-                        path = commonDir.toPath().resolve(file.getName());
-                        if (!Files.exists(path)) {
-                            throw new RuntimeException("Input file '" + file.getName() + "' not found in the working and common directory");
-                        }
-                        if (file.getPreProcessor() == null) {
-                            Files.copy(path, workingDir.resolve(path.getFileName()));
-                        }
-                    }
-                    if (file.getPreProcessor() != null) {
-                        switch (file.getPreProcessor()) {
-                            case FILE_GUNZIP:
-                                // gunzip the file
-                                try (InputStream is = new GZIPInputStream(Files.newInputStream(path));
-                                     OutputStream os = Files.newOutputStream(workingDir.resolve(file.getName().substring(0, file.getName().length() - 3)))) {
-                                    ByteStreams.copy(is, os);
-                                }
-                                break;
-                            case ARCHIVE_UNZIP:
-                                // extract the archive
-                                try (ZipFile zipFile = new ZipFile(path.toFile())) {
-                                    for (ZipEntry ze : Collections.list(zipFile.entries())) {
-                                        Files.copy(zipFile.getInputStream(ze), workingDir.resolve(ze.getName()), REPLACE_EXISTING);
+            List<Future<ExecutionError>> futures = new ArrayList<>(commandExecution.getExecutionCount());
+            // an execution is started either by the thread pool or by a cancellation, not both
+            List<AtomicBoolean> started = new ArrayList<>(commandExecution.getExecutionCount());
+            try {
+                for (int executionIndex = 0; executionIndex < commandExecution.getExecutionCount(); executionIndex++) {
+                    int executionIndex2 = executionIndex;
+                    AtomicBoolean started2 = new AtomicBoolean(false);
+                    // wait for a free core before submitting, so that there is no more running threads than cores
+                    enter(commandExecution.getPriority());
+                    try {
+                        futures.add(threadPool.submit(() -> {
+                            if (!started2.compareAndSet(false, true)) {
+                                // cancelled, the core has already been released
+                                return null;
+                            }
+                            try {
+                                ExecutionError error = execute(workingDir, command, executionIndex2, variables2, preProcessingLock);
+                                if (monitor != null) {
+                                    // progress is notified to the monitor by one thread at a time
+                                    synchronized (monitor) {
+                                        monitor.onProgress(commandExecution, executionIndex2);
                                     }
                                 }
-                                break;
-
-                            default:
-                                throw new InternalError();
-                        }
+                                return error;
+                            } finally {
+                                exit();
+                            }
+                        }));
+                    } catch (RejectedExecutionException e) {
+                        exit();
+                        throw e;
                     }
+                    started.add(started2);
                 }
 
-                int exitValue = 0;
-                File out = workingDir.resolve(command.getId() + "_" + executionIndex + ".out").toFile();
-                switch (command.getType()) {
-                    case SIMPLE:
-                        SimpleCommand simpleCmd = (SimpleCommand) command;
-                        exitValue = execute(simpleCmd.getProgram(),
-                                simpleCmd.getArgs(Integer.toString(executionIndex)),
-                                out,
-                                workingDir,
-                                variables2);
-                        break;
-                    case GROUP:
-                        for (GroupCommand.SubCommand subCmd : ((GroupCommand) command).getSubCommands()) {
-                            exitValue = execute(subCmd.getProgram(),
-                                    subCmd.getArgs(Integer.toString(executionIndex)),
-                                    out,
-                                    workingDir,
-                                    variables2);
-                            if (exitValue != 0) {
-                                break;
-                            }
-                        }
-                        break;
-                    default:
-                        throw new InternalError();
+                // wait for all executions and collect errors in execution index order
+                for (Future<ExecutionError> future : futures) {
+                    ExecutionError error = future.get();
+                    if (error != null) {
+                        errors.add(error);
+                    }
                 }
-
-                if (exitValue != 0) {
-                    errors.add(new ExecutionError(command, executionIndex, exitValue));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
                 } else {
-                    // post processing
-                    for (OutputFile file : command.getOutputFiles(Integer.toString(executionIndex))) {
-                        Path path = workingDir.resolve(file.getName());
-                        if (file.getPostProcessor() != null && Files.isRegularFile(path)) {
-                            switch (file.getPostProcessor()) {
-                                case FILE_GZIP:
-                                    // gzip the file
-                                    try (InputStream is = Files.newInputStream(path);
-                                         OutputStream os = new GZIPOutputStream(Files.newOutputStream(workingDir.resolve(file.getName() + ".gz")))) {
-                                        ByteStreams.copy(is, os);
-                                    }
-                                    break;
-
-                                default:
-                                    throw new InternalError();
-                            }
-                        }
+                    throw new RuntimeException(cause);
+                }
+            } finally {
+                // on failure, cancel executions not yet started and release their core as they will never run
+                for (int i = 0; i < futures.size(); i++) {
+                    if (started.get(i).compareAndSet(false, true)) {
+                        futures.get(i).cancel(false);
+                        exit();
                     }
                 }
-
-                if (monitor != null) {
-                    monitor.onProgress(commandExecution, executionIndex);
+                // and wait for the running ones, so that the working directory is not removed under them
+                for (Future<ExecutionError> future : futures) {
+                    if (!future.isCancelled()) {
+                        try {
+                            Uninterruptibles.getUninterruptibly(future);
+                        } catch (ExecutionException ignored) {
+                            // the first error has already been reported
+                        }
+                    }
                 }
             }
         }
         return new ExecutionReport(errors);
     }
 
-    private void enter() throws InterruptedException {
-        permits.acquire();
+    private void enter(int priority) throws InterruptedException {
+        permits.acquire(priority);
         status.incrementNumberOfBusyCores();
     }
 
@@ -340,13 +426,7 @@ public class LocalComputationManager implements ComputationManager {
             try {
                 try (WorkingDirectory workingDir = new WorkingDirectory(config.getLocalDir(), environment.getWorkingDirPrefix(), environment.isDebug())) {
                     List<CommandExecution> commandExecutionList = handler.before(workingDir.toPath());
-                    ExecutionReport report = null;
-                    enter();
-                    try {
-                        report = execute(workingDir.toPath(), commandExecutionList, environment.getVariables(), (execution, executionIndex) -> handler.onProgress(execution, executionIndex));
-                    } finally {
-                        exit();
-                    }
+                    ExecutionReport report = execute(workingDir.toPath(), commandExecutionList, environment.getVariables(), (execution, executionIndex) -> handler.onProgress(execution, executionIndex));
                     R result = handler.after(workingDir.toPath(), report);
                     f.complete(result);
                 }
@@ -369,6 +449,7 @@ public class LocalComputationManager implements ComputationManager {
 
     @Override
     public void close() throws IOException {
+        threadPool.shutdown();
         commonDir.close();
     }
 
@@ -11,21 +11,26 @@ import org.joda.time.DateTime;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
 
 /**
  *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
-class LocalComputationResourcesStatus implements ComputationResourcesStatus {
+public class LocalComputationResourcesStatus implements ComputationResourcesStatus {
 
     private final int availableCores;
 
+    private final PriorityPermits permits;
+
     private DateTime date;
 
     private int busyCores = 0;
 
-    LocalComputationResourcesStatus(int availableCores) {
+    LocalComputationResourcesStatus(int availableCores, PriorityPermits permits) {
         this.availableCores = availableCores;
+        this.permits = Objects.requireNonNull(permits);
     }
 
     @Override
@@ -48,6 +53,20 @@ class LocalComputationResourcesStatus implements ComputationResourcesStatus {
         return Collections.singletonMap("all", busyCores);
     }
 
+    /**
+     * Get the number of executions waiting for a free core.
+     */
+    public int getQueueDepth() {
+        return permits.getQueueDepth();
+    }
+
+    /**
+     * Get the number of executions waiting for a free core, per execution priority.
+     */
+    public SortedMap<Integer, Integer> getQueueDepthPerPriority() {
+        return permits.getQueueDepthPerPriority();
+    }
+
     synchronized void incrementNumberOfBusyCores() {
         date = new DateTime();
         busyCores++;
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.computation.local;
+
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A counting semaphore where waiting threads acquire permits in priority
+ * order, the lowest value being the highest priority like for MPI jobs.
+ * <p>
+ * To avoid starvation, the priority of a waiting thread is increased by one
+ * each time it has been waiting for an aging period. Threads with the same
+ * priority are served in arrival order.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+class PriorityPermits {
+
+    private static final class Waiter {
+
+        private final int priority;
+
+        private final long arrivalTime;
+
+        private final long sequence;
+
+        private boolean granted = false;
+
+        private Waiter(int priority, long arrivalTime, long sequence) {
+            this.priority = priority;
+            this.arrivalTime = arrivalTime;
+            this.sequence = sequence;
+        }
+    }
+
+    private final long agingPeriod; // in ms
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition permitGranted = lock.newCondition();
+
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    private int availablePermits;
+
+    private long sequence = 0;
+
+    PriorityPermits(int permits, long agingPeriod) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Invalid number of permits " + permits);
+        }
+        if (agingPeriod <= 0) {
+            throw new IllegalArgumentException("Invalid aging period " + agingPeriod);
+        }
+        this.availablePermits = permits;
+        this.agingPeriod = agingPeriod;
+    }
+
+    private long getEffectivePriority(Waiter waiter, long time) {
+        return (long) waiter.priority - (time - waiter.arrivalTime) / agingPeriod;
+    }
+
+    /**
+     * Give available permits to the waiters with the highest priority.
+     */
+    private void dispatch() {
+        boolean granted = false;
+        long time = System.currentTimeMillis();
+        while (availablePermits > 0 && !waiters.isEmpty()) {
+            int best = 0;
+            long bestPriority = getEffectivePriority(waiters.get(0), time);
+            for (int i = 1; i < waiters.size(); i++) {
+                Waiter waiter = waiters.get(i);
+                long priority = getEffectivePriority(waiter, time);
+                if (priority < bestPriority || (priority == bestPriority && waiter.sequence < waiters.get(best).sequence)) {
+                    best = i;
+                    bestPriority = priority;
+                }
+            }
+            waiters.remove(best).granted = true;
+            availablePermits--;
+            granted = true;
+        }
+        if (granted) {
+            permitGranted.signalAll();
+        }
+    }
+
+    void acquire(int priority) throws InterruptedException {
+        lock.lock();
+        try {
+            if (availablePermits > 0 && waiters.isEmpty()) {
+                availablePermits--;
+                return;
+            }
+            Waiter waiter = new Waiter(priority, System.currentTimeMillis(), sequence++);
+            waiters.add(waiter);
+            try {
+                while (!waiter.granted) {
+                    permitGranted.await();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // give back the permit granted meanwhile
+                    availablePermits++;
+                    dispatch();
+                } else {
+                    waiters.remove(waiter);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            availablePermits++;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getAvailablePermits() {
+        lock.lock();
+        try {
+            return availablePermits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of waiting threads per requested priority.
+     */
+    SortedMap<Integer, Integer> getQueueDepthPerPriority() {
+        lock.lock();
+        try {
+            SortedMap<Integer, Integer> depths = new TreeMap<>();
+            for (Waiter waiter : waiters) {
+                depths.merge(waiter.priority, 1, Integer::sum);
+            }
+            return depths;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
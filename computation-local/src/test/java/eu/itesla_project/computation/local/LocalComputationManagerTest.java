@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.computation.local;
+
+import eu.itesla_project.computation.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class LocalComputationManagerTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void testParallelExecutions() throws Exception {
+        try (LocalComputationManager computationManager
+                     = new LocalComputationManager(new LocalComputationConfig(tmpDir.getRoot().toPath(), 2))) {
+            // second execution fails, the others create a file
+            Command command = new SimpleCommandBuilder()
+                    .id("cmd")
+                    .program("test")
+                    .args(Command.EXECUTION_NUMBER_PATTERN, "-ne", "1", "&&", "touch", "out_" + Command.EXECUTION_NUMBER_PATTERN)
+                    .build();
+            Set<Integer> progress = Collections.synchronizedSet(new HashSet<>());
+            List<String> files = computationManager.execute(ExecutionEnvironment.DEFAULT, new DefaultExecutionHandler<List<String>>() {
+                @Override
+                public List<CommandExecution> before(Path workingDir) {
+                    return Collections.singletonList(new CommandExecution(command, 4));
+                }
+
+                @Override
+                public void onProgress(CommandExecution execution, int executionIndex) {
+                    assertTrue(progress.add(executionIndex));
+                }
+
+                @Override
+                public List<String> after(Path workingDir, ExecutionReport report) {
+                    assertEquals(1, report.getErrors().size());
+                    assertEquals(1, report.getErrors().get(0).getIndex());
+                    List<String> files = new ArrayList<>();
+                    for (int i = 0; i < 4; i++) {
+                        if (Files.exists(workingDir.resolve("out_" + i))) {
+                            files.add("out_" + i);
+                        }
+                    }
+                    return files;
+                }
+            }).join();
+            assertEquals(Arrays.asList("out_0", "out_2", "out_3"), files);
+            assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), progress);
+            assertEquals(0, computationManager.getResourcesStatus().getBusyCores());
+        }
+    }
+
+    @Test
+    public void testFailedExecutionWaitsForRunningOnes() throws Exception {
+        try (LocalComputationManager computationManager
+                     = new LocalComputationManager(new LocalComputationConfig(tmpDir.getRoot().toPath(), 2))) {
+            // execution 0 ends immediately and makes the command fail, execution 1 is still running
+            Command command = new SimpleCommandBuilder()
+                    .id("cmd")
+                    .program("sleep")
+                    .args(Command.EXECUTION_NUMBER_PATTERN)
+                    .build();
+            CompletableFuture<Object> result = computationManager.execute(ExecutionEnvironment.DEFAULT, new DefaultExecutionHandler<Object>() {
+                @Override
+                public List<CommandExecution> before(Path workingDir) {
+                    return Collections.singletonList(new CommandExecution(command, 2));
+                }
+
+                @Override
+                public void onProgress(CommandExecution execution, int executionIndex) {
+                    throw new IllegalStateException("Execution " + executionIndex + " failed");
+                }
+            });
+            try {
+                result.join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            // the running execution has been waited for and all the cores are released
+            assertEquals(0, computationManager.getResourcesStatus().getBusyCores());
+            int errorCount = computationManager.execute(ExecutionEnvironment.DEFAULT, new DefaultExecutionHandler<Integer>() {
+                @Override
+                public List<CommandExecution> before(Path workingDir) {
+                    return Collections.singletonList(new CommandExecution(command, 2));
+                }
+
+                @Override
+                public Integer after(Path workingDir, ExecutionReport report) {
+                    return report.getErrors().size();
+                }
+            }).join();
+            assertEquals(0, errorCount);
+        }
+    }
+}
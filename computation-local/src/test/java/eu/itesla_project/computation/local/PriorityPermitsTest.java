@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.computation.local;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class PriorityPermitsTest {
+
+    private static Thread startWaiter(PriorityPermits permits, int priority, List<Integer> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                permits.acquire(priority);
+                order.add(priority);
+                permits.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForQueueDepth(PriorityPermits permits, int depth) throws InterruptedException {
+        while (permits.getQueueDepth() != depth) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testPriorityOrder() throws InterruptedException {
+        PriorityPermits permits = new PriorityPermits(1, 3600000);
+        permits.acquire(0);
+        assertEquals(0, permits.getAvailablePermits());
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        int depth = 0;
+        for (int priority : new int[] {5, 1, 3, 1}) {
+            threads.add(startWaiter(permits, priority, order));
+            waitForQueueDepth(permits, ++depth);
+        }
+        SortedMap<Integer, Integer> expectedDepths = new TreeMap<>();
+        expectedDepths.put(1, 2);
+        expectedDepths.put(3, 1);
+        expectedDepths.put(5, 1);
+        assertEquals(expectedDepths, permits.getQueueDepthPerPriority());
+
+        permits.release();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(1, 1, 3, 5), order);
+        assertEquals(0, permits.getQueueDepth());
+        assertEquals(1, permits.getAvailablePermits());
+    }
+
+    @Test
+    public void testAging() throws InterruptedException {
+        PriorityPermits permits = new PriorityPermits(1, 10);
+        permits.acquire(0);
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        Thread low = startWaiter(permits, 5, order);
+        waitForQueueDepth(permits, 1);
+        // after 100 ms the low priority waiter has gained 10 levels
+        Thread.sleep(100);
+        Thread high = startWaiter(permits, 1, order);
+        waitForQueueDepth(permits, 2);
+
+        permits.release();
+        low.join();
+        high.join();
+        assertEquals(Arrays.asList(5, 1), order);
+    }
+
+    @Test
+    public void testInterrupt() throws InterruptedException {
+        PriorityPermits permits = new PriorityPermits(1, 3600000);
+        permits.acquire(0);
+        Thread thread = startWaiter(permits, 1, new ArrayList<>());
+        waitForQueueDepth(permits, 1);
+        thread.interrupt();
+        thread.join();
+        assertEquals(0, permits.getQueueDepth());
+        permits.release();
+        assertEquals(1, permits.getAvailablePermits());
+    }
+}
@@ -40,6 +40,7 @@ public class CsvMpiStatistics implements MpiStatistics {
 
     private static final String COMMON_FILE_TRANSFER_KEY = "COMMON_FILE_TRANSFER";
     private static final String JOB_START_KEY = "JOB_START";
+    private static final String JOB_INPUT_FILES_KEY = "JOB_INPUT_FILES";
     private static final String JOB_END_KEY = "JOB_END";
     private static final String TASK_START_KEY = "TASK_START";
     private static final String TASK_END_KEY = "TASK_END";
@@ -109,10 +110,25 @@ public class CsvMpiStatistics implements MpiStatistics {
             }
         }
 
+        private static class JobInputFiles {
+            final long size;
+            final long transferredSize;
+            final int cacheHits;
+            final int cacheMisses;
+            JobInputFiles(long size, long transferredSize, int cacheHits, int cacheMisses) {
+                this.size = size;
+                this.transferredSize = transferredSize;
+                this.cacheHits = cacheHits;
+                this.cacheMisses = cacheMisses;
+            }
+        }
+
         private static interface Handler {
 
             void onTaskEnd(TaskExecution task, JobExecution job);
 
+            void onJobInputFiles(JobInputFiles inputFiles, JobExecution job);
+
             void onCommonFileTransfer(CommonFileTransfer commonFileTransfer);
 
         }
@@ -123,6 +139,10 @@ public class CsvMpiStatistics implements MpiStatistics {
             public void onTaskEnd(TaskExecution task, JobExecution job) {
             }
 
+            @Override
+            public void onJobInputFiles(JobInputFiles inputFiles, JobExecution job) {
+            }
+
             @Override
             public void onCommonFileTransfer(CommonFileTransfer commonFileTransfer) {
             }
@@ -172,6 +192,24 @@ public class CsvMpiStatistics implements MpiStatistics {
                             jobs.put(jobId, new JobExecution(jobId, commandId, tags));
                         }
                         break;
+                    case JOB_INPUT_FILES_KEY:
+                        {
+                            // cache hits and misses are missing from older statistics
+                            if (tokens.length != 4 && tokens.length != 6) {
+                                throw new RuntimeException("Incorrect " + JOB_INPUT_FILES_KEY + " line '" + line + "'");
+                            }
+                            int jobId = Integer.parseInt(tokens[1]);
+                            long size = Long.parseLong(tokens[2]);
+                            long transferredSize = Long.parseLong(tokens[3]);
+                            int cacheHits = 0;
+                            int cacheMisses = 0;
+                            if (tokens.length == 6) {
+                                cacheHits = Integer.parseInt(tokens[4]);
+                                cacheMisses = Integer.parseInt(tokens[5]);
+                            }
+                            handler.onJobInputFiles(new JobInputFiles(size, transferredSize, cacheHits, cacheMisses), jobs.get(jobId));
+                        }
+                        break;
                     case JOB_END_KEY:
                         {
                             if (tokens.length != 2) {
@@ -283,6 +321,26 @@ public class CsvMpiStatistics implements MpiStatistics {
         }
     }
 
+    @Override
+    public void logJobInputFiles(int jobId, long size, long transferredSize, int cacheHits, int cacheMisses) {
+        try {
+            internalWriter.write(JOB_INPUT_FILES_KEY);
+            internalWriter.write(CSV_SEPARATOR);
+            internalWriter.write(Integer.toString(jobId));
+            internalWriter.write(CSV_SEPARATOR);
+            internalWriter.write(Long.toString(size));
+            internalWriter.write(CSV_SEPARATOR);
+            internalWriter.write(Long.toString(transferredSize));
+            internalWriter.write(CSV_SEPARATOR);
+            internalWriter.write(Integer.toString(cacheHits));
+            internalWriter.write(CSV_SEPARATOR);
+            internalWriter.write(Integer.toString(cacheMisses));
+            internalWriter.newLine();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void logJobEnd(int jobId) {
         try {
@@ -453,6 +511,54 @@ public class CsvMpiStatistics implements MpiStatistics {
         }
     }
 
+    public static void exportInputFilesTransfer(Path dbDir, String dbName) throws IOException {
+        Objects.requireNonNull(dbDir);
+        Objects.requireNonNull(dbName);
+
+        Path csv = dbDir.resolve(dbName + ".csv");
+
+        class CommandStats {
+            long size = 0;
+            long transferredSize = 0;
+            int cacheHits = 0;
+            int cacheMisses = 0;
+        }
+
+        Path inputFilesTransferCsv = dbDir.resolve("input-files-transfer.csv");
+        LOGGER.info("Writing " + inputFilesTransferCsv);
+
+        final Map<String, CommandStats> statsPerCommandId = new HashMap<>();
+        try (StatisticsReader reader = new StatisticsReader(csv)) {
+            reader.read(new StatisticsReader.AbstractHandler() {
+
+                @Override
+                public void onJobInputFiles(StatisticsReader.JobInputFiles inputFiles, StatisticsReader.JobExecution job) {
+                    CommandStats stats = statsPerCommandId.computeIfAbsent(job.commandId, k -> new CommandStats());
+                    stats.size += inputFiles.size;
+                    stats.transferredSize += inputFiles.transferredSize;
+                    stats.cacheHits += inputFiles.cacheHits;
+                    stats.cacheMisses += inputFiles.cacheMisses;
+                }
+
+            });
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(inputFilesTransferCsv, StandardCharsets.UTF_8)) {
+            writer.write("Command Id" + CSV_SEPARATOR + "Input files size (bytes)" + CSV_SEPARATOR + "Transferred size (bytes)" + CSV_SEPARATOR + "Transfer rate"
+                    + CSV_SEPARATOR + "Job files cache hits" + CSV_SEPARATOR + "Job files cache misses" + CSV_SEPARATOR + "Job files cache hit rate");
+            writer.newLine();
+            for (Map.Entry<String, CommandStats> entry : statsPerCommandId.entrySet()) {
+                String commandId = entry.getKey();
+                CommandStats stats = entry.getValue();
+                writer.write(commandId + CSV_SEPARATOR + stats.size + CSV_SEPARATOR + stats.transferredSize
+                        + CSV_SEPARATOR + (stats.size > 0 ? (float) stats.transferredSize / stats.size : 0f)
+                        + CSV_SEPARATOR + stats.cacheHits + CSV_SEPARATOR + stats.cacheMisses
+                        + CSV_SEPARATOR + (stats.cacheHits + stats.cacheMisses > 0 ? (float) stats.cacheHits / (stats.cacheHits + stats.cacheMisses) : 0f));
+                writer.newLine();
+            }
+        }
+    }
+
     public static void exportTaskCount(Path dbDir, String dbName) throws IOException {
         Objects.requireNonNull(dbDir);
         Objects.requireNonNull(dbName);
@@ -55,6 +55,9 @@ public class ExportTasksStatisticsCommand implements Command {
                                 .argName("FILE")
                                 .required()
                                 .build());
+        options.addOption(Option.builder().longOpt("input-files-transfer")
+                                .desc("also export input files transfer statistics per command to input-files-transfer.csv in the statistics db directory")
+                                .build());
         return options;
     }
 
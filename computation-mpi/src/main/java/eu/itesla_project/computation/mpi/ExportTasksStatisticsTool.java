@@ -38,6 +38,9 @@ public class ExportTasksStatisticsTool implements Tool {
                 statistics.exportTasksToCsv(writer);
             }
         }
+        if (line.hasOption("input-files-transfer")) {
+            CsvMpiStatistics.exportInputFilesTransfer(statisticsDbDir, statisticsDbName);
+        }
     }
 
 }
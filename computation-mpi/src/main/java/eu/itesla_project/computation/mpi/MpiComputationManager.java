@@ -58,12 +58,27 @@ public class MpiComputationManager implements ComputationManager {
 
     public MpiComputationManager(Path localDir, MpiStatistics statistics, MpiExecutorContext executorContext,
                                  int coresPerRank, Path stdOutArchive) throws IOException, InterruptedException {
-        this(localDir, new JniMpiNativeServices(), statistics, executorContext, coresPerRank, stdOutArchive);
+        this(localDir, statistics, executorContext, coresPerRank, stdOutArchive, false);
+    }
+
+    public MpiComputationManager(Path localDir, MpiStatistics statistics, MpiExecutorContext executorContext,
+                                 int coresPerRank, Path stdOutArchive, boolean compressTaskFiles) throws IOException, InterruptedException {
+        this(localDir, new JniMpiNativeServices(), statistics, executorContext, coresPerRank, stdOutArchive, compressTaskFiles);
     }
 
     public MpiComputationManager(Path localDir, MpiNativeServices nativeServices, MpiStatistics statistics,
                                  MpiExecutorContext executorContext, int coresPerRank, Path stdOutArchive) throws IOException, InterruptedException {
-        this(localDir, new MpiJobSchedulerImpl(nativeServices, statistics, coresPerRank, executorContext.getSchedulerExecutor(), stdOutArchive), statistics, executorContext);
+        this(localDir, nativeServices, statistics, executorContext, coresPerRank, stdOutArchive, false);
+    }
+
+    /**
+     * @param compressTaskFiles if true, task scoped input files are sent gzipped to the slaves
+     */
+    public MpiComputationManager(Path localDir, MpiNativeServices nativeServices, MpiStatistics statistics,
+                                 MpiExecutorContext executorContext, int coresPerRank, Path stdOutArchive,
+                                 boolean compressTaskFiles) throws IOException, InterruptedException {
+        this(localDir, new MpiJobSchedulerImpl(nativeServices, statistics, coresPerRank, executorContext.getSchedulerExecutor(), stdOutArchive, compressTaskFiles),
+             statistics, executorContext);
     }
 
     public MpiComputationManager(Path localDir, MpiJobScheduler scheduler, MpiStatistics statistics, MpiExecutorContext executorContext) throws IOException, InterruptedException {
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.computation.mpi;
+
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Data of an input file sent to the slaves, with its gzipped version built
+ * only once on demand and its digest, used to identify job scoped files
+ * already cached by a slave.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+class MpiInputFile {
+
+    // smaller files are not worth compressing
+    private static final int COMPRESSION_MIN_SIZE = 1024;
+
+    /**
+     * Input files statistics of a job.
+     */
+    static final class Stats {
+
+        private long size = 0;
+
+        private long transferredSize = 0;
+
+        private int cacheHits = 0;
+
+        private int cacheMisses = 0;
+
+        synchronized void onRead(long size) {
+            this.size += size;
+        }
+
+        synchronized void onTransfer(long transferredSize) {
+            this.transferredSize += transferredSize;
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+
+        synchronized void onCacheHit() {
+            cacheHits++;
+        }
+
+        synchronized void onCacheMiss() {
+            cacheMisses++;
+        }
+
+        synchronized long getTransferredSize() {
+            return transferredSize;
+        }
+
+        synchronized int getCacheHits() {
+            return cacheHits;
+        }
+
+        synchronized int getCacheMisses() {
+            return cacheMisses;
+        }
+    }
+
+    private final ByteString data;
+
+    private ByteString compressedData;
+
+    private String digest;
+
+    private MpiInputFile(ByteString data) {
+        this.data = data;
+    }
+
+    static MpiInputFile read(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return new MpiInputFile(ByteString.readFrom(is));
+        }
+    }
+
+    static MpiInputFile read(Path file, Stats stats) throws IOException {
+        MpiInputFile inputFile = read(file);
+        stats.onRead(inputFile.data.size());
+        return inputFile;
+    }
+
+    ByteString getData() {
+        return data;
+    }
+
+    /**
+     * Get the SHA-256 digest of the data, hex encoded.
+     */
+    synchronized String getDigest() {
+        if (digest == null) {
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+            md.update(data.asReadOnlyByteBuffer());
+            digest = BaseEncoding.base16().lowerCase().encode(md.digest());
+        }
+        return digest;
+    }
+
+    /**
+     * Get gzipped data or null if compression is not worth it.
+     */
+    synchronized ByteString getCompressedData() throws IOException {
+        if (data.size() < COMPRESSION_MIN_SIZE) {
+            return null;
+        }
+        if (compressedData == null) {
+            ByteString.Output output = ByteString.newOutput(data.size() / 2);
+            try (OutputStream os = new GZIPOutputStream(output)) {
+                data.writeTo(os);
+            }
+            compressedData = output.toByteString();
+        }
+        return compressedData.size() < data.size() ? compressedData : null;
+    }
+}
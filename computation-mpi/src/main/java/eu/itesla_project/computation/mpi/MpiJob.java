@@ -11,12 +11,9 @@ import eu.itesla_project.computation.CommandExecution;
 import eu.itesla_project.computation.ExecutionError;
 import eu.itesla_project.computation.ExecutionReport;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -44,6 +41,16 @@ public class MpiJob {
 
     private final Set<Integer> usedRanks = new HashSet<>();
 
+    // task scoped input files data of the next tasks, read in advance while other tasks are running
+    private final Map<Integer, Future<Map<String, MpiInputFile>>> preparedTaskFiles = new HashMap<>();
+
+    private int preparedTaskIndex = 0;
+
+    // digest of the job scoped input files, data is only kept until it has been sent
+    private final Map<String, String> jobFileDigests = new HashMap<>();
+
+    private final MpiInputFile.Stats inputFileStats = new MpiInputFile.Stats();
+
     MpiJob(int id, CommandExecution execution, Path workingDir, Map<String, String> env, ExecutionListener listener, CompletableFuture<ExecutionReport> future) {
         this.id = id;
         this.execution = execution;
@@ -97,6 +104,26 @@ public class MpiJob {
         return usedRanks;
     }
 
+    Map<Integer, Future<Map<String, MpiInputFile>>> getPreparedTaskFiles() {
+        return preparedTaskFiles;
+    }
+
+    int getPreparedTaskIndex() {
+        return preparedTaskIndex;
+    }
+
+    void setPreparedTaskIndex(int preparedTaskIndex) {
+        this.preparedTaskIndex = preparedTaskIndex;
+    }
+
+    Map<String, String> getJobFileDigests() {
+        return jobFileDigests;
+    }
+
+    MpiInputFile.Stats getInputFileStats() {
+        return inputFileStats;
+    }
+
     boolean isCompleted() {
         return taskIndex >= execution.getExecutionCount() && runningTasks.isEmpty();
     }
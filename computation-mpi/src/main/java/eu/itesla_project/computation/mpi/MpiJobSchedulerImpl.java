@@ -28,6 +28,7 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -41,7 +42,11 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MpiJobSchedulerImpl.class);
 
-    private static final int TIMEOUT = 10; // ms
+    private static final long MIN_WAIT = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private static final long MAX_WAIT = TimeUnit.MILLISECONDS.toNanos(10); // while tasks are running
+
+    private static final long IDLE_WAIT = TimeUnit.SECONDS.toNanos(1); // while no task is running
 
     private static final Map<String, String> ZIP_FS_ENV = ImmutableMap.of("create", "true");
 
@@ -75,6 +80,20 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
 
     private volatile boolean stopRequested = false;
 
+    // to wake up the scheduler loop as soon as there is something new to do
+    private final Lock wakeUpLock = new ReentrantLock();
+
+    private final Condition wakeUpCondition = wakeUpLock.newCondition();
+
+    private boolean wakeUpRequested = false;
+
+    // reads input files of the next tasks in advance
+    private final ExecutorService taskFilesReader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "mpi-task-files-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private String mpiVersion;
 
     private MpiResources resources;
@@ -87,6 +106,9 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
 
     private final Path stdOutArchive;
 
+    // if true, task scoped input files are sent gzipped
+    private final boolean compressTaskFiles;
+
     // profiling
     private long startTasksTime;
     private long startTasksJniTime;
@@ -94,6 +116,11 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
     private long checkTaskCompletionTime;
 
     MpiJobSchedulerImpl(MpiNativeServices nativeServices, MpiStatistics statistics, final int coresPerRank, ExecutorService executor, Path stdOutArchive) throws InterruptedException, IOException {
+        this(nativeServices, statistics, coresPerRank, executor, stdOutArchive, false);
+    }
+
+    MpiJobSchedulerImpl(MpiNativeServices nativeServices, MpiStatistics statistics, final int coresPerRank, ExecutorService executor, Path stdOutArchive,
+                        boolean compressTaskFiles) throws InterruptedException, IOException {
         this.nativeServices = Objects.requireNonNull(nativeServices);
         this.statistics = Objects.requireNonNull(statistics);
         if (stdOutArchive != null) {
@@ -106,6 +133,7 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
             LOGGER.info("Standard output of failed commands will be archived {}", stdOutArchive);
         }
         this.stdOutArchive = stdOutArchive;
+        this.compressTaskFiles = compressTaskFiles;
         final CountDownLatch initialized = new CountDownLatch(1);
         future = executor.submit(new Runnable() {
 
@@ -122,6 +150,9 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
 
                     long time = System.currentTimeMillis();
 
+                    // current waiting time when nothing has been done, increased while nothing happens
+                    long wait = MIN_WAIT;
+
                     List<MpiTask> completedTasks = new ArrayList<>();
                     while (!stopRequested || jobs.size() > 0) {
                         boolean sleep = true;
@@ -181,7 +212,10 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                         for (Iterator<MpiJob> it = jobs.iterator(); it.hasNext(); ) {
                             MpiJob job = it.next();
 
-                            sleep = startTasks(job);
+                            if (!startTasks(job)) {
+                                sleep = false;
+                            }
+                            prepareTasks(job);
 
                             long t0 = System.currentTimeMillis();
                             try {
@@ -201,6 +235,9 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                                 // ...and re-use immediatly free cores
                                 startTasks(job);
 
+                                // ...and read input files of the next tasks while these ones are running
+                                prepareTasks(job);
+
                                 // ...and then post process terminated tasks
                                 processCompletedTasks(job, completedTasks);
 
@@ -217,6 +254,12 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                                     }
                                     job.getFuture().complete(report);
 
+                                    MpiInputFile.Stats inputFileStats = job.getInputFileStats();
+                                    MpiJobSchedulerImpl.this.statistics.logJobInputFiles(job.getId(),
+                                                                                         inputFileStats.getSize(),
+                                                                                         inputFileStats.getTransferredSize(),
+                                                                                         inputFileStats.getCacheHits(),
+                                                                                         inputFileStats.getCacheMisses());
                                     MpiJobSchedulerImpl.this.statistics.logJobEnd(job.getId());
                                 }
 
@@ -224,12 +267,21 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                             }
                         }
 
-                        // just sleep in the case nothing has been done in the loop
+                        // wait in the case nothing has been done in the loop, until a new job or a
+                        // common file is submitted or it is time to check again for task completion
                         if (sleep) {
-                            TimeUnit.MILLISECONDS.sleep(TIMEOUT);
+                            boolean running = jobs.stream().anyMatch(job -> !job.getRunningTasks().isEmpty());
+                            waitForWakeUp(running ? wait : IDLE_WAIT);
+                            wait = Math.min(wait * 2, MAX_WAIT);
+                            // waiting time is not a slowness
+                            time = System.currentTimeMillis();
+                        } else {
+                            wait = MIN_WAIT;
                         }
                     }
 
+                    taskFilesReader.shutdown();
+
                     nativeServices.terminateMpi();
 
                 } catch (Throwable t) {
@@ -259,6 +311,85 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
         return startedTasks.getAndSet(0);
     }
 
+    private void waitForWakeUp(long timeout) throws InterruptedException {
+        wakeUpLock.lock();
+        try {
+            long nanos = timeout;
+            while (!wakeUpRequested && nanos > 0) {
+                nanos = wakeUpCondition.awaitNanos(nanos);
+            }
+            wakeUpRequested = false;
+        } finally {
+            wakeUpLock.unlock();
+        }
+    }
+
+    private void wakeUp() {
+        wakeUpLock.lock();
+        try {
+            wakeUpRequested = true;
+            wakeUpCondition.signal();
+        } finally {
+            wakeUpLock.unlock();
+        }
+    }
+
+    private Map<String, MpiInputFile> readTaskFiles(MpiJob job, Command command, int taskIndex) throws IOException {
+        Map<String, MpiInputFile> data = new HashMap<>();
+        for (InputFile file : command.getInputFiles()) {
+            if (file.dependsOnExecutionNumber()) {
+                InputFile instFile = file.instanciate(Integer.toString(taskIndex));
+                Path path = job.getWorkingDir().resolve(instFile.getName());
+                if (Files.exists(path)) {
+                    MpiInputFile inputFile = MpiInputFile.read(path, job.getInputFileStats());
+                    if (compressTaskFiles && instFile.getPreProcessor() == null) {
+                        // compress while still in the background
+                        inputFile.getCompressedData();
+                    }
+                    data.put(instFile.getName(), inputFile);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Read in background task scoped input files of the tasks that will be started
+     * when the running ones complete.
+     */
+    private void prepareTasks(MpiJob job) {
+        CommandExecution execution = job.getExecution();
+        Command command = execution.getCommand();
+        int from = Math.max(job.getPreparedTaskIndex(), job.getTaskIndex());
+        int to = Math.min(execution.getExecutionCount(), job.getTaskIndex() + job.getRunningTasks().size());
+        for (int taskIndex = from; taskIndex < to; taskIndex++) {
+            int taskIndex2 = taskIndex;
+            job.getPreparedTaskFiles().put(taskIndex, taskFilesReader.submit(() -> readTaskFiles(job, command, taskIndex2)));
+        }
+        job.setPreparedTaskIndex(Math.max(from, to));
+    }
+
+    private Map<String, MpiInputFile> getTaskFiles(MpiJob job, Command command, int taskIndex) throws IOException, InterruptedException {
+        Future<Map<String, MpiInputFile>> prepared = job.getPreparedTaskFiles().remove(taskIndex);
+        if (prepared != null) {
+            try {
+                return prepared.get();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to read in advance input files of task {} of job {}: {}", taskIndex, job.getId(), e.getCause().toString());
+            }
+        }
+        return readTaskFiles(job, command, taskIndex);
+    }
+
+    private MpiInputFile readJobFile(MpiJob job, String fileName, Path path) throws IOException {
+        // size is only accounted the first time the file is read for the job, it might
+        // be read again later for another rank as data is not kept in memory
+        MpiInputFile inputFile = job.getJobFileDigests().containsKey(fileName) ? MpiInputFile.read(path)
+                                                                                : MpiInputFile.read(path, job.getInputFileStats());
+        job.getJobFileDigests().put(fileName, inputFile.getDigest());
+        return inputFile;
+    }
+
     private static Messages.Task.InputFile.PreProcessor createPreProcessor(FilePreProcessor preProcessor) {
         return preProcessor != null ? Messages.Task.InputFile.PreProcessor.valueOf(preProcessor.name()) : Messages.Task.InputFile.PreProcessor.NONE;
     }
@@ -298,7 +429,7 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
         return builder.build();
     }
 
-    private Messages.Task createTaskMessage(MpiJob job, MpiRank rank, Command command, int taskIndex) throws IOException {
+    private Messages.Task createTaskMessage(MpiJob job, MpiRank rank, Command command, int taskIndex) throws IOException, InterruptedException {
 
         // job scoped file will be sent only one time to each slave
         boolean initJob = rank.jobs.add(job);
@@ -309,6 +440,8 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                 .setCmdId(command.getId())
                 .setInitJob(initJob);
 
+        Map<String, MpiInputFile> taskFiles = getTaskFiles(job, command, taskIndex);
+
         //
         // select which files have to be send with the message
         //
@@ -319,15 +452,29 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                 // to be sent with the message
                 //
                 InputFile instFile = file.instanciate(Integer.toString(taskIndex));
-                Path path = job.getWorkingDir().resolve(instFile.getName());
-                if (Files.exists(path)) {
-                    try (InputStream is = Files.newInputStream(path)) {
+                MpiInputFile inputFile = taskFiles.get(instFile.getName());
+                if (inputFile != null) {
+                    ByteString compressedData = null;
+                    if (compressTaskFiles && instFile.getPreProcessor() == null) {
+                        compressedData = inputFile.getCompressedData();
+                    }
+                    if (compressedData != null) {
+                        // the file is sent gzipped and gunzipped by the slave under its original name
+                        builder.addInputFile(Messages.Task.InputFile.newBuilder()
+                                                               .setName(instFile.getName() + ".gz")
+                                                               .setScope(Messages.Task.InputFile.Scope.TASK)
+                                                               .setPreProcessor(Messages.Task.InputFile.PreProcessor.FILE_GUNZIP)
+                                                               .setData(compressedData)
+                                                               .build());
+                        job.getInputFileStats().onTransfer(compressedData.size());
+                    } else {
                         builder.addInputFile(Messages.Task.InputFile.newBuilder()
                                                                .setName(instFile.getName())
                                                                .setScope(Messages.Task.InputFile.Scope.TASK)
                                                                .setPreProcessor(createPreProcessor(instFile.getPreProcessor()))
-                                                               .setData(ByteString.readFrom(is))
+                                                               .setData(inputFile.getData())
                                                                .build());
+                        job.getInputFileStats().onTransfer(inputFile.getData().size());
                     }
                 } else {
                     if (commonFiles.contains(instFile.getName())) {
@@ -353,16 +500,29 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
                         //
                         // case 2-1: this is the first task of the job executed by
                         // the slave with specified rank, we pack the file with
-                        // the message
+                        // the message unless the slave has already cached a file
+                        // with the same digest for a previous job
                         //
-                        try (InputStream is = Files.newInputStream(path)) {
-                            builder.addInputFile(Messages.Task.InputFile.newBuilder()
-                                                                   .setName(file.getName())
-                                                                   .setScope(Messages.Task.InputFile.Scope.JOB)
-                                                                   .setPreProcessor(createPreProcessor(file.getPreProcessor()))
-                                                                   .setData(ByteString.readFrom(is))
-                                                                   .build());
+                        Messages.Task.InputFile.Builder inputFileBuilder = Messages.Task.InputFile.newBuilder()
+                                                                                   .setName(file.getName())
+                                                                                   .setScope(Messages.Task.InputFile.Scope.JOB)
+                                                                                   .setPreProcessor(createPreProcessor(file.getPreProcessor()));
+                        String digest = job.getJobFileDigests().get(file.getName());
+                        if (digest != null && rank.cachedFiles.contains(digest)) {
+                            inputFileBuilder.setDigest(digest);
+                            job.getInputFileStats().onCacheHit();
+                        } else {
+                            MpiInputFile inputFile = readJobFile(job, file.getName(), path);
+                            inputFileBuilder.setDigest(inputFile.getDigest());
+                            if (rank.cachedFiles.add(inputFile.getDigest())) {
+                                inputFileBuilder.setData(inputFile.getData());
+                                job.getInputFileStats().onTransfer(inputFile.getData().size());
+                                job.getInputFileStats().onCacheMiss();
+                            } else {
+                                job.getInputFileStats().onCacheHit();
+                            }
                         }
+                        builder.addInputFile(inputFileBuilder.build());
                     } else {
                         //
                         // case 2-2: another task of the job has already been
@@ -604,6 +764,7 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
         } finally {
             newCommonFileLock.unlock();
         }
+        wakeUp();
     }
 
     @Override
@@ -619,12 +780,14 @@ class MpiJobSchedulerImpl implements MpiJobScheduler {
         } finally {
             newJobsLock.unlock();
         }
+        wakeUp();
         return future;
     }
 
     @Override
     public void shutdown() throws Exception {
         stopRequested = true;
+        wakeUp();
         future.get();
     }
 
@@ -19,6 +19,9 @@ class MpiRank {
 
     final Set<MpiJob> jobs = new HashSet<>();
 
+    // digests of the job scoped files cached by the slave, they are not sent again to it
+    final Set<String> cachedFiles = new HashSet<>();
+
     MpiRank(int num) {
         this.num = num;
     }
@@ -36,6 +36,17 @@ public interface MpiStatistics extends AutoCloseable {
      */
     void logJobStart(int jobId, String commandId, Map<String, String> tags);
 
+    /**
+     * Log input files sent to the slaves for a job.
+     *
+     * @param jobId the job id
+     * @param size total size in bytes of the input files read
+     * @param transferredSize total size in bytes of the input files data sent to the slaves
+     * @param cacheHits number of job scoped files not sent because already cached by the slave
+     * @param cacheMisses number of job scoped files sent to a slave
+     */
+    void logJobInputFiles(int jobId, long size, long transferredSize, int cacheHits, int cacheMisses);
+
     /**
      * Log a job end.
      *
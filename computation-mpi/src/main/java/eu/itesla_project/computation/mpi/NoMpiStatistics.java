@@ -25,6 +25,10 @@ public class NoMpiStatistics implements MpiStatistics {
     public void logJobStart(int jobId, String commandId, Map<String, String> tags) {
     }
 
+    @Override
+    public void logJobInputFiles(int jobId, long size, long transferredSize, int cacheHits, int cacheMisses) {
+    }
+
     @Override
     public void logJobEnd(int jobId) {
     }
@@ -1147,6 +1147,21 @@ public final class Messages {
        * <code>required .messages.Task.InputFile.PreProcessor preProcessor = 4;</code>
        */
       eu.itesla_project.computation.mpi.messages.Messages.Task.InputFile.PreProcessor getPreProcessor();
+
+      // optional string digest = 5;
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      boolean hasDigest();
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      java.lang.String getDigest();
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      com.google.protobuf.ByteString
+          getDigestBytes();
     }
     /**
      * Protobuf type {@code messages.Task.InputFile}
@@ -1231,6 +1246,11 @@ public final class Messages {
                 }
                 break;
               }
+              case 42: {
+                bitField0_ |= 0x00000010;
+                digest_ = input.readBytes();
+                break;
+              }
             }
           }
         } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -1544,11 +1564,55 @@ public final class Messages {
         return preProcessor_;
       }
 
+      // optional string digest = 5;
+      public static final int DIGEST_FIELD_NUMBER = 5;
+      private java.lang.Object digest_;
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      public boolean hasDigest() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      public java.lang.String getDigest() {
+        java.lang.Object ref = digest_;
+        if (ref instanceof java.lang.String) {
+          return (java.lang.String) ref;
+        } else {
+          com.google.protobuf.ByteString bs = 
+              (com.google.protobuf.ByteString) ref;
+          java.lang.String s = bs.toStringUtf8();
+          if (bs.isValidUtf8()) {
+            digest_ = s;
+          }
+          return s;
+        }
+      }
+      /**
+       * <code>optional string digest = 5;</code>
+       */
+      public com.google.protobuf.ByteString
+          getDigestBytes() {
+        java.lang.Object ref = digest_;
+        if (ref instanceof java.lang.String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          digest_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+
       private void initFields() {
         name_ = "";
         scope_ = eu.itesla_project.computation.mpi.messages.Messages.Task.InputFile.Scope.RUN;
         data_ = com.google.protobuf.ByteString.EMPTY;
         preProcessor_ = eu.itesla_project.computation.mpi.messages.Messages.Task.InputFile.PreProcessor.NONE;
+        digest_ = "";
       }
       private byte memoizedIsInitialized = -1;
       public final boolean isInitialized() {
@@ -1586,6 +1650,9 @@ public final class Messages {
         if (((bitField0_ & 0x00000008) == 0x00000008)) {
           output.writeEnum(4, preProcessor_.getNumber());
         }
+        if (((bitField0_ & 0x00000010) == 0x00000010)) {
+          output.writeBytes(5, getDigestBytes());
+        }
         getUnknownFields().writeTo(output);
       }
 
@@ -1611,6 +1678,10 @@ public final class Messages {
           size += com.google.protobuf.CodedOutputStream
             .computeEnumSize(4, preProcessor_.getNumber());
         }
+        if (((bitField0_ & 0x00000010) == 0x00000010)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeBytesSize(5, getDigestBytes());
+        }
         size += getUnknownFields().getSerializedSize();
         memoizedSerializedSize = size;
         return size;
@@ -1735,6 +1806,8 @@ public final class Messages {
           bitField0_ = (bitField0_ & ~0x00000004);
           preProcessor_ = eu.itesla_project.computation.mpi.messages.Messages.Task.InputFile.PreProcessor.NONE;
           bitField0_ = (bitField0_ & ~0x00000008);
+          digest_ = "";
+          bitField0_ = (bitField0_ & ~0x00000010);
           return this;
         }
 
@@ -1779,6 +1852,10 @@ public final class Messages {
             to_bitField0_ |= 0x00000008;
           }
           result.preProcessor_ = preProcessor_;
+          if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+            to_bitField0_ |= 0x00000010;
+          }
+          result.digest_ = digest_;
           result.bitField0_ = to_bitField0_;
           onBuilt();
           return result;
@@ -1809,6 +1886,11 @@ public final class Messages {
           if (other.hasPreProcessor()) {
             setPreProcessor(other.getPreProcessor());
           }
+          if (other.hasDigest()) {
+            bitField0_ |= 0x00000010;
+            digest_ = other.digest_;
+            onChanged();
+          }
           this.mergeUnknownFields(other.getUnknownFields());
           return this;
         }
@@ -2030,6 +2112,80 @@ public final class Messages {
           return this;
         }
 
+        // optional string digest = 5;
+        private java.lang.Object digest_ = "";
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public boolean hasDigest() {
+          return ((bitField0_ & 0x00000010) == 0x00000010);
+        }
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public java.lang.String getDigest() {
+          java.lang.Object ref = digest_;
+          if (!(ref instanceof java.lang.String)) {
+            java.lang.String s = ((com.google.protobuf.ByteString) ref)
+                .toStringUtf8();
+            digest_ = s;
+            return s;
+          } else {
+            return (java.lang.String) ref;
+          }
+        }
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public com.google.protobuf.ByteString
+            getDigestBytes() {
+          java.lang.Object ref = digest_;
+          if (ref instanceof String) {
+            com.google.protobuf.ByteString b = 
+                com.google.protobuf.ByteString.copyFromUtf8(
+                    (java.lang.String) ref);
+            digest_ = b;
+            return b;
+          } else {
+            return (com.google.protobuf.ByteString) ref;
+          }
+        }
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public Builder setDigest(
+            java.lang.String value) {
+          if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000010;
+          digest_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public Builder clearDigest() {
+          bitField0_ = (bitField0_ & ~0x00000010);
+          digest_ = getDefaultInstance().getDigest();
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional string digest = 5;</code>
+         */
+        public Builder setDigestBytes(
+            com.google.protobuf.ByteString value) {
+          if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000010;
+          digest_ = value;
+          onChanged();
+          return this;
+        }
+
         // @@protoc_insertion_point(builder_scope:messages.Task.InputFile)
       }
 
@@ -8564,34 +8720,34 @@ public final class Messages {
     java.lang.String[] descriptorData = {
       "\n\016messages.proto\022\010messages\"E\n\nCommonFile" +
       "\022\014\n\004name\030\001 \002(\t\022\r\n\005chunk\030\002 \002(\005\022\014\n\004last\030\003 " +
-      "\002(\010\022\014\n\004data\030\004 \002(\014\"\254\006\n\004Task\022\r\n\005jobId\030\001 \002(" +
+      "\002(\010\022\014\n\004data\030\004 \002(\014\"\274\006\n\004Task\022\r\n\005jobId\030\001 \002(" +
       "\005\022\r\n\005index\030\002 \002(\005\022\'\n\003env\030\003 \002(\0132\032.messages" +
       ".Task.Environment\022\r\n\005cmdId\030\004 \002(\t\022\'\n\007comm" +
       "and\030\005 \003(\0132\026.messages.Task.Command\022+\n\tinp" +
       "utFile\030\006 \003(\0132\030.messages.Task.InputFile\022-" +
       "\n\noutputFile\030\007 \003(\0132\031.messages.Task.Outpu" +
       "tFile\022\017\n\007initJob\030\010 \002(\010\022\026\n\016completedJobId" +
-      "\030\t \003(\005\032\366\001\n\tInputFile\022\014\n\004name\030\001 \002(\t\022-\n\005sc",
+      "\030\t \003(\005\032\206\002\n\tInputFile\022\014\n\004name\030\001 \002(\t\022-\n\005sc",
       "ope\030\002 \002(\0162\036.messages.Task.InputFile.Scop" +
       "e\022\014\n\004data\030\003 \001(\014\022;\n\014preProcessor\030\004 \002(\0162%." +
-      "messages.Task.InputFile.PreProcessor\"<\n\014" +
-      "PreProcessor\022\010\n\004NONE\020\001\022\021\n\rARCHIVE_UNZIP\020" +
-      "\002\022\017\n\013FILE_GUNZIP\020\003\"#\n\005Scope\022\007\n\003RUN\020\001\022\007\n\003" +
-      "JOB\020\002\022\010\n\004TASK\020\003\032\204\001\n\nOutputFile\022\014\n\004name\030\001" +
-      " \002(\t\022>\n\rpostProcessor\030\002 \002(\0162\'.messages.T" +
-      "ask.OutputFile.PostProcessor\"(\n\rPostProc" +
-      "essor\022\010\n\004NONE\020\001\022\r\n\tFILE_GZIP\020\002\032\'\n\010Variab" +
-      "le\022\014\n\004name\030\001 \002(\t\022\r\n\005value\030\002 \002(\t\0328\n\013Envir",
-      "onment\022)\n\010variable\030\001 \003(\0132\027.messages.Task" +
-      ".Variable\032=\n\007Command\022\017\n\007program\030\001 \002(\t\022\020\n" +
-      "\010argument\030\002 \003(\t\022\017\n\007timeout\030\003 \001(\005\"\305\001\n\nTas" +
-      "kResult\022\020\n\010exitCode\030\001 \002(\005\022\024\n\014taskDuratio" +
-      "n\030\002 \002(\003\022\027\n\017commandDuration\030\003 \003(\003\022\027\n\017work" +
-      "ingDataSize\030\004 \002(\003\0223\n\noutputFile\030\005 \003(\0132\037." +
-      "messages.TaskResult.OutputFile\032(\n\nOutput" +
-      "File\022\014\n\004name\030\001 \002(\t\022\014\n\004data\030\002 \001(\014B6\n*eu.i" +
-      "tesla_project.computation.mpi.messagesB\010" +
-      "Messages"
+      "messages.Task.InputFile.PreProcessor\022\016\n\006" +
+      "digest\030\005 \001(\t\"<\n\014PreProcessor\022\010\n\004NONE\020\001\022\021" +
+      "\n\rARCHIVE_UNZIP\020\002\022\017\n\013FILE_GUNZIP\020\003\"#\n\005Sc" +
+      "ope\022\007\n\003RUN\020\001\022\007\n\003JOB\020\002\022\010\n\004TASK\020\003\032\204\001\n\nOutp" +
+      "utFile\022\014\n\004name\030\001 \002(\t\022>\n\rpostProcessor\030\002 " +
+      "\002(\0162\'.messages.Task.OutputFile.PostProce" +
+      "ssor\"(\n\rPostProcessor\022\010\n\004NONE\020\001\022\r\n\tFILE_" +
+      "GZIP\020\002\032\'\n\010Variable\022\014\n\004name\030\001 \002(\t\022\r\n\005valu",
+      "e\030\002 \002(\t\0328\n\013Environment\022)\n\010variable\030\001 \003(\013" +
+      "2\027.messages.Task.Variable\032=\n\007Command\022\017\n\007" +
+      "program\030\001 \002(\t\022\020\n\010argument\030\002 \003(\t\022\017\n\007timeo" +
+      "ut\030\003 \001(\005\"\305\001\n\nTaskResult\022\020\n\010exitCode\030\001 \002(" +
+      "\005\022\024\n\014taskDuration\030\002 \002(\003\022\027\n\017commandDurati" +
+      "on\030\003 \003(\003\022\027\n\017workingDataSize\030\004 \002(\003\0223\n\nout" +
+      "putFile\030\005 \003(\0132\037.messages.TaskResult.Outp" +
+      "utFile\032(\n\nOutputFile\022\014\n\004name\030\001 \002(\t\022\014\n\004da" +
+      "ta\030\002 \001(\014B6\n*eu.itesla_project.computatio" +
+      "n.mpi.messagesB\010Messages"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -8615,7 +8771,7 @@ public final class Messages {
           internal_static_messages_Task_InputFile_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_messages_Task_InputFile_descriptor,
-              new java.lang.String[] { "Name", "Scope", "Data", "PreProcessor", });
+              new java.lang.String[] { "Name", "Scope", "Data", "PreProcessor", "Digest", });
           internal_static_messages_Task_OutputFile_descriptor =
             internal_static_messages_Task_descriptor.getNestedTypes().get(1);
           internal_static_messages_Task_OutputFile_fieldAccessorTable = new
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.computation.mpi;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class MpiInputFileTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void testRead() throws Exception {
+        Path file1 = tmpDir.newFile("in_0").toPath();
+        Path file2 = tmpDir.newFile("in_1").toPath();
+        Files.write(file1, "some content".getBytes(StandardCharsets.UTF_8));
+        Files.write(file2, "other content".getBytes(StandardCharsets.UTF_8));
+
+        MpiInputFile.Stats stats = new MpiInputFile.Stats();
+        assertEquals(ByteString.copyFromUtf8("some content"), MpiInputFile.read(file1, stats).getData());
+        assertEquals(ByteString.copyFromUtf8("other content"), MpiInputFile.read(file2, stats).getData());
+        assertEquals(25, stats.getSize());
+        assertEquals(0, stats.getTransferredSize());
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        Path file1 = tmpDir.newFile("job1").toPath();
+        Path file2 = tmpDir.newFile("job2").toPath();
+        Path file3 = tmpDir.newFile("job3").toPath();
+        Files.write(file1, "abc".getBytes(StandardCharsets.UTF_8));
+        Files.write(file2, "abc".getBytes(StandardCharsets.UTF_8));
+        Files.write(file3, "abd".getBytes(StandardCharsets.UTF_8));
+
+        MpiInputFile.Stats stats = new MpiInputFile.Stats();
+        String digest = MpiInputFile.read(file1, stats).getDigest();
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digest);
+        assertEquals(digest, MpiInputFile.read(file2).getDigest());
+        assertNotEquals(digest, MpiInputFile.read(file3).getDigest());
+        // only the file read with the stats is accounted
+        assertEquals(3, stats.getSize());
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        Path small = tmpDir.newFile("small").toPath();
+        Files.write(small, "abc".getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = new byte[10000];
+        Arrays.fill(bytes, (byte) 'a');
+        Path big = tmpDir.newFile("big").toPath();
+        Files.write(big, bytes);
+
+        MpiInputFile.Stats stats = new MpiInputFile.Stats();
+        assertNull(MpiInputFile.read(small, stats).getCompressedData());
+        MpiInputFile bigFile = MpiInputFile.read(big, stats);
+        ByteString compressedData = bigFile.getCompressedData();
+        assertNotNull(compressedData);
+        assertSame(compressedData, bigFile.getCompressedData());
+        assertTrue(compressedData.size() < bytes.length);
+        try (InputStream is = new GZIPInputStream(compressedData.newInput())) {
+            assertArrayEquals(bytes, ByteStreams.toByteArray(is));
+        }
+    }
+}
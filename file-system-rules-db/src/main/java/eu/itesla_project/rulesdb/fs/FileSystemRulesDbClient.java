@@ -9,20 +9,37 @@ package eu.itesla_project.rulesdb.fs;
 import eu.itesla_project.modules.rules.*;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Stream;
 
 /**
+ * Rules stored in a file system, one file per rule in a &lt;workflow&gt;/&lt;attribute set&gt; directory.
+ * <p>
+ * Rule files of a workflow are indexed by contingency the first time rules of the workflow
+ * are requested, and parsed rules are kept in memory, so that getting rules does not need
+ * any file system access once loaded. The rules file system is opened once and shared by
+ * readers. Writing a rule invalidates the index of its workflow.
+ *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
 public abstract class FileSystemRulesDbClient implements RulesDbClient {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemRulesDbClient.class);
+
     private final SecurityRuleSerializerLoader loader;
 
     protected FileSystemRulesDbClient(SecurityRuleSerializerLoader loader) {
@@ -38,11 +55,62 @@ public abstract class FileSystemRulesDbClient implements RulesDbClient {
 
     protected abstract RulesFS createRulesFS() throws IOException;
 
+    /**
+     * Location of a rule file and parsed rule, once loaded.
+     */
+    private static final class RuleLocation {
+
+        private final RuleId ruleId;
+
+        private final String fileName;
+
+        private final SecurityRuleSerializer serializer;
+
+        private final int serializerRank;
+
+        private volatile SecurityRule rule;
+
+        private RuleLocation(RuleId ruleId, String fileName, SecurityRuleSerializer serializer, int serializerRank) {
+            this.ruleId = ruleId;
+            this.fileName = fileName;
+            this.serializer = serializer;
+            this.serializerRank = serializerRank;
+        }
+    }
+
+    private static final Comparator<RuleLocation> RULE_LOCATION_COMPARATOR
+            = Comparator.<RuleLocation, RuleAttributeSet>comparing(l -> l.ruleId.getAttributeSet())
+                        .thenComparing(l -> l.ruleId.getSecurityIndexId().getSecurityIndexType());
+
+    // read lock for rules reading, write lock for rules writing and closing of the shared file system
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // shared by readers, guarded by this
+    private RulesFS rulesFS;
+
+    // rule locations by workflow and then by contingency
+    private final ConcurrentMap<String, Map<String, List<RuleLocation>>> index = new ConcurrentHashMap<>();
+
+    private synchronized RulesFS getRulesFS() throws IOException {
+        if (rulesFS == null) {
+            rulesFS = createRulesFS();
+        }
+        return rulesFS;
+    }
+
+    private synchronized void closeRulesFS() throws IOException {
+        if (rulesFS != null) {
+            rulesFS.close();
+            rulesFS = null;
+        }
+    }
+
     @Override
-    public synchronized List<String> listWorkflows() {
+    public List<String> listWorkflows() {
         List<String> ls = new ArrayList<>();
-        try (RulesFS fs = createRulesFS()) {
-            Path rootDir = fs.getRoot();
+        lock.readLock().lock();
+        try {
+            Path rootDir = getRulesFS().getRoot();
             try (DirectoryStream<Path> ds = Files.newDirectoryStream(rootDir, Files::isDirectory)) {
                 for (Path p : ds) {
                     String workflowDirName = p.getFileName().toString();
@@ -55,50 +123,146 @@ public abstract class FileSystemRulesDbClient implements RulesDbClient {
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
         }
         return ls;
     }
 
     @Override
-    public synchronized void updateRule(SecurityRule rule) {
+    public void updateRule(SecurityRule rule) {
         Objects.requireNonNull(rule);
-        try (RulesFS fs = createRulesFS()) {
-            Path rootDir = fs.getRoot();
-            Path workflowDir = rootDir.resolve(rule.getWorkflowId());
-            Path rulesDir = workflowDir.resolve(rule.getId().getAttributeSet().name());
-            Files.createDirectories(rulesDir);
-            SecurityRuleSerializer serializer = loader.load(rule.getClass());
-            Path ruleFile = rulesDir.resolve(rule.getId().getSecurityIndexId().toString() + "." + serializer.getFormat());
-            serializer.format(rule, Files.newOutputStream(ruleFile));
+        lock.writeLock().lock();
+        try {
+            // so that a zip file is written back before being written again
+            closeRulesFS();
+            try (RulesFS fs = createRulesFS()) {
+                Path rootDir = fs.getRoot();
+                Path workflowDir = rootDir.resolve(rule.getWorkflowId());
+                Path rulesDir = workflowDir.resolve(rule.getId().getAttributeSet().name());
+                Files.createDirectories(rulesDir);
+                SecurityRuleSerializer serializer = loader.load(rule.getClass());
+                Path ruleFile = rulesDir.resolve(rule.getId().getSecurityIndexId().toString() + "." + serializer.getFormat());
+                try (OutputStream os = Files.newOutputStream(ruleFile)) {
+                    serializer.format(rule, os);
+                }
+            }
+            index.remove(rule.getWorkflowId());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<String, List<RuleLocation>> indexWorkflow(String workflowId) {
+        List<SecurityRuleSerializer> serializers = new ArrayList<>(loader.loadAll());
+        // when a rule is stored in several formats, the first serializer wins
+        Map<RuleId, RuleLocation> locations = new HashMap<>();
+        try {
+            Path workflowDir = getRulesFS().getRoot().resolve(workflowId);
+            for (RuleAttributeSet attributeSet : RuleAttributeSet.values()) {
+                Path attributeSetDir = workflowDir.resolve(attributeSet.name());
+                if (!Files.exists(attributeSetDir)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(attributeSetDir)) {
+                    for (Path ruleFile : ds) {
+                        String fileName = ruleFile.getFileName().toString();
+                        for (int rank = 0; rank < serializers.size(); rank++) {
+                            SecurityRuleSerializer serializer = serializers.get(rank);
+                            String suffix = "." + serializer.getFormat();
+                            if (fileName.endsWith(suffix)) {
+                                SecurityIndexId securityIndexId;
+                                try {
+                                    securityIndexId = SecurityIndexId.fromString(fileName.substring(0, fileName.length() - suffix.length()));
+                                } catch (RuntimeException e) {
+                                    LOGGER.warn("Ignore rule file {}: {}", ruleFile, e.toString());
+                                    break;
+                                }
+                                RuleId ruleId = new RuleId(attributeSet, securityIndexId);
+                                RuleLocation location = locations.get(ruleId);
+                                if (location == null || rank < location.serializerRank) {
+                                    locations.put(ruleId, new RuleLocation(ruleId, fileName, serializer, rank));
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        Map<String, List<RuleLocation>> locationsByContingency = new HashMap<>();
+        for (RuleLocation location : locations.values()) {
+            locationsByContingency.computeIfAbsent(location.ruleId.getSecurityIndexId().getContingencyId(), k -> new ArrayList<>(1))
+                                  .add(location);
+        }
+        locationsByContingency.values().forEach(l -> l.sort(RULE_LOCATION_COMPARATOR));
+        LOGGER.debug("{} rules of workflow {} indexed", locations.size(), workflowId);
+        return locationsByContingency;
+    }
+
+    private SecurityRule loadRule(String workflowId, RuleLocation location) throws IOException {
+        SecurityRule rule = location.rule;
+        if (rule == null) {
+            Path ruleFile = getRulesFS().getRoot()
+                    .resolve(workflowId)
+                    .resolve(location.ruleId.getAttributeSet().name())
+                    .resolve(location.fileName);
+            try (InputStream is = Files.newInputStream(ruleFile)) {
+                rule = location.serializer.parse(location.ruleId, workflowId, is);
+            }
+            location.rule = rule;
+        }
+        return rule;
     }
 
     @Override
-    public synchronized List<SecurityRule> getRules(String workflowId, RuleAttributeSet attributeSet, String contingencyId, SecurityIndexType securityIndexType) {
+    public List<SecurityRule> getRules(String workflowId, RuleAttributeSet attributeSet, String contingencyId, SecurityIndexType securityIndexType) {
         Objects.requireNonNull(workflowId);
         Objects.requireNonNull(contingencyId);
         List<SecurityRule> rules = new ArrayList<>(1);
-        try (RulesFS fs = createRulesFS()) {
-            Path rootDir = fs.getRoot();
-            Path workflowDir = rootDir.resolve(workflowId);
-            for (RuleAttributeSet attributeSet2 : attributeSet != null ? new RuleAttributeSet[] {attributeSet} : RuleAttributeSet.values()) {
-                Path attributeSetDir = workflowDir.resolve(attributeSet2.name());
-                for (SecurityIndexType securityIndexType2 : securityIndexType != null ? new SecurityIndexType[] {securityIndexType} : SecurityIndexType.values()) {
-                    SecurityIndexId securityIndexId = new SecurityIndexId(contingencyId, securityIndexType2);
-                    for (SecurityRuleSerializer serializer : loader.loadAll()) {
-                        Path ruleFile = attributeSetDir.resolve(securityIndexId.toString() + "." + serializer.getFormat());
-                        if (Files.exists(ruleFile)) {
-                            RuleId ruleId = new RuleId(attributeSet2, securityIndexId);
-                            rules.add(serializer.parse(ruleId, workflowId, Files.newInputStream(ruleFile)));
-                            break;
-                        }
+        lock.readLock().lock();
+        try {
+            List<RuleLocation> locations = index.computeIfAbsent(workflowId, this::indexWorkflow).get(contingencyId);
+            if (locations != null) {
+                for (RuleLocation location : locations) {
+                    if ((attributeSet == null || location.ruleId.getAttributeSet() == attributeSet)
+                            && (securityIndexType == null || location.ruleId.getSecurityIndexId().getSecurityIndexType() == securityIndexType)) {
+                        rules.add(loadRule(workflowId, location));
                     }
                 }
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rules;
+    }
+
+    @Override
+    public Map<String, List<SecurityRule>> getRules(String workflowId, Collection<String> contingencyIds) {
+        Objects.requireNonNull(workflowId);
+        Objects.requireNonNull(contingencyIds);
+        Map<String, List<SecurityRule>> rules = new HashMap<>(contingencyIds.size());
+        lock.readLock().lock();
+        try {
+            Map<String, List<RuleLocation>> workflowIndex = index.computeIfAbsent(workflowId, this::indexWorkflow);
+            for (String contingencyId : contingencyIds) {
+                List<RuleLocation> locations = workflowIndex.getOrDefault(contingencyId, Collections.emptyList());
+                List<SecurityRule> contingencyRules = new ArrayList<>(locations.size());
+                for (RuleLocation location : locations) {
+                    contingencyRules.add(loadRule(workflowId, location));
+                }
+                rules.put(contingencyId, contingencyRules);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
         }
         return rules;
     }
@@ -121,11 +285,12 @@ public abstract class FileSystemRulesDbClient implements RulesDbClient {
     }
 
     @Override
-    public synchronized Collection<RuleId> listRules(String workflowId, RuleAttributeSet attributeSet) {
+    public Collection<RuleId> listRules(String workflowId, RuleAttributeSet attributeSet) {
         Objects.requireNonNull(workflowId);
         List<RuleId> ruleIds = new ArrayList<>(1);
-        try (RulesFS fs = createRulesFS()) {
-            Path rootDir = fs.getRoot();
+        lock.readLock().lock();
+        try {
+            Path rootDir = getRulesFS().getRoot();
             if (attributeSet != null) {
                 listRules(workflowId, attributeSet, ruleIds, rootDir);
             } else {
@@ -135,12 +300,21 @@ public abstract class FileSystemRulesDbClient implements RulesDbClient {
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
         }
         return ruleIds;
     }
 
     @Override
     public void close() throws Exception {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            closeRulesFS();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 }
@@ -23,8 +23,10 @@ import org.junit.Test;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
@@ -107,4 +109,34 @@ public class LocalFileSystemRulesDbClientTest {
         } catch (Exception e) {
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getRulesBulkTest() {
+        SecurityRuleMock rule1 = new SecurityRuleMock(new RuleId(RuleAttributeSet.MONTE_CARLO, new SecurityIndexId("fault1", SecurityIndexType.TSO_OVERLOAD)), "workflow-0");
+        SecurityRuleMock rule2 = new SecurityRuleMock(new RuleId(RuleAttributeSet.WORST_CASE, new SecurityIndexId("fault1", SecurityIndexType.SMALLSIGNAL)), "workflow-0");
+        SecurityRuleMock rule3 = new SecurityRuleMock(new RuleId(RuleAttributeSet.MONTE_CARLO, new SecurityIndexId("fault2", SecurityIndexType.TSO_OVERLOAD)), "workflow-0");
+        rulesDbClient.updateRule(rule1);
+        rulesDbClient.updateRule(rule2);
+        rulesDbClient.updateRule(rule3);
+        Map<String, List<SecurityRule>> rules = rulesDbClient.getRules("workflow-0", Arrays.asList("fault1", "fault2", "fault3"));
+        Assert.assertEquals(3, rules.size());
+        Assert.assertEquals(Arrays.asList(rule2, rule1), rules.get("fault1")); // attribute set order
+        Assert.assertEquals(Collections.singletonList(rule3), rules.get("fault2"));
+        Assert.assertTrue(rules.get("fault3").isEmpty());
+    }
+
+    @Test
+    public void updateRuleInvalidationTest() {
+        RuleId ruleId1 = new RuleId(RuleAttributeSet.MONTE_CARLO, new SecurityIndexId("fault1", SecurityIndexType.TSO_OVERLOAD));
+        RuleId ruleId2 = new RuleId(RuleAttributeSet.MONTE_CARLO, new SecurityIndexId("fault2", SecurityIndexType.TSO_OVERLOAD));
+        rulesDbClient.updateRule(new SecurityRuleMock(ruleId1, "workflow-0"));
+        // loads the index of the workflow
+        Assert.assertTrue(rulesDbClient.getRules("workflow-0", null, "fault2", null).isEmpty());
+        SecurityRuleMock rule2 = new SecurityRuleMock(ruleId2, "workflow-0");
+        rulesDbClient.updateRule(rule2);
+        Assert.assertEquals(Collections.singletonList(rule2), rulesDbClient.getRules("workflow-0", null, "fault2", null));
+        // parsed rules are cached
+        List<SecurityRule> rules1 = rulesDbClient.getRules("workflow-0", null, "fault1", null);
+        Assert.assertSame(rules1.get(0), rulesDbClient.getRules("workflow-0", null, "fault1", null).get(0));
+    }
+}
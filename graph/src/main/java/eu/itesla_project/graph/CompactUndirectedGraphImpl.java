@@ -0,0 +1,540 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.graph;
+
+import com.google.common.base.Function;
+import eu.itesla_project.commons.ITeslaException;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.linked.TIntLinkedList;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An undirected graph with the same behaviour as {@link UndirectedGraphImpl}
+ * but a compact memory layout.
+ * <p>
+ * Edges ends are stored in int arrays and the adjacency is cached in
+ * compressed sparse row format: the adjacent edges of vertex v are
+ * <code>adjacentEdges[offsets[v]]</code> to <code>adjacentEdges[offsets[v + 1] - 1]</code>.
+ * The cache is an immutable object rebuilt on first access after a structural
+ * modification and published without lock, so once the graph is not modified
+ * anymore (frozen) reads from several threads do not contend.
+ * <p>
+ * Traversal is iterative and reuses per thread working arrays, so it is safe
+ * on long chains of vertices and does not allocate.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class CompactUndirectedGraphImpl<V, E> implements UndirectedGraph<V, E> {
+
+    private static final int VERTICES_CAPACITY = 10;
+
+    private static final int EDGES_CAPACITY = 15;
+
+    private static final int REMOVED = -1;
+
+    /**
+     * Adjacency in compressed sparse row format.
+     */
+    private static final class Adjacency {
+
+        private final int[] offsets;
+
+        private final int[] adjacentEdges;
+
+        private Adjacency(int[] offsets, int[] adjacentEdges) {
+            this.offsets = offsets;
+            this.adjacentEdges = adjacentEdges;
+        }
+    }
+
+    /**
+     * Traversal working arrays, reused from one traversal to the other by the
+     * same thread.
+     */
+    private static final class TraversalContext {
+
+        private int[] vertexStack = new int[VERTICES_CAPACITY];
+
+        private int[] positionStack = new int[VERTICES_CAPACITY];
+
+        private boolean[] encountered = new boolean[VERTICES_CAPACITY];
+
+        private boolean inUse = false;
+
+        private void ensureCapacity(int vertexCount) {
+            if (vertexStack.length < vertexCount) {
+                int capacity = Math.max(vertexCount, vertexStack.length * 2);
+                vertexStack = new int[capacity];
+                positionStack = new int[capacity];
+                encountered = new boolean[capacity];
+            }
+        }
+    }
+
+    private static final ThreadLocal<TraversalContext> TRAVERSAL_CONTEXT = ThreadLocal.withInitial(TraversalContext::new);
+
+    /* vertices, a removed vertex has a cleared bit */
+    private final List<V> vertexObjects = new ArrayList<>(VERTICES_CAPACITY);
+
+    private final BitSet vertexExists = new BitSet(VERTICES_CAPACITY);
+
+    /* edges, a removed edge has its ends set to REMOVED */
+    private final TIntArrayList edgeVertices1 = new TIntArrayList(EDGES_CAPACITY);
+
+    private final TIntArrayList edgeVertices2 = new TIntArrayList(EDGES_CAPACITY);
+
+    private final List<E> edgeObjects = new ArrayList<>(EDGES_CAPACITY);
+
+    /* cached adjacency */
+    private volatile Adjacency adjacencyCache;
+
+    private final TIntLinkedList removedVertices = new TIntLinkedList();
+
+    private final TIntLinkedList removedEdges = new TIntLinkedList();
+
+    private final List<UndirectedGraphListener> listeners = new CopyOnWriteArrayList<>();
+
+    public CompactUndirectedGraphImpl() {
+    }
+
+    private void checkVertex(int v) {
+        if (v < 0 || v >= vertexObjects.size() || !vertexExists.get(v)) {
+            throw new ITeslaException("Vertex " + v + " not found");
+        }
+    }
+
+    private void checkEdge(int e) {
+        if (e < 0 || e >= edgeVertices1.size() || edgeVertices1.getQuick(e) == REMOVED) {
+            throw new ITeslaException("Edge " + e + " not found");
+        }
+    }
+
+    @Override
+    public int addVertex() {
+        int v;
+        if (removedVertices.isEmpty()) {
+            v = vertexObjects.size();
+            vertexObjects.add(null);
+        } else {
+            v = removedVertices.removeAt(0);
+        }
+        vertexExists.set(v);
+        invalidateAdjacency();
+        notifyListener();
+        return v;
+    }
+
+    @Override
+    public V removeVertex(int v) {
+        checkVertex(v);
+        for (int e = 0; e < edgeVertices1.size(); e++) {
+            if (edgeVertices1.getQuick(e) == v || edgeVertices2.getQuick(e) == v) {
+                throw new RuntimeException("An edge is connected to vertex " + v);
+            }
+        }
+        V obj = vertexObjects.get(v);
+        if (v == vertexObjects.size() - 1) {
+            vertexObjects.remove(v);
+        } else {
+            vertexObjects.set(v, null);
+            removedVertices.add(v);
+        }
+        vertexExists.clear(v);
+        invalidateAdjacency();
+        notifyListener();
+        return obj;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexObjects.size() - removedVertices.size();
+    }
+
+    @Override
+    public void removeAllVertices() {
+        if (edgeVertices1.size() > 0) {
+            throw new RuntimeException("Cannot remove all vertices because there is still some edges in the graph");
+        }
+        vertexObjects.clear();
+        vertexExists.clear();
+        removedVertices.clear();
+        invalidateAdjacency();
+        notifyListener();
+    }
+
+    @Override
+    public int addEdge(int v1, int v2, E obj) {
+        checkVertex(v1);
+        checkVertex(v2);
+        int e;
+        if (removedEdges.isEmpty()) {
+            e = edgeVertices1.size();
+            edgeVertices1.add(v1);
+            edgeVertices2.add(v2);
+            edgeObjects.add(obj);
+        } else {
+            e = removedEdges.removeAt(0);
+            edgeVertices1.setQuick(e, v1);
+            edgeVertices2.setQuick(e, v2);
+            edgeObjects.set(e, obj);
+        }
+        invalidateAdjacency();
+        notifyListener();
+        return e;
+    }
+
+    @Override
+    public E removeEdge(int e) {
+        checkEdge(e);
+        E obj = edgeObjects.get(e);
+        if (e == edgeVertices1.size() - 1) {
+            edgeVertices1.removeAt(e);
+            edgeVertices2.removeAt(e);
+            edgeObjects.remove(e);
+        } else {
+            edgeVertices1.setQuick(e, REMOVED);
+            edgeVertices2.setQuick(e, REMOVED);
+            edgeObjects.set(e, null);
+            removedEdges.add(e);
+        }
+        invalidateAdjacency();
+        notifyListener();
+        return obj;
+    }
+
+    @Override
+    public void removeAllEdges() {
+        edgeVertices1.clear();
+        edgeVertices2.clear();
+        edgeObjects.clear();
+        removedEdges.clear();
+        invalidateAdjacency();
+        notifyListener();
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeVertices1.size() - removedEdges.size();
+    }
+
+    @Override
+    public int[] getVertices() {
+        int[] vertices = new int[vertexExists.cardinality()];
+        int i = 0;
+        for (int v = vertexExists.nextSetBit(0); v >= 0; v = vertexExists.nextSetBit(v + 1)) {
+            vertices[i++] = v;
+        }
+        return vertices;
+    }
+
+    @Override
+    public int getMaxVertex() {
+        return vertexObjects.size();
+    }
+
+    @Override
+    public Iterable<V> getVerticesObj() {
+        return () -> vertexExists.stream().mapToObj(vertexObjects::get).iterator();
+    }
+
+    @Override
+    public V getVertexObject(int v) {
+        checkVertex(v);
+        return vertexObjects.get(v);
+    }
+
+    @Override
+    public void setVertexObject(int v, V obj) {
+        checkVertex(v);
+        vertexObjects.set(v, obj);
+    }
+
+    @Override
+    public int getEdgeVertex1(int e) {
+        checkEdge(e);
+        return edgeVertices1.getQuick(e);
+    }
+
+    @Override
+    public int getEdgeVertex2(int e) {
+        checkEdge(e);
+        return edgeVertices2.getQuick(e);
+    }
+
+    @Override
+    public Iterable<E> getEdgesObject() {
+        return () -> new Iterator<E>() {
+
+            private int e = nextEdge(0);
+
+            private int nextEdge(int from) {
+                int next = from;
+                while (next < edgeVertices1.size() && edgeVertices1.getQuick(next) == REMOVED) {
+                    next++;
+                }
+                return next;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return e < edgeVertices1.size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E obj = edgeObjects.get(e);
+                e = nextEdge(e + 1);
+                return obj;
+            }
+        };
+    }
+
+    @Override
+    public E getEdgeObject(int e) {
+        checkEdge(e);
+        return edgeObjects.get(e);
+    }
+
+    @Override
+    public List<E> getEdgeObjects(int v1, int v2) {
+        checkVertex(v1);
+        checkVertex(v2);
+        List<E> objects = new ArrayList<>(1);
+        Adjacency adjacency = getAdjacency();
+        for (int i = adjacency.offsets[v1]; i < adjacency.offsets[v1 + 1]; i++) {
+            int e = adjacency.adjacentEdges[i];
+            int ev1 = edgeVertices1.getQuick(e);
+            int ev2 = edgeVertices2.getQuick(e);
+            if ((ev1 == v1 && ev2 == v2) || (ev1 == v2 && ev2 == v1)) {
+                objects.add(edgeObjects.get(e));
+            }
+        }
+        return objects;
+    }
+
+    private Adjacency getAdjacency() {
+        Adjacency adjacency = adjacencyCache;
+        if (adjacency == null) {
+            // concurrent builds produce identical caches, so no lock is needed
+            adjacency = buildAdjacency();
+            adjacencyCache = adjacency;
+        }
+        return adjacency;
+    }
+
+    private Adjacency buildAdjacency() {
+        int vertexCount = vertexObjects.size();
+        int edgeCount = edgeVertices1.size();
+
+        // count edges per vertex then accumulate to get offsets
+        int[] offsets = new int[vertexCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            int v1 = edgeVertices1.getQuick(e);
+            if (v1 != REMOVED) {
+                offsets[v1 + 1]++;
+                offsets[edgeVertices2.getQuick(e) + 1]++;
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        // fill by increasing edge number, same order as an adjacency list
+        int[] positions = Arrays.copyOf(offsets, vertexCount);
+        int[] adjacentEdges = new int[offsets[vertexCount]];
+        for (int e = 0; e < edgeCount; e++) {
+            int v1 = edgeVertices1.getQuick(e);
+            if (v1 != REMOVED) {
+                adjacentEdges[positions[v1]++] = e;
+                adjacentEdges[positions[edgeVertices2.getQuick(e)]++] = e;
+            }
+        }
+        return new Adjacency(offsets, adjacentEdges);
+    }
+
+    private void invalidateAdjacency() {
+        adjacencyCache = null;
+    }
+
+    @Override
+    public void traverse(int v, Traverser<E> traverser, boolean[] encountered) {
+        checkVertex(v);
+        TraversalContext context = TRAVERSAL_CONTEXT.get();
+        if (context.inUse) {
+            // traversal started from a traverser, do not overwrite working arrays of the current one
+            context = new TraversalContext();
+        }
+        context.inUse = true;
+        try {
+            traverse(v, traverser, encountered, context);
+        } finally {
+            context.inUse = false;
+        }
+    }
+
+    private void traverse(int v, Traverser<E> traverser, boolean[] encountered, TraversalContext context) {
+        Adjacency adjacency = getAdjacency();
+        int[] offsets = adjacency.offsets;
+        int[] adjacentEdges = adjacency.adjacentEdges;
+        context.ensureCapacity(vertexObjects.size());
+        int[] vertexStack = context.vertexStack;
+        int[] positionStack = context.positionStack;
+
+        // depth first, each vertex is pushed at most once
+        encountered[v] = true;
+        int top = 0;
+        vertexStack[0] = v;
+        positionStack[0] = offsets[v];
+        while (top >= 0) {
+            int vertex = vertexStack[top];
+            int position = positionStack[top];
+            if (position == offsets[vertex + 1]) {
+                top--;
+                continue;
+            }
+            positionStack[top] = position + 1;
+            int e = adjacentEdges[position];
+            int v1 = edgeVertices1.getQuick(e);
+            int v2 = edgeVertices2.getQuick(e);
+            int next = -1;
+            if (!encountered[v1]) {
+                if (traverser.traverse(v2, e, v1) == TraverseResult.CONTINUE) {
+                    next = v1;
+                }
+            } else if (!encountered[v2]) {
+                if (traverser.traverse(v1, e, v2) == TraverseResult.CONTINUE) {
+                    next = v2;
+                }
+            }
+            if (next != -1) {
+                encountered[next] = true;
+                top++;
+                vertexStack[top] = next;
+                positionStack[top] = offsets[next];
+            }
+        }
+    }
+
+    @Override
+    public void traverse(int v, Traverser<E> traverser) {
+        checkVertex(v);
+        TraversalContext context = TRAVERSAL_CONTEXT.get();
+        if (context.inUse) {
+            context = new TraversalContext();
+        }
+        context.inUse = true;
+        try {
+            context.ensureCapacity(vertexObjects.size());
+            boolean[] encountered = context.encountered;
+            Arrays.fill(encountered, 0, vertexObjects.size(), false);
+            traverse(v, traverser, encountered, context);
+        } finally {
+            context.inUse = false;
+        }
+    }
+
+    @Override
+    public List<TIntArrayList> findAllPaths(int from, Function<V, Boolean> pathComplete, Function<E, Boolean> pathCanceled) {
+        Objects.requireNonNull(pathComplete);
+        List<TIntArrayList> paths = new ArrayList<>();
+        BitSet encountered = new BitSet(vertexObjects.size());
+        TIntArrayList path = new TIntArrayList(1);
+        findAllPaths(from, pathComplete, pathCanceled, path, encountered, paths);
+        // sort paths by size
+        paths.sort((o1, o2) -> o1.size() - o2.size());
+        return paths;
+    }
+
+    private void findAllPaths(int v, Function<V, Boolean> pathComplete, Function<E, Boolean> pathCanceled,
+                              TIntArrayList path, BitSet encountered, List<TIntArrayList> paths) {
+        checkVertex(v);
+        encountered.set(v, true);
+        Adjacency adjacency = getAdjacency();
+        int first = adjacency.offsets[v];
+        int last = adjacency.offsets[v + 1] - 1;
+        for (int i = first; i <= last; i++) {
+            int e = adjacency.adjacentEdges[i];
+            if (pathCanceled != null && pathCanceled.apply(edgeObjects.get(e))) {
+                continue;
+            }
+            int v1 = edgeVertices1.getQuick(e);
+            int v2 = edgeVertices2.getQuick(e);
+            TIntArrayList path2;
+            BitSet encountered2;
+            if (i < last) {
+                path2 = new TIntArrayList(path);
+                encountered2 = new BitSet(vertexObjects.size());
+                encountered2.or(encountered);
+            } else {
+                path2 = path;
+                encountered2 = encountered;
+            }
+            int v1or2;
+            if (v == v2) {
+                v1or2 = v1;
+            } else if (v == v1) {
+                v1or2 = v2;
+            } else {
+                throw new AssertionError();
+            }
+            if (!encountered2.get(v1or2)) {
+                path2.add(e);
+                if (pathComplete.apply(vertexObjects.get(v1or2))) {
+                    paths.add(path2);
+                } else {
+                    findAllPaths(v1or2, pathComplete, pathCanceled, path2, encountered2, paths);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addListener(UndirectedGraphListener l) {
+        listeners.add(l);
+    }
+
+    @Override
+    public void removeListener(UndirectedGraphListener l) {
+        listeners.remove(l);
+    }
+
+    private void notifyListener() {
+        for (UndirectedGraphListener l : listeners) {
+            l.graphChanged();
+        }
+    }
+
+    @Override
+    public void print(PrintStream out, Function<V, String> vertexToString, Function<E, String> edgeToString) {
+        out.append("Vertices:\n");
+        for (int v = vertexExists.nextSetBit(0); v >= 0; v = vertexExists.nextSetBit(v + 1)) {
+            V obj = vertexObjects.get(v);
+            String str = vertexToString == null ? Objects.toString(obj) : vertexToString.apply(obj);
+            out.append(Integer.toString(v)).append(": ")
+                    .append(str)
+                    .append("\n");
+        }
+        out.append("Edges:\n");
+        for (int e = 0; e < edgeVertices1.size(); e++) {
+            if (edgeVertices1.getQuick(e) != REMOVED) {
+                E obj = edgeObjects.get(e);
+                String str = edgeToString == null ? Objects.toString(obj) : edgeToString.apply(obj);
+                out.append(Integer.toString(e)).append(": ")
+                        .append(Integer.toString(edgeVertices1.getQuick(e))).append("<->")
+                        .append(Integer.toString(edgeVertices2.getQuick(e))).append(" ")
+                        .append(str).append("\n");
+            }
+        }
+    }
+
+}
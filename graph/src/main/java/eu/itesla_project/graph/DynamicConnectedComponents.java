@@ -0,0 +1,499 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.graph;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connected components of an undirected graph maintained incrementally while
+ * vertices and edges are added and removed.
+ * <p>
+ * Structural modifications only record the vertices around the change (seeds).
+ * {@link #updateComponents()} then runs an interleaved breadth first search
+ * from all the seeds at the same time: searches that meet are merged and a
+ * search that runs out of vertices has found a complete component. The
+ * search stops as soon as only one search is still running, so the cost of
+ * an update is proportional to the size of the smallest separated parts, not
+ * to the size of the graph. Merging two components only relabels the smallest
+ * one.
+ * <p>
+ * Component numbers are internal identifiers, they are not ordered by size.
+ * This class is not thread safe.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class DynamicConnectedComponents {
+
+    private static final int REMOVED = -2;
+
+    private static final int NO_COMPONENT = -1;
+
+    // vertex data, component is REMOVED for a free vertex slot
+    private final TIntArrayList vertexComponent = new TIntArrayList();
+
+    private final List<TIntArrayList> vertexEdges = new ArrayList<>();
+
+    private final TIntArrayList freeVertices = new TIntArrayList();
+
+    // edge data, both ends are REMOVED for a free edge slot
+    private final TIntArrayList edgeVertex1 = new TIntArrayList();
+
+    private final TIntArrayList edgeVertex2 = new TIntArrayList();
+
+    private final TIntArrayList freeEdges = new TIntArrayList();
+
+    // component data
+    private final TIntArrayList componentSize = new TIntArrayList();
+
+    private final TIntArrayList freeComponents = new TIntArrayList();
+
+    private int vertexCount = 0;
+
+    // vertices around modifications since last update
+    private final TIntArrayList seeds = new TIntArrayList();
+
+    // search working data, reused from one update to the other
+    private int[] visitStamp = new int[0];
+
+    private int[] visitGroup = new int[0];
+
+    private int stamp = 0;
+
+    public DynamicConnectedComponents() {
+    }
+
+    private DynamicConnectedComponents(DynamicConnectedComponents other) {
+        vertexComponent.addAll(other.vertexComponent);
+        for (TIntArrayList edges : other.vertexEdges) {
+            vertexEdges.add(new TIntArrayList(edges));
+        }
+        freeVertices.addAll(other.freeVertices);
+        edgeVertex1.addAll(other.edgeVertex1);
+        edgeVertex2.addAll(other.edgeVertex2);
+        freeEdges.addAll(other.freeEdges);
+        componentSize.addAll(other.componentSize);
+        freeComponents.addAll(other.freeComponents);
+        vertexCount = other.vertexCount;
+        seeds.addAll(other.seeds);
+    }
+
+    /**
+     * Deep copy of the graph and of its components, including modifications
+     * not yet taken into account, so that the copy can be updated
+     * incrementally independently of this one.
+     */
+    public DynamicConnectedComponents copy() {
+        return new DynamicConnectedComponents(this);
+    }
+
+    public int addVertex() {
+        int v;
+        if (freeVertices.isEmpty()) {
+            v = vertexComponent.size();
+            vertexComponent.add(NO_COMPONENT);
+            vertexEdges.add(new TIntArrayList(3));
+        } else {
+            v = freeVertices.removeAt(freeVertices.size() - 1);
+            vertexComponent.set(v, NO_COMPONENT);
+        }
+        vertexCount++;
+        seeds.add(v);
+        return v;
+    }
+
+    public void removeVertex(int v) {
+        checkVertex(v);
+        TIntArrayList edges = vertexEdges.get(v);
+        while (!edges.isEmpty()) {
+            removeEdge(edges.get(edges.size() - 1));
+        }
+        int c = vertexComponent.get(v);
+        if (c != NO_COMPONENT) {
+            decrementComponentSize(c);
+        }
+        vertexComponent.set(v, REMOVED);
+        freeVertices.add(v);
+        vertexCount--;
+    }
+
+    public int addEdge(int v1, int v2) {
+        checkVertex(v1);
+        checkVertex(v2);
+        int e;
+        if (freeEdges.isEmpty()) {
+            e = edgeVertex1.size();
+            edgeVertex1.add(v1);
+            edgeVertex2.add(v2);
+        } else {
+            e = freeEdges.removeAt(freeEdges.size() - 1);
+            edgeVertex1.set(e, v1);
+            edgeVertex2.set(e, v2);
+        }
+        vertexEdges.get(v1).add(e);
+        if (v1 != v2) {
+            vertexEdges.get(v2).add(e);
+        }
+        seeds.add(v1);
+        seeds.add(v2);
+        return e;
+    }
+
+    public void removeEdge(int e) {
+        if (e < 0 || e >= edgeVertex1.size() || edgeVertex1.get(e) == REMOVED) {
+            throw new IllegalArgumentException("Edge " + e + " not found");
+        }
+        int v1 = edgeVertex1.get(e);
+        int v2 = edgeVertex2.get(e);
+        vertexEdges.get(v1).remove(e);
+        if (v1 != v2) {
+            vertexEdges.get(v2).remove(e);
+        }
+        edgeVertex1.set(e, REMOVED);
+        edgeVertex2.set(e, REMOVED);
+        freeEdges.add(e);
+        seeds.add(v1);
+        seeds.add(v2);
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getComponent(int v) {
+        checkVertex(v);
+        return vertexComponent.get(v);
+    }
+
+    public int getComponentSize(int c) {
+        return componentSize.get(c);
+    }
+
+    /**
+     * Get the list of the components that contain at least one vertex.
+     */
+    public TIntArrayList getComponents() {
+        TIntArrayList components = new TIntArrayList();
+        for (int c = 0; c < componentSize.size(); c++) {
+            if (componentSize.get(c) > 0) {
+                components.add(c);
+            }
+        }
+        return components;
+    }
+
+    private void checkVertex(int v) {
+        if (v < 0 || v >= vertexComponent.size() || vertexComponent.get(v) == REMOVED) {
+            throw new IllegalArgumentException("Vertex " + v + " not found");
+        }
+    }
+
+    private int newComponent() {
+        if (freeComponents.isEmpty()) {
+            componentSize.add(0);
+            return componentSize.size() - 1;
+        }
+        return freeComponents.removeAt(freeComponents.size() - 1);
+    }
+
+    private void decrementComponentSize(int c) {
+        int size = componentSize.get(c) - 1;
+        componentSize.set(c, size);
+        if (size == 0) {
+            freeComponents.add(c);
+        }
+    }
+
+    private void setComponent(int v, int c, TIntArrayList changed) {
+        int oldC = vertexComponent.get(v);
+        if (oldC != c) {
+            if (oldC != NO_COMPONENT) {
+                decrementComponentSize(oldC);
+            }
+            vertexComponent.set(v, c);
+            componentSize.set(c, componentSize.get(c) + 1);
+            changed.add(v);
+        }
+    }
+
+    private int otherEnd(int e, int v) {
+        int v1 = edgeVertex1.get(e);
+        return v1 == v ? edgeVertex2.get(e) : v1;
+    }
+
+    private void newStamp() {
+        if (visitStamp.length < vertexComponent.size()) {
+            visitStamp = new int[vertexComponent.size() * 2];
+            visitGroup = new int[visitStamp.length];
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    private boolean isVisited(int v) {
+        return visitStamp[v] == stamp;
+    }
+
+    private void visit(int v, int group) {
+        visitStamp[v] = stamp;
+        visitGroup[v] = group;
+    }
+
+    /**
+     * A breadth first search started from one or several seeds. Once merged
+     * into another one, a search only keeps a link to its parent.
+     */
+    private static final class Search {
+
+        private Search parent = this;
+
+        private final TIntArrayList visited = new TIntArrayList();
+
+        private final TIntArrayList queue = new TIntArrayList();
+
+        private int next = 0; // index in queue of the next vertex to expand
+
+        private Search(int v) {
+            visited.add(v);
+            queue.add(v);
+        }
+
+        private Search find() {
+            Search root = this;
+            while (root.parent != root) {
+                root = root.parent;
+            }
+            Search s = this;
+            while (s != root) {
+                Search p = s.parent;
+                s.parent = root;
+                s = p;
+            }
+            return root;
+        }
+
+        private void add(int v) {
+            visited.add(v);
+            queue.add(v);
+        }
+
+        private boolean isExhausted() {
+            return next >= queue.size();
+        }
+    }
+
+    private static void merge(Search s1, Search s2) {
+        // move the smallest search into the biggest one
+        Search big = s1.visited.size() >= s2.visited.size() ? s1 : s2;
+        Search small = big == s1 ? s2 : s1;
+        big.visited.addAll(small.visited);
+        for (int i = small.next; i < small.queue.size(); i++) {
+            big.queue.add(small.queue.getQuick(i));
+        }
+        small.parent = big;
+    }
+
+    /**
+     * Update component numbers after modifications of the graph.
+     *
+     * @return vertices whose component has changed
+     */
+    public TIntArrayList updateComponents() {
+        TIntArrayList changed = new TIntArrayList();
+        if (seeds.isEmpty()) {
+            return changed;
+        }
+        if (seeds.size() > vertexCount / 2) {
+            // too many modifications, a complete computation is cheaper
+            computeAllComponents(changed);
+            seeds.clear();
+            return changed;
+        }
+
+        newStamp();
+        List<Search> searches = new ArrayList<>();
+        for (int i = 0; i < seeds.size(); i++) {
+            int v = seeds.getQuick(i);
+            if (vertexComponent.get(v) != REMOVED && !isVisited(v)) {
+                visit(v, searches.size());
+                searches.add(new Search(v));
+            }
+        }
+        seeds.clear();
+
+        // expand searches in turn until only one is still running
+        List<Search> running = new ArrayList<>(searches);
+        List<Search> exhausted = new ArrayList<>();
+        int i = 0;
+        while (running.size() > 1) {
+            if (i >= running.size()) {
+                i = 0;
+            }
+            Search s = running.get(i);
+            if (s.parent != s || s.isExhausted()) {
+                if (s.parent == s) {
+                    exhausted.add(s);
+                }
+                // merged into another search or exhausted, stop it
+                running.set(i, running.get(running.size() - 1));
+                running.remove(running.size() - 1);
+                continue;
+            }
+            int v = s.queue.getQuick(s.next++);
+            TIntArrayList edges = vertexEdges.get(v);
+            for (int j = 0; j < edges.size(); j++) {
+                int w = otherEnd(edges.getQuick(j), v);
+                if (!isVisited(w)) {
+                    visit(w, visitGroup[v]);
+                    s.find().add(w);
+                } else {
+                    Search s1 = s.find();
+                    Search s2 = searches.get(visitGroup[w]).find();
+                    if (s1 != s2) {
+                        merge(s1, s2);
+                    }
+                }
+            }
+            i++;
+        }
+
+        // exhausted searches have found complete components
+        for (Search s : exhausted) {
+            relabelComplete(s.visited, changed);
+        }
+
+        if (running.size() == 1) {
+            relabelPartial(running.get(0).find().visited, changed);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Relabel a component whose vertices have all been visited.
+     */
+    private void relabelComplete(TIntArrayList vertices, TIntArrayList changed) {
+        // keep the old component number if all the component was in a single one
+        int c = NO_COMPONENT;
+        boolean sameComponent = true;
+        int count = 0;
+        for (int i = 0; i < vertices.size(); i++) {
+            int vc = vertexComponent.get(vertices.getQuick(i));
+            if (vc != NO_COMPONENT) {
+                if (c == NO_COMPONENT) {
+                    c = vc;
+                } else if (c != vc) {
+                    sameComponent = false;
+                    break;
+                }
+                count++;
+            }
+        }
+        if (c == NO_COMPONENT || !sameComponent || count != componentSize.get(c)) {
+            c = newComponent();
+        }
+        for (int i = 0; i < vertices.size(); i++) {
+            setComponent(vertices.getQuick(i), c, changed);
+        }
+    }
+
+    /**
+     * Relabel a component only partially visited by the last running search.
+     * Not visited vertices of this component all belong to an old component
+     * of one of the visited vertices, so the biggest of these old components
+     * is kept and the other ones are merged into it.
+     */
+    private void relabelPartial(TIntArrayList vertices, TIntArrayList changed) {
+        TIntIntHashMap oldComponents = new TIntIntHashMap();
+        int biggest = NO_COMPONENT;
+        for (int i = 0; i < vertices.size(); i++) {
+            int c = vertexComponent.get(vertices.getQuick(i));
+            if (c != NO_COMPONENT) {
+                oldComponents.adjustOrPutValue(c, 1, 1);
+                if (biggest == NO_COMPONENT || componentSize.get(c) > componentSize.get(biggest)) {
+                    biggest = c;
+                }
+            }
+        }
+        if (biggest == NO_COMPONENT) {
+            // only new vertices, the component has been completely visited
+            relabelComplete(vertices, changed);
+            return;
+        }
+        for (int c : oldComponents.keys()) {
+            if (c != biggest) {
+                // walk through vertices of old component c reachable from visited ones
+                newStamp();
+                TIntArrayList queue = new TIntArrayList();
+                for (int i = 0; i < vertices.size(); i++) {
+                    int v = vertices.getQuick(i);
+                    if (vertexComponent.get(v) == c) {
+                        visit(v, 0);
+                        queue.add(v);
+                    }
+                }
+                for (int k = 0; k < queue.size(); k++) {
+                    int v = queue.getQuick(k);
+                    TIntArrayList edges = vertexEdges.get(v);
+                    for (int j = 0; j < edges.size(); j++) {
+                        int w = otherEnd(edges.getQuick(j), v);
+                        if (!isVisited(w) && vertexComponent.get(w) == c) {
+                            visit(w, 0);
+                            queue.add(w);
+                        }
+                    }
+                }
+                for (int k = 0; k < queue.size(); k++) {
+                    setComponent(queue.getQuick(k), biggest, changed);
+                }
+            }
+        }
+        for (int i = 0; i < vertices.size(); i++) {
+            setComponent(vertices.getQuick(i), biggest, changed);
+        }
+    }
+
+    private void computeAllComponents(TIntArrayList changed) {
+        int[] oldComponent = vertexComponent.toArray();
+        componentSize.resetQuick();
+        freeComponents.resetQuick();
+        for (int v = 0; v < vertexComponent.size(); v++) {
+            if (vertexComponent.get(v) != REMOVED) {
+                vertexComponent.set(v, NO_COMPONENT);
+            }
+        }
+        TIntArrayList queue = new TIntArrayList();
+        for (int v = 0; v < vertexComponent.size(); v++) {
+            if (vertexComponent.get(v) == NO_COMPONENT) {
+                int c = newComponent();
+                queue.resetQuick();
+                queue.add(v);
+                vertexComponent.set(v, c);
+                for (int k = 0; k < queue.size(); k++) {
+                    int v1 = queue.getQuick(k);
+                    TIntArrayList edges = vertexEdges.get(v1);
+                    for (int j = 0; j < edges.size(); j++) {
+                        int w = otherEnd(edges.getQuick(j), v1);
+                        if (vertexComponent.get(w) == NO_COMPONENT) {
+                            vertexComponent.set(w, c);
+                            queue.add(w);
+                        }
+                    }
+                }
+                componentSize.set(c, queue.size());
+            }
+        }
+        for (int v = 0; v < vertexComponent.size(); v++) {
+            if (vertexComponent.get(v) != REMOVED && vertexComponent.get(v) != oldComponent[v]) {
+                changed.add(v);
+            }
+        }
+    }
+}
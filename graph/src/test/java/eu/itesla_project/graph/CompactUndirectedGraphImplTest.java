@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.graph;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class CompactUndirectedGraphImplTest extends UndirectedGraphImplTest {
+
+    @Override
+    protected UndirectedGraph<Vertex, Object> createGraph() {
+        return new CompactUndirectedGraphImpl<>();
+    }
+
+    private static TIntArrayList traverse(UndirectedGraph<Vertex, Object> graph, int v, int stop) {
+        TIntArrayList traversed = new TIntArrayList();
+        graph.traverse(v, (v1, e, v2) -> {
+            traversed.add(e);
+            return v2 == stop ? TraverseResult.TERMINATE : TraverseResult.CONTINUE;
+        });
+        return traversed;
+    }
+
+    @Test
+    public void testTraverseSameOrder() {
+        UndirectedGraph<Vertex, Object> graph2 = new UndirectedGraphImpl<>();
+        for (int i = 0; i < 8; i++) {
+            graph.addVertex();
+            graph2.addVertex();
+        }
+        int[][] edges = {{0, 1}, {1, 2}, {2, 0}, {2, 3}, {3, 4}, {1, 5}, {5, 6}, {6, 3}, {7, 7}, {4, 7}};
+        for (int[] edge : edges) {
+            graph.addEdge(edge[0], edge[1], null);
+            graph2.addEdge(edge[0], edge[1], null);
+        }
+        graph.removeEdge(4);
+        graph2.removeEdge(4);
+        for (int stop = -1; stop < 8; stop++) {
+            for (int v = 0; v < 8; v++) {
+                assertEquals(traverse(graph2, v, stop), traverse(graph, v, stop));
+            }
+        }
+    }
+
+    @Test
+    public void testTraverseLongChain() {
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            graph.addVertex();
+        }
+        for (int i = 0; i < n - 1; i++) {
+            graph.addEdge(i, i + 1, null);
+        }
+        boolean[] encountered = new boolean[graph.getMaxVertex()];
+        int[] count = new int[1];
+        graph.traverse(0, (v1, e, v2) -> {
+            count[0]++;
+            return TraverseResult.CONTINUE;
+        }, encountered);
+        assertEquals(n - 1, count[0]);
+        for (boolean b : encountered) {
+            assertTrue(b);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.graph;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class DynamicConnectedComponentsTest {
+
+    @Test
+    public void test() {
+        DynamicConnectedComponents cc = new DynamicConnectedComponents();
+        int[] v = new int[10];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = cc.addVertex();
+        }
+        // two chains 0-1-2-3-4-5-6 and 7-8-9
+        int[] e = new int[8];
+        for (int i = 0; i < 6; i++) {
+            e[i] = cc.addEdge(v[i], v[i + 1]);
+        }
+        e[6] = cc.addEdge(v[7], v[8]);
+        e[7] = cc.addEdge(v[8], v[9]);
+        assertEquals(10, cc.updateComponents().size());
+        assertEquals(2, cc.getComponents().size());
+        int c1 = cc.getComponent(v[0]);
+        int c2 = cc.getComponent(v[9]);
+        assertNotEquals(c1, c2);
+        assertEquals(7, cc.getComponentSize(c1));
+        assertEquals(3, cc.getComponentSize(c2));
+
+        // nothing changed
+        assertTrue(cc.updateComponents().isEmpty());
+
+        // split the big chain, only the smallest part is relabeled
+        cc.removeEdge(e[4]);
+        TIntArrayList changed = cc.updateComponents();
+        changed.sort();
+        assertEquals(new TIntArrayList(new int[] {v[5], v[6]}), changed);
+        assertEquals(c1, cc.getComponent(v[0]));
+        assertEquals(5, cc.getComponentSize(c1));
+        assertEquals(3, cc.getComponents().size());
+
+        // merge the two small chains, only the smallest one is relabeled
+        cc.addEdge(v[6], v[7]);
+        changed = cc.updateComponents();
+        changed.sort();
+        assertEquals(new TIntArrayList(new int[] {v[5], v[6]}), changed);
+        assertEquals(c2, cc.getComponent(v[5]));
+        assertEquals(5, cc.getComponentSize(c2));
+
+        // removing a vertex also removes its edges
+        cc.removeVertex(v[8]);
+        cc.updateComponents();
+        assertEquals(3, cc.getComponentSize(cc.getComponent(v[7])));
+        assertEquals(1, cc.getComponentSize(cc.getComponent(v[9])));
+        assertEquals(9, cc.getVertexCount());
+        try {
+            cc.getComponent(v[8]);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void copyTest() {
+        DynamicConnectedComponents cc = new DynamicConnectedComponents();
+        int[] v = new int[4];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = cc.addVertex();
+        }
+        int e01 = cc.addEdge(v[0], v[1]);
+        cc.addEdge(v[1], v[2]);
+        cc.addEdge(v[2], v[3]);
+        cc.updateComponents();
+        int c = cc.getComponent(v[0]);
+
+        // the copy keeps the components and is then updated incrementally
+        DynamicConnectedComponents cc2 = cc.copy();
+        assertEquals(c, cc2.getComponent(v[3]));
+        assertTrue(cc2.updateComponents().isEmpty());
+        cc2.removeEdge(e01);
+        assertEquals(new TIntArrayList(new int[] {v[0]}), cc2.updateComponents());
+        assertEquals(c, cc2.getComponent(v[1]));
+        assertEquals(3, cc2.getComponentSize(c));
+        assertEquals(2, cc2.getComponents().size());
+
+        // the original one is not modified
+        assertTrue(cc.updateComponents().isEmpty());
+        assertEquals(c, cc.getComponent(v[0]));
+        assertEquals(4, cc.getComponentSize(c));
+
+        // pending modifications are copied
+        cc.addVertex();
+        DynamicConnectedComponents cc3 = cc.copy();
+        assertEquals(1, cc3.updateComponents().size());
+        assertEquals(2, cc3.getComponents().size());
+    }
+
+    private static int[] computeReference(int vertexCount, List<int[]> edges, boolean[] removed) {
+        int[] parent = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            parent[i] = i;
+        }
+        for (int[] edge : edges) {
+            if (edge != null) {
+                int r1 = find(parent, edge[0]);
+                int r2 = find(parent, edge[1]);
+                parent[r1] = r2;
+            }
+        }
+        int[] roots = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            roots[i] = removed[i] ? -1 : find(parent, i);
+        }
+        return roots;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            i = parent[i];
+        }
+        return i;
+    }
+
+    @Test
+    public void randomTest() {
+        Random random = new Random(42);
+        int n = 200;
+        DynamicConnectedComponents cc = new DynamicConnectedComponents();
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, cc.addVertex());
+        }
+        boolean[] removed = new boolean[n];
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            int v1 = random.nextInt(n);
+            int v2 = random.nextInt(n);
+            assertEquals(edges.size(), cc.addEdge(v1, v2));
+            edges.add(new int[] {v1, v2});
+        }
+        cc.updateComponents();
+        for (int step = 0; step < 500; step++) {
+            // a few random modifications between each update
+            for (int k = random.nextInt(4); k >= 0; k--) {
+                int e = random.nextInt(edges.size());
+                if (edges.get(e) != null) {
+                    cc.removeEdge(e);
+                    edges.set(e, null);
+                } else {
+                    int v1 = random.nextInt(n);
+                    int v2 = random.nextInt(n);
+                    if (!removed[v1] && !removed[v2]) {
+                        // a free edge slot is reused
+                        int e2 = cc.addEdge(v1, v2);
+                        assertNull(edges.get(e2));
+                        edges.set(e2, new int[] {v1, v2});
+                    }
+                }
+            }
+            if (step % 50 == 0) {
+                int v = random.nextInt(n);
+                if (!removed[v]) {
+                    cc.removeVertex(v);
+                    removed[v] = true;
+                    for (int e = 0; e < edges.size(); e++) {
+                        int[] edge = edges.get(e);
+                        if (edge != null && (edge[0] == v || edge[1] == v)) {
+                            edges.set(e, null);
+                        }
+                    }
+                }
+            }
+            cc.updateComponents();
+
+            // same partition as the reference one and consistent sizes
+            int[] reference = computeReference(n, edges, removed);
+            int[] sizes = new int[n];
+            for (int i = 0; i < n; i++) {
+                if (!removed[i]) {
+                    sizes[reference[i]]++;
+                    for (int j = i + 1; j < n; j++) {
+                        if (!removed[j]) {
+                            assertEquals(reference[i] == reference[j], cc.getComponent(i) == cc.getComponent(j));
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (!removed[i]) {
+                    assertEquals(sizes[reference[i]], cc.getComponentSize(cc.getComponent(i)));
+                }
+            }
+        }
+    }
+}
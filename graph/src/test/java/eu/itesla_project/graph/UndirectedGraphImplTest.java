@@ -22,7 +22,7 @@ import java.util.List;
  */
 public class UndirectedGraphImplTest {
 
-    private static class Vertex {
+    protected static class Vertex {
 
         private final String name;
 
@@ -37,14 +37,18 @@ public class UndirectedGraphImplTest {
 
     }
 
-    private UndirectedGraph<Vertex, Object> graph;
+    protected UndirectedGraph<Vertex, Object> graph;
 
     public UndirectedGraphImplTest() {
     }
 
+    protected UndirectedGraph<Vertex, Object> createGraph() {
+        return new UndirectedGraphImpl<>();
+    }
+
     @Before
     public void setUp() {
-        graph = new UndirectedGraphImpl<>();
+        graph = createGraph();
     }
 
     @After
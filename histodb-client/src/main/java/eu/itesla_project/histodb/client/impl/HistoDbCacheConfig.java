@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.histodb.client.impl;
+
+import eu.itesla_project.commons.config.ModuleConfig;
+import eu.itesla_project.commons.config.PlatformConfig;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class HistoDbCacheConfig {
+
+    private static final int DEFAULT_MAX_SIZE_MB = 10 * 1024;
+
+    private static final int DEFAULT_TIME_TO_LIVE_HOURS = 0;
+
+    private static final boolean DEFAULT_COMPRESS = true;
+
+    private final long maxSize;
+
+    private final long timeToLive;
+
+    private final boolean compress;
+
+    public static HistoDbCacheConfig load() {
+        int maxSizeMb = DEFAULT_MAX_SIZE_MB;
+        int timeToLiveHours = DEFAULT_TIME_TO_LIVE_HOURS;
+        boolean compress = DEFAULT_COMPRESS;
+        ModuleConfig config = PlatformConfig.defaultConfig().getModuleConfigIfExists("histodb-cache");
+        if (config != null) {
+            maxSizeMb = config.getIntProperty("maxSizeMb", DEFAULT_MAX_SIZE_MB);
+            timeToLiveHours = config.getIntProperty("timeToLiveHours", DEFAULT_TIME_TO_LIVE_HOURS);
+            compress = config.getBooleanProperty("compress", DEFAULT_COMPRESS);
+        }
+        return new HistoDbCacheConfig(maxSizeMb * 1024L * 1024L, timeToLiveHours * 3600L * 1000L, compress);
+    }
+
+    /**
+     * @param maxSize max size in bytes of the cached data, 0 for no limit
+     * @param timeToLive time to live in ms of a cache entry, 0 for no limit
+     * @param compress compress cached data
+     */
+    public HistoDbCacheConfig(long maxSize, long timeToLive, boolean compress) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid max size " + maxSize);
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Invalid time to live " + timeToLive);
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.compress = compress;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoDbCacheConfig(maxSize=" + maxSize + ", timeToLive=" + timeToLive + ", compress=" + compress + ")";
+    }
+}
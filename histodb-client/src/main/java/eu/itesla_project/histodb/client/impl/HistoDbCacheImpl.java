@@ -6,105 +6,458 @@
  */
 package eu.itesla_project.histodb.client.impl;
 
-import eu.itesla_project.commons.io.CacheManager;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
 import eu.itesla_project.commons.config.PlatformConfig;
+import eu.itesla_project.commons.io.FileUtil;
+import eu.itesla_project.modules.histo.cache.CacheOutputStream;
 import eu.itesla_project.modules.histo.cache.HistoDbCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.Writer;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
+ * File system cache of histo DB query results.
+ * <p>
+ * Each url is stored in its own directory, named after the hash of the url. The cache is
+ * bounded in size, least recently used entries being evicted first, and entries can have
+ * a time to live. Access times are kept in an index file so that the LRU order survives
+ * restarts. Data can be stored compressed, and data of a url is written to a temporary
+ * file, outside of the entry directories, and only published when complete. Accesses to different urls are not serialized,
+ * locking is done per url using striped locks.
  *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
 public class HistoDbCacheImpl implements HistoDbCache {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoDbCacheImpl.class);
+
     private static final String DEFAULT_CACHE_NAME = "histodb";
 
-    private final String cacheName;
+    private static final String INDEX_FILE_NAME = ".index";
+
+    private static final String URL_FILE_NAME = "url";
+
+    private static final String DATA_FILE_NAME = "data";
+
+    private static final String COMPRESSED_DATA_FILE_NAME = "data.gz";
+
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    private static final String TMP_DIR_NAME = ".tmp";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final class Entry {
+
+        private final String url;
+
+        private final Path dir;
+
+        private final long size;
+
+        private final long creationTime;
+
+        private long lastAccessTime;
+
+        private Entry(String url, Path dir, long size, long creationTime, long lastAccessTime) {
+            this.url = url;
+            this.dir = dir;
+            this.size = size;
+            this.creationTime = creationTime;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+
+    private final Path cacheDir;
+
+    private final HistoDbCacheConfig config;
+
+    private final Striped<Lock> urlLocks = Striped.lock(LOCK_STRIPES);
+
+    // guards entries, size and indexChanged, never held during I/O on data
+    private final Lock indexLock = new ReentrantLock();
+
+    // serializes index file writes, so that a snapshot is never overwritten by an older one
+    private final Lock indexFileLock = new ReentrantLock();
+
+    // entries by url, in least recently used first order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size = 0;
+
+    private boolean indexChanged = false;
 
     public HistoDbCacheImpl() {
         this(DEFAULT_CACHE_NAME);
     }
 
     public HistoDbCacheImpl(String cacheName) {
-        this.cacheName = Objects.requireNonNull(cacheName);
+        this(PlatformConfig.CACHE_DIR.resolve(Objects.requireNonNull(cacheName)), HistoDbCacheConfig.load());
+    }
+
+    public HistoDbCacheImpl(Path cacheDir, HistoDbCacheConfig config) {
+        this.cacheDir = Objects.requireNonNull(cacheDir);
+        this.config = Objects.requireNonNull(config);
+        try {
+            Files.createDirectories(cacheDir);
+            loadIndex();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOGGER.info("Histo DB cache {}: {} entries, {} bytes ({})", cacheDir, entries.size(), size, config);
     }
 
-    private static Path getUrlFile(Path entryDir) {
-        return entryDir.resolve("url");
+    private Path getEntryDir(String url) {
+        return cacheDir.resolve(Hashing.md5().hashString(url, StandardCharsets.UTF_8).toString());
     }
 
     private static Path getDataFile(Path entryDir) {
-        return entryDir.resolve("data");
+        Path compressedDataFile = entryDir.resolve(COMPRESSED_DATA_FILE_NAME);
+        return Files.exists(compressedDataFile) ? compressedDataFile : entryDir.resolve(DATA_FILE_NAME);
     }
 
-    private CacheManager.CacheEntry getCacheEntry(String url) throws IOException {
-        return PlatformConfig.defaultCacheManager().newCacheEntry(cacheName)
-                .withKey(url)
-                .build();
+    private Path getIndexFile() {
+        return cacheDir.resolve(INDEX_FILE_NAME);
+    }
+
+    private Path getTmpDir() {
+        return cacheDir.resolve(TMP_DIR_NAME);
+    }
+
+    /**
+     * Rebuild the list of entries from the entry directories, access times being read from the
+     * index file if available.
+     */
+    private void loadIndex() throws IOException {
+        Map<String, Long> lastAccessTimes = new HashMap<>();
+        Path indexFile = getIndexFile();
+        if (Files.exists(indexFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int i = line.indexOf(';');
+                    if (i > 0) {
+                        try {
+                            lastAccessTimes.put(line.substring(i + 1), Long.parseLong(line.substring(0, i)));
+                        } catch (NumberFormatException e) {
+                            // access time of the entry is then its creation time
+                            LOGGER.warn("Skip malformed cache index line '{}'", line);
+                        }
+                    }
+                }
+            }
+        }
+        // remove data not completely written before a crash
+        Path tmpDir = getTmpDir();
+        if (Files.exists(tmpDir)) {
+            FileUtil.removeDir(tmpDir);
+        }
+        Files.createDirectories(tmpDir);
+        List<Entry> loadedEntries = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(cacheDir)) {
+            for (Path entryDir : stream.filter(dir -> Files.isDirectory(dir) && !dir.equals(tmpDir)).collect(Collectors.toList())) {
+                Path urlFile = entryDir.resolve(URL_FILE_NAME);
+                Path dataFile = getDataFile(entryDir);
+                if (!Files.exists(urlFile) || !Files.exists(dataFile)) {
+                    LOGGER.warn("Remove incomplete cache entry {}", entryDir);
+                    FileUtil.removeDir(entryDir);
+                    continue;
+                }
+                // temporary data files were written to the entry directory by previous versions
+                try (Stream<Path> files = Files.list(entryDir)) {
+                    for (Path file : files.filter(f -> f.getFileName().toString().endsWith(TMP_FILE_SUFFIX)).collect(Collectors.toList())) {
+                        Files.delete(file);
+                    }
+                }
+                String url = new String(Files.readAllBytes(urlFile), StandardCharsets.UTF_8);
+                long creationTime = Files.getLastModifiedTime(dataFile).toMillis();
+                Long lastAccessTime = lastAccessTimes.get(url);
+                loadedEntries.add(new Entry(url, entryDir, Files.size(dataFile), creationTime,
+                                            lastAccessTime != null ? lastAccessTime : creationTime));
+            }
+        }
+        loadedEntries.sort(Comparator.comparingLong(e -> e.lastAccessTime));
+        for (Entry entry : loadedEntries) {
+            entries.put(entry.url, entry);
+            size += entry.size;
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        indexFileLock.lock();
+        try {
+            List<String> lines;
+            indexLock.lock();
+            try {
+                if (!indexChanged) {
+                    return;
+                }
+                lines = new ArrayList<>(entries.size());
+                for (Entry entry : entries.values()) {
+                    lines.add(entry.lastAccessTime + ";" + entry.url);
+                }
+                indexChanged = false;
+            } finally {
+                indexLock.unlock();
+            }
+            boolean saved = false;
+            Path tmpIndexFile = cacheDir.resolve(INDEX_FILE_NAME + TMP_FILE_SUFFIX);
+            try {
+                Files.write(tmpIndexFile, lines, StandardCharsets.UTF_8);
+                Files.move(tmpIndexFile, getIndexFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                saved = true;
+            } finally {
+                if (!saved) {
+                    // try again on next change
+                    indexLock.lock();
+                    try {
+                        indexChanged = true;
+                    } finally {
+                        indexLock.unlock();
+                    }
+                }
+            }
+        } finally {
+            indexFileLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return config.getTimeToLive() > 0 && now - entry.creationTime > config.getTimeToLive();
+    }
+
+    /**
+     * Remove an entry from the index, must be called with the url lock held.
+     */
+    private void removeEntry(Entry entry) throws IOException {
+        indexLock.lock();
+        try {
+            // the entry may have been replaced since it has been selected, its directory
+            // then holds the new data
+            if (entries.get(entry.url) != entry) {
+                return;
+            }
+            entries.remove(entry.url);
+            size -= entry.size;
+            indexChanged = true;
+        } finally {
+            indexLock.unlock();
+        }
+        FileUtil.removeDir(entry.dir);
     }
 
     @Override
-    public synchronized InputStream getData(String url) throws IOException {
-        CacheManager.CacheEntry cacheEntry = getCacheEntry(url);
-        if (cacheEntry.exists()) {
-            Path urlFile = getUrlFile(cacheEntry.toPath());
-            if (!Files.exists(urlFile)) {
-                throw new RuntimeException("Url file not found");
+    public InputStream getData(String url) throws IOException {
+        Objects.requireNonNull(url);
+        Lock lock = urlLocks.get(url);
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Entry entry;
+            indexLock.lock();
+            try {
+                entry = entries.get(url); // also moves the entry to the most recently used position
+                if (entry != null && !isExpired(entry, now)) {
+                    entry.lastAccessTime = now;
+                    indexChanged = true;
+                }
+            } finally {
+                indexLock.unlock();
             }
-            return Files.newInputStream(getDataFile(cacheEntry.toPath()));
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry, now)) {
+                LOGGER.debug("Cache entry of {} expired", url);
+                removeEntry(entry);
+                return null;
+            }
+            Path dataFile = getDataFile(entry.dir);
+            InputStream is = new BufferedInputStream(Files.newInputStream(dataFile));
+            return dataFile.getFileName().toString().equals(COMPRESSED_DATA_FILE_NAME) ? new GZIPInputStream(is) : is;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     @Override
-    public synchronized OutputStream putData(String url) throws IOException {
-        CacheManager.CacheEntry cacheEntry = getCacheEntry(url);
-        if (cacheEntry.exists()) {
-            throw new IllegalArgumentException("Url entry already exists");
+    public CacheOutputStream putData(String url) throws IOException {
+        Objects.requireNonNull(url);
+        // not in the entry directory, which is deleted when the entry is removed
+        Path tmpFile = Files.createTempFile(getTmpDir(), DATA_FILE_NAME, TMP_FILE_SUFFIX);
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpFile));
+        if (config.isCompress()) {
+            os = new GZIPOutputStream(os);
+        }
+        return new CacheOutputStream(os) {
+
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    boolean committed = false;
+                    try {
+                        super.close();
+                        commit(url, tmpFile);
+                        committed = true;
+                    } finally {
+                        if (!committed) {
+                            Files.deleteIfExists(tmpFile);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void abort() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(tmpFile);
+                    }
+                }
+            }
+        };
+    }
+
+    private void commit(String url, Path tmpFile) throws IOException {
+        Path entryDir = getEntryDir(url);
+        Lock lock = urlLocks.get(url);
+        lock.lock();
+        try {
+            Files.createDirectories(entryDir);
+            Path urlFile = entryDir.resolve(URL_FILE_NAME);
+            if (!Files.exists(urlFile)) {
+                try (Writer writer = Files.newBufferedWriter(urlFile, StandardCharsets.UTF_8)) {
+                    writer.write(url);
+                }
+            }
+            String dataFileName = config.isCompress() ? COMPRESSED_DATA_FILE_NAME : DATA_FILE_NAME;
+            String otherDataFileName = config.isCompress() ? DATA_FILE_NAME : COMPRESSED_DATA_FILE_NAME;
+            Files.move(tmpFile, entryDir.resolve(dataFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(entryDir.resolve(otherDataFileName));
+            long dataSize = Files.size(entryDir.resolve(dataFileName));
+            long now = System.currentTimeMillis();
+            indexLock.lock();
+            try {
+                Entry old = entries.put(url, new Entry(url, entryDir, dataSize, now, now));
+                if (old != null) {
+                    size -= old.size;
+                }
+                size += dataSize;
+                indexChanged = true;
+            } finally {
+                indexLock.unlock();
+            }
+        } finally {
+            lock.unlock();
+        }
+        evict(url);
+        saveIndex();
+    }
+
+    /**
+     * Evict least recently used entries until the size of the cache is below the limit.
+     *
+     * @param keptUrl url of the entry just written, never evicted
+     */
+    private void evict(String keptUrl) throws IOException {
+        if (config.getMaxSize() == 0) {
+            return;
         }
-        cacheEntry.create();
-        try (Writer writer = Files.newBufferedWriter(getUrlFile(cacheEntry.toPath()), StandardCharsets.UTF_8)) {
-            writer.write(url);
+        List<Entry> victims = new ArrayList<>();
+        indexLock.lock();
+        try {
+            long newSize = size;
+            for (Entry entry : entries.values()) {
+                if (newSize <= config.getMaxSize()) {
+                    break;
+                }
+                if (!entry.url.equals(keptUrl)) {
+                    victims.add(entry);
+                    newSize -= entry.size;
+                }
+            }
+        } finally {
+            indexLock.unlock();
+        }
+        // one url lock at a time, to avoid deadlocks between writers
+        for (Entry victim : victims) {
+            Lock lock = urlLocks.get(victim.url);
+            lock.lock();
+            try {
+                LOGGER.debug("Evict cache entry of {} ({} bytes)", victim.url, victim.size);
+                removeEntry(victim);
+            } finally {
+                lock.unlock();
+            }
         }
-        return Files.newOutputStream(getDataFile(cacheEntry.toPath()));
+    }
+
+    @Override
+    public void removeData(String url) throws IOException {
+        Objects.requireNonNull(url);
+        Lock lock = urlLocks.get(url);
+        lock.lock();
+        try {
+            Entry entry;
+            indexLock.lock();
+            try {
+                entry = entries.get(url);
+            } finally {
+                indexLock.unlock();
+            }
+            if (entry != null) {
+                removeEntry(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        saveIndex();
     }
 
     @Override
     public List<String> listUrls() throws IOException {
-        Path dir = PlatformConfig.CACHE_DIR.resolve(cacheName);
-        if (Files.exists(dir)) {
-            try (Stream<Path> stream = Files.list(dir)) {
-                return stream
-                        .filter(p -> Files.isDirectory(p))
-                        .map(entryDir -> getUrlFile(entryDir))
-                        .map(urlFile -> {
-                            try {
-                                return new String(Files.readAllBytes(urlFile), StandardCharsets.UTF_8);
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        })
-                        .collect(Collectors.toList());
-            }
-        } else {
-            return Collections.emptyList();
+        indexLock.lock();
+        try {
+            return new ArrayList<>(entries.keySet());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Size in bytes of the cached data.
+     */
+    public long getSize() {
+        indexLock.lock();
+        try {
+            return size;
+        } finally {
+            indexLock.unlock();
         }
     }
 
     @Override
     public void close() throws Exception {
+        saveIndex();
     }
 
 }
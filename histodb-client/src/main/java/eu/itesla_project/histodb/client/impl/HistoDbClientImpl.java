@@ -12,6 +12,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Table;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import eu.itesla_project.commons.io.MathUtil;
 import eu.itesla_project.iidm.network.Country;
 import eu.itesla_project.iidm.network.Identifiable;
@@ -34,6 +35,9 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  *
@@ -49,6 +53,9 @@ public class HistoDbClientImpl implements HistoDbClient {
 
     private final HistoDbHttpClient httpClient;
 
+    // created on first prefetch, sized to the number of HTTP connections to the histo DB
+    private ExecutorService prefetchExecutor;
+
     public HistoDbClientImpl(HistoDbConfig config) {
         this(config, new HistoDbHttpClientImpl(null));
     }
@@ -449,8 +456,46 @@ public class HistoDbClientImpl implements HistoDbClient {
         deleteTable(otherConfig);
     }
 
+    private synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(HistoDbHttpClientImpl.MAX_CONNECTIONS_PER_ROUTE,
+                                                            new ThreadFactoryBuilder().setNameFormat("histodb-prefetch-%d")
+                                                                                      .setDaemon(true)
+                                                                                      .build());
+        }
+        return prefetchExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetchCsv(HistoQueryType queryType, Collection<Set<HistoDbAttributeId>> attrIdsList, Interval interval, HistoDbHorizon horizon, boolean zipped, boolean async) {
+        Objects.requireNonNull(attrIdsList, "attrIdsList is null");
+        if (getCache() == null) {
+            LOGGER.warn("Histo DB cache is disabled, prefetched data will be lost");
+        }
+        ExecutorService executor = getPrefetchExecutor();
+        CompletableFuture[] futures = attrIdsList.stream()
+                .map(attrIds -> CompletableFuture.runAsync(() -> {
+                    try (InputStream is = queryCsv(queryType, attrIds, interval, horizon, zipped, async)) {
+                        ByteStreams.copy(is, ByteStreams.nullOutputStream());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                }, executor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
     @Override
     public void close() throws Exception {
+        synchronized (this) {
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+                prefetchExecutor = null;
+            }
+        }
         httpClient.close();
     }
 
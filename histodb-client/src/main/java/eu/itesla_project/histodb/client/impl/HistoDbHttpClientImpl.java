@@ -7,8 +7,8 @@
 package eu.itesla_project.histodb.client.impl;
 
 import eu.itesla_project.commons.io.ForwardingInputStream;
+import eu.itesla_project.modules.histo.cache.CachingInputStream;
 import eu.itesla_project.modules.histo.cache.HistoDbCache;
-import org.apache.commons.io.input.TeeInputStream;
 import org.apache.http.HttpHost;
 import org.apache.http.StatusLine;
 import org.apache.http.auth.AuthScope;
@@ -40,7 +40,6 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -57,6 +56,8 @@ public class HistoDbHttpClientImpl implements HistoDbHttpClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HistoDbHttpClientImpl.class);
 
+    static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+
     private final HistoDbCache cache;
 
     private CloseableHttpClient httpClient;
@@ -97,7 +98,7 @@ public class HistoDbHttpClientImpl implements HistoDbHttpClient {
                         .register("https", sslsf)
                         .build();
                 PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(r);
-                cm.setDefaultMaxPerRoute(10);
+                cm.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
                 cm.setMaxTotal(20);
                 HttpClientBuilder httpClientBuilder = HttpClients.custom()
                         .setConnectionManager(cm);
@@ -174,8 +175,8 @@ public class HistoDbHttpClientImpl implements HistoDbHttpClient {
             is = httpRequest(request, url);
 
             if (cache != null && is != null) {
-                OutputStream os = cache.putData(url.format());
-                is = new TeeInputStream(is, os, true);
+                // partially read data is not kept in the cache
+                is = new CachingInputStream(is, cache, url.format());
             }
         }
 
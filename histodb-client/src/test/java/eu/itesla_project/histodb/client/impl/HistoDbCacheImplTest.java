@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.histodb.client.impl;
+
+import com.google.common.io.ByteStreams;
+import eu.itesla_project.commons.io.FileUtil;
+import eu.itesla_project.modules.histo.cache.CacheOutputStream;
+import eu.itesla_project.modules.histo.cache.CachingInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class HistoDbCacheImplTest {
+
+    private Path cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("histodb-cache-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.removeDir(cacheDir);
+    }
+
+    private static byte[] data(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * seed);
+        }
+        return data;
+    }
+
+    private static void put(HistoDbCacheImpl cache, String url, byte[] data) throws IOException {
+        try (OutputStream os = cache.putData(url)) {
+            os.write(data);
+        }
+    }
+
+    private static byte[] get(HistoDbCacheImpl cache, String url) throws IOException {
+        try (InputStream is = cache.getData(url)) {
+            return is != null ? ByteStreams.toByteArray(is) : null;
+        }
+    }
+
+    private void testPutGet(boolean compress) throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(0, 0, compress))) {
+            assertNull(cache.getData("url1"));
+            byte[] data1 = data(1000, 1);
+            put(cache, "url1", data1);
+            assertArrayEquals(data1, get(cache, "url1"));
+            // replace
+            byte[] data2 = data(500, 3);
+            put(cache, "url1", data2);
+            assertArrayEquals(data2, get(cache, "url1"));
+            assertEquals(Collections.singletonList("url1"), cache.listUrls());
+        }
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        testPutGet(false);
+    }
+
+    @Test
+    public void testCompressedPutGet() throws Exception {
+        testPutGet(true);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(2500, 0, false))) {
+            put(cache, "url1", data(1000, 1));
+            put(cache, "url2", data(1000, 2));
+            assertNotNull(get(cache, "url1")); // url2 is now the least recently used
+            put(cache, "url3", data(1000, 3));
+            assertEquals(Arrays.asList("url1", "url3"), cache.listUrls());
+            assertNull(cache.getData("url2"));
+            assertEquals(2000, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testIndexPersistence() throws Exception {
+        HistoDbCacheConfig config = new HistoDbCacheConfig(2500, 0, true);
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            put(cache, "url1", data(1000, 1));
+            put(cache, "url2", data(1000, 2));
+            Thread.sleep(10);
+            assertNotNull(get(cache, "url1"));
+        }
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            assertEquals(Arrays.asList("url2", "url1"), cache.listUrls());
+            assertArrayEquals(data(1000, 2), get(cache, "url2"));
+        }
+    }
+
+    @Test
+    public void testMalformedIndex() throws Exception {
+        HistoDbCacheConfig config = new HistoDbCacheConfig(0, 0, false);
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            put(cache, "url1", data(100, 1));
+            put(cache, "url2", data(100, 2));
+        }
+        Files.write(cacheDir.resolve(".index"), Arrays.asList("xxx;url1", "12", ";url2", "1"), StandardCharsets.UTF_8);
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            assertEquals(2, cache.listUrls().size());
+            assertArrayEquals(data(100, 1), get(cache, "url1"));
+            assertArrayEquals(data(100, 2), get(cache, "url2"));
+        }
+    }
+
+    @Test
+    public void testConcurrentPut() throws Exception {
+        HistoDbCacheConfig config = new HistoDbCacheConfig(0, 0, false);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int seed = i;
+                futures.add(executor.submit(() -> {
+                    put(cache, "url" + seed, data(100, seed));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, config)) {
+            assertEquals(200, cache.listUrls().size());
+            assertEquals(200, Files.readAllLines(cacheDir.resolve(".index"), StandardCharsets.UTF_8).size());
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(0, 0, false))) {
+            put(cache, "url1", data(100, 1));
+            cache.removeData("url1");
+            assertNull(cache.getData("url1"));
+            assertTrue(cache.listUrls().isEmpty());
+            assertEquals(0, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testCachingInputStream() throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(0, 0, true))) {
+            byte[] data = data(10000, 7);
+
+            // partially read, not cached
+            try (InputStream is = new CachingInputStream(new ByteArrayInputStream(data), cache, "url1")) {
+                assertEquals(100, is.read(new byte[100]));
+            }
+            assertNull(cache.getData("url1"));
+
+            // fully read, cached
+            try (InputStream is = new CachingInputStream(new ByteArrayInputStream(data), cache, "url1")) {
+                assertArrayEquals(data, ByteStreams.toByteArray(is));
+            }
+            assertArrayEquals(data, get(cache, "url1"));
+
+            // partially read again, previous data is kept
+            try (InputStream is = new CachingInputStream(new ByteArrayInputStream(data(10000, 3)), cache, "url1")) {
+                assertEquals(100, is.read(new byte[100]));
+            }
+            assertArrayEquals(data, get(cache, "url1"));
+        }
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(2500, 0, false))) {
+            put(cache, "url1", data(1000, 1));
+            put(cache, "url2", data(1000, 2));
+            try (CacheOutputStream os = cache.putData("url3")) {
+                os.write(data(1000, 3));
+                os.abort();
+            }
+            // nothing published, nothing evicted
+            assertEquals(Arrays.asList("url1", "url2"), cache.listUrls());
+            assertNull(cache.getData("url3"));
+            assertEquals(2000, cache.getSize());
+            try (Stream<Path> files = Files.list(cacheDir.resolve(".tmp"))) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveDuringPut() throws Exception {
+        try (HistoDbCacheImpl cache = new HistoDbCacheImpl(cacheDir, new HistoDbCacheConfig(0, 0, false))) {
+            put(cache, "url1", data(100, 1));
+            byte[] data = data(100, 2);
+            try (OutputStream os = cache.putData("url1")) {
+                os.write(data);
+                // data being written is not lost with the entry directory
+                cache.removeData("url1");
+                assertNull(cache.getData("url1"));
+            }
+            assertArrayEquals(data, get(cache, "url1"));
+        }
+    }
+}
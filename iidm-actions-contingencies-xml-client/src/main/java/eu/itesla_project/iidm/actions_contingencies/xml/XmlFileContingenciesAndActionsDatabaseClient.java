@@ -14,11 +14,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
@@ -47,6 +49,7 @@ import org.xml.sax.SAXException;
 
 import eu.itesla_project.iidm.network.Line;
 import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.Switch;
 import eu.itesla_project.iidm.network.TieLine;
 import eu.itesla_project.modules.contingencies.impl.ActionImpl;
 import eu.itesla_project.modules.contingencies.impl.ActionPlanImpl;
@@ -68,6 +71,41 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	private ActionsContingencies actionContingencies;
 	private Map<Number, String> zonesMapping = new HashMap<Number, String>();
 
+	// indexes of the xml elements by name, the xml file is not modified after loading
+	private final Map<String, Contingency> contingenciesByName = new HashMap<>();
+	private final Map<String, ElementaryAction> elementaryActionsByName = new LinkedHashMap<>();
+	private final Map<String, List<String>> actionIdsByContingency = new HashMap<>();
+	private final Map<String, List<Association>> associationsByContingency = new HashMap<>();
+	// converted zones and action plans, they do not depend on the network
+	private final Map<String, eu.itesla_project.modules.contingencies.Zone> zonesByName = new LinkedHashMap<>();
+	private Map<String, eu.itesla_project.modules.contingencies.ActionPlan> actionPlansByName;
+
+	/**
+	 * Contingencies and actions converted for a network, and network indexes used by the conversion
+	 */
+	private static class NetworkIndex {
+
+		// tie line id by half line id
+		private final Map<String, String> tieLines = new HashMap<>();
+		// voltage level id by switch id (bus breaker view)
+		private Map<String, String> switchVoltageLevels;
+		private Map<String, eu.itesla_project.contingency.Contingency> contingencies;
+		private Map<String, eu.itesla_project.modules.contingencies.Action> actions;
+
+		private NetworkIndex(Network network) {
+			for (Line l : network.getLines()) {
+				if (l.isTieLine()) {
+					TieLine tl = (TieLine) l;
+					tieLines.put(tl.getHalf1().getId(), tl.getId());
+					tieLines.put(tl.getHalf2().getId(), tl.getId());
+				}
+			}
+		}
+	}
+
+	// by network id
+	private final ConcurrentMap<String, NetworkIndex> networkIndexes = new ConcurrentHashMap<>();
+
 	public XmlFileContingenciesAndActionsDatabaseClient(Path file)
 			throws JAXBException, SAXException {
 
@@ -83,7 +121,93 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 		actionContingencies = (ActionsContingencies) jaxbMarshaller
 				.unmarshal(file.toFile());
 		
-		
+		buildIndexes();
+	}
+
+	private void buildIndexes() {
+		Zones zones = actionContingencies.getZones();
+		if ( zones != null ) {
+			for ( Zone z: zones.getZone() ) {
+				List<eu.itesla_project.modules.contingencies.VoltageLevel> vls = new ArrayList<eu.itesla_project.modules.contingencies.VoltageLevel>();
+				for(VoltageLevel vl : z.getVoltageLevels().getVoltageLevel())
+					vls.add( new VoltageLevelImpl(vl.getID(), vl.getLevel()));
+				eu.itesla_project.modules.contingencies.Zone zone = new ZoneImpl(z.getName(), z.getNumber(), vls, z.getDescription());
+				zonesByName.put(zone.getName(), zone);
+				zonesMapping.put(zone.getNumber(), zone.getName());
+			}
+		}
+		if ( actionContingencies.getContingencies() != null ) {
+			for (Contingency cont : actionContingencies.getContingencies().getContingency())
+				contingenciesByName.putIfAbsent(cont.getName(), cont);
+		}
+		if ( actionContingencies.getElementaryActions() != null ) {
+			for (ElementaryAction ele : actionContingencies.getElementaryActions().getElementaryAction())
+				elementaryActionsByName.putIfAbsent(ele.getName(), ele);
+		}
+		if ( actionContingencies.getActionCtgAssociations() != null ) {
+			for (Association association : actionContingencies.getActionCtgAssociations().getAssociation()) {
+				Set<String> associationCtgIds = new HashSet<>();
+				for (Contingency c : association.getContingency()) {
+					List<String> actionIds = actionIdsByContingency.computeIfAbsent(c.getId(), k -> new ArrayList<>());
+					for (Action a : association.getAction())
+						actionIds.add(a.getId());
+					if ( associationCtgIds.add(c.getId()) )
+						associationsByContingency.computeIfAbsent(c.getId(), k -> new ArrayList<>()).add(association);
+				}
+			}
+		}
+	}
+
+	private NetworkIndex getNetworkIndex(Network network) {
+		return networkIndexes.computeIfAbsent(network.getId(), id -> new NetworkIndex(network));
+	}
+
+	private Map<String, String> getSwitchVoltageLevels(Network network) {
+		NetworkIndex index = getNetworkIndex(network);
+		synchronized (index) {
+			if (index.switchVoltageLevels == null) {
+				index.switchVoltageLevels = new HashMap<>();
+				for (eu.itesla_project.iidm.network.VoltageLevel vl : network.getVoltageLevels()) {
+					for (Switch sw : vl.getBusBreakerView().getSwitches())
+						index.switchVoltageLevels.putIfAbsent(sw.getId(), vl.getId());
+				}
+			}
+			return index.switchVoltageLevels;
+		}
+	}
+
+	private Map<String, eu.itesla_project.modules.contingencies.Action> getNetworkActions(Network network) {
+		NetworkIndex index = getNetworkIndex(network);
+		synchronized (index) {
+			if (index.actions == null) {
+				LOGGER.info("Converting actions for network {}", network.getId());
+				Map<String, eu.itesla_project.modules.contingencies.Action> actions = new LinkedHashMap<>();
+				for (ElementaryAction ele : elementaryActionsByName.values()) {
+					eu.itesla_project.modules.contingencies.Action action = convertAction(ele, network);
+					if ( action != null )
+						actions.put(action.getId(), action);
+				}
+				index.actions = actions;
+			}
+			return index.actions;
+		}
+	}
+
+	private Map<String, eu.itesla_project.contingency.Contingency> getNetworkContingencies(Network network) {
+		NetworkIndex index = getNetworkIndex(network);
+		synchronized (index) {
+			if (index.contingencies == null) {
+				LOGGER.info("Converting contingencies for network {}", network.getId());
+				Map<String, eu.itesla_project.contingency.Contingency> contingencies = new LinkedHashMap<>();
+				for (Contingency cont : actionContingencies.getContingencies().getContingency()) {
+					eu.itesla_project.contingency.Contingency contingency = convertContingency(cont, network, index.tieLines);
+					if ( contingency != null )
+						contingencies.putIfAbsent(contingency.getId(), contingency);
+				}
+				index.contingencies = contingencies;
+			}
+			return index.contingencies;
+		}
 	}
 
 
@@ -132,39 +256,30 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	 * @return eu.itesla_project.modules.contingencies.Action 
 	 * */
 	public eu.itesla_project.modules.contingencies.Action getAction(String id, Network network) {
-		if ( zonesMapping.isEmpty() )
-			getZones();
-		if (id != null) {
-			List<ElementaryAction> elactions = actionContingencies.getElementaryActions().getElementaryAction();
-			for (ElementaryAction ele : elactions) 
-			{
-				if (ele.getName().equals(id)) 
-				{
-					List<ActionElement> elements = getActionElements(ele,network);
-					
-					List<String> zones = new ArrayList<String>(); 
-					// it seems not to work
-					//for ( Zone z : ele.getZones().getZone())
-					//	zones.add(z.getName());
-					// it replaces the code above
-					Zones eleZones = ele.getZones();
-					if ( eleZones != null ) {
-						for ( BigInteger z: eleZones.getNum() )
-							zones.add(zonesMapping.get(z));
-					}
-					if ( elements.size() > 0 )
-						return new ActionImpl(id, ele.isPreventiveType(), ele.isCurativeType(), elements, zones, ele.getStartTime());
-					else
-						return null;
-				}
-
-			}
-		}
+		if (id != null)
+			return getNetworkActions(network).get(id);
 		return null;
 	}
 	
+	private eu.itesla_project.modules.contingencies.Action convertAction(ElementaryAction ele, Network network) {
+		List<ActionElement> elements = getActionElements(ele, network);
+		
+		List<String> zones = new ArrayList<String>(); 
+		// it seems not to work
+		//for ( Zone z : ele.getZones().getZone())
+		//	zones.add(z.getName());
+		// it replaces the code above
+		Zones eleZones = ele.getZones();
+		if ( eleZones != null ) {
+			for ( BigInteger z: eleZones.getNum() )
+				zones.add(zonesMapping.get(z));
+		}
+		if ( elements.size() > 0 )
+			return new ActionImpl(ele.getName(), ele.isPreventiveType(), ele.isCurativeType(), elements, zones, ele.getStartTime());
+		else
+			return null;
+	}
 
-	
 	/** 
 	 * @param  Network
 	 * @return List<eu.itesla_project.modules.contingencies.Action>
@@ -172,45 +287,10 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	public List<eu.itesla_project.modules.contingencies.Action> getActions(Network network) 
 	{
 		LOGGER.info("Getting actions for network {}", network.getId());
-		if ( zonesMapping.isEmpty() )
-			getZones();
-		
-		List<eu.itesla_project.modules.contingencies.Action> actions = new ArrayList<>();
-		
-		try {
-			List<ElementaryAction> elactions = actionContingencies.getElementaryActions().getElementaryAction();
-			
-			for (ElementaryAction ele : elactions) {
-
-				String name = ele.getName();
-				List<ActionElement> elements = getActionElements(ele, network);
-				
-				List<String> zones = new ArrayList<String>(); 
-				// it seems not to work
-				//for ( Zone z : ele.getZones().getZone())
-				//	zones.add(z.getName());
-				// it replaces the code above
-				Zones eleZones = ele.getZones();
-				if ( eleZones != null ) {
-					for ( BigInteger z: eleZones.getNum())
-						zones.add(zonesMapping.get(z));
-				}
-				if ( elements.size() > 0 )
-					actions.add(new ActionImpl(name, ele.isPreventiveType(), ele.isCurativeType(), elements, zones, ele.getStartTime()));
-
-			}
-
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		return actions;
+		return new ArrayList<>(getNetworkActions(network).values());
 	}
 	
 	
-
-	
-	
-	
 	
 	/** 
 	 * @param Network
@@ -220,54 +300,27 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	public List<eu.itesla_project.contingency.Contingency> getContingencies(Network network)
 	{
 		LOGGER.info("Getting contingencies for network {}", network.getId());
-		if ( zonesMapping.isEmpty() )
-			getZones();
-		List<eu.itesla_project.contingency.Contingency> contingencies = new ArrayList<>();
-		
-		try {
-			// pre-index tie lines
-			Map<String, String> tieLines = new HashMap<>();
-	        for (Line l : network.getLines()) {
-	            if (l.isTieLine()) {
-	                TieLine tl = (TieLine) l;
-	                tieLines.put(tl.getHalf1().getId(), tl.getId());
-	                tieLines.put(tl.getHalf2().getId(), tl.getId());
-	            }
-	        }
-			for (Contingency cont : actionContingencies.getContingencies().getContingency()) {
-				String contingency = cont.getName();
-				List<ContingencyElement> elements = new ArrayList<>();
-				for (Equipment eq : cont.getEquipments().getEquipment()) {					
-					String id = eq.getId();
-					if (network.getLine(id) != null) {
-						elements.add(new LineContingency(id));
-					} else if (network.getGenerator(id) != null) {
-						elements.add(new GeneratorContingency(id));
-					} else if (tieLines.containsKey(id)) {
-                        elements.add(new LineContingency(tieLines.get(id)));
-					} else {
-						LOGGER.warn("Contingency element '{}' of contingency {} not found in network {}, skipping it", id, contingency, network.getId());
-					}
-				}					
-				List<String> zones = new ArrayList<String>();
-				// it seems not to work
-				//for ( Zone z: cont.getZones().getZone())
-				//	zones.add(z.getName());
-				// it replaces the code above
-				Zones contZones = cont.getZones();
-				if ( contZones != null ) {
-					for ( BigInteger z: contZones.getNum())
-						zones.add(zonesMapping.get(z));
-				}
-				if ( elements.size() > 0 )
-					contingencies.add(new ContingencyImpl(contingency, elements));
-			}
+		return new ArrayList<>(getNetworkContingencies(network).values());
+	}
 
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	private eu.itesla_project.contingency.Contingency convertContingency(Contingency cont, Network network, Map<String, String> tieLines) {
+		String contingency = cont.getName();
+		List<ContingencyElement> elements = new ArrayList<>();
+		for (Equipment eq : cont.getEquipments().getEquipment()) {					
+			String id = eq.getId();
+			if (network.getLine(id) != null) {
+				elements.add(new LineContingency(id));
+			} else if (network.getGenerator(id) != null) {
+				elements.add(new GeneratorContingency(id));
+			} else if (tieLines.containsKey(id)) {
+				elements.add(new LineContingency(tieLines.get(id)));
+			} else {
+				LOGGER.warn("Contingency element '{}' of contingency {} not found in network {}, skipping it", id, contingency, network.getId());
+			}
 		}
-		return contingencies;
-
+		if ( elements.size() > 0 )
+			return new ContingencyImpl(contingency, elements);
+		return null;
 	}
 
 	/** 
@@ -275,12 +328,8 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	 * @return List<eu.itesla_project.contingency.Contingency>
 	 * */
 	public eu.itesla_project.contingency.Contingency getContingency(String name, Network network) {
-		if (name != null) {
-			for (eu.itesla_project.contingency.Contingency c : getContingencies(network))
-				if (c.getId().equals(name))
-					return c;
-
-		}
+		if (name != null)
+			return getNetworkContingencies(network).get(name);
 		return null;
 	}
 	
@@ -288,20 +337,7 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	@Override
 	public Set<eu.itesla_project.modules.contingencies.Zone> getZones() 
 	{
-		Set<eu.itesla_project.modules.contingencies.Zone> res = new HashSet<eu.itesla_project.modules.contingencies.Zone>();
-		Zones zones	=  actionContingencies.getZones();
-		if ( zones != null ) {
-		for ( Zone z: zones.getZone() )
-			{
-				List<eu.itesla_project.modules.contingencies.VoltageLevel> vls = new ArrayList<eu.itesla_project.modules.contingencies.VoltageLevel>();
-				for(VoltageLevel vl : z.getVoltageLevels().getVoltageLevel())
-					vls.add( new VoltageLevelImpl(vl.getID(), vl.getLevel()));
-				eu.itesla_project.modules.contingencies.Zone zone=  new ZoneImpl(z.getName(), z.getNumber(), vls, z.getDescription());
-				res.add(zone);
-				zonesMapping.put(zone.getNumber(), zone.getName());
-			}
-		}
-		return res;
+		return new HashSet<eu.itesla_project.modules.contingencies.Zone>(zonesByName.values());
 	}
 
 	@Override
@@ -310,22 +346,10 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	 */
 	public eu.itesla_project.modules.contingencies.Zone getZone(String id)
 	{
-		Zone z = XmlActionsContingenciesUtils.getZone(actionContingencies, id);
-		
+		eu.itesla_project.modules.contingencies.Zone z = zonesByName.get(id);
 		if (z == null) 
-		{
 			LOGGER.warn("Zones element '{}' with id " + id + " not found");
-			return null;
-		} 
-		else
-		{
-			List<eu.itesla_project.modules.contingencies.VoltageLevel> vls = new ArrayList<eu.itesla_project.modules.contingencies.VoltageLevel>();
-			for(VoltageLevel vl : z.getVoltageLevels().getVoltageLevel())
-				vls.add( new VoltageLevelImpl(vl.getID(), vl.getLevel()));
-			
-			return new ZoneImpl(z.getName(), z.getNumber(), vls, z.getDescription());
-		}
-		
+		return z;
 	}
 	
 	
@@ -394,10 +418,7 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 			return null;
 		} 
 		
-		List<eu.itesla_project.modules.contingencies.Action>  netActions = this.getActions(network);
-		List<String> actionsId = new ArrayList<String>();
-		for (eu.itesla_project.modules.contingencies.Action netAct : netActions) 
-			actionsId.add(netAct.getId());
+		Set<String> actionsId = getNetworkActions(network).keySet();
 		
 		for (eu.itesla_project.modules.contingencies.ActionPlan ap : actionPlans)
 		{ 
@@ -421,51 +442,55 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 		return netActionPlans;
 	}
 	
+	private synchronized Map<String, eu.itesla_project.modules.contingencies.ActionPlan> getActionPlansByName() {
+		if (actionPlansByName == null) {
+			actionPlansByName = new LinkedHashMap<>();
+			if ( actionContingencies.getActionPlans() != null ) {
+				for (ActionPlan plan : actionContingencies.getActionPlans().getActionPlan())
+					actionPlansByName.putIfAbsent(plan.getName(), convertActionPlan(plan));
+			}
+		}
+		return actionPlansByName;
+	}
+
+	private eu.itesla_project.modules.contingencies.ActionPlan convertActionPlan(ActionPlan plan) {
+		Map<BigInteger, ActionPlanOption> priorityOptions = new TreeMap<BigInteger, ActionPlanOption>();
+			
+		for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Option op : plan.getOption())
+		{
+			//Map <number,actionId)
+			Map<BigInteger, String> sequenceActions =  new TreeMap<BigInteger,String>();						
+			for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Action ac: op.getAction()) 
+				sequenceActions.put(ac.getNum(),  ac.getId());
+			
+			LogicalExpression exp =op.getLogicalExpression();
+			
+			eu.itesla_project.modules.contingencies.LogicalExpression le = convertExpression(exp, sequenceActions);
+			
+			OptionImpl opImpl = new OptionImpl(op.getPriority(), le,  sequenceActions) ;
+			priorityOptions.put(op.getPriority(),opImpl);
+		}
+		
+		List<String> zonesName= new ArrayList<String>();
+		// it seems not to work
+		//for (Zone z: plan.getZones().getZone())
+		//	zonesName.add(z.getName());
+		// it replaces the code above
+		Zones planZones = plan.getZones();
+		if ( planZones != null ) {
+			for ( BigInteger z: planZones.getNum())
+				zonesName.add(zonesMapping.get(z));
+		}
+		return new ActionPlanImpl(plan.getName(), plan.getDescription().getInfo(),  zonesName, priorityOptions);
+	}
+
 	/**
 	 * return Action Plan by name
 	 */
 	public eu.itesla_project.modules.contingencies.ActionPlan  getActionPlan(String id) 
 	{
-		if ( zonesMapping.isEmpty() )
-			getZones();
-		
-		if (id != null && actionContingencies.getActionPlans() !=  null ) 
-		{
-			List<ActionPlan> actPlans = actionContingencies.getActionPlans().getActionPlan();
-
-			for (ActionPlan plan : actPlans) 
-			{ 
-				if (plan.getName().equals(id))	
-				{
-				
-					Map<BigInteger, ActionPlanOption> priorityOptions = new TreeMap<BigInteger, ActionPlanOption>();
-					
-					for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Option op : plan.getOption())
-					{
-						//Map <number,actionId)
-						Map<BigInteger, String> actionMap =  new TreeMap<BigInteger,String>();		
-						for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Action ac: op.getAction()) 
-							actionMap.put(ac.getNum(),  ac.getId());
-						
-							
-						OptionImpl opImpl = new OptionImpl(op.getPriority(), convertExpression(op.getLogicalExpression(), actionMap),  actionMap) ;
-						priorityOptions.put(op.getPriority(),opImpl);
-					}
-								
-					List<String> zonesName= new ArrayList<String>();
-					// it seems not to work
-					//for (Zone z: plan.getZones().getZone())
-					//	zonesName.add(z.getName());
-					// it replaces the code above
-					Zones planZones = plan.getZones();
-					if ( planZones != null ) {
-						for ( BigInteger z: planZones.getNum())
-							zonesName.add(zonesMapping.get(z));
-					}
-					return new ActionPlanImpl(plan.getName(), plan.getDescription().getInfo(), zonesName , priorityOptions);
-				}					
-			}
-		}
+		if (id != null)
+			return getActionPlansByName().get(id);
 		return null;
 	}	
 	
@@ -476,56 +501,7 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	@Override
 	public List<eu.itesla_project.modules.contingencies.ActionPlan> getActionPlans() 
 	{
-			if ( zonesMapping.isEmpty() )
-				getZones();
-		
-			List<eu.itesla_project.modules.contingencies.ActionPlan> actPlanList = new ArrayList<eu.itesla_project.modules.contingencies.ActionPlan>();
-			List<ActionPlan> actPlans = actionContingencies.getActionPlans().getActionPlan();
-			if (actPlans == null) 
-			{
-				LOGGER.warn("ActionPlans elements not found");
-				return null;
-			} 
-			else 
-				for (ActionPlan plan : actPlans) 
-				{
-					Map<BigInteger, ActionPlanOption> priorityOptions = new TreeMap<BigInteger, ActionPlanOption>();
-						
-					for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Option op : plan.getOption())
-					{
-						//Map <number,actionId)
-						Map<BigInteger, String> sequenceActions =  new TreeMap<BigInteger,String>();						
-						for (eu.itesla_project.iidm.actions_contingencies.xml.mapping.Action ac: op.getAction()) 
-							sequenceActions.put(ac.getNum(),  ac.getId());
-						
-						//System.out.println("Actionplan "+plan.getName());
-						//TO DO GESTIRE LOGICAL EXPRESSION
-						LogicalExpression exp =op.getLogicalExpression();
-						
-						eu.itesla_project.modules.contingencies.LogicalExpression le = convertExpression(exp, sequenceActions);
-						
-						OptionImpl opImpl = new OptionImpl(op.getPriority(), le,  sequenceActions) ;
-						priorityOptions.put(op.getPriority(),opImpl);
-					}
-					
-					List<String> zonesName= new ArrayList<String>();
-					// it seems not to work
-					//for (Zone z: plan.getZones().getZone())
-					//	zonesName.add(z.getName());
-					// it replaces the code above
-					Zones planZones = plan.getZones();
-					if ( planZones != null ) {
-						for ( BigInteger z: planZones.getNum())
-							zonesName.add(zonesMapping.get(z));
-					}
-					actPlanList.add(new ActionPlanImpl(plan.getName(), plan.getDescription().getInfo(),  zonesName, priorityOptions));
-									
-				}
-				
-			return actPlanList;
-			
-			
-		
+		return new ArrayList<>(getActionPlansByName().values());
 	}
 	
 	
@@ -702,47 +678,33 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	public Collection<eu.itesla_project.modules.contingencies.ActionsContingenciesAssociation> getActionsCtgAssociationsByContingency(String contingencyId) 
 	{
 		List<eu.itesla_project.modules.contingencies.ActionsContingenciesAssociation> accociationList = new ArrayList<eu.itesla_project.modules.contingencies.ActionsContingenciesAssociation>();
-		ActionCtgAssociations xmlActionContAssociation = actionContingencies.getActionCtgAssociations();
-		List<Association> xmlAssociations= xmlActionContAssociation.getAssociation();
-		if (xmlAssociations == null) 
+		for (Association association : associationsByContingency.getOrDefault(contingencyId, Collections.emptyList())) 
 		{
-			LOGGER.warn(" Actions Contingencies associations not found");
-			return null;
-		} 
-		else 
-		{
-			for (Association association : xmlAssociations) 
+			List<Contingency> 	xmlContingencies	=association.getContingency();
+			List<Constraint> 	xmlConstraints		=association.getConstraint();
+			List<Action> 		xmlActions 			=association.getAction();
+			
+			List<String> ctgIds = new ArrayList<String>();
+			for (Contingency c: xmlContingencies) 
+			{
+				ctgIds.add(c.getId());
+			}
+
+			List<eu.itesla_project.modules.contingencies.Constraint> constraints = new ArrayList<eu.itesla_project.modules.contingencies.Constraint>();
+			for (Constraint c: xmlConstraints) 
 			{
-				List<Contingency> 	xmlContingencies	=association.getContingency();
-				
-				if (xmlContingencies.contains(contingencyId))
-				{ 
-					List<Constraint> 	xmlConstraints		=association.getConstraint();
-					List<Action> 		xmlActions 			=association.getAction();
-					
-					List<String> ctgIds = new ArrayList<String>();
-					for (Contingency c: xmlContingencies) 
-					{
-						ctgIds.add(c.getId());
-					}
-	
-					List<eu.itesla_project.modules.contingencies.Constraint> constraints = new ArrayList<eu.itesla_project.modules.contingencies.Constraint>();
-					for (Constraint c: xmlConstraints) 
-					{
-							
-						constraints.add(new ConstraintImpl(c.getEquipment(), c.getValue(), XmlActionsContingenciesUtils.getConstraintType(c.getType())));
-					}
-					
-					List<String> actionIds = new ArrayList<String>();
-					for (Action a: xmlActions) 
-					{
-						actionIds.add(a.getId());
-						
-					}
 					
-					accociationList.add(new ActionsContingenciesAssociationImpl(ctgIds , constraints, actionIds) );
-				}
-			}		
+				constraints.add(new ConstraintImpl(c.getEquipment(), c.getValue(), XmlActionsContingenciesUtils.getConstraintType(c.getType())));
+			}
+			
+			List<String> actionIds = new ArrayList<String>();
+			for (Action a: xmlActions) 
+			{
+				actionIds.add(a.getId());
+				
+			}
+			
+			accociationList.add(new ActionsContingenciesAssociationImpl(ctgIds , constraints, actionIds) );
 		}
 	
 		return accociationList;
@@ -756,25 +718,7 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	 */
 	public List<String> getActionsByContingency(String contingencyId) 
 	{
-		List<String> actions = new ArrayList<String>();		
-
-		ActionCtgAssociations actCont = actionContingencies.getActionCtgAssociations();
-		
-		List<Association> associations = actCont.getAssociation();
-		for (Association association : associations) 
-		{
-			List<Contingency> contingencies = association.getContingency();
-			for (Contingency c : contingencies) 
-			{
-				if (c.getId().equals(contingencyId)) 
-				{
-					List<Action> acs = association.getAction();
-					for (Action a: acs )
-						actions.add(a.getId());
-				}
-			}
-		}
-		return actions;
+		return new ArrayList<String>(actionIdsByContingency.getOrDefault(contingencyId, Collections.emptyList()));
 	}
 	
 	
@@ -865,17 +809,11 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 		else 
 		{
 			
-			List<eu.itesla_project.modules.contingencies.Action> networkActions = getActions(network);
-			List<eu.itesla_project.modules.contingencies.ActionPlan> networkActionPlans = new ArrayList<>(getActionPlans(network));
-			// pre-index tie lines
-			Map<String, String> tieLines = new HashMap<>();
-	        for (Line l : network.getLines()) {
-	            if (l.isTieLine()) {
-	                TieLine tl = (TieLine) l;
-	                tieLines.put(tl.getHalf1().getId(), tl.getId());
-	                tieLines.put(tl.getHalf2().getId(), tl.getId());
-	            }
-	        }
+			Set<String> networkActionIds = getNetworkActions(network).keySet();
+			Set<String> networkActionPlanIds = new HashSet<>();
+			for (eu.itesla_project.modules.contingencies.ActionPlan actionPlan : getActionPlans(network))
+				networkActionPlanIds.add(actionPlan.getName());
+			Map<String, String> tieLines = getNetworkIndex(network).tieLines;
 			for (Association association : xmlAssociations) 
 			{
 				List<Contingency> 	xmlContingencies	=association.getContingency();
@@ -886,29 +824,24 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 				List<String> ctgIds = new ArrayList<String>();
 				for (Contingency c: xmlContingencies) 
 				{
-					boolean found = false;
-					for(Contingency ctg : actionContingencies.getContingencies().getContingency())
+					Contingency ctg = contingenciesByName.get(c.getId());
+					if ( ctg != null )
 					{
-						if(ctg.getName().equals(c.getId()))
-						{
-							found = true;
-							if (ctg.getEquipments()!=null){
-								for ( Equipment eq:ctg.getEquipments().getEquipment())
-								{
-									if (network.getIdentifiable(eq.getId())!= null){
-										ctgIds.add(c.getId());
-										break;	
-									} else if (tieLines.containsKey(eq.getId())) {
-										ctgIds.add(c.getId());
-										break;
-									} else
-										LOGGER.warn("Equipment {} referred in contingency (in association) does not belong to network {}, skipping it", eq.getId(), network.getId());
-								}
+						if (ctg.getEquipments()!=null){
+							for ( Equipment eq:ctg.getEquipments().getEquipment())
+							{
+								if (network.getIdentifiable(eq.getId())!= null){
+									ctgIds.add(c.getId());
+									break;	
+								} else if (tieLines.containsKey(eq.getId())) {
+									ctgIds.add(c.getId());
+									break;
+								} else
+									LOGGER.warn("Equipment {} referred in contingency (in association) does not belong to network {}, skipping it", eq.getId(), network.getId());
 							}
-							break;
 						}
 					}
-					if ( !found )
+					else
 						LOGGER.warn("Contingency {} referred in actions/contingencies associations not in the DB: skipping it", c.getId());
 					
 				}
@@ -928,19 +861,13 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 				for (Action a: xmlActions) 
 				{
 					boolean found = false;
-					for (eu.itesla_project.modules.contingencies.Action action : networkActions) {
-						if ( action.getId().equals(a.getId())) {
-							found = true;
-							actionIds.add(a.getId());
-							break;
-						}
+					if ( networkActionIds.contains(a.getId()) ) {
+						found = true;
+						actionIds.add(a.getId());
 					}
-					for (eu.itesla_project.modules.contingencies.ActionPlan actionPlan : networkActionPlans) {
-						if ( actionPlan.getName().equals(a.getId())) {
-							found = true;
-							actionIds.add(a.getId());
-							break;
-						}
+					if ( networkActionPlanIds.contains(a.getId()) ) {
+						found = true;
+						actionIds.add(a.getId());
 					}
 					if ( !found )
 						LOGGER.warn("Action/Action Plan {} referred in actions/contingencies associations not in the DB: skipping it", a.getId());
@@ -956,18 +883,7 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 	
 	
 	private List<ActionElement> getActionElements(ElementaryAction ele,	 Network network) {
-		if ( zonesMapping.isEmpty() )
-			getZones();
-		
-		// pre-index tie lines
-        Map<String, String> tieLines = new HashMap<>();
-        for (Line l : network.getLines()) {
-            if (l.isTieLine()) {
-                TieLine tl = (TieLine) l;
-                tieLines.put(tl.getHalf1().getId(), tl.getId());
-                tieLines.put(tl.getHalf2().getId(), tl.getId());
-            }
-        }
+		Map<String, String> tieLines = getNetworkIndex(network).tieLines;
 		List<ActionElement> elements = new ArrayList<>();
 		for (LineOperation lo : ele.getLineOperation()) {
 			String lineId = lo.getId();
@@ -1003,7 +919,6 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 		for (SwitchOperation sw : ele.getSwitchOperation()) {
 
 			String switchId = sw.getId();
-			String vlId = null;
 
 			// it seems not to work
 //			for (Zone z : ele.getZones().getZone()) // search associated zones
@@ -1021,40 +936,9 @@ public class XmlFileContingenciesAndActionsDatabaseClient implements Contingenci
 //					}
 //				}
 //			}
-			// it replaces the code above
-			Zones eleZones = ele.getZones();
-			if ( eleZones != null ) {
-				for(BigInteger zoneNum : eleZones.getNum()) {
-					String zoneId = zonesMapping.get(zoneNum);
-					eu.itesla_project.modules.contingencies.Zone z = getZone(zoneId);
-					Collection<eu.itesla_project.modules.contingencies.VoltageLevel> levels = z.getVoltageLevels();
-					for (eu.itesla_project.modules.contingencies.VoltageLevel l : levels) {
-						String lid = l.getId();
-						eu.itesla_project.iidm.network.VoltageLevel vl = network
-								.getVoltageLevel(lid);
-						if (vl != null
-								&& vl.getBusBreakerView().getSwitch(switchId) != null) {
-							vlId = vl.getId();
-							break;
-						}
-					}
-				}
-			}
-
-			if (vlId == null) // search all network
-			{
-				LOGGER.info("No match found for "+switchId +" among the switches of the switch zones voltage levels. Search continues on all network switches... " );
-				Iterator<eu.itesla_project.iidm.network.VoltageLevel> it = network
-						.getVoltageLevels().iterator();
-				while (it.hasNext()) {
-					eu.itesla_project.iidm.network.VoltageLevel vl = it.next();
-					if (vl.getBusBreakerView().getSwitch(switchId) != null) {
-						vlId = vl.getId();
-						break;
-					}
-
-				}
-			}
+			// switch ids are unique in the network, so the voltage level found in the switch zones
+			// is the one of the whole network
+			String vlId = getSwitchVoltageLevels(network).get(switchId);
 
 			if (vlId != null) {
 				if (sw.getAction().equals("opening"))
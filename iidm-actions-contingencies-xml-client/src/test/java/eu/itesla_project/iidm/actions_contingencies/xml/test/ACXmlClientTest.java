@@ -10,12 +10,18 @@ import static org.junit.Assert.*;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 
 
 import org.junit.Test;
 
 import eu.itesla_project.iidm.actions_contingencies.xml.XmlFileContingenciesAndActionsDatabaseClient;
+import eu.itesla_project.modules.contingencies.ActionPlan;
+import eu.itesla_project.modules.contingencies.ActionsContingenciesAssociation;
 import eu.itesla_project.modules.contingencies.ContingenciesAndActionsDatabaseClient;
+import eu.itesla_project.modules.contingencies.Zone;
 
 /**
 *
@@ -39,4 +45,32 @@ public class ACXmlClientTest {
 		
 	}
 
+	@Test
+	public void testLookups() throws Exception {
+		XmlFileContingenciesAndActionsDatabaseClient client = new XmlFileContingenciesAndActionsDatabaseClient(Paths.get("src/test/resources/test-ac.xml"));
+
+		ActionPlan plan = client.getActionPlan("Plan1");
+		assertNotNull(plan);
+		assertEquals("Plan1", plan.getName());
+		assertEquals(Arrays.asList("ZONE1"), new ArrayList<>(plan.getZones()));
+		assertSame(plan, client.getActionPlans().get(0));
+		assertNull(client.getActionPlan("Plan2"));
+
+		Zone zone = client.getZone("ZONE1");
+		assertNotNull(zone);
+		assertEquals(2, zone.getVoltageLevels().size());
+		assertNull(client.getZone("ZONE2"));
+
+		assertEquals(Arrays.asList("Plan1"), client.getActionsByContingency("N-1_Contingency"));
+		assertTrue(client.getActionsByContingency("unknown").isEmpty());
+
+		Collection<ActionsContingenciesAssociation> associations = client.getActionsCtgAssociationsByContingency("N-1_Contingency");
+		assertEquals(1, associations.size());
+		ActionsContingenciesAssociation association = associations.iterator().next();
+		assertEquals(Arrays.asList("N-1_Contingency"), new ArrayList<>(association.getContingenciesId()));
+		assertEquals(Arrays.asList("Plan1"), new ArrayList<>(association.getActionsId()));
+		assertEquals(2, association.getConstraints().size());
+		assertTrue(client.getActionsCtgAssociationsByContingency("unknown").isEmpty());
+	}
+
 }
@@ -9,6 +9,7 @@ package eu.itesla_project.iidm.network;
 import eu.itesla_project.commons.ITeslaException;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * This class provides methods to manage states of the network (create and
@@ -44,7 +45,49 @@ public interface StateManager {
      * @throws ITeslaException if the state is not found
      */
     void setWorkingState(String stateId);
-    
+
+    /**
+     * Enter a scope in which a state is the working state. The previous
+     * working state is restored when the scope is closed, so this is meant to
+     * be used with a try-with-resources statement:
+     * <pre>
+     * try (StateScope scope = stateManager.enterState(stateId)) {
+     *     ...
+     * }
+     * </pre>
+     * When multi-thread access is allowed, only the working state of the
+     * current thread is changed. Otherwise the working state is shared by all
+     * threads, so only one thread at a time can have open scopes.
+     *
+     * @param stateId the id of the state to work on
+     * @return the scope to close to restore the previous working state
+     * @throws ITeslaException if the state is not found, or if multi-thread
+     *                         access is not allowed and another thread has
+     *                         open scopes
+     */
+    StateScope enterState(String stateId);
+
+    /**
+     * Run a task with a state as working state, the previous working state
+     * being restored afterwards.
+     *
+     * @param stateId the id of the state to work on
+     * @param runnable the task to run
+     * @throws ITeslaException if the state is not found
+     */
+    void runOnState(String stateId, Runnable runnable);
+
+    /**
+     * Get a result computed with a state as working state, the previous
+     * working state being restored afterwards.
+     *
+     * @param stateId the id of the state to work on
+     * @param supplier the function computing the result
+     * @return the result of the supplier
+     * @throws ITeslaException if the state is not found
+     */
+    <T> T supplyOnState(String stateId, Supplier<T> supplier);
+
     /**
      * Create a new state by cloning an existing one.
      *
@@ -65,6 +108,36 @@ public interface StateManager {
      */
     void cloneState(String sourceStateId, String targetStateId);
 
+    /**
+     * Create new states by cloning an existing one.
+     * <p>
+     * In copy on write mode, the values of the source state are not copied:
+     * a created state shares the values of its source until the first
+     * modification of an object, so that creating it only costs the number of
+     * modified objects. This is useful for short lived states differing only
+     * by a few equipments from their source, like post-contingency states.
+     *
+     * @param sourceStateId the source state id
+     * @param targetStateIds the target state id list (the ones that will be created)
+     * @param copyOnWrite if true, the created states share the values of the source state
+     *                    until they are modified
+     * @throws ITeslaException if the source state is not found or if a state with
+     *                         an id of targetStateIds already exists
+     */
+    void cloneState(String sourceStateId, List<String> targetStateIds, boolean copyOnWrite);
+
+    /**
+     * Create a new state by cloning an existing one.
+     *
+     * @param sourceStateId the source state id
+     * @param targetStateId the target state id (the one that will be created)
+     * @param copyOnWrite if true, the created state shares the values of the source state
+     *                    until it is modified
+     * @throws ITeslaException if the source state is not found or if a state with
+     *                         the id targetStateId already exists
+     */
+    void cloneState(String sourceStateId, String targetStateId, boolean copyOnWrite);
+
     /**
      * Remove a state.
      *
@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.iidm.network;
+
+/**
+ * A scope in which a state is the working state. Closing the scope restores
+ * the working state that was set before entering it.
+ *
+ * @see StateManager#enterState(String)
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public interface StateScope extends AutoCloseable {
+
+    /**
+     * Restore the working state set before entering the scope.
+     */
+    @Override
+    void close();
+
+}
@@ -69,7 +69,7 @@ abstract class AbstractTerminal implements TerminalExt {
 
     @Override
     public float getP() {
-        return p.get(network.get().getStateIndex());
+        return p.get(network.get().getStateIndex(connectable));
     }
 
     @Override
@@ -80,14 +80,14 @@ abstract class AbstractTerminal implements TerminalExt {
         if (!Float.isNaN(p) && connectable.getType() == ConnectableType.SHUNT_COMPENSATOR) {
             throw new ValidationException(connectable, "cannot set active power on a shunt compensator");
         }
-        float oldValue = this.p.set(network.get().getStateIndex(), p);
+        float oldValue = this.p.set(network.get().getStateIndexForUpdate(connectable), p);
         getConnectable().notifyUpdate("p" + (num != -1 ? num : "") , oldValue, p);
         return this;
     }
 
     @Override
     public float getQ() {
-        return q.get(network.get().getStateIndex());
+        return q.get(network.get().getStateIndex(connectable));
     }
 
     @Override
@@ -95,7 +95,7 @@ abstract class AbstractTerminal implements TerminalExt {
         if (connectable.getType() == ConnectableType.BUSBAR_SECTION) {
             throw new ValidationException(connectable, "cannot set reactive power on a busbar section");
         }
-        float oldValue = this.q.set(network.get().getStateIndex(), q);
+        float oldValue = this.q.set(network.get().getStateIndexForUpdate(connectable), q);
         getConnectable().notifyUpdate("q" + (num != -1 ? num : ""), oldValue, q);
         return this;
     }
@@ -107,7 +107,7 @@ abstract class AbstractTerminal implements TerminalExt {
         if (connectable.getType() == ConnectableType.BUSBAR_SECTION) {
             return 0;
         }
-        int stateIndex = network.get().getStateIndex();
+        int stateIndex = network.get().getStateIndex(connectable);
         return (float) (Math.hypot(p.get(stateIndex), q.get(stateIndex))
                 / (Math.sqrt(3.) * getV() / 1000));
     }
@@ -314,7 +314,7 @@ class BusBreakerVoltageLevel extends AbstractVoltageLevel {
     @Override
     public void invalidateCache() {
         calculatedBusTopology.invalidateCache();
-        getNetwork().getConnectedComponentsManager().invalidate();
+        getNetwork().getConnectedComponentsManager().invalidate(this);
     }
 
     @Override
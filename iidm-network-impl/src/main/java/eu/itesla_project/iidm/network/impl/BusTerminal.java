@@ -85,20 +85,20 @@ class BusTerminal extends AbstractTerminal {
     }
 
     void setConnectableBusId(String connectableBusId) {
-        this.connectableBusId.set(network.get().getStateIndex(), connectableBusId);
+        this.connectableBusId.set(network.get().getStateIndexForUpdate(connectable), connectableBusId);
     }
 
     String getConnectableBusId() {
-        return this.connectableBusId.get(network.get().getStateIndex());
+        return this.connectableBusId.get(network.get().getStateIndex(connectable));
     }
 
     void setConnected(boolean connected) {
-        this.connected.set(network.get().getStateIndex(), connected);
+        this.connected.set(network.get().getStateIndexForUpdate(connectable), connected);
     }
 
     @Override
     public boolean isConnected() {
-        return this.connected.get(network.get().getStateIndex());
+        return this.connected.get(network.get().getStateIndex(connectable));
     }
 
     @Override
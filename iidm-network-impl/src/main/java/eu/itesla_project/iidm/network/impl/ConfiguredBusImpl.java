@@ -58,22 +58,22 @@ class ConfiguredBusImpl extends AbstractBus implements ConfiguredBus, Stateful {
 
     @Override
     public int getTerminalCount() {
-        return terminals.get(network.get().getStateIndex()).size();
+        return terminals.get(network.get().getStateIndex(this)).size();
     }
 
     @Override
     public List<BusTerminal> getTerminals() {
-        return terminals.get(network.get().getStateIndex());
+        return terminals.get(network.get().getStateIndex(this));
     }
 
     @Override
     public void addTerminal(BusTerminal t) {
-        terminals.get(network.get().getStateIndex()).add(t);
+        terminals.get(network.get().getStateIndexForUpdate(this)).add(t);
     }
 
     @Override
     public void removeTerminal(BusTerminal t) {
-        if (!terminals.get(network.get().getStateIndex()).remove(t)) {
+        if (!terminals.get(network.get().getStateIndexForUpdate(this)).remove(t)) {
             throw new IllegalStateException("Terminal " + t + " not found");
         }
     }
@@ -84,7 +84,7 @@ class ConfiguredBusImpl extends AbstractBus implements ConfiguredBus, Stateful {
 
     @Override
     public float getV() {
-        return v.get(network.get().getStateIndex());
+        return v.get(network.get().getStateIndex(this));
     }
 
     @Override
@@ -92,33 +92,33 @@ class ConfiguredBusImpl extends AbstractBus implements ConfiguredBus, Stateful {
         if (v <= 0) {
             throw new ValidationException(this, "voltage cannot be <= 0");
         }
-        float oldValue = this.v.set(network.get().getStateIndex(), v);
+        float oldValue = this.v.set(network.get().getStateIndexForUpdate(this), v);
         notifyUpdate("v", oldValue, v);
         return this;
     }
 
     @Override
     public float getAngle() {
-        return angle.get(network.get().getStateIndex());
+        return angle.get(network.get().getStateIndex(this));
     }
 
     @Override
     public BusExt setAngle(float angle) {
-        float oldValue = this.angle.set(network.get().getStateIndex(), angle);
+        float oldValue = this.angle.set(network.get().getStateIndexForUpdate(this), angle);
         notifyUpdate("angle", oldValue, angle);
         return this;
     }
 
     @Override
     public void setConnectedComponentNumber(int connectedComponentNumber) {
-        this.connectedComponentNumber.set(network.get().getStateIndex(), connectedComponentNumber);
+        this.connectedComponentNumber.set(network.get().getStateIndexForUpdate(this), connectedComponentNumber);
     }
 
     @Override
     public ConnectedComponent getConnectedComponent() {
         NetworkImpl.ConnectedComponentsManager ccm = voltageLevel.getNetwork().getConnectedComponentsManager();
         ccm.update();
-        return ccm.getConnectedComponent(connectedComponentNumber.get(network.get().getStateIndex()));
+        return ccm.getConnectedComponent(connectedComponentNumber.get(network.get().getStateIndex(this)));
     }
 
     @Override
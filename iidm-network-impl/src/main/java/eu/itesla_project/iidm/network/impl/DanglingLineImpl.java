@@ -72,26 +72,26 @@ class DanglingLineImpl extends ConnectableImpl<DanglingLine> implements Dangling
 
     @Override
     public float getP0() {
-        return p0.get(network.get().getStateIndex());
+        return p0.get(network.get().getStateIndex(this));
     }
 
     @Override
     public DanglingLineImpl setP0(float p0) {
         ValidationUtil.checkP0(this, p0);
-        float oldValue = this.p0.set(network.get().getStateIndex(), p0);
+        float oldValue = this.p0.set(network.get().getStateIndexForUpdate(this), p0);
         notifyUpdate("p0", oldValue, p0);
         return this;
     }
 
     @Override
     public float getQ0() {
-        return q0.get(network.get().getStateIndex());
+        return q0.get(network.get().getStateIndex(this));
     }
 
     @Override
     public DanglingLineImpl setQ0(float q0) {
         ValidationUtil.checkQ0(this, q0);
-        float oldValue = this.q0.set(network.get().getStateIndex(), q0);
+        float oldValue = this.q0.set(network.get().getStateIndexForUpdate(this), q0);
         notifyUpdate("q0", oldValue, q0);
         return this;
     }
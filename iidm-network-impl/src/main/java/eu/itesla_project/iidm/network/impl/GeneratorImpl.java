@@ -122,12 +122,12 @@ class GeneratorImpl extends ConnectableImpl<Generator> implements Generator {
 
     @Override
     public boolean isVoltageRegulatorOn() {
-        return voltageRegulatorOn.get(getNetwork().getStateIndex());
+        return voltageRegulatorOn.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public GeneratorImpl setVoltageRegulatorOn(boolean voltageRegulatorOn) {
-        int stateIndex = getNetwork().getStateIndex();
+        int stateIndex = getNetwork().getStateIndexForUpdate(this);
         ValidationUtil.checkVoltageControl(this, voltageRegulatorOn, targetV.get(stateIndex), targetQ.get(stateIndex));
         boolean oldValue = this.voltageRegulatorOn.get(stateIndex);
         this.voltageRegulatorOn.set(stateIndex, voltageRegulatorOn);
@@ -149,25 +149,25 @@ class GeneratorImpl extends ConnectableImpl<Generator> implements Generator {
 
     @Override
     public float getTargetP() {
-        return targetP.get(getNetwork().getStateIndex());
+        return targetP.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public GeneratorImpl setTargetP(float targetP) {
         ValidationUtil.checkTargetP(this, targetP);
-        float oldValue = this.targetP.set(getNetwork().getStateIndex(), targetP);
+        float oldValue = this.targetP.set(getNetwork().getStateIndexForUpdate(this), targetP);
         notifyUpdate("targetP", oldValue, targetP);
         return this;
     }
 
     @Override
     public float getTargetQ() {
-        return targetQ.get(getNetwork().getStateIndex());
+        return targetQ.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public GeneratorImpl setTargetQ(float targetQ) {
-        int stateIndex = getNetwork().getStateIndex();
+        int stateIndex = getNetwork().getStateIndexForUpdate(this);
         ValidationUtil.checkVoltageControl(this, voltageRegulatorOn.get(stateIndex), targetV.get(stateIndex), targetQ);
         float oldValue = this.targetQ.set(stateIndex, targetQ);
         notifyUpdate("targetQ", oldValue, targetQ);
@@ -176,12 +176,12 @@ class GeneratorImpl extends ConnectableImpl<Generator> implements Generator {
 
     @Override
     public float getTargetV() {
-        return this.targetV.get(getNetwork().getStateIndex());
+        return this.targetV.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public GeneratorImpl setTargetV(float targetV) {
-        int stateIndex = getNetwork().getStateIndex();
+        int stateIndex = getNetwork().getStateIndexForUpdate(this);
         ValidationUtil.checkVoltageControl(this, voltageRegulatorOn.get(stateIndex), targetV, targetQ.get(stateIndex));
         float oldValue = this.targetV.set(stateIndex, targetV);
         notifyUpdate("targetV", oldValue, targetV);
@@ -31,6 +31,13 @@ class MultiStateContext implements StateContext {
         this.index = index;
     }
 
+    @Override
+    public int swapStateIndex(int index) {
+        int oldIndex = this.index;
+        this.index = index;
+        return oldIndex;
+    }
+
     @Override
     public void resetIfStateIndexIs(int index) {
         if (this.index == index) {
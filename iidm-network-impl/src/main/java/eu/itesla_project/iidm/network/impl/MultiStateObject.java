@@ -16,4 +16,16 @@ interface MultiStateObject {
 
     int getStateIndex();
 
+    /**
+     * Get the state array index to read to get the values of an object in the
+     * working state.
+     */
+    int getStateIndex(Stateful obj);
+
+    /**
+     * Get the state array index to write to update the values of an object in
+     * the working state.
+     */
+    int getStateIndexForUpdate(Stateful obj);
+
 }
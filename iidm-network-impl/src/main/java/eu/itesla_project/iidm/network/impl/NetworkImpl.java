@@ -11,10 +11,11 @@ import eu.itesla_project.iidm.network.*;
 import eu.itesla_project.iidm.network.impl.util.RefObj;
 import eu.itesla_project.iidm.network.impl.util.RefChain;
 import com.google.common.base.Function;
-import eu.itesla_project.graph.GraphUtil;
-import eu.itesla_project.graph.GraphUtil.ConnectedComponentsComputationResult;
+import eu.itesla_project.graph.DynamicConnectedComponents;
 import eu.itesla_project.iidm.network.TwoTerminalsConnectable.Side;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -173,6 +174,16 @@ class NetworkImpl extends IdentifiableImpl<Network> implements Network, MultiSta
         return stateManager.getStateContext().getStateIndex();
     }
 
+    @Override
+    public int getStateIndex(Stateful obj) {
+        return stateManager.getStateIndex(obj);
+    }
+
+    @Override
+    public int getStateIndexForUpdate(Stateful obj) {
+        return stateManager.getStateIndexForUpdate(obj);
+    }
+
     @Override
     public Set<Country> getCountries() {
         return FluentIterable.from(getSubstations()).transform(new Function<Substation, Country>() {
@@ -389,92 +400,254 @@ class NetworkImpl extends IdentifiableImpl<Network> implements Network, MultiSta
         return busView;
     }
 
+    /**
+     * Connected components of the bus view, computed per state.
+     * <p>
+     * The bus graph is kept between two computations. A topology change in a
+     * voltage level only marks the voltage level as modified, and the next
+     * computation replaces the buses of modified voltage levels and the
+     * branches connected to them, components being then updated incrementally
+     * from this modified part of the graph. A complete computation is done the
+     * first time and each time an object is added to or removed from the
+     * network.
+     * <p>
+     * Buses store an internal component number that does not change when
+     * components are reordered by size, so that only buses whose component
+     * has really changed have to be updated.
+     * <p>
+     * Vertices are mapped to bus ids and not to bus objects, as bus view
+     * objects belong to the per state bus cache of their voltage level. This
+     * allows a cloned state to start from a copy of the graph of its source
+     * state and to stay incremental.
+     */
     class ConnectedComponentsManager {
 
         private List<ConnectedComponent> connectedComponents;
 
-        void invalidate() {
-            connectedComponents = null;
+        // internal component number to connected component
+        private ConnectedComponentImpl[] connectedComponentsByNumber;
+
+        private DynamicConnectedComponents graph;
+
+        private final Map<String, Integer> busId2vertex = new HashMap<>();
+
+        private final TIntObjectMap<String> vertex2busId = new TIntObjectHashMap<>();
+
+        private final TIntObjectMap<VoltageLevelExt> vertex2voltageLevel = new TIntObjectHashMap<>();
+
+        private final Map<VoltageLevelExt, TIntArrayList> voltageLevelVertices = new IdentityHashMap<>();
+
+        private final Map<Connectable, TIntArrayList> branchEdges = new IdentityHashMap<>();
+
+        private final Set<VoltageLevelExt> modifiedVoltageLevels = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private int objectStoreModificationCount = -1;
+
+        // number of complete computations of the graph
+        private int graphComputationCount = 0;
+
+        ConnectedComponentsManager() {
         }
 
-        void update() {
-            if (connectedComponents != null) {
-                return;
+        /**
+         * Copy of the components of another state, the vertex and edge lists
+         * are never modified in place so they can be shared.
+         */
+        ConnectedComponentsManager(ConnectedComponentsManager other) {
+            connectedComponents = other.connectedComponents;
+            connectedComponentsByNumber = other.connectedComponentsByNumber;
+            if (other.graph != null) {
+                graph = other.graph.copy();
+                busId2vertex.putAll(other.busId2vertex);
+                vertex2busId.putAll(other.vertex2busId);
+                vertex2voltageLevel.putAll(other.vertex2voltageLevel);
+                voltageLevelVertices.putAll(other.voltageLevelVertices);
+                branchEdges.putAll(other.branchEdges);
+                modifiedVoltageLevels.addAll(other.modifiedVoltageLevels);
+                objectStoreModificationCount = other.objectStoreModificationCount;
             }
+        }
 
-            long startTime = System.currentTimeMillis();
+        int getGraphComputationCount() {
+            return graphComputationCount;
+        }
+
+        void invalidate(VoltageLevelExt voltageLevel) {
+            connectedComponents = null;
+            if (graph != null) {
+                modifiedVoltageLevels.add(voltageLevel);
+            }
+        }
+
+        private boolean isBranch(Connectable connectable) {
+            return connectable instanceof LineImpl
+                    || connectable instanceof TwoWindingsTransformerImpl
+                    || connectable instanceof ThreeWindingsTransformerImpl;
+        }
 
+        private void addVertices(VoltageLevelExt voltageLevel) {
             // reset
-            for (Bus b : getBusBreakerView().getBuses()) {
+            for (Bus b : voltageLevel.getBusBreakerView().getBuses()) {
                 ((BusExt) b).setConnectedComponentNumber(-1);
             }
 
-            int num = 0;
-            Map<String, Integer> id2num = new HashMap<>();
-            List<BusExt> num2bus = new ArrayList<>();
-            for (Bus bus : getBusView().getBuses()) {
-                num2bus.add((BusExt) bus);
-                id2num.put(bus.getId(), num);
-                num++;
+            TIntArrayList vertices = new TIntArrayList();
+            for (Bus b : voltageLevel.getBusView().getBuses()) {
+                int v = graph.addVertex();
+                busId2vertex.put(b.getId(), v);
+                vertex2busId.put(v, b.getId());
+                vertex2voltageLevel.put(v, voltageLevel);
+                vertices.add(v);
             }
-            TIntArrayList[] adjacencyList = new TIntArrayList[num];
-            for (int i = 0; i < adjacencyList.length; i++) {
-                adjacencyList[i] = new TIntArrayList(3);
+            voltageLevelVertices.put(voltageLevel, vertices);
+        }
+
+        private void removeVertices(VoltageLevelExt voltageLevel) {
+            TIntArrayList vertices = voltageLevelVertices.remove(voltageLevel);
+            if (vertices != null) {
+                for (int i = 0; i < vertices.size(); i++) {
+                    int v = vertices.getQuick(i);
+                    busId2vertex.remove(vertex2busId.remove(v));
+                    vertex2voltageLevel.remove(v);
+                    graph.removeVertex(v);
+                }
             }
-            for (LineImpl line : Sets.union(objectStore.getAll(LineImpl.class), objectStore.getAll(TieLineImpl.class))) {
-                BusExt bus1 = line.getTerminal1().getBusView().getBus();
-                BusExt bus2 = line.getTerminal2().getBusView().getBus();
-                if (bus1 != null && bus2 != null) {
-                    int busNum1 = id2num.get(bus1.getId());
-                    int busNum2 = id2num.get(bus2.getId());
-                    adjacencyList[busNum1].add(busNum2);
-                    adjacencyList[busNum2].add(busNum1);
+        }
+
+        private boolean addEdge(Terminal t1, Terminal t2, TIntArrayList edges) {
+            Bus bus1 = t1.getBusView().getBus();
+            Bus bus2 = t2.getBusView().getBus();
+            if (bus1 != null && bus2 != null) {
+                Integer v1 = busId2vertex.get(bus1.getId());
+                Integer v2 = busId2vertex.get(bus2.getId());
+                if (v1 == null || v2 == null) {
+                    // bus is not in the graph anymore, should not happen
+                    return false;
                 }
+                edges.add(graph.addEdge(v1, v2));
             }
-            for (TwoWindingsTransformerImpl transfo : objectStore.getAll(TwoWindingsTransformerImpl.class)) {
-                BusExt bus1 = transfo.getTerminal1().getBusView().getBus();
-                BusExt bus2 = transfo.getTerminal2().getBusView().getBus();
-                if (bus1 != null && bus2 != null) {
-                    int busNum1 = id2num.get(bus1.getId());
-                    int busNum2 = id2num.get(bus2.getId());
-                    adjacencyList[busNum1].add(busNum2);
-                    adjacencyList[busNum2].add(busNum1);
+            return true;
+        }
+
+        private boolean addEdges(Connectable branch) {
+            TIntArrayList edges = new TIntArrayList(1);
+            branchEdges.put(branch, edges);
+            if (branch instanceof ThreeWindingsTransformerImpl) {
+                ThreeWindingsTransformerImpl transfo = (ThreeWindingsTransformerImpl) branch;
+                Terminal t1 = transfo.getLeg1().getTerminal();
+                Terminal t2 = transfo.getLeg2().getTerminal();
+                Terminal t3 = transfo.getLeg3().getTerminal();
+                return addEdge(t1, t2, edges) && addEdge(t1, t3, edges) && addEdge(t2, t3, edges);
+            } else {
+                TwoTerminalsConnectable ttc = (TwoTerminalsConnectable) branch;
+                return addEdge(ttc.getTerminal1(), ttc.getTerminal2(), edges);
+            }
+        }
+
+        private void removeEdges(Connectable branch) {
+            TIntArrayList edges = branchEdges.remove(branch);
+            if (edges != null) {
+                for (int i = 0; i < edges.size(); i++) {
+                    graph.removeEdge(edges.getQuick(i));
                 }
             }
+        }
+
+        private void computeGraph() {
+            graph = new DynamicConnectedComponents();
+            graphComputationCount++;
+            busId2vertex.clear();
+            vertex2busId.clear();
+            vertex2voltageLevel.clear();
+            voltageLevelVertices.clear();
+            branchEdges.clear();
+            modifiedVoltageLevels.clear();
+            objectStoreModificationCount = objectStore.getModificationCount();
+
+            for (VoltageLevel vl : getVoltageLevels()) {
+                addVertices((VoltageLevelExt) vl);
+            }
+            for (LineImpl line : Sets.union(objectStore.getAll(LineImpl.class), objectStore.getAll(TieLineImpl.class))) {
+                addEdges(line);
+            }
+            for (TwoWindingsTransformerImpl transfo : objectStore.getAll(TwoWindingsTransformerImpl.class)) {
+                addEdges(transfo);
+            }
             for (ThreeWindingsTransformerImpl transfo : objectStore.getAll(ThreeWindingsTransformerImpl.class)) {
-                BusExt bus1 = transfo.getLeg1().getTerminal().getBusView().getBus();
-                BusExt bus2 = transfo.getLeg2().getTerminal().getBusView().getBus();
-                BusExt bus3 = transfo.getLeg3().getTerminal().getBusView().getBus();
-                if (bus1 != null && bus2 != null) {
-                    int busNum1 = id2num.get(bus1.getId());
-                    int busNum2 = id2num.get(bus2.getId());
-                    adjacencyList[busNum1].add(busNum2);
-                    adjacencyList[busNum2].add(busNum1);
-                }
-                if (bus1 != null && bus3 != null) {
-                    int busNum1 = id2num.get(bus1.getId());
-                    int busNum3 = id2num.get(bus3.getId());
-                    adjacencyList[busNum1].add(busNum3);
-                    adjacencyList[busNum3].add(busNum1);
+                addEdges(transfo);
+            }
+        }
+
+        private boolean updateGraph() {
+            // branches connected to a modified voltage level
+            Set<Connectable> branches = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (VoltageLevelExt vl : modifiedVoltageLevels) {
+                for (Terminal t : ((AbstractVoltageLevel) vl).getTerminals()) {
+                    if (isBranch(t.getConnectable())) {
+                        branches.add(t.getConnectable());
+                    }
                 }
-                if (bus2 != null && bus3 != null) {
-                    int busNum2 = id2num.get(bus2.getId());
-                    int busNum3 = id2num.get(bus3.getId());
-                    adjacencyList[busNum2].add(busNum3);
-                    adjacencyList[busNum3].add(busNum2);
+            }
+            for (Connectable branch : branches) {
+                removeEdges(branch);
+            }
+            for (VoltageLevelExt vl : modifiedVoltageLevels) {
+                removeVertices(vl);
+                addVertices(vl);
+            }
+            modifiedVoltageLevels.clear();
+            for (Connectable branch : branches) {
+                if (!addEdges(branch)) {
+                    return false;
                 }
             }
+            return true;
+        }
+
+        void update() {
+            if (connectedComponents != null) {
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
 
-            ConnectedComponentsComputationResult result = GraphUtil.computeConnectedComponents(adjacencyList);
+            if (graph == null || objectStoreModificationCount != objectStore.getModificationCount() || !updateGraph()) {
+                computeGraph();
+            }
 
-            connectedComponents = new ArrayList<>(result.getComponentSize().length);
-            for (int i = 0; i < result.getComponentSize().length; i++) {
-                connectedComponents.add(new ConnectedComponentImpl(i, result.getComponentSize()[i], ref));
+            TIntArrayList changed = graph.updateComponents();
+            for (int i = 0; i < changed.size(); i++) {
+                int v = changed.getQuick(i);
+                BusExt bus = (BusExt) vertex2voltageLevel.get(v).getBusView().getBus(vertex2busId.get(v));
+                bus.setConnectedComponentNumber(graph.getComponent(v));
             }
 
-            for (int i = 0; i < result.getComponentNumber().length; i++) {
-                BusExt bus = num2bus.get(i);
-                bus.setConnectedComponentNumber(result.getComponentNumber()[i]);
+            // components are numbered by decreasing size
+            TIntArrayList numbers = graph.getComponents();
+            List<Integer> sortedNumbers = new ArrayList<>(numbers.size());
+            for (int i = 0; i < numbers.size(); i++) {
+                sortedNumbers.add(numbers.getQuick(i));
+            }
+            sortedNumbers.sort((n1, n2) -> {
+                int c = Integer.compare(graph.getComponentSize(n2), graph.getComponentSize(n1));
+                return c != 0 ? c : Integer.compare(n1, n2);
+            });
+            ConnectedComponentImpl[] oldConnectedComponentsByNumber = connectedComponentsByNumber;
+            connectedComponentsByNumber = new ConnectedComponentImpl[numbers.isEmpty() ? 0 : numbers.max() + 1];
+            connectedComponents = new ArrayList<>(sortedNumbers.size());
+            for (int num = 0; num < sortedNumbers.size(); num++) {
+                int n = sortedNumbers.get(num);
+                int size = graph.getComponentSize(n);
+                ConnectedComponentImpl cc = null;
+                if (oldConnectedComponentsByNumber != null && n < oldConnectedComponentsByNumber.length) {
+                    cc = oldConnectedComponentsByNumber[n];
+                }
+                // keep the same object if the component has not changed
+                if (cc == null || cc.getNum() != num || cc.getSize() != size) {
+                    cc = new ConnectedComponentImpl(num, size, ref);
+                }
+                connectedComponentsByNumber[n] = cc;
+                connectedComponents.add(cc);
             }
 
             LOGGER.debug("Connected components computed in {} ms", (System.currentTimeMillis()-startTime));
@@ -489,19 +662,26 @@ class NetworkImpl extends IdentifiableImpl<Network> implements Network, MultiSta
             // update() must not be put here, but explicitly called each time before because update may
             // trigger a new cc computation and so on a change in the value of the num cc already passed
             // (and outdated consequently) in parameter of this method
-            return num != -1 ? connectedComponents.get(num) : null;
+            return num != -1 ? connectedComponentsByNumber[num] : null;
         }
 
     }
 
     private class StateImpl implements State {
 
-        private final ConnectedComponentsManager connectedComponentsManager
-                = new ConnectedComponentsManager();
+        private final ConnectedComponentsManager connectedComponentsManager;
+
+        private StateImpl() {
+            connectedComponentsManager = new ConnectedComponentsManager();
+        }
+
+        private StateImpl(StateImpl other) {
+            connectedComponentsManager = new ConnectedComponentsManager(other.connectedComponentsManager);
+        }
 
         @Override
         public StateImpl copy() {
-            return new StateImpl();
+            return new StateImpl(this);
         }
 
     }
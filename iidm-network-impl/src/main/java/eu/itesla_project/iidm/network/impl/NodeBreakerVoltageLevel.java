@@ -17,7 +17,7 @@ import eu.itesla_project.commons.collect.Downcast;
 import eu.itesla_project.graph.TraverseResult;
 import eu.itesla_project.graph.Traverser;
 import eu.itesla_project.graph.UndirectedGraph;
-import eu.itesla_project.graph.UndirectedGraphImpl;
+import eu.itesla_project.graph.CompactUndirectedGraphImpl;
 import eu.itesla_project.iidm.network.*;
 import eu.itesla_project.iidm.network.VoltageLevel.NodeBreakerView.SwitchAdder;
 import eu.itesla_project.iidm.network.util.ShortIdDictionary;
@@ -52,7 +52,7 @@ class NodeBreakerVoltageLevel extends AbstractVoltageLevel {
 
     private static final BusNamingStrategy NAMING_STRATEGY = new NumberedBusNamingStrategy();
 
-    private final UndirectedGraphImpl<NodeTerminal, SwitchImpl> graph = new UndirectedGraphImpl<>();
+    private final UndirectedGraph<NodeTerminal, SwitchImpl> graph = new CompactUndirectedGraphImpl<>();
 
     private final Map<String, Integer> switches = new HashMap<>();
 
@@ -556,7 +556,7 @@ class NodeBreakerVoltageLevel extends AbstractVoltageLevel {
     public void invalidateCache() {
         states.get().calculatedBusBreakerTopology.invalidateCache();
         states.get().calculatedBusTopology.invalidateCache();
-        getNetwork().getConnectedComponentsManager().invalidate();
+        getNetwork().getConnectedComponentsManager().invalidate(this);
     }
 
     private Integer getEdge(String switchId, boolean throwException) {
@@ -94,30 +94,30 @@ class NodeTerminal extends AbstractTerminal {
 
     @Override
     protected float getV() {
-        return v.get(network.get().getStateIndex());
+        return v.get(network.get().getStateIndex(connectable));
     }
 
     void setV(float v) {
         if (v <= 0) {
             throw new ValidationException(connectable, "voltage cannot be <= 0");
         }
-        this.v.set(network.get().getStateIndex(), v);
+        this.v.set(network.get().getStateIndexForUpdate(connectable), v);
     }
 
     float getAngle() {
-        return angle.get(network.get().getStateIndex());
+        return angle.get(network.get().getStateIndex(connectable));
     }
 
     void setAngle(float angle) {
-        this.angle.set(network.get().getStateIndex(), angle);
+        this.angle.set(network.get().getStateIndexForUpdate(connectable), angle);
     }
 
     int getConnectedComponentNumber() {
-        return connectedComponentNumber.get(network.get().getStateIndex());
+        return connectedComponentNumber.get(network.get().getStateIndex(connectable));
     }
 
     void setConnectedComponentNumber(int connectedComponentNumber) {
-        this.connectedComponentNumber.set(network.get().getStateIndex(), connectedComponentNumber);
+        this.connectedComponentNumber.set(network.get().getStateIndexForUpdate(connectable), connectedComponentNumber);
     }
 
     @Override
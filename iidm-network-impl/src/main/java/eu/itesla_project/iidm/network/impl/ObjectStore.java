@@ -28,6 +28,9 @@ class ObjectStore {
 
     private final Map<Class<? extends Identifiable>, Set<Identifiable<?>>> objectsByClass = new HashMap<>();
 
+    // incremented each time an object is added or removed
+    private int modificationCount = 0;
+
     static void checkId(String id) {
         if (id == null || id.isEmpty()) {
             throw new ITeslaException("Invalid id '" + id + "'");
@@ -72,6 +75,7 @@ class ObjectStore {
             objectsByClass.put(obj.getClass(), all);
         }
         all.add(obj);
+        modificationCount++;
     }
 
     Identifiable get(String id) {
@@ -117,11 +121,17 @@ class ObjectStore {
         if (all != null) {
             all.remove(obj);
         }
+        modificationCount++;
     }
 
     void clean() {
         objectsById.clear();
         objectsByClass.clear();
+        modificationCount++;
+    }
+
+    int getModificationCount() {
+        return modificationCount;
     }
 
     /**
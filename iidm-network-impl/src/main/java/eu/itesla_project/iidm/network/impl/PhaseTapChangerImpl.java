@@ -56,13 +56,13 @@ class PhaseTapChangerImpl extends TapChangerImpl<TwoWindingsTransformerImpl, Pha
 
     @Override
     public float getRegulationValue() {
-        return regulationValue.get(network.get().getStateIndex());
+        return regulationValue.get(network.get().getStateIndex(getOwner()));
     }
 
     @Override
     public PhaseTapChangerImpl setRegulationValue(float regulationValue) {
         ValidationUtil.checkPhaseTapChangerRegulation(parent, regulationMode, regulationValue, isRegulating(), getRegulationTerminal(), getNetwork());
-        this.regulationValue.set(network.get().getStateIndex(), regulationValue);
+        this.regulationValue.set(network.get().getStateIndexForUpdate(getOwner()), regulationValue);
         return this;
     }
 
@@ -53,13 +53,13 @@ class RatioTapChangerImpl extends TapChangerImpl<RatioTapChangerParent, RatioTap
 
     @Override
     public float getTargetV() {
-        return targetV.get(network.get().getStateIndex());
+        return targetV.get(network.get().getStateIndex(getOwner()));
     }
 
     @Override
     public RatioTapChangerImpl setTargetV(float targetV) {
         ValidationUtil.checkRatioTapChangerRegulation(parent, loadTapChangingCapabilities, isRegulating(), regulationTerminal, targetV, getNetwork());
-        this.targetV.set(network.get().getStateIndex(), targetV);
+        this.targetV.set(network.get().getStateIndexForUpdate(getOwner()), targetV);
         return this;
     }
 
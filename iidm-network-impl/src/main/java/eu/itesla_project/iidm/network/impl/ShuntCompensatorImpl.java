@@ -84,13 +84,13 @@ class ShuntCompensatorImpl extends ConnectableImpl<ShuntCompensator> implements
 
     @Override
     public int getCurrentSectionCount() {
-        return currentSectionCount.get(network.get().getStateIndex());
+        return currentSectionCount.get(network.get().getStateIndex(this));
     }
 
     @Override
     public ShuntCompensatorImpl setCurrentSectionCount(int currentSectionCount) {
         ValidationUtil.checkSections(this, currentSectionCount, maximumSectionCount);
-        int oldValue = this.currentSectionCount.set(network.get().getStateIndex(), currentSectionCount);
+        int oldValue = this.currentSectionCount.set(network.get().getStateIndexForUpdate(this), currentSectionCount);
         notifyUpdate("currentSectionCount", oldValue, currentSectionCount);
         return this;
     }
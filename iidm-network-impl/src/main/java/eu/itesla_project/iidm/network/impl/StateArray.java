@@ -7,12 +7,24 @@
 package eu.itesla_project.iidm.network.impl;
 
 import eu.itesla_project.iidm.network.impl.util.Ref;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * To easily manage an array of state.
+ * <p>
+ * States are stored in a plain array indexed by the state index. Read access
+ * is lock free: the array is never modified in place but replaced by a new
+ * one (copy on write) each time a state is added, removed or recycled. These
+ * modifications are always done by the state manager under its state lock so
+ * there is only one writer at a time.
+ * <p>
+ * Scalar state variables (flows, voltages, set points, tap positions, switch
+ * and connection status) are not stored here: each object already keeps them
+ * in primitive per attribute columns indexed by state (trove lists and bit
+ * sets). A state array only holds the per state topology caches of the network
+ * and of the voltage levels (bus caches, connected components), which are
+ * object graphs and cannot be laid out as primitive columns, so it keeps one
+ * object per state.
  *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
@@ -20,52 +32,61 @@ class StateArray<S extends State> {
 
     private final Ref<? extends MultiStateObject> multiStateObjRef;
 
-    private final List<S> states;
+    private volatile Object[] states;
 
     StateArray(Ref<? extends MultiStateObject> multiStateObjRef, StateFactory<S> stateFactory) {
         this.multiStateObjRef = multiStateObjRef;
         StateManagerImpl stateManager = multiStateObjRef.get().getStateManager();
-        states = Collections.synchronizedList(new ArrayList<S>(stateManager.getStateArraySize()));
-        for (int i = 0; i < stateManager.getStateArraySize(); i++) {
-            states.add(null);
-        }
+        Object[] newStates = new Object[stateManager.getStateArraySize()];
         for (int i : stateManager.getStateIndexes()) {
-            states.set(i, stateFactory.newState());
+            newStates[i] = stateFactory.newState();
         }
+        states = newStates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private S get(int index) {
+        return (S) states[index];
     }
 
     S get() {
-        return states.get(multiStateObjRef.get().getStateManager().getStateContext().getStateIndex());
+        return get(multiStateObjRef.get().getStateManager().getStateContext().getStateIndex());
     }
 
     void push(int number, StateFactory<S> stateFactory) {
+        Object[] oldStates = states;
+        Object[] newStates = Arrays.copyOf(oldStates, oldStates.length + number);
         for (int i = 0; i < number; i++) {
-            states.add(stateFactory.newState());
+            newStates[oldStates.length + i] = stateFactory.newState();
         }
+        states = newStates;
     }
 
     void push(StateFactory<S> stateFactory) {
-        states.add(stateFactory.newState());
+        push(1, stateFactory);
     }
 
     void pop(int number) {
-        for (int i = 0; i < number; i++) {
-            states.remove(states.size()-1);
-        }
+        Object[] oldStates = states;
+        states = Arrays.copyOf(oldStates, oldStates.length - number);
     }
 
     void delete(int index) {
-        states.set(index, null);
+        Object[] newStates = states.clone();
+        newStates[index] = null;
+        states = newStates;
     }
 
     void allocate(int[] indexes, StateFactory<S> stateFactory) {
+        Object[] newStates = states.clone();
         for (int index : indexes) {
-            states.set(index, stateFactory.newState());
+            newStates[index] = stateFactory.newState();
         }
+        states = newStates;
     }
 
     S copy(int index) {
-        return states.get(index).copy();
+        return get(index).copy();
     }
 
 }
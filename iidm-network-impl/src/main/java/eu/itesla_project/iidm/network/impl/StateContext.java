@@ -16,6 +16,14 @@ interface StateContext {
 
     void setStateIndex(int index);
 
+    /**
+     * Set the state index and return the previous one.
+     *
+     * @param index the new state index, -1 to unset the state
+     * @return the previous state index, -1 if the state was not set
+     */
+    int swapStateIndex(int index);
+
     void resetIfStateIndexIs(int index);
 
 }
@@ -9,17 +9,23 @@ package eu.itesla_project.iidm.network.impl;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Iterables;
 import com.google.common.primitives.Ints;
 import eu.itesla_project.commons.ITeslaException;
 import eu.itesla_project.iidm.network.StateManager;
+import eu.itesla_project.iidm.network.StateScope;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,7 +39,7 @@ class StateManagerImpl implements StateManager {
 
     private static final int INITIAL_STATE_INDEX = 0;
 
-    private StateContext stateContext;
+    private volatile StateContext stateContext;
 
     private final ObjectStore objectStore;
 
@@ -45,6 +51,41 @@ class StateManagerImpl implements StateManager {
 
     private final ReentrantLock stateLock = new ReentrantLock();
 
+    // thread having entered state scopes in single thread mode, and number of scopes it has not closed yet,
+    // guarded by the state lock
+    private Thread scopeOwner;
+
+    private int scopeDepth;
+
+    /**
+     * Sharing information of a state created in copy on write mode or of a
+     * state which is the source of copy on write states.
+     */
+    private static final class SharedState {
+
+        // index of the state this one shares its values with, -1 if this state owns all its values
+        private volatile int sourceIndex;
+
+        // objects that own their values in this state (only relevant when sourceIndex is not -1)
+        private final Set<Stateful> copied = ConcurrentHashMap.newKeySet();
+
+        // indexes of the copy on write states sharing the values of this state
+        private volatile int[] sharingIndexes = new int[0];
+
+        private SharedState(int sourceIndex) {
+            this.sourceIndex = sourceIndex;
+        }
+    }
+
+    // indexed by state index, null when the state neither shares nor is shared,
+    // replaced (copy on write) under the state lock so that it can be read without lock
+    private volatile SharedState[] sharedStates = new SharedState[INITIAL_STATE_INDEX + 1];
+
+    // hidden states, without id, keeping for the copy on write states cloned from a state the values
+    // this state had when they were cloned, so that writing the state afterwards copies its old values
+    // once whatever the number of states sharing them; guarded by the state lock
+    private final Set<Integer> frozenIndexes = new HashSet<>();
+
     StateManagerImpl(ObjectStore objectStore) {
         this.stateContext = new MultiStateContext(INITIAL_STATE_INDEX);
         this.objectStore = objectStore;
@@ -109,10 +150,224 @@ class StateManagerImpl implements StateManager {
         }
     }
 
+    @Override
+    public StateScope enterState(String stateId) {
+        StateContext context;
+        int index;
+        stateLock.lock();
+        try {
+            context = stateContext;
+            index = getStateIndex(stateId);
+            if (!(context instanceof ThreadLocalMultiStateContext)) {
+                // the working state is shared by all threads, so scopes can only be entered by one thread at a time
+                Thread currentThread = Thread.currentThread();
+                if (scopeDepth > 0 && scopeOwner != currentThread) {
+                    throw new ITeslaException("State scope already entered by thread " + scopeOwner.getName()
+                            + ", multi-thread access has to be allowed to work on states from several threads");
+                }
+                scopeOwner = currentThread;
+                scopeDepth++;
+                int previousIndex = context.swapStateIndex(index);
+                return () -> exitState(context, previousIndex);
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        // thread local working state, no lock needed
+        int previousIndex = context.swapStateIndex(index);
+        return () -> context.setStateIndex(previousIndex);
+    }
+
+    private void exitState(StateContext context, int previousIndex) {
+        stateLock.lock();
+        try {
+            context.setStateIndex(previousIndex);
+            if (--scopeDepth == 0) {
+                scopeOwner = null;
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    @Override
+    public void runOnState(String stateId, Runnable runnable) {
+        try (StateScope scope = enterState(stateId)) {
+            runnable.run();
+        }
+    }
+
+    @Override
+    public <T> T supplyOnState(String stateId, Supplier<T> supplier) {
+        try (StateScope scope = enterState(stateId)) {
+            return supplier.get();
+        }
+    }
+
     private Iterable<Stateful> getStafulObjects() {
         return FluentIterable.from(objectStore.getAll()).filter(Stateful.class);
     }
 
+    /**
+     * Network and voltage levels keep per state topology caches that cannot be
+     * shared, so their state array element is always allocated, even for copy
+     * on write states.
+     */
+    private static boolean isSharable(Stateful obj) {
+        return !(obj instanceof NetworkImpl || obj instanceof VoltageLevelExt);
+    }
+
+    private Iterable<Stateful> getNotSharableStatefulObjects() {
+        return Iterables.<Stateful>concat(objectStore.getAll(NetworkImpl.class),
+                                          objectStore.getAll(BusBreakerVoltageLevel.class),
+                                          objectStore.getAll(NodeBreakerVoltageLevel.class));
+    }
+
+    private SharedState getSharedState(int index) {
+        SharedState[] states = sharedStates;
+        return index < states.length ? states[index] : null;
+    }
+
+    private void setSharedState(int index, SharedState sharedState) {
+        SharedState[] newSharedStates = Arrays.copyOf(sharedStates, Math.max(sharedStates.length, index + 1));
+        newSharedStates[index] = sharedState;
+        sharedStates = newSharedStates;
+    }
+
+    private void addSharingIndex(int index, int sharingIndex) {
+        SharedState sharedState = getSharedState(index);
+        if (sharedState == null) {
+            sharedState = new SharedState(-1);
+            setSharedState(index, sharedState);
+        }
+        int[] sharingIndexes = Arrays.copyOf(sharedState.sharingIndexes, sharedState.sharingIndexes.length + 1);
+        sharingIndexes[sharingIndexes.length - 1] = sharingIndex;
+        sharedState.sharingIndexes = sharingIndexes;
+    }
+
+    private void removeSharingIndex(int index, int sharingIndex) {
+        SharedState sharedState = getSharedState(index);
+        int[] sharingIndexes = Arrays.stream(sharedState.sharingIndexes).filter(i -> i != sharingIndex).toArray();
+        if (sharingIndexes.length == 0 && sharedState.sourceIndex == -1) {
+            setSharedState(index, null);
+        } else {
+            sharedState.sharingIndexes = sharingIndexes;
+        }
+    }
+
+    /**
+     * Get the index of the state array element holding the values of an object
+     * for a given state, following the copy on write sources.
+     */
+    private int resolveStateIndex(int index, Stateful obj) {
+        SharedState sharedState;
+        while ((sharedState = getSharedState(index)) != null
+                && sharedState.sourceIndex != -1
+                && !sharedState.copied.contains(obj)) {
+            index = sharedState.sourceIndex;
+        }
+        return index;
+    }
+
+    // to be called under the state lock
+    private void copyValues(Stateful obj, int index, int sourceIndex) {
+        SharedState sharedState = getSharedState(index);
+        if (sharedState != null && !sharedState.copied.contains(obj)) {
+            obj.allocateStateArrayElement(new int[] {index}, sourceIndex);
+            sharedState.copied.add(obj);
+        }
+    }
+
+    /**
+     * Get the index of the state array element to read to get the values of
+     * an object in the working state.
+     */
+    int getStateIndex(Stateful obj) {
+        return resolveStateIndex(stateContext.getStateIndex(), obj);
+    }
+
+    /**
+     * Lock free check that values have to be copied before writing the values
+     * of an object in a state: the state does not own them yet, or the frozen
+     * state sharing them does not have its own copy yet.
+     */
+    private boolean isCopyNeeded(int index, Stateful obj) {
+        SharedState sharedState = getSharedState(index);
+        if (sharedState == null) {
+            return false;
+        }
+        if (sharedState.sourceIndex != -1 && !sharedState.copied.contains(obj)) {
+            return true;
+        }
+        for (int sharingIndex : sharedState.sharingIndexes) {
+            SharedState sharingState = getSharedState(sharingIndex);
+            if (sharingState != null && !sharingState.copied.contains(obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the index of the state array element to write to update the values
+     * of an object in the working state. If the values were shared with
+     * another state, they are copied first.
+     */
+    int getStateIndexForUpdate(Stateful obj) {
+        int index = stateContext.getStateIndex();
+        if (!isCopyNeeded(index, obj)) {
+            return index;
+        }
+        stateLock.lock();
+        try {
+            SharedState sharedState = getSharedState(index);
+            if (sharedState != null) {
+                int sourceIndex = resolveStateIndex(index, obj);
+                // frozen states sharing current values must keep them, there is one
+                // per copy on write cloning of this state, not one per cloned state
+                for (int sharingIndex : sharedState.sharingIndexes) {
+                    copyValues(obj, sharingIndex, sourceIndex);
+                }
+                if (sourceIndex != index) {
+                    copyValues(obj, index, sourceIndex);
+                }
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        return index;
+    }
+
+    /**
+     * Get an index for a new state, recycling an unused one if any, extending
+     * the state array size otherwise.
+     */
+    private int newStateIndex(List<Integer> recycled) {
+        if (unusedIndexes.isEmpty()) {
+            return stateArraySize++;
+        }
+        int index = unusedIndexes.pollLast();
+        recycled.add(index);
+        return index;
+    }
+
+    /**
+     * Get a frozen state of a state having the same values as the state, so
+     * that it can be shared by new copy on write states, -1 if none.
+     */
+    private int getReusableFrozenIndex(int index) {
+        SharedState sharedState = getSharedState(index);
+        if (sharedState != null) {
+            for (int sharingIndex : sharedState.sharingIndexes) {
+                // nothing has been written in the state since the frozen state creation
+                if (frozenIndexes.contains(sharingIndex) && getSharedState(sharingIndex).copied.isEmpty()) {
+                    return sharingIndex;
+                }
+            }
+        }
+        return -1;
+    }
+
     @Override
     public void cloneState(String sourceStateId, String targetStateId) {
         cloneState(sourceStateId, Arrays.asList(targetStateId));
@@ -120,45 +375,67 @@ class StateManagerImpl implements StateManager {
 
     @Override
     public void cloneState(String sourceStateId, List<String> targetStateIds) {
+        cloneState(sourceStateId, targetStateIds, false);
+    }
+
+    @Override
+    public void cloneState(String sourceStateId, String targetStateId, boolean copyOnWrite) {
+        cloneState(sourceStateId, Arrays.asList(targetStateId), copyOnWrite);
+    }
+
+    @Override
+    public void cloneState(String sourceStateId, List<String> targetStateIds, boolean copyOnWrite) {
         if (targetStateIds.isEmpty()) {
             throw new IllegalArgumentException("Empty target state id list");
         }
-        LOGGER.debug("Creating states {}", targetStateIds);
+        LOGGER.debug("Creating states {} (copy on write: {})", targetStateIds, copyOnWrite);
         stateLock.lock();
         try {
             int sourceIndex = getStateIndex(sourceStateId);
             int initStateArraySize = stateArraySize;
-            int extendedCount = 0;
             List<Integer> recycled = new ArrayList<>();
             for (String targetStateId : targetStateIds) {
                 if (id2index.containsKey(targetStateId)) {
                     throw new ITeslaException("Target state '" + targetStateId + "' already exists");
                 }
-                if (unusedIndexes.isEmpty()) {
-                    // extend state array size
-                    id2index.put(targetStateId, stateArraySize);
-                    stateArraySize++;
-                    extendedCount++;
-                } else {
-                    // recycle an index
-                    int index = unusedIndexes.pollLast();
-                    id2index.put(targetStateId, index);
-                    recycled.add(index);
+                id2index.put(targetStateId, newStateIndex(recycled));
+            }
+            int frozenIndex = -1;
+            boolean newFrozenIndex = false;
+            if (copyOnWrite) {
+                frozenIndex = getReusableFrozenIndex(sourceIndex);
+                if (frozenIndex == -1) {
+                    frozenIndex = newStateIndex(recycled);
+                    frozenIndexes.add(frozenIndex);
+                    newFrozenIndex = true;
                 }
             }
+            int extendedCount = stateArraySize - initStateArraySize;
             if (recycled.size() > 0) {
                 int[] indexes = Ints.toArray(recycled);
-                for (Stateful obj : getStafulObjects()) {
-                    obj.allocateStateArrayElement(indexes, sourceIndex);
+                // in copy on write mode, values of sharable objects are not copied
+                for (Stateful obj : copyOnWrite ? getNotSharableStatefulObjects() : getStafulObjects()) {
+                    obj.allocateStateArrayElement(indexes, isSharable(obj) ? resolveStateIndex(sourceIndex, obj) : sourceIndex);
                 }
                 LOGGER.trace("Recycling state array indexes {}", Arrays.toString(indexes));
             }
             if (extendedCount > 0) {
                 for (Stateful obj : getStafulObjects()) {
-                    obj.extendStateArraySize(initStateArraySize, extendedCount, sourceIndex);
+                    obj.extendStateArraySize(initStateArraySize, extendedCount, isSharable(obj) ? resolveStateIndex(sourceIndex, obj) : sourceIndex);
                 }
                 LOGGER.trace("Extending state array size to {} (+{})", stateArraySize, extendedCount);
             }
+            if (copyOnWrite) {
+                if (newFrozenIndex) {
+                    setSharedState(frozenIndex, new SharedState(sourceIndex));
+                    addSharingIndex(sourceIndex, frozenIndex);
+                }
+                for (String targetStateId : targetStateIds) {
+                    int index = id2index.get(targetStateId);
+                    setSharedState(index, new SharedState(frozenIndex));
+                    addSharingIndex(frozenIndex, index);
+                }
+            }
         } finally {
             stateLock.unlock();
         }
@@ -174,37 +451,101 @@ class StateManagerImpl implements StateManager {
             int index = getStateIndex(stateId);
             id2index.remove(stateId);
             LOGGER.debug("Removing state '{}'", stateId);
-            if (index == stateArraySize-1) {
-                // remove consecutive unsused index starting from the end
-                int number = 0; // number of elements to remove
-                for (int j = index; j >= 0; j--) {
-                    if (id2index.containsValue(j)) {
-                        break;
-                    } else {
-                        number++;
-                        unusedIndexes.remove(j);
-                    }
+            releaseStateIndex(index);
+            // if the removed state is the working state, unset the working state
+            stateContext.resetIfStateIndexIs(index);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Release the state array elements of a removed state or of a frozen state
+     * no longer shared.
+     */
+    private void releaseStateIndex(int index) {
+        SharedState sharedState = getSharedState(index);
+        if (sharedState != null) {
+            unshareState(index, sharedState);
+        }
+        if (sharedState != null && sharedState.sourceIndex != -1) {
+            // only not sharable objects and objects having their own values
+            // have something to delete, index is kept for recycling
+            unusedIndexes.add(index);
+            for (Stateful obj : Iterables.concat(getNotSharableStatefulObjects(), sharedState.copied)) {
+                obj.deleteStateArrayElement(index);
+            }
+            LOGGER.trace("Deleting copy on write state array element at index {}", index);
+        } else if (index == stateArraySize-1) {
+            // remove consecutive unsused index starting from the end
+            int number = 0; // number of elements to remove
+            for (int j = index; j >= 0; j--) {
+                if (id2index.containsValue(j) || frozenIndexes.contains(j)) {
+                    break;
+                } else {
+                    number++;
+                    unusedIndexes.remove(j);
                 }
-                // reduce state array size
-                for (Stateful obj : getStafulObjects()) {
-                    obj.reduceStateArraySize(number);
+            }
+            // reduce state array size
+            for (Stateful obj : getStafulObjects()) {
+                obj.reduceStateArraySize(number);
+            }
+            stateArraySize -= number;
+            LOGGER.trace("Reducing state array size to {}", stateArraySize);
+        } else {
+            unusedIndexes.add(index);
+            // delete state array element at the unused index to avoid memory leak
+            // (so that state data can be garbage collected)
+            for (Stateful obj : getStafulObjects()) {
+                obj.deleteStateArrayElement(index);
+            }
+            LOGGER.trace("Deleting state array element at index {}", index);
+        }
+        // a frozen state is released with the last state sharing it
+        if (sharedState != null && frozenIndexes.contains(sharedState.sourceIndex)) {
+            int frozenIndex = sharedState.sourceIndex;
+            SharedState frozenState = getSharedState(frozenIndex);
+            if (frozenState == null || frozenState.sharingIndexes.length == 0) {
+                frozenIndexes.remove(frozenIndex);
+                LOGGER.trace("Releasing frozen state at index {}", frozenIndex);
+                releaseStateIndex(frozenIndex);
+            }
+        }
+    }
+
+    /**
+     * Before removing a state, give its own values to the copy on write states
+     * sharing them and detach it from its own source.
+     */
+    private void unshareState(int index, SharedState sharedState) {
+        for (int sharingIndex : sharedState.sharingIndexes) {
+            SharedState sharingState = getSharedState(sharingIndex);
+            if (sharedState.sourceIndex != -1) {
+                // values the removed state does not own are now shared with its source
+                for (Stateful obj : sharedState.copied) {
+                    copyValues(obj, sharingIndex, index);
                 }
-                stateArraySize -= number;
-                LOGGER.trace("Reducing state array size to {}", stateArraySize);
+                sharingState.sourceIndex = sharedState.sourceIndex;
+                addSharingIndex(sharedState.sourceIndex, sharingIndex);
             } else {
-                unusedIndexes.add(index);
-                // delete state array element at the unused index to avoid memory leak
-                // (so that state data can be garbage collected)
+                // the removed state owns all its values, so the sharing state has to own them too
                 for (Stateful obj : getStafulObjects()) {
-                    obj.deleteStateArrayElement(index);
+                    if (isSharable(obj)) {
+                        copyValues(obj, sharingIndex, index);
+                    }
+                }
+                sharingState.sourceIndex = -1;
+                sharingState.copied.clear();
+                if (sharingState.sharingIndexes.length == 0) {
+                    setSharedState(sharingIndex, null);
                 }
-                LOGGER.trace("Deleting state array element at index {}", index);
             }
-            // if the removed state is the working state, unset the working state
-            stateContext.resetIfStateIndexIs(index);
-        } finally {
-            stateLock.unlock();
         }
+        if (sharedState.sourceIndex != -1) {
+            removeSharingIndex(sharedState.sourceIndex, index);
+        }
+        setSharedState(index, null);
     }
 
     @Override
@@ -89,39 +89,39 @@ class StaticVarCompensatorImpl extends ConnectableImpl<StaticVarCompensator> imp
 
     @Override
     public float getVoltageSetPoint() {
-        return voltageSetPoint.get(getNetwork().getStateIndex());
+        return voltageSetPoint.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public StaticVarCompensatorImpl setVoltageSetPoint(float voltageSetPoint) {
         ValidationUtil.checkSvcRegulator(this, voltageSetPoint, getReactivePowerSetPoint(), getRegulationMode());
-        float oldValue = this.voltageSetPoint.set(getNetwork().getStateIndex(), voltageSetPoint);
+        float oldValue = this.voltageSetPoint.set(getNetwork().getStateIndexForUpdate(this), voltageSetPoint);
         notifyUpdate("voltageSetPoint", oldValue, voltageSetPoint);
         return this;
     }
 
     @Override
     public float getReactivePowerSetPoint() {
-        return reactivePowerSetPoint.get(getNetwork().getStateIndex());
+        return reactivePowerSetPoint.get(getNetwork().getStateIndex(this));
     }
 
     @Override
     public StaticVarCompensatorImpl setReactivePowerSetPoint(float reactivePowerSetPoint) {
         ValidationUtil.checkSvcRegulator(this, getVoltageSetPoint(), reactivePowerSetPoint, getRegulationMode());
-        float oldValue = this.reactivePowerSetPoint.set(getNetwork().getStateIndex(), reactivePowerSetPoint);
+        float oldValue = this.reactivePowerSetPoint.set(getNetwork().getStateIndexForUpdate(this), reactivePowerSetPoint);
         notifyUpdate("reactivePowerSetPoint", oldValue, reactivePowerSetPoint);
         return this;
     }
 
     @Override
     public RegulationMode getRegulationMode() {
-        return RegulationMode.values()[regulationMode.get(getNetwork().getStateIndex())];
+        return RegulationMode.values()[regulationMode.get(getNetwork().getStateIndex(this))];
     }
 
     @Override
     public StaticVarCompensatorImpl setRegulationMode(RegulationMode regulationMode) {
         ValidationUtil.checkSvcRegulator(this, getVoltageSetPoint(), getReactivePowerSetPoint(), regulationMode);
-        RegulationMode oldValue = RegulationMode.values()[this.regulationMode.set(getNetwork().getStateIndex(), regulationMode.ordinal())];
+        RegulationMode oldValue = RegulationMode.values()[this.regulationMode.set(getNetwork().getStateIndexForUpdate(this), regulationMode.ordinal())];
         notifyUpdate("regulationMode", oldValue, regulationMode);
         return this;
     }
@@ -47,16 +47,15 @@ class SwitchImpl extends IdentifiableImpl<Switch> implements Switch, Stateful {
 
     @Override
     public boolean isOpen() {
-        return open.get(voltageLevel.getNetwork().getStateIndex());
+        return open.get(voltageLevel.getNetwork().getStateIndex(this));
     }
 
     @Override
     public void setOpen(boolean open) {
         NetworkImpl network = voltageLevel.getNetwork();
-        int index = network.getStateIndex();
-        boolean oldValue = this.open.get(index);
+        boolean oldValue = this.open.get(network.getStateIndex(this));
         if (oldValue != open) {
-            this.open.set(index, open);
+            this.open.set(network.getStateIndexForUpdate(this), open);
             voltageLevel.invalidateCache();
             network.getListeners().notifyUpdate(this, "open", oldValue, open);
         }
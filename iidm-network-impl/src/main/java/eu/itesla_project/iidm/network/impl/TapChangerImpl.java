@@ -53,6 +53,11 @@ abstract class TapChangerImpl<H extends TapChangerParent, C extends TapChangerIm
 
     protected abstract NetworkImpl getNetwork();
 
+    protected Stateful getOwner() {
+        // state values of the tap changer are managed by its transformer
+        return (Stateful) parent.getTransformer();
+    }
+
     public int getStepCount() {
         return steps.size();
     }
@@ -66,7 +71,7 @@ abstract class TapChangerImpl<H extends TapChangerParent, C extends TapChangerIm
     }
 
     public int getTapPosition() {
-        return tapPosition.get(network.get().getStateIndex());
+        return tapPosition.get(network.get().getStateIndex(getOwner()));
     }
 
     protected abstract String getTapChangerAttribute();
@@ -78,7 +83,7 @@ abstract class TapChangerImpl<H extends TapChangerParent, C extends TapChangerIm
                     + tapPosition + " [" + lowTapPosition + ", "
                     + getHighTapPosition() + "]");
         }
-        int oldValue = this.tapPosition.set(network.get().getStateIndex(), tapPosition);
+        int oldValue = this.tapPosition.set(network.get().getStateIndexForUpdate(getOwner()), tapPosition);
         parent.getNetwork().getListeners().notifyUpdate(parent.getTransformer(), getTapChangerAttribute() + ".tapPosition", oldValue, tapPosition);
         return (C) this;
     }
@@ -97,11 +102,11 @@ abstract class TapChangerImpl<H extends TapChangerParent, C extends TapChangerIm
     }
 
     public boolean isRegulating() {
-        return regulating.get(network.get().getStateIndex());
+        return regulating.get(network.get().getStateIndex(getOwner()));
     }
 
     public C setRegulating(boolean regulating) {
-        this.regulating.set(network.get().getStateIndex(), regulating);
+        this.regulating.set(network.get().getStateIndexForUpdate(getOwner()), regulating);
         return (C) this;
     }
 
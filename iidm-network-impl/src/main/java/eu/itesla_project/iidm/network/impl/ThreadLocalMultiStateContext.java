@@ -6,9 +6,13 @@
  */
 package eu.itesla_project.iidm.network.impl;
 
-import java.util.function.Supplier;
-
 /**
+ * State context with a different state index for each thread.
+ * <p>
+ * The index is stored as a primitive in a mutable per thread holder, so that
+ * once the holder of a thread has been created, getting or setting the state
+ * index does not allocate anything. Resetting removes the holder, so that no
+ * entry is left in pooled threads.
  *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
@@ -16,12 +20,17 @@ public class ThreadLocalMultiStateContext implements StateContext {
 
     public static final ThreadLocalMultiStateContext INSTANCE = new ThreadLocalMultiStateContext();
 
-    private final ThreadLocal<Integer> index = ThreadLocal.withInitial((Supplier<Integer>) () -> null);
+    private static final class IndexHolder {
+
+        private int index = -1;
+    }
+
+    private final ThreadLocal<IndexHolder> holder = ThreadLocal.withInitial(IndexHolder::new);
 
     @Override
     public int getStateIndex() {
-        Integer i = index.get();
-        if (i == null) {
+        int i = holder.get().index;
+        if (i == -1) {
             throw new RuntimeException("State not set for current thread " + Thread.currentThread().getName());
         }
         return i;
@@ -29,18 +38,25 @@ public class ThreadLocalMultiStateContext implements StateContext {
 
     @Override
     public void setStateIndex(int index) {
-        this.index.set(index);
+        holder.get().index = index;
+    }
+
+    @Override
+    public int swapStateIndex(int index) {
+        IndexHolder h = holder.get();
+        int oldIndex = h.index;
+        h.index = index;
+        return oldIndex;
     }
 
     public void reset() {
-        index.remove();
+        holder.remove();
     }
 
     @Override
     public void resetIfStateIndexIs(int index) {
-        Integer i = this.index.get();
-        if (i != null && i == index) {
-            this.index.remove();
+        if (holder.get().index == index) {
+            holder.remove();
         }
     }
 }
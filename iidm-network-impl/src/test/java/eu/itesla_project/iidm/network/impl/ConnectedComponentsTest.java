@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.iidm.network.impl;
+
+import eu.itesla_project.iidm.network.*;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class ConnectedComponentsTest {
+
+    private static Bus getBus(Network network, String voltageLevelId) {
+        return network.getVoltageLevel(voltageLevelId).getBusView().getBuses().iterator().next();
+    }
+
+    @Test
+    public void incrementalUpdateTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        ConnectedComponent mainCc = getBus(network, "VLHV1").getConnectedComponent();
+        assertEquals(0, mainCc.getNum());
+        assertEquals(4, mainCc.getSize());
+
+        // disconnecting one of the two parallel lines does not change anything
+        Line line = network.getLine("NHV1_NHV2_1");
+        assertTrue(line.getTerminal1().disconnect());
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        assertSame(mainCc, getBus(network, "VLHV1").getConnectedComponent());
+
+        // disconnecting the other one splits the network in two components of the same size
+        Line line2 = network.getLine("NHV1_NHV2_2");
+        assertTrue(line2.getTerminal2().disconnect());
+        assertEquals(2, network.getBusView().getConnectedComponents().size());
+        ConnectedComponent cc1 = getBus(network, "VLHV1").getConnectedComponent();
+        ConnectedComponent cc2 = getBus(network, "VLLOAD").getConnectedComponent();
+        assertNotSame(cc1, cc2);
+        assertSame(cc1, getBus(network, "VLGEN").getConnectedComponent());
+        assertSame(cc2, getBus(network, "VLHV2").getConnectedComponent());
+        assertEquals(2, cc1.getSize());
+        assertEquals(2, cc2.getSize());
+        assertEquals(Arrays.asList(0, 1), Arrays.asList(Math.min(cc1.getNum(), cc2.getNum()), Math.max(cc1.getNum(), cc2.getNum())));
+
+        // disconnecting the load transformer removes the load bus from the bus view
+        assertTrue(network.getTwoWindingsTransformer("NHV2_NLOAD").getTerminal2().disconnect());
+        assertFalse(network.getVoltageLevel("VLLOAD").getBusView().getBuses().iterator().hasNext());
+        assertEquals(2, network.getBusView().getConnectedComponents().size());
+        assertEquals(0, getBus(network, "VLHV1").getConnectedComponent().getNum());
+        assertEquals(2, getBus(network, "VLHV1").getConnectedComponent().getSize());
+        assertEquals(1, getBus(network, "VLHV2").getConnectedComponent().getNum());
+        assertEquals(1, getBus(network, "VLHV2").getConnectedComponent().getSize());
+
+        // reconnect everything
+        assertTrue(network.getTwoWindingsTransformer("NHV2_NLOAD").getTerminal2().connect());
+        assertTrue(line.getTerminal1().connect());
+        assertTrue(line2.getTerminal2().connect());
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        for (Bus bus : network.getBusView().getBuses()) {
+            assertEquals(0, bus.getConnectedComponent().getNum());
+            assertEquals(4, bus.getConnectedComponent().getSize());
+        }
+    }
+
+    @Test
+    public void multiStateTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "s1");
+        network.getStateManager().setWorkingState("s1");
+        network.getLine("NHV1_NHV2_1").getTerminal1().disconnect();
+        network.getLine("NHV1_NHV2_2").getTerminal1().disconnect();
+        assertEquals(2, network.getBusView().getConnectedComponents().size());
+        network.getStateManager().setWorkingState(StateManager.INITIAL_STATE_ID);
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+    }
+
+    @Test
+    public void clonedStateIncrementalUpdateTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        VoltageLevel vlgen = network.getVoltageLevel("VLGEN");
+        // a line between two new buses of VLGEN, coupled to NGEN by a switch
+        vlgen.getBusBreakerView().newBus()
+                .setId("NGEN2")
+                .add();
+        vlgen.getBusBreakerView().newBus()
+                .setId("NGEN3")
+                .add();
+        vlgen.getBusBreakerView().newSwitch()
+                .setId("COUPL")
+                .setBus1("NGEN")
+                .setBus2("NGEN2")
+                .setOpen(false)
+                .add();
+        network.newLine()
+                .setId("NGEN2_NGEN3")
+                .setVoltageLevel1("VLGEN")
+                .setBus1("NGEN2")
+                .setConnectableBus1("NGEN2")
+                .setVoltageLevel2("VLGEN")
+                .setBus2("NGEN3")
+                .setConnectableBus2("NGEN3")
+                .setR(1)
+                .setX(1)
+                .setG1(0)
+                .setB1(0)
+                .setG2(0)
+                .setB2(0)
+                .add();
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        assertEquals(1, ((NetworkImpl) network).getConnectedComponentsManager().getGraphComputationCount());
+
+        // the cloned state starts from a copy of the graph, opening a switch does not recompute everything
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "s1");
+        network.getStateManager().setWorkingState("s1");
+        vlgen.getBusBreakerView().getSwitch("COUPL").setOpen(true);
+        assertEquals(2, network.getBusView().getConnectedComponents().size());
+        assertEquals(0, ((NetworkImpl) network).getConnectedComponentsManager().getGraphComputationCount());
+        Line line = network.getLine("NGEN2_NGEN3");
+        Bus ngen = network.getGenerator("GEN").getTerminal().getBusView().getBus();
+        Bus ngen2 = line.getTerminal1().getBusView().getBus();
+        assertNotEquals(ngen.getId(), ngen2.getId());
+        assertEquals(0, ngen.getConnectedComponent().getNum());
+        assertEquals(4, ngen.getConnectedComponent().getSize());
+        assertEquals(1, ngen2.getConnectedComponent().getNum());
+        assertEquals(2, ngen2.getConnectedComponent().getSize());
+        assertSame(ngen2.getConnectedComponent(), line.getTerminal2().getBusView().getBus().getConnectedComponent());
+        assertSame(ngen.getConnectedComponent(), getBus(network, "VLLOAD").getConnectedComponent());
+
+        // the source state is not modified
+        network.getStateManager().setWorkingState(StateManager.INITIAL_STATE_ID);
+        assertEquals(1, network.getBusView().getConnectedComponents().size());
+        assertEquals(5, network.getLine("NGEN2_NGEN3").getTerminal2().getBusView().getBus().getConnectedComponent().getSize());
+        assertEquals(1, ((NetworkImpl) network).getConnectedComponentsManager().getGraphComputationCount());
+    }
+}
@@ -7,14 +7,18 @@
 package eu.itesla_project.iidm.network.impl;
 
 import com.google.common.collect.Iterables;
+import eu.itesla_project.commons.ITeslaException;
 import eu.itesla_project.iidm.network.Bus;
 import eu.itesla_project.iidm.network.Network;
 import eu.itesla_project.iidm.network.StateManager;
+import eu.itesla_project.iidm.network.StateScope;
 import eu.itesla_project.iidm.network.Generator;
+import eu.itesla_project.iidm.network.Line;
 import eu.itesla_project.iidm.network.Load;
 import eu.itesla_project.iidm.network.VoltageLevel;
 import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -118,7 +122,7 @@ public class MultiStateNetworkTest {
     }
 
     @Test
-    public void stateNotSetTest() throws InterruptedException {
+    public void stateNotSetTest() throws Exception {
         Network network = EurostagTutorialExample1Factory.create();
         StateManager manager = network.getStateManager();
         manager.allowStateMultiThreadAccess(true);
@@ -130,13 +134,13 @@ public class MultiStateNetworkTest {
                 fail();
             } catch (Exception e) {
             }
-        });
+        }).get();
         service.shutdown();
         service.awaitTermination(1, TimeUnit.MINUTES);
     }
 
     @Test
-    public void stateSetTest() throws InterruptedException {
+    public void stateSetTest() throws Exception {
         Network network = EurostagTutorialExample1Factory.create();
         StateManager manager = network.getStateManager();
         manager.allowStateMultiThreadAccess(true);
@@ -149,9 +153,174 @@ public class MultiStateNetworkTest {
             } catch (Exception e) {
                 fail();
             }
-        });
+        }).get();
         service.shutdown();
         service.awaitTermination(1, TimeUnit.MINUTES);
     }
 
+    @Test
+    public void copyOnWriteTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        StateManager manager = network.getStateManager();
+        Generator generator = network.getGenerator("GEN");
+        Load load = network.getLoad("LOAD");
+        Line line = network.getLine("NHV1_NHV2_1");
+        manager.cloneState(StateManager.INITIAL_STATE_ID, "COW1", true);
+        manager.setWorkingState("COW1");
+        load.setQ0(50f);
+        line.getTerminal1().setP(10f);
+        manager.cloneState("COW1", "COW2", true);
+
+        // cloned states share values of their source
+        manager.setWorkingState("COW2");
+        assertEquals(607f, generator.getTargetP(), 0f);
+        assertEquals(50f, load.getQ0(), 0f);
+        generator.setTargetP(500f);
+        assertEquals(500f, generator.getTargetP(), 0f);
+        manager.setWorkingState("COW1");
+        assertEquals(607f, generator.getTargetP(), 0f);
+
+        // modification of a source does not change the states sharing its values
+        manager.setWorkingState(StateManager.INITIAL_STATE_ID);
+        load.setP0(100f);
+        manager.setWorkingState("COW1");
+        assertEquals(600f, load.getP0(), 0f);
+        load.setQ0(70f);
+        manager.setWorkingState("COW2");
+        assertEquals(600f, load.getP0(), 0f);
+        assertEquals(50f, load.getQ0(), 0f);
+
+        // removing an intermediate state keeps the values of the sharing states
+        manager.removeState("COW1");
+        manager.setWorkingState("COW2");
+        assertEquals(50f, load.getQ0(), 0f);
+        assertEquals(600f, load.getP0(), 0f);
+        assertEquals(500f, generator.getTargetP(), 0f);
+        assertEquals(10f, line.getTerminal1().getP(), 0f);
+
+        // removing the source state keeps the values of the sharing states
+        manager.cloneState("COW2", "PLAIN");
+        manager.cloneState("PLAIN", "COW3", true);
+        manager.removeState("PLAIN");
+        manager.setWorkingState("COW3");
+        assertEquals(50f, load.getQ0(), 0f);
+        assertEquals(500f, generator.getTargetP(), 0f);
+
+        // a recycled index does not see values of the previous state
+        manager.removeState("COW3");
+        manager.cloneState(StateManager.INITIAL_STATE_ID, "COW4", true);
+        manager.setWorkingState("COW4");
+        assertEquals(607f, generator.getTargetP(), 0f);
+        assertEquals(100f, load.getP0(), 0f);
+    }
+
+    @Test
+    public void copyOnWriteSourceUpdateTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        StateManagerImpl manager = ((NetworkImpl) network).getStateManager();
+        Generator generator = network.getGenerator("GEN");
+        List<String> stateIds = Arrays.asList("COW1", "COW2", "COW3");
+        manager.cloneState(StateManager.INITIAL_STATE_ID, stateIds, true);
+        // cloned states share a single frozen copy of the source
+        assertEquals(5, manager.getStateArraySize());
+
+        // writing the source does not change the cloned states
+        generator.setTargetP(500f);
+        for (String stateId : stateIds) {
+            assertEquals(607f, manager.supplyOnState(stateId, generator::getTargetP), 0f);
+        }
+        manager.runOnState("COW2", () -> generator.setTargetP(400f));
+        assertEquals(400f, manager.supplyOnState("COW2", generator::getTargetP), 0f);
+        assertEquals(607f, manager.supplyOnState("COW3", generator::getTargetP), 0f);
+        assertEquals(500f, generator.getTargetP(), 0f);
+
+        // the frozen copy is released with the last state sharing it, and its index recycled
+        for (String stateId : stateIds) {
+            manager.removeState(stateId);
+        }
+        manager.cloneState(StateManager.INITIAL_STATE_ID, stateIds, true);
+        assertEquals(5, manager.getStateArraySize());
+        for (String stateId : stateIds) {
+            assertEquals(500f, manager.supplyOnState(stateId, generator::getTargetP), 0f);
+        }
+    }
+
+    @Test
+    public void copyOnWriteTopologyTest() {
+        Network network = EurostagTutorialExample1Factory.create();
+        StateManager manager = network.getStateManager();
+        manager.cloneState(StateManager.INITIAL_STATE_ID, "COW", true);
+        manager.setWorkingState("COW");
+        Load load = network.getLoad("LOAD");
+        Bus nload = network.getVoltageLevel("VLLOAD").getBusBreakerView().getBus("NLOAD");
+        assertEquals(1, Iterables.size(nload.getLoads()));
+        load.getTerminal().disconnect();
+        assertNull(load.getTerminal().getBusBreakerView().getBus());
+        assertEquals(0, Iterables.size(nload.getLoads()));
+        manager.setWorkingState(StateManager.INITIAL_STATE_ID);
+        assertNotNull(load.getTerminal().getBusBreakerView().getBus());
+        assertEquals(1, Iterables.size(nload.getLoads()));
+    }
+
+    @Test
+    public void stateScopeTest() throws Exception {
+        Network network = EurostagTutorialExample1Factory.create();
+        StateManager manager = network.getStateManager();
+        manager.cloneState(StateManager.INITIAL_STATE_ID, "SecondState");
+        Generator generator = network.getGenerator("GEN");
+        try (StateScope scope = manager.enterState("SecondState")) {
+            assertEquals("SecondState", manager.getWorkingStateId());
+            generator.setTargetP(500f);
+        }
+        assertEquals(StateManager.INITIAL_STATE_ID, manager.getWorkingStateId());
+        assertEquals(607f, generator.getTargetP(), 0f);
+        assertEquals(500f, manager.supplyOnState("SecondState", generator::getTargetP), 0f);
+        assertEquals(StateManager.INITIAL_STATE_ID, manager.getWorkingStateId());
+
+        // in multi-thread mode, the state of the thread is unset again after the scope
+        manager.allowStateMultiThreadAccess(true);
+        float[] targetP = new float[1];
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        service.submit(() -> {
+            manager.runOnState("SecondState", () -> targetP[0] = generator.getTargetP());
+            try {
+                generator.getTargetP();
+                fail();
+            } catch (Exception ignored) {
+            }
+        }).get();
+        service.shutdown();
+        service.awaitTermination(1, TimeUnit.MINUTES);
+        assertEquals(500f, targetP[0], 0f);
+        assertEquals(607f, generator.getTargetP(), 0f);
+    }
+
+    @Test
+    public void stateScopeSingleThreadTest() throws Exception {
+        Network network = EurostagTutorialExample1Factory.create();
+        StateManager manager = network.getStateManager();
+        manager.cloneState(StateManager.INITIAL_STATE_ID, "SecondState");
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try (StateScope scope = manager.enterState("SecondState")) {
+            // the working state is shared, another thread cannot enter a state meanwhile
+            service.submit(() -> {
+                try {
+                    manager.enterState(StateManager.INITIAL_STATE_ID);
+                    fail();
+                } catch (ITeslaException ignored) {
+                }
+            }).get();
+            assertEquals("SecondState", manager.getWorkingStateId());
+        }
+        // once the scope is closed, it can
+        service.submit(() -> {
+            try (StateScope scope = manager.enterState("SecondState")) {
+                assertEquals("SecondState", manager.getWorkingStateId());
+            }
+        }).get();
+        service.shutdown();
+        service.awaitTermination(1, TimeUnit.MINUTES);
+        assertEquals(StateManager.INITIAL_STATE_ID, manager.getWorkingStateId());
+    }
+
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.iidm.network.impl;
+
+import eu.itesla_project.iidm.network.StateManager;
+import eu.itesla_project.iidm.network.impl.util.RefObj;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class StateArrayTest {
+
+    private static class StateImpl implements State {
+
+        private final int value;
+
+        private StateImpl(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public StateImpl copy() {
+            return new StateImpl(value);
+        }
+    }
+
+    private static class MultiStateObjectMock implements MultiStateObject {
+
+        private final StateManagerImpl stateManager = new StateManagerImpl(new ObjectStore());
+
+        @Override
+        public StateManagerImpl getStateManager() {
+            return stateManager;
+        }
+
+        @Override
+        public int getStateIndex() {
+            return stateManager.getStateContext().getStateIndex();
+        }
+
+        @Override
+        public int getStateIndex(Stateful obj) {
+            return stateManager.getStateIndex(obj);
+        }
+
+        @Override
+        public int getStateIndexForUpdate(Stateful obj) {
+            return stateManager.getStateIndexForUpdate(obj);
+        }
+    }
+
+    @Test
+    public void test() {
+        MultiStateObjectMock obj = new MultiStateObjectMock();
+        StateManagerImpl stateManager = obj.getStateManager();
+        StateArray<StateImpl> states = new StateArray<>(new RefObj<>(obj), () -> new StateImpl(0));
+        assertEquals(0, states.get().value);
+
+        // extend the array with 2 states copied from initial one
+        states.push(2, () -> new StateImpl(1));
+        stateManager.getStateContext().setStateIndex(2);
+        assertEquals(1, states.get().value);
+
+        // delete then reallocate the middle element
+        states.delete(1);
+        stateManager.getStateContext().setStateIndex(1);
+        assertNull(states.get());
+        states.allocate(new int[] {1}, () -> states.copy(2));
+        assertEquals(1, states.get().value);
+        assertNotSame(states.get(), states.copy(2));
+
+        // reduce the array, remaining states are not affected
+        states.pop(2);
+        stateManager.getStateContext().setStateIndex(0);
+        assertEquals(0, states.get().value);
+        try {
+            stateManager.getStateContext().setStateIndex(1);
+            states.get();
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+        }
+        stateManager.setWorkingState(StateManager.INITIAL_STATE_ID);
+    }
+}
@@ -8,6 +8,7 @@ package eu.itesla_project.iidm.xml;
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import eu.itesla_project.commons.util.ServiceLoaderCache;
 import eu.itesla_project.iidm.network.*;
 import javanet.staxutils.IndentingXMLStreamWriter;
@@ -28,6 +29,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -49,6 +51,15 @@ public class NetworkXml implements XmlConstants {
 
     private static final Supplier<XMLInputFactory> XML_INPUT_FACTORY_SUPPLIER = Suppliers.memoize(XMLInputFactory::newInstance);
 
+    // substations parsed ahead of the network objects creation, see readSubstationsAhead
+    private static final int PARSED_SUBSTATIONS_BATCH_SIZE = 16;
+    private static final int PARSED_SUBSTATIONS_QUEUE_SIZE = 64;
+
+    private static final ThreadFactory PARSER_THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setNameFormat("xiidm-parser-%d")
+            .setDaemon(true)
+            .build();
+
     private static final Supplier<Map<String, ExtensionXml>> EXTENSIONS_SUPPLIER
             = Suppliers.memoize(() -> new ServiceLoaderCache<>(ExtensionXml.class).getServices().stream()
                     .collect(Collectors.toMap(extensionXml -> extensionXml.getExtensionName(), e -> e)));
@@ -243,6 +254,111 @@ public class NetworkXml implements XmlConstants {
         return read(is, new XmlImportConfig(), null);
     }
 
+    private static void readNetworkElement(Network network, XmlReaderContext context, Set<String> extensionNamesNotFound) throws XMLStreamException {
+        XMLStreamReader reader = context.getReader();
+        switch (reader.getLocalName()) {
+            case SubstationXml.ROOT_ELEMENT_NAME:
+                SubstationXml.INSTANCE.read(network, context);
+                break;
+
+            case LineXml.ROOT_ELEMENT_NAME:
+                LineXml.INSTANCE.read(network, context);
+                break;
+
+            case TieLineXml.ROOT_ELEMENT_NAME:
+                TieLineXml.INSTANCE.read(network, context);
+                break;
+
+            case EXTENSION_ELEMENT_NAME:
+                String id = context.getAnonymizer().deanonymizeString(reader.getAttributeValue(null, "id"));
+                Identifiable identifiable = network.getIdentifiable(id);
+                if (identifiable == null) {
+                    throw new RuntimeException("Identifiable " + id + " not found");
+                }
+                XmlUtil.readUntilEndElement(EXTENSION_ELEMENT_NAME, reader, () -> {
+                    String extensionName = reader.getLocalName();
+                    ExtensionXml extensionXml = findExtensionXml(extensionName);
+                    if (extensionXml != null) {
+                        Identifiable.Extension<? extends Identifiable<?>> extension = extensionXml.read(identifiable, context);
+                        identifiable.addExtension(extensionXml.getExtensionClass(), extension);
+                    } else {
+                        extensionNamesNotFound.add(extensionName);
+                    }
+                });
+                break;
+
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Read the leading substations of the document, parsing them on a separate thread while the
+     * network objects are created on the calling thread, which stays the only one to modify the
+     * network. On return, the reader of the context is positioned on the first element following
+     * the substations, or on the end element of the network.
+     */
+    private static void readSubstationsAhead(Network network, XmlReaderContext context) throws XMLStreamException {
+        XMLStreamReader reader = context.getReader();
+        BlockingQueue<List<XmlSubTree>> queue = new ArrayBlockingQueue<>(PARSED_SUBSTATIONS_QUEUE_SIZE);
+        ExecutorService executor = Executors.newSingleThreadExecutor(PARSER_THREAD_FACTORY);
+        try {
+            Future<?> parsing = executor.submit(() -> {
+                List<XmlSubTree> batch = new ArrayList<>(PARSED_SUBSTATIONS_BATCH_SIZE);
+                boolean interrupted = false;
+                try {
+                    int event;
+                    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            if (!SubstationXml.ROOT_ELEMENT_NAME.equals(reader.getLocalName())) {
+                                break;
+                            }
+                            batch.add(XmlSubTree.record(reader));
+                            if (batch.size() == PARSED_SUBSTATIONS_BATCH_SIZE) {
+                                queue.put(batch);
+                                batch = new ArrayList<>(PARSED_SUBSTATIONS_BATCH_SIZE);
+                            }
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        queue.put(batch);
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    throw e;
+                } finally {
+                    // an empty batch notifies the end of the substations, even on failure, unless
+                    // the substations reader has given up: it is not consuming the queue anymore
+                    // and the interruption has been cleared, the end could be waited forever
+                    if (!interrupted) {
+                        queue.put(Collections.emptyList());
+                    }
+                }
+                return null;
+            });
+
+            List<XmlSubTree> batch;
+            while (!(batch = queue.take()).isEmpty()) {
+                for (XmlSubTree substation : batch) {
+                    XmlReaderContext substationContext = new XmlReaderContext(context.getAnonymizer(), substation.newReader());
+                    SubstationXml.INSTANCE.read(network, substationContext);
+                    context.getEndTasks().addAll(substationContext.getEndTasks());
+                }
+            }
+            parsing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof XMLStreamException) {
+                throw (XMLStreamException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     public static Network read(InputStream is, XmlImportConfig config, Anonymizer anonymizer) {
         try {
             XMLStreamReader reader = XML_INPUT_FACTORY_SUPPLIER.get().createXMLStreamReader(is);
@@ -261,42 +377,17 @@ public class NetworkXml implements XmlConstants {
 
             Set<String> extensionNamesNotFound = new TreeSet<>();
 
-            XmlUtil.readUntilEndElement(NETWORK_ROOT_ELEMENT_NAME, reader, () -> {
-                switch (reader.getLocalName()) {
-                    case SubstationXml.ROOT_ELEMENT_NAME:
-                        SubstationXml.INSTANCE.read(network, context);
-                        break;
-
-                    case LineXml.ROOT_ELEMENT_NAME:
-                        LineXml.INSTANCE.read(network, context);
-                        break;
-
-                    case TieLineXml.ROOT_ELEMENT_NAME:
-                        TieLineXml.INSTANCE.read(network, context);
-                        break;
-
-                    case EXTENSION_ELEMENT_NAME:
-                        String id2 = context.getAnonymizer().deanonymizeString(reader.getAttributeValue(null, "id"));
-                        Identifiable identifiable = network.getIdentifiable(id2);
-                        if (identifiable == null) {
-                            throw new RuntimeException("Identifiable " + id2 + " not found");
-                        }
-                        XmlUtil.readUntilEndElement(EXTENSION_ELEMENT_NAME, reader, () -> {
-                            String extensionName = reader.getLocalName();
-                            ExtensionXml extensionXml = findExtensionXml(extensionName);
-                            if (extensionXml != null) {
-                                Identifiable.Extension<? extends Identifiable<?>> extension = extensionXml.read(identifiable, context);
-                                identifiable.addExtension(extensionXml.getExtensionClass(), extension);
-                            } else {
-                                extensionNamesNotFound.add(extensionName);
-                            }
-                        });
-                        break;
-
-                    default:
-                        throw new AssertionError();
+            if (config.isParallelParsing()) {
+                readSubstationsAhead(network, context);
+                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                    // substations are over, continue with the rest of the document on this thread
+                    readNetworkElement(network, context, extensionNamesNotFound);
                 }
-            });
+            }
+            if (reader.getEventType() != XMLStreamConstants.END_ELEMENT
+                    || !NETWORK_ROOT_ELEMENT_NAME.equals(reader.getLocalName())) {
+                XmlUtil.readUntilEndElement(NETWORK_ROOT_ELEMENT_NAME, reader, () -> readNetworkElement(network, context, extensionNamesNotFound));
+            }
 
             context.getEndTasks().forEach(Runnable::run);
 
@@ -400,6 +491,57 @@ public class NetworkXml implements XmlConstants {
         }
     }
 
+    /**
+     * Write only the state variables of the network (switch positions, connection status of terminals,
+     * tap positions, shunt sections, set points, flows and bus voltages), in a compact binary format to be read back with
+     * {@link #readState(Network, InputStream)} into a network with the same topology.
+     */
+    public static void writeState(Network network, OutputStream os) {
+        try {
+            StateVariables.write(network, os);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void writeState(Network network, Path file) {
+        try (OutputStream os = Files.newOutputStream(file)) {
+            writeState(network, os);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Update the state variables of the network from a file written by
+     * {@link #writeState(Network, OutputStream)}. The topology of the network has to be the same as
+     * the one of the network the state variables have been written for.
+     */
+    public static void readState(Network network, InputStream is) {
+        try {
+            StateVariables.read(network, is);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void readState(Network network, Path file) {
+        try (InputStream is = Files.newInputStream(file)) {
+            readState(network, is);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hash of the topology of the working state of the network, as written with its state variables by
+     * {@link #writeState(Network, OutputStream)}: state variables can only be read into a network with
+     * the same hash.
+     */
+    public static long getStateTopologyHash(Network network) {
+        return StateVariables.topologyHash(network);
+    }
+
     public static byte[] gzip(Network network) {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try (GZIPOutputStream gzos = new GZIPOutputStream(bos)) {
@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2016, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.iidm.xml;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import eu.itesla_project.iidm.network.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compact binary file of the state variables of a network: switch positions, connection status of
+ * bus/breaker topology terminals, tap positions, shunt sections, set points, flows and bus voltages.
+ * <p>
+ * Values are written without ids, in the order of the equipments sorted by id within each type.
+ * The file starts with a hash of the topology (ids of the equipments and switches, their
+ * connectivity and tap changers presence), which validates that order, so that the state can be
+ * read back in any network with the same topology, whatever the order of its equipments.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+final class StateVariables {
+
+    private static final int MAGIC = 0x49535456;
+
+    private static final int VERSION = 2;
+
+    private interface ValuesWriter<T> {
+        void write(T item, DataOutputStream dos) throws IOException;
+    }
+
+    private interface ValuesReader<T> {
+        void read(T item, DataInputStream dis) throws IOException;
+    }
+
+    private interface ShapeHasher<T> {
+        void hash(T item, Hasher hasher);
+    }
+
+    private static final class Category<T extends Identifiable> {
+
+        private final String name;
+
+        private final Function<Network, Iterable<T>> items;
+
+        // part of the topology hash beyond the ids, null if none
+        private final ShapeHasher<T> shape;
+
+        private final ValuesWriter<T> writer;
+
+        private final ValuesReader<T> reader;
+
+        private Category(String name, Function<Network, Iterable<T>> items, ShapeHasher<T> shape,
+                         ValuesWriter<T> writer, ValuesReader<T> reader) {
+            this.name = name;
+            this.items = items;
+            this.shape = shape;
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        private List<T> sortedItems(Network network) {
+            return StreamSupport.stream(items.apply(network).spliterator(), false)
+                    .sorted(Comparator.comparing(Identifiable::getId))
+                    .collect(Collectors.toList());
+        }
+
+        private void hash(Hasher hasher, List<T> sortedItems) {
+            hasher.putString(name, StandardCharsets.UTF_8).putInt(sortedItems.size());
+            for (T item : sortedItems) {
+                hasher.putString(item.getId(), StandardCharsets.UTF_8);
+                if (shape != null) {
+                    shape.hash(item, hasher);
+                }
+            }
+        }
+
+        private void write(List<T> sortedItems, DataOutputStream dos) throws IOException {
+            dos.writeInt(sortedItems.size());
+            for (T item : sortedItems) {
+                writer.write(item, dos);
+            }
+        }
+
+        private void read(List<T> sortedItems, DataInputStream dis) throws IOException {
+            int count = dis.readInt();
+            if (count != sortedItems.size()) {
+                throw new IOException("Unexpected number of " + name + ": " + count + ", " + sortedItems.size() + " expected");
+            }
+            for (T item : sortedItems) {
+                reader.read(item, dis);
+            }
+        }
+    }
+
+    private static Iterable<Switch> getSwitches(Network network) {
+        List<Switch> switches = new ArrayList<>();
+        for (VoltageLevel vl : network.getVoltageLevels()) {
+            switch (vl.getTopologyKind()) {
+                case NODE_BREAKER:
+                    vl.getNodeBreakerView().getSwitches().forEach(switches::add);
+                    break;
+                case BUS_BREAKER:
+                    vl.getBusBreakerView().getSwitches().forEach(switches::add);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+        return switches;
+    }
+
+    private static Iterable<Connectable> getConnectables(Network network) {
+        List<Connectable> connectables = new ArrayList<>();
+        network.getGenerators().forEach(connectables::add);
+        network.getLoads().forEach(connectables::add);
+        network.getShunts().forEach(connectables::add);
+        network.getDanglingLines().forEach(connectables::add);
+        network.getStaticVarCompensators().forEach(connectables::add);
+        network.getLines().forEach(connectables::add);
+        network.getTwoWindingsTransformers().forEach(connectables::add);
+        network.getThreeWindingsTransformers().forEach(connectables::add);
+        return connectables;
+    }
+
+    private static Iterable<Bus> getBuses(Network network) {
+        List<Bus> buses = new ArrayList<>();
+        for (VoltageLevel vl : network.getVoltageLevels()) {
+            if (vl.getTopologyKind() == TopologyKind.BUS_BREAKER) {
+                vl.getBusBreakerView().getBuses().forEach(buses::add);
+            }
+        }
+        return buses;
+    }
+
+    private static Iterable<BusbarSection> getBusbarSections(Network network) {
+        List<BusbarSection> busbarSections = new ArrayList<>();
+        for (VoltageLevel vl : network.getVoltageLevels()) {
+            if (vl.getTopologyKind() == TopologyKind.NODE_BREAKER) {
+                vl.getNodeBreakerView().getBusbarSections().forEach(busbarSections::add);
+            }
+        }
+        return busbarSections;
+    }
+
+    private static void hashSwitch(Switch s, Hasher hasher) {
+        VoltageLevel vl = s.getVoltageLevel();
+        switch (vl.getTopologyKind()) {
+            case NODE_BREAKER:
+                hasher.putInt(vl.getNodeBreakerView().getNode1(s.getId()))
+                      .putInt(vl.getNodeBreakerView().getNode2(s.getId()));
+                break;
+            case BUS_BREAKER:
+                hasher.putString(vl.getBusBreakerView().getBus1(s.getId()).getId(), StandardCharsets.UTF_8)
+                      .putString(vl.getBusBreakerView().getBus2(s.getId()).getId(), StandardCharsets.UTF_8);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static void hashTerminals(Connectable<?> connectable, Hasher hasher) {
+        for (Terminal terminal : connectable.getTerminals()) {
+            VoltageLevel vl = terminal.getVoltageLevel();
+            hasher.putString(vl.getId(), StandardCharsets.UTF_8);
+            switch (vl.getTopologyKind()) {
+                case NODE_BREAKER:
+                    hasher.putInt(terminal.getNodeBreakerView().getNode());
+                    break;
+                case BUS_BREAKER:
+                    hasher.putString(terminal.getBusBreakerView().getConnectableBus().getId(), StandardCharsets.UTF_8);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
+
+    // connection status of node/breaker topology terminals is given by the switches
+    private static void writeConnections(Connectable<?> connectable, DataOutputStream dos) throws IOException {
+        for (Terminal terminal : connectable.getTerminals()) {
+            if (terminal.getVoltageLevel().getTopologyKind() == TopologyKind.BUS_BREAKER) {
+                dos.writeBoolean(terminal.isConnected());
+            }
+        }
+    }
+
+    private static void readConnections(Connectable<?> connectable, DataInputStream dis) throws IOException {
+        for (Terminal terminal : connectable.getTerminals()) {
+            if (terminal.getVoltageLevel().getTopologyKind() == TopologyKind.BUS_BREAKER) {
+                if (dis.readBoolean()) {
+                    terminal.connect();
+                } else {
+                    terminal.disconnect();
+                }
+            }
+        }
+    }
+
+    private static void writeFlow(Terminal terminal, DataOutputStream dos) throws IOException {
+        dos.writeFloat(terminal.getP());
+        dos.writeFloat(terminal.getQ());
+    }
+
+    private static void readFlow(Terminal terminal, DataInputStream dis) throws IOException {
+        terminal.setP(dis.readFloat()).setQ(dis.readFloat());
+    }
+
+    private static void writeTapPosition(TapChanger<?, ?> tapChanger, DataOutputStream dos) throws IOException {
+        if (tapChanger != null) {
+            dos.writeInt(tapChanger.getTapPosition());
+        }
+    }
+
+    private static void readTapPosition(TapChanger<?, ?> tapChanger, DataInputStream dis) throws IOException {
+        if (tapChanger != null) {
+            tapChanger.setTapPosition(dis.readInt());
+        }
+    }
+
+    private static void writeGenerator(Generator g, DataOutputStream dos) throws IOException {
+        dos.writeFloat(g.getTargetP());
+        dos.writeFloat(g.getTargetQ());
+        dos.writeFloat(g.getTargetV());
+        dos.writeBoolean(g.isVoltageRegulatorOn());
+        writeFlow(g.getTerminal(), dos);
+    }
+
+    private static void readGenerator(Generator g, DataInputStream dis) throws IOException {
+        float targetP = dis.readFloat();
+        float targetQ = dis.readFloat();
+        float targetV = dis.readFloat();
+        boolean voltageRegulatorOn = dis.readBoolean();
+        // the set point required by the new regulation status is updated first, so that each step is valid
+        g.setTargetP(targetP);
+        if (voltageRegulatorOn) {
+            g.setTargetV(targetV).setVoltageRegulatorOn(true).setTargetQ(targetQ);
+        } else {
+            g.setTargetQ(targetQ).setVoltageRegulatorOn(false).setTargetV(targetV);
+        }
+        readFlow(g.getTerminal(), dis);
+    }
+
+    private static void writeStaticVarCompensator(StaticVarCompensator svc, DataOutputStream dos) throws IOException {
+        dos.writeFloat(svc.getVoltageSetPoint());
+        dos.writeFloat(svc.getReactivePowerSetPoint());
+        dos.writeUTF(svc.getRegulationMode().name());
+        writeFlow(svc.getTerminal(), dos);
+    }
+
+    private static void readStaticVarCompensator(StaticVarCompensator svc, DataInputStream dis) throws IOException {
+        float voltageSetPoint = dis.readFloat();
+        float reactivePowerSetPoint = dis.readFloat();
+        StaticVarCompensator.RegulationMode regulationMode = StaticVarCompensator.RegulationMode.valueOf(dis.readUTF());
+        // set points are not checked while the regulation is off
+        svc.setRegulationMode(StaticVarCompensator.RegulationMode.OFF)
+                .setVoltageSetPoint(voltageSetPoint)
+                .setReactivePowerSetPoint(reactivePowerSetPoint)
+                .setRegulationMode(regulationMode);
+        readFlow(svc.getTerminal(), dis);
+    }
+
+    // in application order: topology first so that the bus view of busbar sections is up to date
+    private static final List<Category<?>> CATEGORIES = Collections.unmodifiableList(Arrays.asList(
+            new Category<>("switches", StateVariables::getSwitches, StateVariables::hashSwitch,
+                (s, dos) -> dos.writeBoolean(s.isOpen()),
+                (s, dis) -> s.setOpen(dis.readBoolean())),
+            new Category<Connectable>("terminals", StateVariables::getConnectables, StateVariables::hashTerminals,
+                StateVariables::writeConnections,
+                StateVariables::readConnections),
+            new Category<>("buses", StateVariables::getBuses, null,
+                (b, dos) -> {
+                    dos.writeFloat(b.getV());
+                    dos.writeFloat(b.getAngle());
+                },
+                (b, dis) -> b.setV(dis.readFloat()).setAngle(dis.readFloat())),
+            // voltages of node/breaker topology buses are kept on busbar sections as bus ids are not stable
+            new Category<>("busbar sections", StateVariables::getBusbarSections, null,
+                (bbs, dos) -> {
+                    dos.writeFloat(bbs.getV());
+                    dos.writeFloat(bbs.getAngle());
+                },
+                (bbs, dis) -> {
+                    float v = dis.readFloat();
+                    float angle = dis.readFloat();
+                    Bus b = bbs.getTerminal().getBusView().getBus();
+                    if (b != null) {
+                        b.setV(v).setAngle(angle);
+                    }
+                }),
+            new Category<>("generators", Network::getGenerators, null,
+                StateVariables::writeGenerator,
+                StateVariables::readGenerator),
+            new Category<>("loads", Network::getLoads, null,
+                (l, dos) -> {
+                    dos.writeFloat(l.getP0());
+                    dos.writeFloat(l.getQ0());
+                    writeFlow(l.getTerminal(), dos);
+                },
+                (l, dis) -> {
+                    l.setP0(dis.readFloat()).setQ0(dis.readFloat());
+                    readFlow(l.getTerminal(), dis);
+                }),
+            new Category<>("shunts", Network::getShunts, null,
+                (sc, dos) -> {
+                    dos.writeInt(sc.getCurrentSectionCount());
+                    writeFlow(sc.getTerminal(), dos);
+                },
+                (sc, dis) -> {
+                    sc.setCurrentSectionCount(dis.readInt());
+                    readFlow(sc.getTerminal(), dis);
+                }),
+            new Category<>("dangling lines", Network::getDanglingLines, null,
+                (dl, dos) -> {
+                    dos.writeFloat(dl.getP0());
+                    dos.writeFloat(dl.getQ0());
+                    writeFlow(dl.getTerminal(), dos);
+                },
+                (dl, dis) -> {
+                    dl.setP0(dis.readFloat()).setQ0(dis.readFloat());
+                    readFlow(dl.getTerminal(), dis);
+                }),
+            new Category<>("static var compensators", Network::getStaticVarCompensators, null,
+                StateVariables::writeStaticVarCompensator,
+                StateVariables::readStaticVarCompensator),
+            new Category<>("lines", Network::getLines, null,
+                (l, dos) -> {
+                    writeFlow(l.getTerminal1(), dos);
+                    writeFlow(l.getTerminal2(), dos);
+                },
+                (l, dis) -> {
+                    readFlow(l.getTerminal1(), dis);
+                    readFlow(l.getTerminal2(), dis);
+                }),
+            new Category<>("two windings transformers", Network::getTwoWindingsTransformers,
+                (t, hasher) -> hasher.putBoolean(t.getRatioTapChanger() != null).putBoolean(t.getPhaseTapChanger() != null),
+                (t, dos) -> {
+                    writeTapPosition(t.getRatioTapChanger(), dos);
+                    writeTapPosition(t.getPhaseTapChanger(), dos);
+                    writeFlow(t.getTerminal1(), dos);
+                    writeFlow(t.getTerminal2(), dos);
+                },
+                (t, dis) -> {
+                    readTapPosition(t.getRatioTapChanger(), dis);
+                    readTapPosition(t.getPhaseTapChanger(), dis);
+                    readFlow(t.getTerminal1(), dis);
+                    readFlow(t.getTerminal2(), dis);
+                }),
+            new Category<>("three windings transformers", Network::getThreeWindingsTransformers,
+                (t, hasher) -> hasher.putBoolean(t.getLeg2().getRatioTapChanger() != null).putBoolean(t.getLeg3().getRatioTapChanger() != null),
+                (t, dos) -> {
+                    writeTapPosition(t.getLeg2().getRatioTapChanger(), dos);
+                    writeTapPosition(t.getLeg3().getRatioTapChanger(), dos);
+                    writeFlow(t.getLeg1().getTerminal(), dos);
+                    writeFlow(t.getLeg2().getTerminal(), dos);
+                    writeFlow(t.getLeg3().getTerminal(), dos);
+                },
+                (t, dis) -> {
+                    readTapPosition(t.getLeg2().getRatioTapChanger(), dis);
+                    readTapPosition(t.getLeg3().getRatioTapChanger(), dis);
+                    readFlow(t.getLeg1().getTerminal(), dis);
+                    readFlow(t.getLeg2().getTerminal(), dis);
+                    readFlow(t.getLeg3().getTerminal(), dis);
+                })
+    ));
+
+    private StateVariables() {
+    }
+
+    private static List<List<? extends Identifiable>> sortedItems(Network network) {
+        List<List<? extends Identifiable>> sortedItems = new ArrayList<>(CATEGORIES.size());
+        for (Category<?> category : CATEGORIES) {
+            sortedItems.add(category.sortedItems(network));
+        }
+        return sortedItems;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Identifiable> Category<T> category(int index) {
+        return (Category<T>) CATEGORIES.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Identifiable> List<T> items(List<List<? extends Identifiable>> sortedItems, int index) {
+        return (List<T>) sortedItems.get(index);
+    }
+
+    private static long topologyHash(List<List<? extends Identifiable>> sortedItems) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (int i = 0; i < CATEGORIES.size(); i++) {
+            category(i).hash(hasher, items(sortedItems, i));
+        }
+        return hasher.hash().asLong();
+    }
+
+    static long topologyHash(Network network) {
+        Objects.requireNonNull(network);
+        return topologyHash(sortedItems(network));
+    }
+
+    static void write(Network network, OutputStream os) throws IOException {
+        Objects.requireNonNull(network);
+        List<List<? extends Identifiable>> sortedItems = sortedItems(network);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+        dos.writeInt(MAGIC);
+        dos.writeByte(VERSION);
+        dos.writeUTF(network.getId());
+        dos.writeLong(topologyHash(sortedItems));
+        for (int i = 0; i < CATEGORIES.size(); i++) {
+            category(i).write(items(sortedItems, i), dos);
+        }
+        dos.flush();
+    }
+
+    static void read(Network network, InputStream is) throws IOException {
+        Objects.requireNonNull(network);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a network state variables file");
+        }
+        int version = dis.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported network state variables version " + version);
+        }
+        String networkId = dis.readUTF();
+        long topologyHash = dis.readLong();
+        List<List<? extends Identifiable>> sortedItems = sortedItems(network);
+        if (topologyHash != topologyHash(sortedItems)) {
+            throw new IOException("Topology of network '" + network.getId() + "' differs from the one of the state variables of network '"
+                    + networkId + "'");
+        }
+        for (int i = 0; i < CATEGORIES.size(); i++) {
+            category(i).read(items(sortedItems, i), dis);
+        }
+    }
+}
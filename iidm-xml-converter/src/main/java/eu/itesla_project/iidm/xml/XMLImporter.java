@@ -47,6 +47,9 @@ public class XMLImporter implements Importer, XmlConstants {
     private static final Parameter THROW_EXCEPTION_IF_EXTENSION_NOT_FOUND
             = new Parameter("throwExceptionIfExtensionNotFound", ParameterType.BOOLEAN, "Throw exception if extension not found", Boolean.FALSE);
 
+    private static final Parameter PARALLEL_PARSING
+            = new Parameter("parallelParsing", ParameterType.BOOLEAN, "Parse substations on a separate thread while creating the network", Boolean.FALSE);
+
     @Override
     public String getFormat() {
         return "XIIDM";
@@ -59,7 +62,7 @@ public class XMLImporter implements Importer, XmlConstants {
 
     @Override
     public List<Parameter> getParameters() {
-        return Arrays.asList(THROW_EXCEPTION_IF_EXTENSION_NOT_FOUND);
+        return Arrays.asList(THROW_EXCEPTION_IF_EXTENSION_NOT_FOUND, PARALLEL_PARSING);
     }
 
     @Override
@@ -122,6 +125,7 @@ public class XMLImporter implements Importer, XmlConstants {
                         + "." + Joiner.on("|").join(EXTENSIONS) + " not found");
             }
             boolean throwExceptionIfExtensionNotFound = (Boolean) Importers.readParameter(getFormat(), parameters, THROW_EXCEPTION_IF_EXTENSION_NOT_FOUND);
+            boolean parallelParsing = (Boolean) Importers.readParameter(getFormat(), parameters, PARALLEL_PARSING);
             Anonymizer anonymizer = null;
             if (dataSource.exists("_mapping", "csv")) {
                 anonymizer = new SimpleAnonymizer();
@@ -130,7 +134,7 @@ public class XMLImporter implements Importer, XmlConstants {
                 }
             }
             try (InputStream is = dataSource.newInputStream(null, ext)) {
-                network = NetworkXml.read(is, new XmlImportConfig(throwExceptionIfExtensionNotFound), anonymizer);
+                network = NetworkXml.read(is, new XmlImportConfig(throwExceptionIfExtensionNotFound, parallelParsing), anonymizer);
             }
             LOGGER.debug("XIIDM import done in {} ms", (System.currentTimeMillis() - startTime));
         } catch (IOException e) {
@@ -13,12 +13,19 @@ public class XmlImportConfig {
 
     private boolean throwExceptionIfExtensionNotFound;
 
+    private boolean parallelParsing;
+
     public XmlImportConfig() {
         this(false);
     }
 
     public XmlImportConfig(boolean throwExceptionIfExtensionNotFound) {
+        this(throwExceptionIfExtensionNotFound, false);
+    }
+
+    public XmlImportConfig(boolean throwExceptionIfExtensionNotFound, boolean parallelParsing) {
         this.throwExceptionIfExtensionNotFound = throwExceptionIfExtensionNotFound;
+        this.parallelParsing = parallelParsing;
     }
 
     public boolean isThrowExceptionIfExtensionNotFound() {
@@ -28,4 +35,15 @@ public class XmlImportConfig {
     public void setThrowExceptionIfExtensionNotFound(boolean throwExceptionIfExtensionNotFound) {
         this.throwExceptionIfExtensionNotFound = throwExceptionIfExtensionNotFound;
     }
+
+    /**
+     * If true, substations are parsed on a separate thread while the network objects are created.
+     */
+    public boolean isParallelParsing() {
+        return parallelParsing;
+    }
+
+    public void setParallelParsing(boolean parallelParsing) {
+        this.parallelParsing = parallelParsing;
+    }
 }
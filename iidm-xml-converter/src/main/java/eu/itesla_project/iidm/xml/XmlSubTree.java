@@ -0,0 +1,459 @@
+/**
+ * Copyright (c) 2016, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.iidm.xml;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Element sub-tree recorded from a stream reader as a flat list of start element, end element and
+ * text events, so that it can be parsed on a thread and replayed later on another one through the
+ * regular element readers.
+ * Comments and processing instructions are dropped, namespace declarations are not kept.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+final class XmlSubTree {
+
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    private static final class Event {
+
+        private final int type;
+
+        private final String namespaceUri;
+
+        private final String prefix;
+
+        private final String localName;
+
+        // attribute namespace URI, prefix, local name and value, in sequence
+        private final String[] attributes;
+
+        private final String text;
+
+        private Event(int type, String namespaceUri, String prefix, String localName, String[] attributes, String text) {
+            this.type = type;
+            this.namespaceUri = namespaceUri;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.attributes = attributes;
+            this.text = text;
+        }
+    }
+
+    private final List<Event> events;
+
+    private XmlSubTree(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Record the sub-tree of the element the reader is positioned on. The reader is left on the end
+     * element of the sub-tree, as after a call to {@link XmlUtil#readUntilEndElement}.
+     */
+    static XmlSubTree record(XMLStreamReader reader) throws XMLStreamException {
+        if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Reader is not positioned on a start element");
+        }
+        List<Event> events = new ArrayList<>();
+        int depth = 0;
+        int event = reader.getEventType();
+        while (true) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    events.add(startElement(reader));
+                    depth++;
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    events.add(new Event(event, reader.getNamespaceURI(), reader.getPrefix(), reader.getLocalName(), NO_ATTRIBUTES, null));
+                    depth--;
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    events.add(new Event(XMLStreamConstants.CHARACTERS, null, null, null, NO_ATTRIBUTES, reader.getText()));
+                    break;
+
+                default:
+                    break;
+            }
+            if (depth == 0) {
+                return new XmlSubTree(events);
+            }
+            event = reader.next();
+        }
+    }
+
+    private static Event startElement(XMLStreamReader reader) {
+        int attributeCount = reader.getAttributeCount();
+        String[] attributes = NO_ATTRIBUTES;
+        if (attributeCount > 0) {
+            attributes = new String[attributeCount * 4];
+            for (int i = 0; i < attributeCount; i++) {
+                attributes[i * 4] = reader.getAttributeNamespace(i);
+                attributes[i * 4 + 1] = reader.getAttributePrefix(i);
+                attributes[i * 4 + 2] = reader.getAttributeLocalName(i);
+                attributes[i * 4 + 3] = reader.getAttributeValue(i);
+            }
+        }
+        return new Event(XMLStreamConstants.START_ELEMENT, reader.getNamespaceURI(), reader.getPrefix(), reader.getLocalName(), attributes, null);
+    }
+
+    /**
+     * @return a new reader over the recorded events, positioned on the start element of the sub-tree
+     */
+    XMLStreamReader newReader() {
+        return new Reader();
+    }
+
+    private final class Reader implements XMLStreamReader {
+
+        private int index = 0;
+
+        private Event current() {
+            return events.get(index);
+        }
+
+        private Event currentElement() {
+            Event event = current();
+            if (event.type != XMLStreamConstants.START_ELEMENT && event.type != XMLStreamConstants.END_ELEMENT) {
+                throw new IllegalStateException("Current event is not an element");
+            }
+            return event;
+        }
+
+        private Event currentStartElement() {
+            Event event = current();
+            if (event.type != XMLStreamConstants.START_ELEMENT) {
+                throw new IllegalStateException("Current event is not a start element");
+            }
+            return event;
+        }
+
+        private Event currentText() {
+            Event event = current();
+            if (event.type != XMLStreamConstants.CHARACTERS) {
+                throw new IllegalStateException("Current event is not a text");
+            }
+            return event;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return null;
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            if (index + 1 >= events.size()) {
+                throw new NoSuchElementException("End of the recorded sub-tree");
+            }
+            return events.get(++index).type;
+        }
+
+        @Override
+        public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+            Event event = current();
+            if (event.type != type
+                    || (namespaceURI != null && !namespaceURI.equals(event.namespaceUri))
+                    || (localName != null && !localName.equals(event.localName))) {
+                throw new XMLStreamException("Unexpected event " + event.type + " " + event.localName);
+            }
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Current event is not a start element");
+            }
+            StringBuilder text = new StringBuilder();
+            int event;
+            while ((event = next()) != XMLStreamConstants.END_ELEMENT) {
+                if (event != XMLStreamConstants.CHARACTERS) {
+                    throw new XMLStreamException("Element text only expected");
+                }
+                text.append(current().text);
+            }
+            return text.toString();
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+            int event = next();
+            while (event == XMLStreamConstants.CHARACTERS && isWhiteSpace()) {
+                event = next();
+            }
+            if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+                throw new XMLStreamException("Start or end element expected");
+            }
+            return event;
+        }
+
+        @Override
+        public boolean hasNext() throws XMLStreamException {
+            return index + 1 < events.size();
+        }
+
+        @Override
+        public void close() throws XMLStreamException {
+            // nothing to release
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            Objects.requireNonNull(prefix);
+            for (int i = index; i >= 0; i--) {
+                Event event = events.get(i);
+                if (prefix.equals(event.prefix)) {
+                    return event.namespaceUri;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isStartElement() {
+            return getEventType() == XMLStreamConstants.START_ELEMENT;
+        }
+
+        @Override
+        public boolean isEndElement() {
+            return getEventType() == XMLStreamConstants.END_ELEMENT;
+        }
+
+        @Override
+        public boolean isCharacters() {
+            return getEventType() == XMLStreamConstants.CHARACTERS;
+        }
+
+        @Override
+        public boolean isWhiteSpace() {
+            return isCharacters() && current().text.trim().isEmpty();
+        }
+
+        @Override
+        public String getAttributeValue(String namespaceURI, String localName) {
+            String[] attributes = currentStartElement().attributes;
+            for (int i = 0; i < attributes.length; i += 4) {
+                if (attributes[i + 2].equals(localName)
+                        && (namespaceURI == null || namespaceURI.equals(attributes[i]))) {
+                    return attributes[i + 3];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            return currentStartElement().attributes.length / 4;
+        }
+
+        @Override
+        public QName getAttributeName(int index) {
+            String[] attributes = currentStartElement().attributes;
+            return new QName(nullToEmpty(attributes[index * 4]), attributes[index * 4 + 2], nullToEmpty(attributes[index * 4 + 1]));
+        }
+
+        @Override
+        public String getAttributeNamespace(int index) {
+            return currentStartElement().attributes[index * 4];
+        }
+
+        @Override
+        public String getAttributeLocalName(int index) {
+            return currentStartElement().attributes[index * 4 + 2];
+        }
+
+        @Override
+        public String getAttributePrefix(int index) {
+            return currentStartElement().attributes[index * 4 + 1];
+        }
+
+        @Override
+        public String getAttributeType(int index) {
+            currentStartElement();
+            return "CDATA";
+        }
+
+        @Override
+        public String getAttributeValue(int index) {
+            return currentStartElement().attributes[index * 4 + 3];
+        }
+
+        @Override
+        public boolean isAttributeSpecified(int index) {
+            currentStartElement();
+            return true;
+        }
+
+        @Override
+        public int getNamespaceCount() {
+            currentElement();
+            return 0;
+        }
+
+        @Override
+        public String getNamespacePrefix(int index) {
+            throw new IndexOutOfBoundsException("Namespace declarations are not recorded");
+        }
+
+        @Override
+        public String getNamespaceURI(int index) {
+            throw new IndexOutOfBoundsException("Namespace declarations are not recorded");
+        }
+
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            throw new UnsupportedOperationException("Namespace declarations are not recorded");
+        }
+
+        @Override
+        public int getEventType() {
+            return current().type;
+        }
+
+        @Override
+        public String getText() {
+            return currentText().text;
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            return getText().toCharArray();
+        }
+
+        @Override
+        public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) throws XMLStreamException {
+            String text = getText();
+            int count = Math.min(length, text.length() - sourceStart);
+            text.getChars(sourceStart, sourceStart + count, target, targetStart);
+            return count;
+        }
+
+        @Override
+        public int getTextStart() {
+            currentText();
+            return 0;
+        }
+
+        @Override
+        public int getTextLength() {
+            return getText().length();
+        }
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean hasText() {
+            return isCharacters();
+        }
+
+        @Override
+        public Location getLocation() {
+            return new Location() {
+                @Override
+                public int getLineNumber() {
+                    return -1;
+                }
+
+                @Override
+                public int getColumnNumber() {
+                    return -1;
+                }
+
+                @Override
+                public int getCharacterOffset() {
+                    return -1;
+                }
+
+                @Override
+                public String getPublicId() {
+                    return null;
+                }
+
+                @Override
+                public String getSystemId() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public QName getName() {
+            Event event = currentElement();
+            return new QName(nullToEmpty(event.namespaceUri), event.localName, nullToEmpty(event.prefix));
+        }
+
+        @Override
+        public String getLocalName() {
+            return currentElement().localName;
+        }
+
+        @Override
+        public boolean hasName() {
+            return isStartElement() || isEndElement();
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            return currentElement().namespaceUri;
+        }
+
+        @Override
+        public String getPrefix() {
+            return currentElement().prefix;
+        }
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public boolean isStandalone() {
+            return false;
+        }
+
+        @Override
+        public boolean standaloneSet() {
+            return false;
+        }
+
+        @Override
+        public String getCharacterEncodingScheme() {
+            return null;
+        }
+
+        @Override
+        public String getPITarget() {
+            return null;
+        }
+
+        @Override
+        public String getPIData() {
+            return null;
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+}
@@ -7,13 +7,20 @@
 package eu.itesla_project.iidm.xml;
 
 import eu.itesla_project.commons.ConverterBaseTest;
+import eu.itesla_project.iidm.network.Country;
 import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.NetworkFactory;
+import eu.itesla_project.iidm.network.StateManager;
 import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.iidm.network.test.NetworkTest1Factory;
 import org.joda.time.DateTime;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -54,4 +61,183 @@ public class NetworkXmlTest extends ConverterBaseTest {
         NetworkXml.write(network2, file2);
         assertArrayEquals(Files.readAllBytes(file1), Files.readAllBytes(file2));
     }
-}
\ No newline at end of file
+
+    private void checkParallelParsing(Network network) throws IOException {
+        Path file = tmpDir.resolve("n.xml");
+        NetworkXml.write(network, file);
+        Network network2;
+        try (InputStream is = Files.newInputStream(file)) {
+            network2 = NetworkXml.read(is, new XmlImportConfig(true, true), null);
+        }
+        Path file2 = tmpDir.resolve("n2.xml");
+        NetworkXml.write(network2, file2);
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(file2));
+    }
+
+    @Test
+    public void testParallelParsing() throws IOException {
+        Network network = createEurostagTutorialExample1();
+        network.getSubstation("P1").getProperties().setProperty("test", "foo");
+        network.getGenerator("GEN").getProperties().setProperty("test", "bar");
+        checkParallelParsing(network);
+    }
+
+    @Test
+    public void testParallelParsingWithoutLines() throws IOException {
+        checkParallelParsing(NetworkTest1Factory.create());
+    }
+
+    private static boolean isParserThreadAlive(Thread.State state) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().startsWith("xiidm-parser-") && (state == null || t.getState() == state));
+    }
+
+    @Test
+    public void testParallelParsingFailure() throws Exception {
+        // more substations than the parser can queue ahead
+        Network network = NetworkFactory.create("test", "test");
+        for (int i = 0; i < 2000; i++) {
+            network.newSubstation()
+                    .setId("S" + i)
+                    .setCountry(Country.FR)
+                .add();
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.write(network, bos);
+        // reading of the first substation fails once the parser is blocked on the full queue
+        Anonymizer anonymizer = new SimpleAnonymizer() {
+            @Override
+            public String deanonymizeString(String str) {
+                if ("S0".equals(str)) {
+                    long deadline = System.currentTimeMillis() + 10000;
+                    while (!isParserThreadAlive(Thread.State.WAITING) && System.currentTimeMillis() < deadline) {
+                        Thread.yield();
+                    }
+                    throw new RuntimeException("Reading failure");
+                }
+                return str;
+            }
+        };
+        try {
+            NetworkXml.read(new ByteArrayInputStream(bos.toByteArray()), new XmlImportConfig(true, true), anonymizer);
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+        // the parser thread has stopped
+        long deadline = System.currentTimeMillis() + 10000;
+        while (isParserThreadAlive(null)) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testStateRoundTrip() {
+        Network network = createEurostagTutorialExample1();
+        network.getVoltageLevel("VLHV1").getBusBreakerView().getBus("NHV1").setV(402.1f).setAngle(-2.5f);
+        network.getGenerator("GEN").getTerminal().setP(-605f).setQ(-225f);
+        network.getLoad("LOAD").getTerminal().setP(600f).setQ(200f);
+        network.getLine("NHV1_NHV2_1").getTerminal1().setP(302.4f).setQ(98.7f);
+        network.getLine("NHV1_NHV2_1").getTerminal2().setP(-300.4f).setQ(-137.2f);
+        network.getTwoWindingsTransformer("NHV2_NLOAD").getRatioTapChanger().setTapPosition(2);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.writeState(network, bos);
+
+        Network network2 = createEurostagTutorialExample1();
+        NetworkXml.readState(network2, new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(402.1f, network2.getVoltageLevel("VLHV1").getBusBreakerView().getBus("NHV1").getV(), 0f);
+        assertEquals(-2.5f, network2.getVoltageLevel("VLHV1").getBusBreakerView().getBus("NHV1").getAngle(), 0f);
+        assertEquals(-605f, network2.getGenerator("GEN").getTerminal().getP(), 0f);
+        assertEquals(-225f, network2.getGenerator("GEN").getTerminal().getQ(), 0f);
+        assertEquals(600f, network2.getLoad("LOAD").getTerminal().getP(), 0f);
+        assertEquals(200f, network2.getLoad("LOAD").getTerminal().getQ(), 0f);
+        assertEquals(302.4f, network2.getLine("NHV1_NHV2_1").getTerminal1().getP(), 0f);
+        assertEquals(-137.2f, network2.getLine("NHV1_NHV2_1").getTerminal2().getQ(), 0f);
+        assertTrue(Float.isNaN(network2.getLine("NHV1_NHV2_2").getTerminal1().getP()));
+        assertEquals(2, network2.getTwoWindingsTransformer("NHV2_NLOAD").getRatioTapChanger().getTapPosition());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testStateTopologyMismatch() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.writeState(createEurostagTutorialExample1(), bos);
+        Network network2 = createEurostagTutorialExample1();
+        network2.getLine("NHV1_NHV2_2").remove();
+        NetworkXml.readState(network2, new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    private static Network readState(byte[] state, Network network) {
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "s1");
+        network.getStateManager().setWorkingState("s1");
+        NetworkXml.readState(network, new ByteArrayInputStream(state));
+        return network;
+    }
+
+    @Test
+    public void testStateTrippedBranch() {
+        Network network = createEurostagTutorialExample1();
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "s1");
+        network.getStateManager().setWorkingState("s1");
+        network.getLine("NHV1_NHV2_1").getTerminal1().disconnect();
+        network.getLine("NHV1_NHV2_1").getTerminal2().disconnect();
+        network.getLoad("LOAD").setP0(700f).setQ0(250f);
+        network.getGenerator("GEN").setTargetP(710f).setTargetQ(310f).setVoltageRegulatorOn(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.writeState(network, bos);
+
+        Network network2 = readState(bos.toByteArray(), createEurostagTutorialExample1());
+        assertFalse(network2.getLine("NHV1_NHV2_1").getTerminal1().isConnected());
+        assertFalse(network2.getLine("NHV1_NHV2_1").getTerminal2().isConnected());
+        assertTrue(network2.getLine("NHV1_NHV2_2").getTerminal1().isConnected());
+        assertEquals(700f, network2.getLoad("LOAD").getP0(), 0f);
+        assertEquals(250f, network2.getLoad("LOAD").getQ0(), 0f);
+        assertEquals(710f, network2.getGenerator("GEN").getTargetP(), 0f);
+        assertEquals(310f, network2.getGenerator("GEN").getTargetQ(), 0f);
+        assertFalse(network2.getGenerator("GEN").isVoltageRegulatorOn());
+
+        // the initial state is not modified
+        network2.getStateManager().setWorkingState(StateManager.INITIAL_STATE_ID);
+        assertTrue(network2.getLine("NHV1_NHV2_1").getTerminal1().isConnected());
+        assertTrue(network2.getGenerator("GEN").isVoltageRegulatorOn());
+
+        // and can be restored back
+        bos.reset();
+        NetworkXml.writeState(network2, bos);
+        network2.getStateManager().setWorkingState("s1");
+        NetworkXml.readState(network2, new ByteArrayInputStream(bos.toByteArray()));
+        assertTrue(network2.getLine("NHV1_NHV2_1").getTerminal2().isConnected());
+        assertTrue(network2.getGenerator("GEN").isVoltageRegulatorOn());
+    }
+
+    @Test
+    public void testNodeBreakerStateRoundTrip() {
+        Network network = NetworkTest1Factory.create();
+        network.getVoltageLevel("voltageLevel1").getNodeBreakerView().getSwitch("generator1Breaker1").setOpen(true);
+        network.getLoad("load1").getTerminal().setP(10f).setQ(3f);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.writeState(network, bos);
+
+        Network network2 = readState(bos.toByteArray(), NetworkTest1Factory.create());
+        assertTrue(network2.getVoltageLevel("voltageLevel1").getNodeBreakerView().getSwitch("generator1Breaker1").isOpen());
+        assertFalse(network2.getGenerator("generator1").getTerminal().isConnected());
+        assertEquals(10f, network2.getLoad("load1").getTerminal().getP(), 0f);
+    }
+
+    private static Network createEurostagTutorialExample1WithSpareBus() {
+        Network network = createEurostagTutorialExample1();
+        network.getVoltageLevel("VLLOAD").getBusBreakerView().newBus()
+                .setId("NLOAD2")
+            .add();
+        return network;
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testStateConnectivityMismatch() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        NetworkXml.writeState(createEurostagTutorialExample1WithSpareBus(), bos);
+        // same equipments, connected to another bus
+        Network network2 = createEurostagTutorialExample1WithSpareBus();
+        network2.getLoad("LOAD").getTerminal().getBusBreakerView().setConnectableBus("NLOAD2");
+        NetworkXml.readState(network2, new ByteArrayInputStream(bos.toByteArray()));
+    }
+}
@@ -259,6 +259,7 @@ echo "#itesla_config_dir=" >> $installDir/etc/itesla.conf
 echo "itesla_config_name=config" >> $installDir/etc/itesla.conf
 echo "mpi_tasks=3" >> $installDir/etc/itesla.conf
 echo "mpi_hosts=localhost" >> $installDir/etc/itesla.conf
+echo "#mpi_compress_task_files=true" >> $installDir/etc/itesla.conf
 else
 echo "*** Configuration file " $installDir/etc/itesla.conf " already exists: it will not be replaced."
 fi
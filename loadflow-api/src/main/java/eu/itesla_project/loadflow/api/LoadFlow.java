@@ -8,7 +8,9 @@ package eu.itesla_project.loadflow.api;
 
 import eu.itesla_project.commons.Versionable;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -24,4 +26,21 @@ public interface LoadFlow extends Versionable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Run a load flow on each of the states. Implementations able to solve several cases in
+     * one run should override this method so that the setup cost (network export, process
+     * launch...) is paid once for the batch. By default, one load flow is run per state.
+     *
+     * @param stateIds the states to compute
+     * @param parameters the load flow parameters, common to all the states
+     * @return the results, in the same order as the states
+     */
+    default CompletableFuture<List<LoadFlowResult>> runBatchAsync(List<String> stateIds, LoadFlowParameters parameters) {
+        List<CompletableFuture<LoadFlowResult>> futures = stateIds.stream()
+                .map(stateId -> runAsync(stateId, parameters))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .thenApply(aVoid -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
 }
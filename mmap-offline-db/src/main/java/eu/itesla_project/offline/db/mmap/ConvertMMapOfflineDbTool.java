@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import com.google.auto.service.AutoService;
+import eu.itesla_project.commons.tools.Command;
+import eu.itesla_project.commons.tools.Tool;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+@AutoService(Tool.class)
+public class ConvertMMapOfflineDbTool implements Tool {
+
+    @Override
+    public Command getCommand() {
+        return new Command() {
+            @Override
+            public String getName() {
+                return "convert-mmap-offline-db";
+            }
+
+            @Override
+            public String getTheme() {
+                return "Offline DB";
+            }
+
+            @Override
+            public String getDescription() {
+                return "convert the table format of memory mapped offline db workflows";
+            }
+
+            @Override
+            public Options getOptions() {
+                Options options = new Options();
+                options.addOption(Option.builder().longOpt("db-name")
+                        .desc("the offline db name")
+                        .hasArg()
+                        .argName("NAME")
+                        .required()
+                        .build());
+                options.addOption(Option.builder().longOpt("workflow")
+                        .desc("the workflow id (all workflows if not specified)")
+                        .hasArg()
+                        .argName("ID")
+                        .build());
+                options.addOption(Option.builder().longOpt("format")
+                        .desc("the new table format")
+                        .hasArg()
+                        .argName("FORMAT")
+                        .required()
+                        .build());
+                return options;
+            }
+
+            @Override
+            public String getUsageFooter() {
+                return "Where FORMAT is one of " + Arrays.toString(OfflineDbTableFormat.values());
+            }
+        };
+    }
+
+    @Override
+    public void run(CommandLine line) throws Exception {
+        String dbName = line.getOptionValue("db-name");
+        String workflowId = line.getOptionValue("workflow");
+        OfflineDbTableFormat format = OfflineDbTableFormat.valueOf(line.getOptionValue("format"));
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(MMapOfflineDbConfig.load(), dbName)) {
+            List<String> workflowIds = workflowId != null ? Collections.singletonList(workflowId) : offlineDb.listWorkflows();
+            for (String id : workflowIds) {
+                System.out.println("converting workflow " + id + "...");
+                offlineDb.convertWorkflow(id, format);
+            }
+        }
+    }
+
+}
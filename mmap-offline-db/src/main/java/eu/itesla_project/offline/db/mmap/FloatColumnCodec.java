@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Lossless compression of a column of float values.
+ * <p>
+ * The bits of each value are delta encoded against the previous value, zigzag encoded
+ * and written as a variable length integer, so that repeated values (and missing ones,
+ * stored as NaN) take only one byte and close values a few bytes.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+final class FloatColumnCodec {
+
+    private FloatColumnCodec() {
+    }
+
+    static byte[] encode(float[] values) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(values.length);
+        int previous = 0;
+        for (float value : values) {
+            int bits = Float.floatToRawIntBits(value);
+            int delta = bits - previous;
+            previous = bits;
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                os.write((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            os.write(zigzag);
+        }
+        return os.toByteArray();
+    }
+
+    static float[] decode(byte[] bytes, int count) {
+        float[] values = new float[count];
+        int previous = 0;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated column data");
+                }
+                b = bytes[position++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int delta = (zigzag >>> 1) ^ -(zigzag & 1);
+            previous += delta;
+            values[i] = Float.intBitsToFloat(previous);
+        }
+        return values;
+    }
+}
@@ -13,11 +13,14 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import eu.itesla_project.commons.io.FileUtil;
 import eu.itesla_project.iidm.network.Country;
 import eu.itesla_project.iidm.network.Network;
 import eu.itesla_project.modules.histo.HistoDbNetworkAttributeId;
 import eu.itesla_project.modules.histo.IIDM2DB;
+import eu.itesla_project.modules.histo.IIDM2DBSchema;
 import eu.itesla_project.modules.offline.*;
 import eu.itesla_project.simulation.securityindexes.SecurityIndex;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
@@ -33,10 +36,13 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.FloatBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
@@ -57,8 +63,31 @@ public class MMapOfflineDb implements OfflineDb {
     private static final String SECURITY_INDEXES_XML_FILE_NAME = "security-indexes-xml.csv";
     private static final String PARAMETERS_FILE_NAME = "parameters.json";
     private static final String DEFAULT_WORKFLOW_ID_PREFIX = "workflow-";
+    private static final String CONVERSION_DIR_NAME = "conversion";
+    private static final String TABLE_FILE_NAME_PREFIX = "offlinedb.";
 
-    private static final boolean CHECK_MISSING_VALUES = false;
+    /**
+     * Network attributes schema of a network, with the table column of each attribute.
+     */
+    private static final class NetworkAttributesMapping {
+
+        private final IIDM2DBSchema schema;
+
+        private final Set<Country> countryFilter;
+
+        // table column of each attribute of the schema, -1 if not stored
+        private final int[] columnIndexes;
+
+        private NetworkAttributesMapping(Network network, Set<Country> countryFilter, OfflineDbTableDescription description) {
+            this.schema = new IIDM2DBSchema(network, new IIDM2DB.Config(null, false, true, countryFilter));
+            this.countryFilter = countryFilter;
+            columnIndexes = new int[schema.getColumnCount()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                HistoDbNetworkAttributeId attributeId = schema.getAttributeIds().get(i);
+                columnIndexes[i] = ATTRIBUTE_FILTER.apply(attributeId) ? description.getColumnIndex(attributeId) : -1;
+            }
+        }
+    }
 
     public static class PersistenceContext implements AutoCloseable {
 
@@ -70,6 +99,11 @@ public class MMapOfflineDb implements OfflineDb {
 
         private final CsvWriter securityIndexesXmlWriter;
 
+        // attributes mapping by network, as a schema is only valid for the network it has been built from
+        private final Cache<Network, NetworkAttributesMapping> networkAttributesMappings = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
+
         static OfflineWorkflowCreationParameters readParameters(Path workflowDir) throws IOException {
             Set<Country> countries = null;
             DateTime baseCaseDate = null;
@@ -232,7 +266,8 @@ public class MMapOfflineDb implements OfflineDb {
             this.workflowDir = workflowDir;
             this.parameters = parameters;
             securityIndexesXmlWriter = new CsvWriter(workflowDir.resolve(SECURITY_INDEXES_XML_FILE_NAME), true, CSV_SEPARATOR);
-            table = new OfflineDbTable(workflowDir, OfflineDbTableDescription.load(workflowDir, config), memoryMappedFileFactory);
+            table = new OfflineDbTable(workflowDir, OfflineDbTableDescription.load(workflowDir, config), memoryMappedFileFactory,
+                                       config.isCompressSealedChunks());
         }
 
         private Path getWorkflowDir() {
@@ -255,6 +290,20 @@ public class MMapOfflineDb implements OfflineDb {
             return table;
         }
 
+        private NetworkAttributesMapping getNetworkAttributesMapping(Network network, Set<Country> countryFilter) {
+            try {
+                NetworkAttributesMapping mapping = networkAttributesMappings.get(network,
+                    () -> new NetworkAttributesMapping(network, countryFilter, table.getDescription()));
+                if (!Objects.equals(mapping.countryFilter, countryFilter)) {
+                    mapping = new NetworkAttributesMapping(network, countryFilter, table.getDescription());
+                    networkAttributesMappings.put(network, mapping);
+                }
+                return mapping;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         private void save() throws IOException {
             saveParameters(parameters, workflowDir);
         }
@@ -385,6 +434,62 @@ public class MMapOfflineDb implements OfflineDb {
         return nonNullworkflowId;
     }
 
+    /**
+     * Convert the table of a workflow to another format. Must not be called while the workflow is running.
+     *
+     * @param workflowId the workflow id
+     * @param format the new table format
+     */
+    public void convertWorkflow(String workflowId, OfflineDbTableFormat format) {
+        Objects.requireNonNull(format);
+        contextsLock.lock();
+        try {
+            PersistenceContext context = getContext(workflowId);
+            OfflineDbTable table = context.getTable();
+            if (table.getDescription().getFormat() == format) {
+                return;
+            }
+            LOGGER.info("Converting workflow {} table from {} to {} format", workflowId, table.getDescription().getFormat(), format);
+
+            // write the new table in a temporary directory
+            Path workflowDir = context.getWorkflowDir();
+            Path tmpDir = workflowDir.resolve(CONVERSION_DIR_NAME);
+            if (Files.exists(tmpDir)) {
+                FileUtil.removeDir(tmpDir);
+            }
+            Files.createDirectories(tmpDir);
+            OfflineDbTableDescription newDescription = table.getDescription().withFormat(format);
+            try (OfflineDbTable newTable = new OfflineDbTable(tmpDir, newDescription, memoryMappedFileFactory, config.isCompressSealedChunks())) {
+                table.copyTo(newTable);
+                newDescription.save(tmpDir);
+            }
+            context.close();
+
+            // and then replace the old one
+            try (Stream<Path> stream = Files.list(workflowDir)) {
+                for (Path file : stream.filter(file -> file.getFileName().toString().startsWith(TABLE_FILE_NAME_PREFIX)).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            try (Stream<Path> stream = Files.list(tmpDir)) {
+                for (Path file : stream.collect(Collectors.toList())) {
+                    Files.move(file, workflowDir.resolve(file.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.delete(tmpDir);
+
+            contexts.put(workflowId, PersistenceContext.load(workflowDir, memoryMappedFileFactory, config));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            contextsLock.unlock();
+        }
+    }
+
+    public OfflineDbTableFormat getTableFormat(String workflowId) {
+        return getContext(workflowId).getTable().getDescription().getFormat();
+    }
+
     @Override
     public OfflineWorkflowCreationParameters getParameters(String workflowId) {
         return getContext(workflowId).getParameters();
@@ -413,12 +518,9 @@ public class MMapOfflineDb implements OfflineDb {
     public void storeState(String workflowId, int sampleId, Network network, Set<Country> countryFilter) {
         try {
             PersistenceContext context = getContext(workflowId);
-            Map<HistoDbNetworkAttributeId, Float> values = IIDM2DB.extractCimValues(network, new IIDM2DB.Config(null, false, true, countryFilter)).getSingleValueMap().entrySet().stream()
-                    .filter(e -> e.getKey() instanceof HistoDbNetworkAttributeId
-                                 && ATTRIBUTE_FILTER.apply((HistoDbNetworkAttributeId) e.getKey())
-                                 && e.getValue() != null)
-                    .collect(Collectors.toMap(e -> (HistoDbNetworkAttributeId) e.getKey(), e -> ((Number) e.getValue()).floatValue()));
-            context.getTable().writeNetworkAttributesValue(sampleId, values);
+            NetworkAttributesMapping mapping = context.getNetworkAttributesMapping(network, countryFilter);
+            float[] values = mapping.schema.fill(mapping.schema.newValues());
+            context.getTable().writeNetworkAttributesValue(sampleId, mapping.columnIndexes, values);
             context.getTable().getDescription().saveIfChanged(context.getWorkflowDir());
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -567,98 +669,97 @@ public class MMapOfflineDb implements OfflineDb {
         }
     }
 
-    public void exportCsv(String workflowId, Writer writer, char delimiter, Predicate<HistoDbNetworkAttributeId> filter,
-                          boolean addSampleColumn, boolean keepAllSamples, boolean addHeader, int startSample, int maxSample) {
-        final boolean[] headerDone = new boolean[1];
-        headerDone[0] = false;
-        read(workflowId, filter, keepAllSamples, startSample, maxSample, (sampleId, tasksStatus, securityIndexesOk, networkAttributesValue) -> {
-            try {
-                if (addHeader && !headerDone[0]) {
-                    headerDone[0] = true;
-
-                    // write csv header
-                    if (addSampleColumn) {
-                        writer.append("sample").append(delimiter);
-                    }
-
-                    for (OfflineTaskType taskType : tasksStatus.keySet()) {
-                        writer.append(taskType.getHistoDbName());
-                        writer.append(delimiter);
-                    }
-
-                    for (SecurityIndexId securityIndexId : securityIndexesOk.keySet()) {
-                        writer.append(securityIndexId.toString());
-                        writer.append(delimiter);
-                    }
-
-                    for (HistoDbNetworkAttributeId networkAttributeId : networkAttributesValue.keySet()) {
-                        writer.append(networkAttributeId.toString());
-                        writer.append(delimiter);
-                    }
-
-                    writer.append("\n");
-                }
-
-                if (addSampleColumn) {
-                    writer.append(Integer.toString(sampleId))
-                            .append(delimiter);
-                }
+    /**
+     * Read values of one network attribute for a range of samples, without boxing.
+     * Missing values are NaN.
+     *
+     * @param workflowId the workflow id
+     * @param attributeId the network attribute
+     * @param startSample first sample, inclusive
+     * @param endSample last sample, exclusive
+     * @return the values, indexed by sample - startSample
+     */
+    public float[] getNetworkAttributeValues(String workflowId, HistoDbNetworkAttributeId attributeId, int startSample, int endSample) {
+        PersistenceContext context = getContext(workflowId);
+        checkSampleRange(context, startSample, endSample);
+        try {
+            return context.getTable().getNetworkAttributeValues(attributeId, startSample, endSample);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                for (OfflineTaskStatus taskStatus : tasksStatus.values()) {
-                    if (taskStatus != null) {
-                        writer.append(taskStatus == OfflineTaskStatus.SUCCEED ? "OK" : "NOK");
-                    }
-                    writer.append(delimiter);
-                }
+    /**
+     * Same as {@link #getNetworkAttributeValues(String, HistoDbNetworkAttributeId, int, int)} but the values are
+     * returned as a read only buffer.
+     */
+    public FloatBuffer getNetworkAttributeValuesBuffer(String workflowId, HistoDbNetworkAttributeId attributeId, int startSample, int endSample) {
+        PersistenceContext context = getContext(workflowId);
+        checkSampleRange(context, startSample, endSample);
+        try {
+            return context.getTable().getNetworkAttributeValuesBuffer(attributeId, startSample, endSample);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                for (Boolean ok : securityIndexesOk.values()) {
-                    if (ok != null) {
-                        writer.append(ok.toString());
-                    }
-                    writer.append(delimiter);
-                }
+    private static void checkSampleRange(PersistenceContext context, int startSample, int endSample) {
+        if (startSample < 0 || startSample > endSample || endSample > context.getTable().getSampleCount().getValue()) {
+            throw new IllegalArgumentException("Invalid sample range [" + startSample + ", " + endSample + "[");
+        }
+    }
 
-                for (Map.Entry<HistoDbNetworkAttributeId, Float> e : networkAttributesValue.entrySet()) {
-                    HistoDbNetworkAttributeId attributeId = e.getKey();
-                    float value = e.getValue();
-                    if (!Float.isNaN(value)) {
-                        writer.append(Float.toString(value));
-                    } else {
-                        if (CHECK_MISSING_VALUES) {
-                            throw new RuntimeException("Missing value for attribute "
-                                    + attributeId + " and sample " + sampleId);
-                        }
-                    }
-                    writer.append(delimiter);
-                }
+    private static int getEndSample(OfflineDbTable table, int startSample, int maxSamples) {
+        int endSample = maxSamples != -1 && (table.getSampleCount().getValue() - startSample) > maxSamples
+                ? startSample + maxSamples : table.getSampleCount().getValue();
+        if (startSample >= endSample) {
+            throw new RuntimeException("startSample >= sampleCount");
+        }
+        return endSample;
+    }
 
-                writer.append("\n");
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+    public void exportCsv(String workflowId, Writer writer, char delimiter, Predicate<HistoDbNetworkAttributeId> filter,
+                          boolean addSampleColumn, boolean keepAllSamples, boolean addHeader, int startSample, int maxSample) {
+        OfflineDbTable table = getContext(workflowId).getTable();
+        int endSample = getEndSample(table, startSample, maxSample);
+        try {
+            new OfflineDbCsvExporter(table, delimiter, filter, addSampleColumn, keepAllSamples, addHeader, startSample, endSample)
+                    .export(writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    @Override
-    public void exportCsv(String workflowId, Writer writer, OfflineDbCsvExportConfig config) {
-        Objects.requireNonNull(config);
-        Predicate<HistoDbNetworkAttributeId> pred = null;
+    private static Predicate<HistoDbNetworkAttributeId> getFilter(OfflineDbCsvExportConfig config) {
         switch (config.getFilter()) {
             case ALL:
-                break;
+                return null;
             case BRANCHES:
-                pred = BRANCH_ATTRIBUTE_FILTER;
-                break;
+                return BRANCH_ATTRIBUTE_FILTER;
             case ACTIVE_POWER:
-                pred = ACTIVE_POWER_ATTRIBUTE_FILTER;
-                break;
+                return ACTIVE_POWER_ATTRIBUTE_FILTER;
             default:
                 throw new AssertionError();
         }
-        exportCsv(workflowId, writer, config.getDelimiter(), pred, config.isAddSampleColumn(), config.isKeepAllSamples(),
+    }
+
+    @Override
+    public void exportCsv(String workflowId, Writer writer, OfflineDbCsvExportConfig config) {
+        Objects.requireNonNull(config);
+        exportCsv(workflowId, writer, config.getDelimiter(), getFilter(config), config.isAddSampleColumn(), config.isKeepAllSamples(),
                 config.isAddHeader(), config.getStartSample(), config.getMaxSamples());
     }
 
+    @Override
+    public void exportCsv(String workflowId, OutputStream os, OfflineDbCsvExportConfig config) throws IOException {
+        Objects.requireNonNull(config);
+        OfflineDbTable table = getContext(workflowId).getTable();
+        int endSample = getEndSample(table, config.getStartSample(), config.getMaxSamples());
+        new OfflineDbCsvExporter(table, config.getDelimiter(), getFilter(config), config.isAddSampleColumn(), config.isKeepAllSamples(),
+                                 config.isAddHeader(), config.getStartSample(), endSample)
+                .export(os, config.isCompress());
+    }
+
     public void exportCsv(String workflowId, Writer writer, char delimiter, String regexFilter, boolean addSampleColumn,
                           boolean keepAllSamples, boolean addHeader, int startSample, int maxSamples) {
         Predicate<HistoDbNetworkAttributeId> filter = null;
@@ -20,11 +20,15 @@ public class MMapOfflineDbConfig {
     private static final int DEFAULT_SAMPLE_CHUNK_SIZE = 1000;
     private static final int DEFAULT_MAX_SECURITY_INDEXES_COUNT = 1000;
     private static final int DEFAULT_MAX_NETWORK_ATTRIBUTES_COUNT = 40000;
+    private static final OfflineDbTableFormat DEFAULT_TABLE_FORMAT = OfflineDbTableFormat.ROW;
+    private static final boolean DEFAULT_COMPRESS_SEALED_CHUNKS = false;
 
     private Path directory;
     private int sampleChunkSize;
     private int maxSecurityIndexesCount;
     private int maxNetworkAttributesCount;
+    private OfflineDbTableFormat tableFormat;
+    private boolean compressSealedChunks;
 
     public static MMapOfflineDbConfig load() {
         ModuleConfig config = PlatformConfig.defaultConfig().getModuleConfig("mmap-offlinedb");
@@ -32,14 +36,28 @@ public class MMapOfflineDbConfig {
         int sampleChunkSize = config.getIntProperty("sampleChunkSize", DEFAULT_SAMPLE_CHUNK_SIZE);
         int maxSecurityIndexesCount = config.getIntProperty("maxSecurityIndexesCount", DEFAULT_MAX_SECURITY_INDEXES_COUNT);
         int maxNetworkAttributesCount = config.getIntProperty("maxNetworkAttributesCount", DEFAULT_MAX_NETWORK_ATTRIBUTES_COUNT);
-        return new MMapOfflineDbConfig(directory, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount);
+        OfflineDbTableFormat tableFormat = config.getEnumProperty("tableFormat", OfflineDbTableFormat.class, DEFAULT_TABLE_FORMAT);
+        boolean compressSealedChunks = config.getBooleanProperty("compressSealedChunks", DEFAULT_COMPRESS_SEALED_CHUNKS);
+        return new MMapOfflineDbConfig(directory, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount, tableFormat, compressSealedChunks);
     }
 
-    public MMapOfflineDbConfig(Path directory, int sampleChunkSize, int maxSecurityIndexesCount, int maxNetworkAttributesCount) {
+    /**
+     * @param tableFormat table format of the new workflows, existing workflows keep their format
+     * @param compressSealedChunks if true, network attribute values of the chunks whose samples have all been
+     *                             created are compressed when the db is closed (column format only)
+     */
+    public MMapOfflineDbConfig(Path directory, int sampleChunkSize, int maxSecurityIndexesCount, int maxNetworkAttributesCount,
+                               OfflineDbTableFormat tableFormat, boolean compressSealedChunks) {
         this.directory = Objects.requireNonNull(directory);
         this.sampleChunkSize = sampleChunkSize;
         this.maxSecurityIndexesCount = maxSecurityIndexesCount;
         this.maxNetworkAttributesCount = maxNetworkAttributesCount;
+        this.tableFormat = Objects.requireNonNull(tableFormat);
+        this.compressSealedChunks = compressSealedChunks;
+    }
+
+    public MMapOfflineDbConfig(Path directory, int sampleChunkSize, int maxSecurityIndexesCount, int maxNetworkAttributesCount) {
+        this(directory, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount, DEFAULT_TABLE_FORMAT, DEFAULT_COMPRESS_SEALED_CHUNKS);
     }
 
     public MMapOfflineDbConfig(Path directory) {
@@ -78,4 +96,20 @@ public class MMapOfflineDbConfig {
         this.maxNetworkAttributesCount = maxNetworkAttributesCount;
     }
 
+    public OfflineDbTableFormat getTableFormat() {
+        return tableFormat;
+    }
+
+    public void setTableFormat(OfflineDbTableFormat tableFormat) {
+        this.tableFormat = Objects.requireNonNull(tableFormat);
+    }
+
+    public boolean isCompressSealedChunks() {
+        return compressSealedChunks;
+    }
+
+    public void setCompressSealedChunks(boolean compressSealedChunks) {
+        this.compressSealedChunks = compressSealedChunks;
+    }
+
 }
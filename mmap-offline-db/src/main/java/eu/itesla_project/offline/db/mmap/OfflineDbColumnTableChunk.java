@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import eu.itesla_project.modules.offline.OfflineTaskType;
+import eu.itesla_project.offline.db.util.MemoryMappedFile;
+import eu.itesla_project.offline.db.util.MemoryMappedFileFactory;
+import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A chunk of a column format table.
+ * <p>
+ * Tasks status and security indexes are stored in a single file with one small row per
+ * sample. Values of each network attribute are stored in a separated segment file, only
+ * created when a value of the attribute is written, so that reading an attribute only
+ * touches its own segment. Once sealed, segments are compressed and read only, writing
+ * a value in a sealed segment uncompresses it. Segment files are closed as soon as they
+ * are mapped, a mapping stays valid without its file descriptor, so that the number of
+ * open files does not grow with the number of chunks and attributes.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+class OfflineDbColumnTableChunk extends OfflineDbTableChunk {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfflineDbColumnTableChunk.class);
+
+    private static final String COMPRESSED_SEGMENT_EXTENSION = ".z";
+
+    private static final class Segment {
+
+        private final ByteBuffer buffer; // not null if writable
+
+        private final float[] values; // not null if compressed
+
+        private Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.values = null;
+        }
+
+        private Segment(float[] values) {
+            this.buffer = null;
+            this.values = values;
+        }
+
+        private float get(int sample) {
+            return buffer != null ? buffer.getFloat(sample * OfflineDbTableDescription.getNetworkAttributeCellSize()) : values[sample];
+        }
+    }
+
+    // segment of a network attribute not written in this chunk
+    private static final Segment ABSENT = new Segment(new float[0]);
+
+    private final Path workflowDir;
+
+    private final MemoryMappedFileFactory memoryMappedFileFactory;
+
+    private final int chunk;
+
+    private final MemoryMappedFile statusFile;
+
+    private final ByteBuffer statusBuffer;
+
+    // null if not yet loaded
+    private final AtomicReferenceArray<Segment> segments;
+
+    OfflineDbColumnTableChunk(Path workflowDir, OfflineDbTableDescription description, MemoryMappedFileFactory memoryMappedFileFactory, int chunk) throws IOException {
+        super(description);
+        this.workflowDir = workflowDir;
+        this.memoryMappedFileFactory = memoryMappedFileFactory;
+        this.chunk = chunk;
+        statusFile = memoryMappedFileFactory.create(workflowDir.resolve("offlinedb." + chunk + ".status"));
+        boolean exists = statusFile.exists();
+        statusBuffer = statusFile.getBuffer(description.getStatusRowSize() * description.getSampleChunkSize());
+        if (!exists) {
+            for (int sampleId = 0; sampleId < description.getSampleChunkSize(); sampleId++) {
+                resetStatusRow(statusBuffer, description);
+            }
+            statusBuffer.rewind();
+        }
+        segments = new AtomicReferenceArray<>(description.getMaxNetworkAttributesCount() + 1);
+    }
+
+    private Path getSegmentFile(int columnIndex) {
+        return workflowDir.resolve("offlinedb." + chunk + "." + columnIndex);
+    }
+
+    private Path getCompressedSegmentFile(int columnIndex) {
+        return workflowDir.resolve("offlinedb." + chunk + "." + columnIndex + COMPRESSED_SEGMENT_EXTENSION);
+    }
+
+    private int getSegmentSize() {
+        return description.getSampleChunkSize() * OfflineDbTableDescription.getNetworkAttributeCellSize();
+    }
+
+    private Segment getSegment(int columnIndex) throws IOException {
+        Segment segment = segments.get(columnIndex);
+        if (segment == null) {
+            synchronized (this) {
+                segment = segments.get(columnIndex);
+                if (segment == null) {
+                    segment = loadSegment(columnIndex);
+                    segments.set(columnIndex, segment);
+                }
+            }
+        }
+        return segment;
+    }
+
+    private ByteBuffer mapSegmentFile(MemoryMappedFile memoryMappedFile) throws IOException {
+        try {
+            return memoryMappedFile.getBuffer(getSegmentSize());
+        } finally {
+            memoryMappedFile.close();
+        }
+    }
+
+    private Segment loadSegment(int columnIndex) throws IOException {
+        MemoryMappedFile memoryMappedFile = memoryMappedFileFactory.create(getSegmentFile(columnIndex));
+        if (memoryMappedFile.exists()) {
+            return new Segment(mapSegmentFile(memoryMappedFile));
+        }
+        memoryMappedFile.close();
+        Path compressedFile = getCompressedSegmentFile(columnIndex);
+        if (Files.exists(compressedFile)) {
+            return new Segment(FloatColumnCodec.decode(Files.readAllBytes(compressedFile), description.getSampleChunkSize()));
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Get a segment where values can be written, creating it or uncompressing it if necessary.
+     */
+    private synchronized Segment getWritableSegment(int columnIndex) throws IOException {
+        Segment segment = getSegment(columnIndex);
+        if (segment.buffer == null) {
+            ByteBuffer buffer = mapSegmentFile(memoryMappedFileFactory.create(getSegmentFile(columnIndex)));
+            for (int sample = 0; sample < description.getSampleChunkSize(); sample++) {
+                buffer.putFloat(segment == ABSENT ? Float.NaN : segment.values[sample]);
+            }
+            buffer.rewind();
+            Files.deleteIfExists(getCompressedSegmentFile(columnIndex));
+            segment = new Segment(buffer);
+            segments.set(columnIndex, segment);
+        }
+        return segment;
+    }
+
+    @Override
+    protected ByteBuffer getStatusBuffer() {
+        return statusBuffer;
+    }
+
+    @Override
+    protected int getTaskTypeBufferPosition(int sample, OfflineTaskType taskType) {
+        return description.getTaskTypeStatusBufferPosition(sample, taskType);
+    }
+
+    @Override
+    protected int getSecurityIndexBufferPosition(int sample, SecurityIndexId securityIndexId) {
+        return description.getSecurityIndexStatusBufferPosition(sample, securityIndexId);
+    }
+
+    @Override
+    void writeNetworkAttributeValue(int sample, int columnIndex, float value) throws IOException {
+        Segment segment = getSegment(columnIndex);
+        if (segment.buffer == null) {
+            segment = getWritableSegment(columnIndex);
+        }
+        segment.buffer.putFloat(sample * OfflineDbTableDescription.getNetworkAttributeCellSize(), value);
+    }
+
+    @Override
+    float getNetworkAttributeValue(int sample, int columnIndex) throws IOException {
+        Segment segment = getSegment(columnIndex);
+        return segment == ABSENT ? Float.NaN : segment.get(sample);
+    }
+
+    @Override
+    void getNetworkAttributeValues(int columnIndex, int fromSample, int toSample, float[] values, int offset) throws IOException {
+        Segment segment = getSegment(columnIndex);
+        if (segment == ABSENT) {
+            Arrays.fill(values, offset, offset + toSample - fromSample, Float.NaN);
+        } else if (segment.buffer == null) {
+            System.arraycopy(segment.values, fromSample, values, offset, toSample - fromSample);
+        } else {
+            for (int sample = fromSample; sample < toSample; sample++) {
+                values[offset++] = segment.get(sample);
+            }
+        }
+    }
+
+    /**
+     * Compress all the network attribute segments of the chunk. Must not be called while
+     * values are written.
+     */
+    synchronized void seal() throws IOException {
+        int compressed = 0;
+        for (int columnIndex = 0; columnIndex < description.getNetworkAttributeCount(); columnIndex++) {
+            Segment segment = getSegment(columnIndex);
+            if (segment.buffer != null) {
+                float[] values = new float[description.getSampleChunkSize()];
+                getNetworkAttributeValues(columnIndex, 0, values.length, values, 0);
+                Files.write(getCompressedSegmentFile(columnIndex), FloatColumnCodec.encode(values));
+                Files.deleteIfExists(getSegmentFile(columnIndex));
+                segments.set(columnIndex, new Segment(values));
+                compressed++;
+            }
+        }
+        if (compressed > 0) {
+            LOGGER.debug("{} segments of chunk {} compressed", compressed, chunk);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        statusFile.close();
+    }
+}
@@ -0,0 +1,389 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import com.google.common.base.Predicate;
+import eu.itesla_project.modules.histo.HistoDbNetworkAttributeId;
+import eu.itesla_project.modules.offline.OfflineTaskStatus;
+import eu.itesla_project.modules.offline.OfflineTaskType;
+import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export of an offline db table to CSV.
+ * <p>
+ * Samples are split in blocks which are formatted (and optionally gzipped) in parallel
+ * on a fork-join pool, then written in order to the output. Each compressed block is a
+ * complete gzip member, the concatenation of all members being a valid gzip stream. The
+ * number of blocks in flight is bounded so that memory usage does not depend on the
+ * number of samples.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+class OfflineDbCsvExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfflineDbCsvExporter.class);
+
+    // approximate number of cells formatted by a task
+    private static final int BLOCK_CELL_COUNT = 1000000;
+
+    private static final byte[] OK = "OK".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NOK = "NOK".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12};
+
+    // longs below are exactly represented as doubles
+    private static final double MAX_EXACT_LONG = 1L << 53;
+
+    // Float.toString uses decimal notation in this range
+    private static final float DECIMAL_NOTATION_MIN = 1e-3f;
+    private static final float DECIMAL_NOTATION_MAX = 1e7f;
+
+    /**
+     * A growable byte buffer holding the formatted lines of a block of samples.
+     */
+    static final class Block {
+
+        private byte[] bytes;
+
+        private int length = 0;
+
+        private boolean empty = true;
+
+        private byte[] compressedBytes; // not null if compressed
+
+        Block(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        Block append(char c) {
+            if (c < 0x80) {
+                ensureCapacity(1);
+                bytes[length++] = (byte) c;
+                return this;
+            }
+            return append(String.valueOf(c));
+        }
+
+        Block append(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+            return this;
+        }
+
+        Block append(String s) {
+            return append(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Block append(long l) {
+            if (l < 0) {
+                append('-');
+                l = -l;
+            }
+            ensureCapacity(20);
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + l % 10);
+                l /= 10;
+            } while (l != 0);
+            // digits have been written in reverse order
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte tmp = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = tmp;
+            }
+            return this;
+        }
+
+        private void appendFraction(long fraction, int digits) {
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+        }
+
+        /**
+         * Append the shortest decimal representation, with at least one fraction digit, which
+         * is read back as the same float value. Values out of the [1e-3, 1e7[ range and values
+         * which cannot be formatted exactly without risk are formatted using
+         * {@link Float#toString(float)}.
+         */
+        Block append(float f) {
+            float abs = Math.abs(f);
+            if (abs >= DECIMAL_NOTATION_MIN && abs < DECIMAL_NOTATION_MAX) {
+                long integerPart = (long) abs;
+                if (integerPart == abs) {
+                    if (f < 0) {
+                        append('-');
+                    }
+                    append(integerPart);
+                    append('.');
+                    return append('0');
+                }
+                // half of the gaps to the neighbour floats
+                double halfGapAbove = (Math.nextUp(abs) - (double) abs) / 2;
+                double halfGapBelow = ((double) abs - Math.nextDown(abs)) / 2;
+                for (int digits = 1; digits < POWERS_OF_TEN.length; digits++) {
+                    double power = POWERS_OF_TEN[digits];
+                    double scaledValue = abs * power;
+                    if (scaledValue >= MAX_EXACT_LONG) {
+                        break;
+                    }
+                    long scaled = Math.round(scaledValue);
+                    // the candidate is the nearest double of the decimal value scaled / 10^digits, so
+                    // the decimal value is read back as the same float if the candidate is strictly
+                    // nearer to the float than to the middle of the gap to a neighbour float
+                    double candidate = scaled / power;
+                    if (candidate >= abs ? candidate - abs < halfGapAbove : abs - candidate < halfGapBelow) {
+                        if (f < 0) {
+                            append('-');
+                        }
+                        long longPower = (long) power;
+                        append(scaled / longPower);
+                        append('.');
+                        appendFraction(scaled % longPower, digits);
+                        return this;
+                    }
+                }
+            }
+            return append(Float.toString(f));
+        }
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        Block compress() {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(length / 4, 16));
+            try (OutputStream os = new GZIPOutputStream(bos)) {
+                os.write(bytes, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            compressedBytes = bos.toByteArray();
+            return this;
+        }
+
+        void writeTo(OutputStream os) throws IOException {
+            if (compressedBytes != null) {
+                os.write(compressedBytes);
+            } else {
+                os.write(bytes, 0, length);
+            }
+        }
+
+        void writeTo(Writer writer) throws IOException {
+            writer.write(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    private final OfflineDbTable table;
+
+    private final char delimiter;
+
+    private final boolean addSampleColumn;
+
+    private final boolean keepAllSamples;
+
+    private final boolean addHeader;
+
+    private final int startSample;
+
+    private final int endSample;
+
+    private final List<HistoDbNetworkAttributeId> exportedAttributeIds;
+
+    private final int[] columnIndexes;
+
+    private final SecurityIndexId[] securityIndexIds;
+
+    private final ForkJoinPool pool;
+
+    OfflineDbCsvExporter(OfflineDbTable table, char delimiter, Predicate<HistoDbNetworkAttributeId> filter, boolean addSampleColumn,
+                         boolean keepAllSamples, boolean addHeader, int startSample, int endSample) {
+        this(table, delimiter, filter, addSampleColumn, keepAllSamples, addHeader, startSample, endSample, ForkJoinPool.commonPool());
+    }
+
+    OfflineDbCsvExporter(OfflineDbTable table, char delimiter, Predicate<HistoDbNetworkAttributeId> filter, boolean addSampleColumn,
+                         boolean keepAllSamples, boolean addHeader, int startSample, int endSample, ForkJoinPool pool) {
+        this.table = table;
+        this.delimiter = delimiter;
+        this.addSampleColumn = addSampleColumn;
+        this.keepAllSamples = keepAllSamples;
+        this.addHeader = addHeader;
+        this.startSample = startSample;
+        this.endSample = endSample;
+        this.pool = pool;
+
+        OfflineDbTableDescription description = table.getDescription();
+        Collection<HistoDbNetworkAttributeId> networkAttributeIds = description.getNetworkAttributeIds();
+        exportedAttributeIds = new ArrayList<>(networkAttributeIds.size());
+        for (HistoDbNetworkAttributeId networkAttributeId : networkAttributeIds) {
+            if (filter == null || filter.apply(networkAttributeId)) {
+                exportedAttributeIds.add(networkAttributeId);
+            }
+        }
+        if (exportedAttributeIds.size() != networkAttributeIds.size()) {
+            LOGGER.info("{}/{} of the attributes are exported", exportedAttributeIds.size(), networkAttributeIds.size());
+        }
+        columnIndexes = new int[exportedAttributeIds.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = description.getColumnIndex(exportedAttributeIds.get(i));
+        }
+        securityIndexIds = new SecurityIndexId[description.getSecurityIndexesCount()];
+        for (int i = 0; i < securityIndexIds.length; i++) {
+            securityIndexIds[i] = description.getSecurityIndexId(i);
+        }
+    }
+
+    private int getColumnCount() {
+        return (addSampleColumn ? 1 : 0) + OfflineTaskType.values().length + securityIndexIds.length + columnIndexes.length;
+    }
+
+    private Block formatHeader() {
+        Block block = new Block(getColumnCount() * 32);
+        if (addSampleColumn) {
+            block.append("sample").append(delimiter);
+        }
+        for (OfflineTaskType taskType : OfflineTaskType.values()) {
+            block.append(taskType.getHistoDbName()).append(delimiter);
+        }
+        for (SecurityIndexId securityIndexId : securityIndexIds) {
+            block.append(securityIndexId.toString()).append(delimiter);
+        }
+        for (HistoDbNetworkAttributeId networkAttributeId : exportedAttributeIds) {
+            block.append(networkAttributeId.toString()).append(delimiter);
+        }
+        block.append('\n');
+        return block;
+    }
+
+    private Block formatSamples(int fromSample, int toSample) {
+        Block block = new Block((toSample - fromSample) * getColumnCount() * 8);
+        float[] values = new float[columnIndexes.length];
+        OfflineTaskType[] taskTypes = OfflineTaskType.values();
+        try {
+            for (int sampleId = fromSample; sampleId < toSample; sampleId++) {
+                if (!keepAllSamples && table.getTaskStatus(sampleId, OfflineTaskType.IMPACT_ANALYSIS) != OfflineTaskStatus.SUCCEED) {
+                    continue;
+                }
+                block.empty = false;
+
+                if (addSampleColumn) {
+                    block.append(sampleId).append(delimiter);
+                }
+
+                for (OfflineTaskType taskType : taskTypes) {
+                    OfflineTaskStatus taskStatus = table.getTaskStatus(sampleId, taskType);
+                    if (taskStatus != null) {
+                        block.append(taskStatus == OfflineTaskStatus.SUCCEED ? OK : NOK);
+                    }
+                    block.append(delimiter);
+                }
+
+                for (SecurityIndexId securityIndexId : securityIndexIds) {
+                    Boolean ok = table.isSecurityIndexOk(sampleId, securityIndexId);
+                    if (ok != null) {
+                        block.append(ok ? TRUE : FALSE);
+                    }
+                    block.append(delimiter);
+                }
+
+                table.getNetworkAttributesValue(sampleId, columnIndexes, values);
+                for (float value : values) {
+                    if (!Float.isNaN(value)) {
+                        block.append(value);
+                    }
+                    block.append(delimiter);
+                }
+
+                block.append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return block;
+    }
+
+    private interface BlockWriter {
+
+        void write(Block block) throws IOException;
+    }
+
+    private void export(boolean compress, BlockWriter blockWriter) throws IOException {
+        int blockSize = Math.max(1, BLOCK_CELL_COUNT / getColumnCount());
+        int maxInFlight = 2 * pool.getParallelism();
+        Deque<ForkJoinTask<Block>> inFlight = new ArrayDeque<>(maxInFlight);
+        boolean headerDone = !addHeader;
+        int blockCount = 0;
+        long start = System.currentTimeMillis();
+        try {
+            int fromSample = startSample;
+            while (fromSample < endSample || !inFlight.isEmpty()) {
+                // submit blocks while there is room, then write the oldest one
+                while (fromSample < endSample && inFlight.size() < maxInFlight) {
+                    final int from = fromSample;
+                    final int to = Math.min(endSample, fromSample + blockSize);
+                    inFlight.addLast(pool.submit(() -> {
+                        Block block = formatSamples(from, to);
+                        return compress && !block.isEmpty() ? block.compress() : block;
+                    }));
+                    fromSample = to;
+                }
+                Block block = inFlight.removeFirst().join();
+                if (!block.isEmpty()) {
+                    if (!headerDone) {
+                        headerDone = true;
+                        Block header = formatHeader();
+                        blockWriter.write(compress ? header.compress() : header);
+                    }
+                    blockWriter.write(block);
+                }
+                blockCount++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<Block> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+        LOGGER.debug("{} samples exported in {} blocks in {} ms", endSample - startSample, blockCount, System.currentTimeMillis() - start);
+    }
+
+    void export(Writer writer) throws IOException {
+        export(false, block -> block.writeTo(writer));
+    }
+
+    void export(OutputStream os, boolean compress) throws IOException {
+        export(compress, block -> block.writeTo(os));
+    }
+}
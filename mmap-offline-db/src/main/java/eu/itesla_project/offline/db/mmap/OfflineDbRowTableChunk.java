@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import eu.itesla_project.modules.offline.OfflineTaskType;
+import eu.itesla_project.offline.db.util.MemoryMappedFile;
+import eu.itesla_project.offline.db.util.MemoryMappedFileFactory;
+import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * A chunk of a row format table: a single file where each sample is a fixed size row.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+class OfflineDbRowTableChunk extends OfflineDbTableChunk {
+
+    private final MemoryMappedFile memoryMappedFile;
+
+    private final ByteBuffer buffer;
+
+    OfflineDbRowTableChunk(Path workflowDir, OfflineDbTableDescription description, MemoryMappedFileFactory memoryMappedFileFactory, int chunk) throws IOException {
+        super(description);
+        memoryMappedFile = memoryMappedFileFactory.create(workflowDir.resolve("offlinedb." + chunk));
+        boolean exists = memoryMappedFile.exists();
+        buffer = memoryMappedFile.getBuffer(description.getRowSize() * description.getSampleChunkSize());
+        if (!exists) {
+            resetBuffer();
+        }
+    }
+
+    private void resetBuffer() {
+        // init the buffer with default values
+        for (int sampleId = 0; sampleId < description.getSampleChunkSize(); sampleId++) {
+            resetStatusRow(buffer, description);
+            for (int i = 0; i < description.getMaxNetworkAttributesCount(); i++) {
+                buffer.putFloat(Float.NaN);
+            }
+        }
+
+        buffer.rewind();
+    }
+
+    @Override
+    protected ByteBuffer getStatusBuffer() {
+        return buffer;
+    }
+
+    @Override
+    protected int getTaskTypeBufferPosition(int sample, OfflineTaskType taskType) {
+        return description.getTaskTypeBufferPosition(sample, taskType);
+    }
+
+    @Override
+    protected int getSecurityIndexBufferPosition(int sample, SecurityIndexId securityIndexId) {
+        return description.getSecurityIndexBufferPosition(sample, securityIndexId);
+    }
+
+    @Override
+    void writeNetworkAttributeValue(int sample, int columnIndex, float value) {
+        buffer.putFloat(description.getNetworkAttributeBufferPosition(sample, columnIndex), value);
+    }
+
+    @Override
+    float getNetworkAttributeValue(int sample, int columnIndex) {
+        return buffer.getFloat(description.getNetworkAttributeBufferPosition(sample, columnIndex));
+    }
+
+    @Override
+    void getNetworkAttributeValues(int columnIndex, int fromSample, int toSample, float[] values, int offset) {
+        int rowSize = description.getRowSize();
+        int position = description.getNetworkAttributeBufferPosition(fromSample, columnIndex);
+        for (int sample = fromSample; sample < toSample; sample++) {
+            values[offset++] = buffer.getFloat(position);
+            position += rowSize;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        memoryMappedFile.close();
+    }
+}
@@ -15,10 +15,10 @@ import eu.itesla_project.offline.db.util.MemoryMappedFileFactory;
 import eu.itesla_project.offline.db.util.PersistentCounter;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,16 +36,25 @@ public class OfflineDbTable implements AutoCloseable {
 
     private final MemoryMappedFileFactory memoryMappedFileFactory;
 
+    private final boolean compressSealedChunks;
+
     private final PersistentCounter sampleCount;
 
-    private final List<OfflineDbTableChunk> openedTableChunks = new ArrayList<>();
+    // copied on write so that opened chunks can be accessed without locking
+    private volatile OfflineDbTableChunk[] openedTableChunks = new OfflineDbTableChunk[0];
 
     private final Lock tableChunkLock = new ReentrantLock();
 
     public OfflineDbTable(Path workflowDir, OfflineDbTableDescription description, MemoryMappedFileFactory memoryMappedFileFactory) throws IOException {
+        this(workflowDir, description, memoryMappedFileFactory, false);
+    }
+
+    public OfflineDbTable(Path workflowDir, OfflineDbTableDescription description, MemoryMappedFileFactory memoryMappedFileFactory,
+                          boolean compressSealedChunks) throws IOException {
         this.workflowDir = workflowDir;
         this.description = description;
         this.memoryMappedFileFactory = memoryMappedFileFactory;
+        this.compressSealedChunks = compressSealedChunks;
         sampleCount = new PersistentCounter(memoryMappedFileFactory.create(workflowDir.resolve(SAMPLE_COUNT_FILE_NAME)), 0);
     }
 
@@ -57,16 +66,34 @@ public class OfflineDbTable implements AutoCloseable {
         return sample % description.getSampleChunkSize();
     }
 
+    private OfflineDbTableChunk createTableChunk(int chunk) throws IOException {
+        switch (description.getFormat()) {
+            case ROW:
+                return new OfflineDbRowTableChunk(workflowDir, description, memoryMappedFileFactory, chunk);
+            case COLUMN:
+                return new OfflineDbColumnTableChunk(workflowDir, description, memoryMappedFileFactory, chunk);
+            default:
+                throw new AssertionError();
+        }
+    }
+
     private OfflineDbTableChunk getTableChunk(int sample) throws IOException {
         int chunk = getChunk(sample);
+        OfflineDbTableChunk[] chunks = openedTableChunks;
+        if (chunk < chunks.length) {
+            return chunks[chunk];
+        }
         tableChunkLock.lock();
         try {
-            if (chunk >= openedTableChunks.size()) {
-                for (int i = openedTableChunks.size(); i <= chunk; i++) {
-                    openedTableChunks.add(new OfflineDbTableChunk(workflowDir, description, memoryMappedFileFactory, chunk));
+            chunks = openedTableChunks;
+            if (chunk >= chunks.length) {
+                OfflineDbTableChunk[] newChunks = Arrays.copyOf(chunks, chunk + 1);
+                for (int i = chunks.length; i <= chunk; i++) {
+                    newChunks[i] = createTableChunk(i);
                 }
+                openedTableChunks = chunks = newChunks;
             }
-            return openedTableChunks.get(chunk);
+            return chunks[chunk];
         } finally {
             tableChunkLock.unlock();
         }
@@ -104,6 +131,10 @@ public class OfflineDbTable implements AutoCloseable {
         getTableChunk(sample).writeNetworkAttributesValue(getSampleInChunk(sample), values);
     }
 
+    void writeNetworkAttributesValue(int sample, int[] columnIndexes, float[] values) throws IOException {
+        getTableChunk(sample).writeNetworkAttributesValue(getSampleInChunk(sample), columnIndexes, values);
+    }
+
     OfflineTaskStatus getTaskStatus(int sample, OfflineTaskType taskType) throws IOException {
         return getTableChunk(sample).getTaskStatus(getSampleInChunk(sample), taskType);
     }
@@ -128,14 +159,98 @@ public class OfflineDbTable implements AutoCloseable {
         getTableChunk(sample).getNetworkAttributesValue(getSampleInChunk(sample), networkAttributesValue);
     }
 
+    /**
+     * Read values of one network attribute for a range of samples, missing values are NaN.
+     *
+     * @param attributeId the network attribute
+     * @param fromSample first sample, inclusive
+     * @param toSample last sample, exclusive
+     * @param values array to fill
+     * @param offset offset in the array of the value of the first sample
+     */
+    void getNetworkAttributeValues(HistoDbNetworkAttributeId attributeId, int fromSample, int toSample, float[] values, int offset) throws IOException {
+        int columnIndex = description.findColumnIndex(attributeId);
+        if (columnIndex == -1) {
+            Arrays.fill(values, offset, offset + toSample - fromSample, Float.NaN);
+            return;
+        }
+        int sample = fromSample;
+        while (sample < toSample) {
+            int chunkEnd = Math.min(toSample, (getChunk(sample) + 1) * description.getSampleChunkSize());
+            getTableChunk(sample).getNetworkAttributeValues(columnIndex, getSampleInChunk(sample), getSampleInChunk(sample) + chunkEnd - sample,
+                                                            values, offset + sample - fromSample);
+            sample = chunkEnd;
+        }
+    }
+
+    float[] getNetworkAttributeValues(HistoDbNetworkAttributeId attributeId, int fromSample, int toSample) throws IOException {
+        float[] values = new float[toSample - fromSample];
+        getNetworkAttributeValues(attributeId, fromSample, toSample, values, 0);
+        return values;
+    }
+
+    FloatBuffer getNetworkAttributeValuesBuffer(HistoDbNetworkAttributeId attributeId, int fromSample, int toSample) throws IOException {
+        return FloatBuffer.wrap(getNetworkAttributeValues(attributeId, fromSample, toSample)).asReadOnlyBuffer();
+    }
+
+    void getNetworkAttributesValue(int sample, int[] columnIndexes, float[] values) throws IOException {
+        getTableChunk(sample).getNetworkAttributesValue(getSampleInChunk(sample), columnIndexes, values);
+    }
+
+    /**
+     * Copy all the samples of this table to another one, possibly with another format.
+     */
+    void copyTo(OfflineDbTable other) throws IOException {
+        int count = sampleCount.getValue();
+        Collection<SecurityIndexId> securityIndexIds = description.getSecurityIndexIds();
+        Collection<HistoDbNetworkAttributeId> networkAttributeIds = description.getNetworkAttributeIds();
+        for (int sample = 0; sample < count; sample++) {
+            other.getSampleCount().nextValue();
+            for (OfflineTaskType taskType : OfflineTaskType.values()) {
+                OfflineTaskStatus taskStatus = getTaskStatus(sample, taskType);
+                if (taskStatus != null) {
+                    other.writeTaskStatus(sample, taskType, taskStatus);
+                }
+            }
+            for (SecurityIndexId securityIndexId : securityIndexIds) {
+                Boolean ok = isSecurityIndexOk(sample, securityIndexId);
+                if (ok != null) {
+                    other.writeSecurityIndex(sample, securityIndexId, ok);
+                }
+            }
+        }
+        // network attributes are copied column by column
+        float[] values = new float[description.getSampleChunkSize()];
+        for (HistoDbNetworkAttributeId attributeId : networkAttributeIds) {
+            for (int from = 0; from < count; from += values.length) {
+                int to = Math.min(count, from + values.length);
+                getNetworkAttributeValues(attributeId, from, to, values, 0);
+                for (int sample = from; sample < to; sample++) {
+                    if (!Float.isNaN(values[sample - from])) {
+                        other.writeNetworkAttributeValue(sample, attributeId, values[sample - from]);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
         tableChunkLock.lock();
         try {
+            if (compressSealedChunks) {
+                // chunks whose samples have all been created are not supposed to grow anymore
+                int sealedChunkCount = sampleCount.getValue() / description.getSampleChunkSize();
+                for (int i = 0; i < Math.min(sealedChunkCount, openedTableChunks.length); i++) {
+                    if (openedTableChunks[i] instanceof OfflineDbColumnTableChunk) {
+                        ((OfflineDbColumnTableChunk) openedTableChunks[i]).seal();
+                    }
+                }
+            }
             for (OfflineDbTableChunk chunk : openedTableChunks) {
                 chunk.close();
             }
-            openedTableChunks.clear();
+            openedTableChunks = new OfflineDbTableChunk[0];
         } finally {
             tableChunkLock.unlock();
         }
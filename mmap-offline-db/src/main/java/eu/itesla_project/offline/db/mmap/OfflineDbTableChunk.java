@@ -11,64 +11,51 @@ import eu.itesla_project.modules.offline.OfflineTaskStatus;
 import eu.itesla_project.modules.offline.OfflineTaskType;
 import eu.itesla_project.simulation.securityindexes.SecurityIndex;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
-import eu.itesla_project.offline.db.util.MemoryMappedFile;
-import eu.itesla_project.offline.db.util.MemoryMappedFileFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * A chunk of the table, memory mapped to one or several files depending on the table format.
+ * <p>
+ * Cells are accessed without locking using absolute get/put operations which do not
+ * modify the state of the buffers, each cell being written by only one task.
+ *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
-class OfflineDbTableChunk implements AutoCloseable {
+abstract class OfflineDbTableChunk implements AutoCloseable {
 
-    private final OfflineDbTableDescription description;
+    protected final OfflineDbTableDescription description;
 
-    private final MemoryMappedFile memoryMappedFile;
+    OfflineDbTableChunk(OfflineDbTableDescription description) {
+        this.description = description;
+    }
 
-    private final ByteBuffer buffer;
+    /**
+     * Buffer where tasks status and security indexes are stored.
+     */
+    protected abstract ByteBuffer getStatusBuffer();
 
-    private final Lock bufferLock = new ReentrantLock();
+    protected abstract int getTaskTypeBufferPosition(int sample, OfflineTaskType taskType);
 
-    OfflineDbTableChunk(Path workflowDir, OfflineDbTableDescription description, MemoryMappedFileFactory memoryMappedFileFactory, int chunk) throws IOException {
-        this.description = description;
-        memoryMappedFile = memoryMappedFileFactory.create(workflowDir.resolve("offlinedb." + chunk));
-        boolean exists = memoryMappedFile.exists();
-        buffer = memoryMappedFile.getBuffer(description.getRowSize() * description.getSampleChunkSize());
-        if (!exists) {
-            resetBuffer();
-        }
-    }
+    protected abstract int getSecurityIndexBufferPosition(int sample, SecurityIndexId securityIndexId);
 
-    private void resetBuffer() {
-        // init the buffer with default values
-        for (int sampleId = 0; sampleId < description.getSampleChunkSize(); sampleId++) {
-            for (OfflineTaskType ignored : OfflineTaskType.values()) {
-                buffer.put((byte) -1);
-            }
-            for (int i = 0; i < description.getMaxSecurityIndexesCount(); i++) {
-                buffer.put((byte) -1);
-            }
-            for (int i = 0; i < description.getMaxNetworkAttributesCount(); i++) {
-                buffer.putFloat(Float.NaN);
-            }
+    /**
+     * Init a status buffer with default values.
+     */
+    protected static void resetStatusRow(ByteBuffer buffer, OfflineDbTableDescription description) {
+        for (OfflineTaskType ignored : OfflineTaskType.values()) {
+            buffer.put((byte) -1);
+        }
+        for (int i = 0; i < description.getMaxSecurityIndexesCount(); i++) {
+            buffer.put((byte) -1);
         }
-
-        buffer.rewind();
     }
 
     void writeTaskStatus(int sample, OfflineTaskType taskType, OfflineTaskStatus taskStatus) {
-        bufferLock.lock();
-        try {
-            buffer.put(description.getTaskTypeBufferPosition(sample, taskType), (byte) taskStatus.ordinal());
-        } finally {
-            bufferLock.unlock();
-        }
+        getStatusBuffer().put(getTaskTypeBufferPosition(sample, taskType), (byte) taskStatus.ordinal());
     }
 
     private static byte okToByte(boolean ok) {
@@ -76,12 +63,7 @@ class OfflineDbTableChunk implements AutoCloseable {
     }
 
     void writeSecurityIndex(int sample, SecurityIndexId securityIndexId, boolean ok) {
-        bufferLock.lock();
-        try {
-            buffer.put(description.getSecurityIndexBufferPosition(sample, securityIndexId), okToByte(ok));
-        } finally {
-            bufferLock.unlock();
-        }
+        getStatusBuffer().put(getSecurityIndexBufferPosition(sample, securityIndexId), okToByte(ok));
     }
 
     void writeSecurityIndex(int sample, SecurityIndex securityIndex) {
@@ -89,35 +71,34 @@ class OfflineDbTableChunk implements AutoCloseable {
     }
 
     void writeSecurityIndexes(int sample, Collection<SecurityIndex> securityIndexes) {
-        bufferLock.lock();
-        try {
-            for (SecurityIndex securityIndex : securityIndexes) {
-                buffer.put(description.getSecurityIndexBufferPosition(sample, securityIndex.getId()), okToByte(securityIndex.isOk()));
-            }
-        } finally {
-            bufferLock.unlock();
+        for (SecurityIndex securityIndex : securityIndexes) {
+            getStatusBuffer().put(getSecurityIndexBufferPosition(sample, securityIndex.getId()), okToByte(securityIndex.isOk()));
         }
     }
 
-    void writeNetworkAttributeValue(int sample, HistoDbNetworkAttributeId attributeId, float value) {
-        bufferLock.lock();
-        try {
-            buffer.putFloat(description.getNetworkAttributeBufferPosition(sample, attributeId), value);
-        } finally {
-            bufferLock.unlock();
+    abstract void writeNetworkAttributeValue(int sample, int columnIndex, float value) throws IOException;
+
+    void writeNetworkAttributeValue(int sample, HistoDbNetworkAttributeId attributeId, float value) throws IOException {
+        writeNetworkAttributeValue(sample, description.getColumnIndex(attributeId), value);
+    }
+
+    void writeNetworkAttributesValue(int sample, Map<HistoDbNetworkAttributeId, Float> values) throws IOException {
+        for (Map.Entry<HistoDbNetworkAttributeId, Float> entry : values.entrySet()) {
+            HistoDbNetworkAttributeId attributeId = entry.getKey();
+            float value = entry.getValue();
+            writeNetworkAttributeValue(sample, description.getColumnIndex(attributeId), value);
         }
     }
 
-    void writeNetworkAttributesValue(int sample, Map<HistoDbNetworkAttributeId, Float> values) {
-        bufferLock.lock();
-        try {
-            for (Map.Entry<HistoDbNetworkAttributeId, Float> entry : values.entrySet()) {
-                HistoDbNetworkAttributeId attributeId = entry.getKey();
-                float value = entry.getValue();
-                buffer.putFloat(description.getNetworkAttributeBufferPosition(sample, attributeId), value);
+    /**
+     * Write values of several network attributes of a sample, values with a negative column
+     * index being skipped.
+     */
+    void writeNetworkAttributesValue(int sample, int[] columnIndexes, float[] values) throws IOException {
+        for (int i = 0; i < columnIndexes.length; i++) {
+            if (columnIndexes[i] >= 0) {
+                writeNetworkAttributeValue(sample, columnIndexes[i], values[i]);
             }
-        } finally {
-            bufferLock.unlock();
         }
     }
 
@@ -126,24 +107,14 @@ class OfflineDbTableChunk implements AutoCloseable {
     }
 
     OfflineTaskStatus getTaskStatus(int sample, OfflineTaskType taskType) {
-        bufferLock.lock();
-        try {
-            int i = buffer.get(description.getTaskTypeBufferPosition(sample, taskType));
-            return intToTaskStatus(i);
-        } finally {
-            bufferLock.unlock();
-        }
+        int i = getStatusBuffer().get(getTaskTypeBufferPosition(sample, taskType));
+        return intToTaskStatus(i);
     }
 
     void getTasksStatus(int sample, Map<OfflineTaskType, OfflineTaskStatus> tasksStatus) {
-        bufferLock.lock();
-        try {
-            for (OfflineTaskType taskType : OfflineTaskType.values()) {
-                int i = buffer.get(description.getTaskTypeBufferPosition(sample, taskType));
-                tasksStatus.put(taskType, intToTaskStatus(i));
-            }
-        } finally {
-            bufferLock.unlock();
+        for (OfflineTaskType taskType : OfflineTaskType.values()) {
+            int i = getStatusBuffer().get(getTaskTypeBufferPosition(sample, taskType));
+            tasksStatus.put(taskType, intToTaskStatus(i));
         }
     }
 
@@ -157,51 +128,44 @@ class OfflineDbTableChunk implements AutoCloseable {
     }
 
     Boolean isSecurityIndexOk(int sample, SecurityIndexId securityIndexId) {
-        bufferLock.lock();
-        try {
-            return intToSecurityIndexOk(buffer.get(description.getSecurityIndexBufferPosition(sample, securityIndexId)));
-        } finally {
-            bufferLock.unlock();
-        }
+        return intToSecurityIndexOk(getStatusBuffer().get(getSecurityIndexBufferPosition(sample, securityIndexId)));
     }
 
     void getSecurityIndexesOk(int sample, Map<SecurityIndexId, Boolean> securityIndexesOk) {
-        bufferLock.lock();
-        try {
-            for (Map.Entry<SecurityIndexId, Boolean> e : securityIndexesOk.entrySet()) {
-                SecurityIndexId securityIndexId = e.getKey();
-                Boolean ok = intToSecurityIndexOk(buffer.get(description.getSecurityIndexBufferPosition(sample, securityIndexId)));
-                e.setValue(ok);
-            }
-        } finally {
-            bufferLock.unlock();
+        for (Map.Entry<SecurityIndexId, Boolean> e : securityIndexesOk.entrySet()) {
+            SecurityIndexId securityIndexId = e.getKey();
+            Boolean ok = intToSecurityIndexOk(getStatusBuffer().get(getSecurityIndexBufferPosition(sample, securityIndexId)));
+            e.setValue(ok);
         }
     }
 
-    float getNetworkAttributeValue(int sample, HistoDbNetworkAttributeId attributeId) {
-        bufferLock.lock();
-        try {
-            return buffer.getFloat(description.getNetworkAttributeBufferPosition(sample, attributeId));
-        } finally {
-            bufferLock.unlock();
+    abstract float getNetworkAttributeValue(int sample, int columnIndex) throws IOException;
+
+    float getNetworkAttributeValue(int sample, HistoDbNetworkAttributeId attributeId) throws IOException {
+        return getNetworkAttributeValue(sample, description.getColumnIndex(attributeId));
+    }
+
+    void getNetworkAttributesValue(int sample, Map<HistoDbNetworkAttributeId, Float> networkAttributesValue) throws IOException {
+        for (Map.Entry<HistoDbNetworkAttributeId, Float> e : networkAttributesValue.entrySet()) {
+            HistoDbNetworkAttributeId attributeId = e.getKey();
+            e.setValue(getNetworkAttributeValue(sample, description.getColumnIndex(attributeId)));
         }
     }
 
-    void getNetworkAttributesValue(int sample, Map<HistoDbNetworkAttributeId, Float> networkAttributesValue) {
-        bufferLock.lock();
-        try {
-            for (Map.Entry<HistoDbNetworkAttributeId, Float> e : networkAttributesValue.entrySet()) {
-                HistoDbNetworkAttributeId attributeId = e.getKey();
-                float value = buffer.getFloat(description.getNetworkAttributeBufferPosition(sample, attributeId));
-                e.setValue(value);
-            }
-        } finally {
-            bufferLock.unlock();
+    /**
+     * Read values of one network attribute for a range of samples of the chunk.
+     */
+    abstract void getNetworkAttributeValues(int columnIndex, int fromSample, int toSample, float[] values, int offset) throws IOException;
+
+    /**
+     * Read values of several network attributes of a sample.
+     */
+    void getNetworkAttributesValue(int sample, int[] columnIndexes, float[] values) throws IOException {
+        for (int i = 0; i < columnIndexes.length; i++) {
+            values[i] = getNetworkAttributeValue(sample, columnIndexes[i]);
         }
     }
 
     @Override
-    public void close() throws IOException {
-        memoryMappedFile.close();
-    }
+    public abstract void close() throws IOException;
 }
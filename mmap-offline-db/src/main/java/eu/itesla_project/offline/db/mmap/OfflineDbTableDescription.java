@@ -24,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -39,6 +40,7 @@ public class OfflineDbTableDescription {
     private static final int SECURITY_INDEX_CELL_SIZE = Byte.BYTES;
     private static final int NETWORK_ATTRIBUTE_CELL_SIZE = Float.BYTES;
 
+    private final OfflineDbTableFormat format;
     private final int sampleChunkSize;
     private final int maxSecurityIndexesCount;
     private final int maxNetworkAttributesCount;
@@ -54,6 +56,7 @@ public class OfflineDbTableDescription {
     private volatile boolean changed = false;
 
     static OfflineDbTableDescription load(Path workflowDir, MMapOfflineDbConfig config) throws IOException {
+        OfflineDbTableFormat format = config.getTableFormat();
         int sampleChunkSize = config.getSampleChunkSize();
         int maxSecurityIndexesCount = config.getMaxSecurityIndexesCount();
         int maxNetworkAttributesCount = config.getMaxNetworkAttributesCount();
@@ -63,12 +66,19 @@ public class OfflineDbTableDescription {
         Path file = workflowDir.resolve(TABLE_DESCRIPTION_FILE_NAME);
         boolean exists = Files.exists(file);
         if (exists) {
+            // tables created before the introduction of the column format do not have the format field
+            format = OfflineDbTableFormat.ROW;
             try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
                  JsonParser parser = MMapOfflineDb.JSON_FACTORY.get().createParser(reader)) {
                 parser.nextToken();
                 while (parser.nextToken() != JsonToken.END_OBJECT) {
                     String fieldname = parser.getCurrentName();
                     switch (fieldname) {
+                        case "format":
+                            parser.nextToken();
+                            format = OfflineDbTableFormat.valueOf(parser.getText());
+                            break;
+
                         case "sampleChunkSize":
                             parser.nextToken();
                             sampleChunkSize = parser.getIntValue();
@@ -105,7 +115,7 @@ public class OfflineDbTableDescription {
             }
         }
 
-        OfflineDbTableDescription tableDescription =  new OfflineDbTableDescription(sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount, securityIndexes, networkAttributes);
+        OfflineDbTableDescription tableDescription =  new OfflineDbTableDescription(format, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount, securityIndexes, networkAttributes);
         if (!exists) {
             tableDescription.save(workflowDir);
         }
@@ -118,16 +128,23 @@ public class OfflineDbTableDescription {
 
     public OfflineDbTableDescription(int sampleChunkSize, int maxSecurityIndexesCount, int maxNetworkAttributesCount,
                                       List<SecurityIndexId> securityIndexes, List<HistoDbNetworkAttributeId> networkAttributes) {
+        this(OfflineDbTableFormat.ROW, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount, securityIndexes, networkAttributes);
+    }
+
+    public OfflineDbTableDescription(OfflineDbTableFormat format, int sampleChunkSize, int maxSecurityIndexesCount, int maxNetworkAttributesCount,
+                                     List<SecurityIndexId> securityIndexes, List<HistoDbNetworkAttributeId> networkAttributes) {
+        this.format = Objects.requireNonNull(format);
         this.sampleChunkSize = sampleChunkSize;
         this.maxSecurityIndexesCount = maxSecurityIndexesCount;
         this.maxNetworkAttributesCount = maxNetworkAttributesCount;
         this.securityIndexes = Objects.requireNonNull(securityIndexes);
-        securityIndexesColumnIndex = new HashMap<>(securityIndexes.size());
+        // concurrent maps so that existing columns can be looked up without locking
+        securityIndexesColumnIndex = new ConcurrentHashMap<>(securityIndexes.size());
         for (int i = 0; i < securityIndexes.size(); i++) {
             securityIndexesColumnIndex.put(securityIndexes.get(i), i);
         }
         this.networkAttributes = Objects.requireNonNull(networkAttributes);
-        networkAttributesColumnIndex = new HashMap<>(networkAttributes.size());
+        networkAttributesColumnIndex = new ConcurrentHashMap<>(networkAttributes.size());
         for (int i = 0; i < networkAttributes.size(); i++) {
             networkAttributesColumnIndex.put(networkAttributes.get(i), i);
         }
@@ -136,6 +153,25 @@ public class OfflineDbTableDescription {
         }
     }
 
+    /**
+     * Create a description of a table with the same columns but another format.
+     */
+    OfflineDbTableDescription withFormat(OfflineDbTableFormat otherFormat) {
+        securityIndexesLock.lock();
+        networkAttributesLock.lock();
+        try {
+            return new OfflineDbTableDescription(otherFormat, sampleChunkSize, maxSecurityIndexesCount, maxNetworkAttributesCount,
+                                                 new ArrayList<>(securityIndexes), new ArrayList<>(networkAttributes));
+        } finally {
+            networkAttributesLock.unlock();
+            securityIndexesLock.unlock();
+        }
+    }
+
+    OfflineDbTableFormat getFormat() {
+        return format;
+    }
+
     int getSampleChunkSize() {
         return sampleChunkSize;
     }
@@ -189,9 +225,13 @@ public class OfflineDbTableDescription {
     }
 
     int getColumnIndex(SecurityIndexId securityIndexId) {
+        Integer index = securityIndexesColumnIndex.get(securityIndexId);
+        if (index != null) {
+            return index;
+        }
         securityIndexesLock.lock();
         try {
-            Integer index = securityIndexesColumnIndex.get(securityIndexId);
+            index = securityIndexesColumnIndex.get(securityIndexId);
             if (index == null) {
                 if (securityIndexes.size() > maxSecurityIndexesCount) {
                     throw new RuntimeException("Max number of security indexes reached (" + maxSecurityIndexesCount + ")");
@@ -220,9 +260,13 @@ public class OfflineDbTableDescription {
     }
 
     int getColumnIndex(HistoDbNetworkAttributeId attributeId) {
+        Integer index = networkAttributesColumnIndex.get(attributeId);
+        if (index != null) {
+            return index;
+        }
         networkAttributesLock.lock();
         try {
-            Integer index = networkAttributesColumnIndex.get(attributeId);
+            index = networkAttributesColumnIndex.get(attributeId);
             if (index == null) {
                 if (networkAttributes.size() > maxNetworkAttributesCount) {
                     throw new RuntimeException("Max number of network attributes reached (" + maxNetworkAttributesCount + ")");
@@ -238,6 +282,14 @@ public class OfflineDbTableDescription {
         }
     }
 
+    /**
+     * Get the column index of a network attribute, or -1 if the attribute has no column.
+     */
+    int findColumnIndex(HistoDbNetworkAttributeId attributeId) {
+        Integer index = networkAttributesColumnIndex.get(attributeId);
+        return index != null ? index : -1;
+    }
+
     HistoDbNetworkAttributeId getNetworkAttributeId(int columnIndex) {
         networkAttributesLock.lock();
         try {
@@ -266,6 +318,17 @@ public class OfflineDbTableDescription {
         return getTasksStatusRowSize() + getSecurityIndexesRowSize() + getNetworkAttributesRowSize();
     }
 
+    /**
+     * Size of a row without network attributes, used by the column format.
+     */
+    int getStatusRowSize() {
+        return getTasksStatusRowSize() + getSecurityIndexesRowSize();
+    }
+
+    static int getNetworkAttributeCellSize() {
+        return NETWORK_ATTRIBUTE_CELL_SIZE;
+    }
+
     int getTaskTypeBufferPosition(int sample, OfflineTaskType taskType) {
         return sample * getRowSize() + getColumnIndex(taskType) * TASK_STATUS_CELL_SIZE;
     }
@@ -275,7 +338,19 @@ public class OfflineDbTableDescription {
     }
 
     int getNetworkAttributeBufferPosition(int sample, HistoDbNetworkAttributeId attributeId) {
-        return sample * getRowSize() + getTasksStatusRowSize() + getSecurityIndexesRowSize() + getColumnIndex(attributeId) * NETWORK_ATTRIBUTE_CELL_SIZE;
+        return getNetworkAttributeBufferPosition(sample, getColumnIndex(attributeId));
+    }
+
+    int getNetworkAttributeBufferPosition(int sample, int columnIndex) {
+        return sample * getRowSize() + getTasksStatusRowSize() + getSecurityIndexesRowSize() + columnIndex * NETWORK_ATTRIBUTE_CELL_SIZE;
+    }
+
+    int getTaskTypeStatusBufferPosition(int sample, OfflineTaskType taskType) {
+        return sample * getStatusRowSize() + getColumnIndex(taskType) * TASK_STATUS_CELL_SIZE;
+    }
+
+    int getSecurityIndexStatusBufferPosition(int sample, SecurityIndexId securityIndexId) {
+        return sample * getStatusRowSize() + getTasksStatusRowSize() + getColumnIndex(securityIndexId) * SECURITY_INDEX_CELL_SIZE;
     }
 
     boolean hasChanged() {
@@ -297,6 +372,7 @@ public class OfflineDbTableDescription {
             generator.useDefaultPrettyPrinter();
             generator.writeStartObject();
 
+            generator.writeStringField("format", format.name());
             generator.writeNumberField("sampleChunkSize", sampleChunkSize);
             generator.writeNumberField("maxSecurityIndexesCount", maxSecurityIndexesCount);
             generator.writeNumberField("maxNetworkAttributesCount", maxNetworkAttributesCount);
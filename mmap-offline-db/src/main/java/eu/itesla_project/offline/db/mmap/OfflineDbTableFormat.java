@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+/**
+ * On disk layout of the offline db table.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public enum OfflineDbTableFormat {
+    /**
+     * One file per chunk of samples, each sample being a fixed size row with all the columns.
+     */
+    ROW,
+
+    /**
+     * One file per chunk of samples for task status and security indexes, and one segment file
+     * per chunk and network attribute, only created when a value of the attribute is written.
+     */
+    COLUMN
+}
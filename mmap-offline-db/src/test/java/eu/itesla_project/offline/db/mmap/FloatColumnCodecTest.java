@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class FloatColumnCodecTest {
+
+    private static void assertRoundTrip(float[] values) {
+        float[] decoded = FloatColumnCodec.decode(FloatColumnCodec.encode(values), values.length);
+        assertEquals(values.length, decoded.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Float.floatToRawIntBits(values[i]), Float.floatToRawIntBits(decoded[i]));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertRoundTrip(new float[0]);
+        assertRoundTrip(new float[] {0f, -0f, 1.5f, -1.5f, Float.NaN, Float.MAX_VALUE, -Float.MAX_VALUE, Float.MIN_VALUE,
+                                     Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN});
+        Random random = new Random(0);
+        float[] values = new float[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextBoolean() ? Float.NaN : random.nextFloat() * 1000 - 500;
+        }
+        assertRoundTrip(values);
+    }
+
+    @Test
+    public void testCompression() {
+        float[] values = new float[1000];
+        Arrays.fill(values, Float.NaN);
+        values[10] = 400f;
+        values[11] = 400f;
+        // one byte per value except around the change of value
+        assertTrue(FloatColumnCodec.encode(values).length < values.length + 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        FloatColumnCodec.decode(new byte[] {(byte) 0x80}, 1);
+    }
+}
@@ -6,10 +6,36 @@
  */
 package eu.itesla_project.offline.db.mmap;
 
+import com.google.common.io.ByteStreams;
+import eu.itesla_project.iidm.network.Country;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.modules.histo.HistoDbAttr;
+import eu.itesla_project.modules.histo.HistoDbNetworkAttributeId;
+import eu.itesla_project.modules.offline.*;
+import eu.itesla_project.simulation.securityindexes.OverloadSecurityIndex;
 import eu.itesla_project.offline.db.AbstractOfflineDbTest;
+import eu.itesla_project.offline.db.util.MemoryMappedFileFactory;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
 
 /**
  *
@@ -17,6 +43,9 @@ import java.io.IOException;
  */
 public class MMapOfflineDbTest extends AbstractOfflineDbTest {
 
+    @Rule
+    public TemporaryFolder realTmpDir = new TemporaryFolder();
+
     @Test
     public void testMMapImplChunkSample10() throws IOException {
         try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 10, 5, 70), DB_NAME, file -> new MemoryMapFileTestImpl())) {
@@ -31,4 +60,150 @@ public class MMapOfflineDbTest extends AbstractOfflineDbTest {
         }
     }
 
+    @Test
+    public void testColumnFormatChunkSample10() throws IOException {
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 10, 5, 70, OfflineDbTableFormat.COLUMN, true), DB_NAME, file -> new MemoryMapFileTestImpl())) {
+            test(offlineDb);
+        }
+    }
+
+    @Test
+    public void testColumnFormatChunkSample1() throws IOException {
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 1, 5, 70, OfflineDbTableFormat.COLUMN, true), DB_NAME, file -> new MemoryMapFileTestImpl())) {
+            test(offlineDb);
+        }
+    }
+
+    private static String createWorkflow(MMapOfflineDb offlineDb) {
+        String workflowId = offlineDb.createWorkflow(null, new OfflineWorkflowCreationParameters(EnumSet.of(Country.FR), DateTime.now(),
+                new Interval(DateTime.now(), DateTime.now().plus(1)), false, false));
+        Network network = EurostagTutorialExample1Factory.create();
+        // 5 samples spread over 3 chunks, sample 3 is not stored
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, offlineDb.createSample(workflowId));
+            if (i != 3) {
+                network.getLoad("LOAD").getTerminal().setP(10 + i);
+                offlineDb.storeState(workflowId, i, network, null);
+                offlineDb.storeTaskStatus(workflowId, i, OfflineTaskType.IMPACT_ANALYSIS, OfflineTaskStatus.SUCCEED, null);
+            }
+        }
+        offlineDb.storeSecurityIndexes(workflowId, 1, Collections.singletonList(new OverloadSecurityIndex("NHV1_NHV2_1", 0.5)));
+        return workflowId;
+    }
+
+    private static void testNetworkAttributeValues(MMapOfflineDb offlineDb, String workflowId) {
+        HistoDbNetworkAttributeId loadP = new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.P);
+        assertArrayEquals(new float[] {10, 11, 12, Float.NaN, 14}, offlineDb.getNetworkAttributeValues(workflowId, loadP, 0, 5), 0f);
+        assertArrayEquals(new float[] {11, 12}, offlineDb.getNetworkAttributeValues(workflowId, loadP, 1, 3), 0f);
+        FloatBuffer buffer = offlineDb.getNetworkAttributeValuesBuffer(workflowId, loadP, 4, 5);
+        assertEquals(1, buffer.remaining());
+        assertEquals(14f, buffer.get(0), 0f);
+        // unknown attribute
+        assertTrue(Float.isNaN(offlineDb.getNetworkAttributeValues(workflowId, new HistoDbNetworkAttributeId("XXX", HistoDbAttr.P), 0, 1)[0]));
+    }
+
+    @Test
+    public void testNetworkAttributeValues() throws IOException {
+        for (OfflineDbTableFormat format : OfflineDbTableFormat.values()) {
+            try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 2, 5, 70, format, false), DB_NAME + format, file -> new MemoryMapFileTestImpl())) {
+                testNetworkAttributeValues(offlineDb, createWorkflow(offlineDb));
+            }
+        }
+    }
+
+    @Test
+    public void testColumnFormatSegmentFilesClosed() throws IOException {
+        Set<String> openFiles = new HashSet<>();
+        MemoryMappedFileFactory factory = file -> new MemoryMapFileTestImpl() {
+            @Override
+            public ByteBuffer getBuffer(int size) throws IOException {
+                openFiles.add(file.getFileName().toString());
+                return super.getBuffer(size);
+            }
+
+            @Override
+            public void close() throws IOException {
+                openFiles.remove(file.getFileName().toString());
+            }
+        };
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 2, 5, 70, OfflineDbTableFormat.COLUMN, false), DB_NAME, factory)) {
+            testNetworkAttributeValues(offlineDb, createWorkflow(offlineDb));
+            // segments stay mapped but only the status files of the chunks are still open
+            assertFalse(openFiles.isEmpty());
+            assertTrue(openFiles.toString(), openFiles.stream().allMatch(fileName -> !fileName.startsWith("offlinedb.") || fileName.endsWith(".status")));
+        }
+    }
+
+    private static String exportCsv(MMapOfflineDb offlineDb, String workflowId) {
+        StringWriter writer = new StringWriter();
+        offlineDb.exportCsv(workflowId, writer, new OfflineDbCsvExportConfig(';', OfflineAttributesFilter.ALL, true, true));
+        return writer.toString();
+    }
+
+    @Test
+    public void testExportCsvToStream() throws IOException {
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(new MMapOfflineDbConfig(tmpDir, 2, 5, 70), DB_NAME, file -> new MemoryMapFileTestImpl())) {
+            String workflowId = createWorkflow(offlineDb);
+            String csv = exportCsv(offlineDb, workflowId);
+            OfflineDbCsvExportConfig config = new OfflineDbCsvExportConfig(';', OfflineAttributesFilter.ALL, true, true);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            offlineDb.exportCsv(workflowId, os, config);
+            assertEquals(csv, new String(os.toByteArray(), StandardCharsets.UTF_8));
+
+            config.setCompress(true);
+            os = new ByteArrayOutputStream();
+            offlineDb.exportCsv(workflowId, os, config);
+            try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(os.toByteArray()))) {
+                assertEquals(csv, new String(ByteStreams.toByteArray(is), StandardCharsets.UTF_8));
+            }
+
+            // only successful samples, without header
+            config = new OfflineDbCsvExportConfig(';', OfflineAttributesFilter.ALL, true, false, false, 0, -1);
+            StringWriter writer = new StringWriter();
+            offlineDb.exportCsv(workflowId, writer, config);
+            assertEquals(4, writer.toString().split("\n").length);
+        }
+    }
+
+    @Test
+    public void testConversion() throws IOException {
+        // with real memory mapped files so that the converted table can be reloaded
+        MMapOfflineDbConfig config = new MMapOfflineDbConfig(realTmpDir.getRoot().toPath(), 2, 5, 70, OfflineDbTableFormat.ROW, true);
+        String workflowId;
+        String csv;
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(config, DB_NAME)) {
+            workflowId = createWorkflow(offlineDb);
+            csv = exportCsv(offlineDb, workflowId);
+            offlineDb.convertWorkflow(workflowId, OfflineDbTableFormat.COLUMN);
+            assertEquals(OfflineDbTableFormat.COLUMN, offlineDb.getTableFormat(workflowId));
+            assertEquals(csv, exportCsv(offlineDb, workflowId));
+        }
+        // full chunks have been compressed when closing
+        Path workflowDir = realTmpDir.getRoot().toPath().resolve(DB_NAME).resolve(workflowId);
+        assertTrue(Files.exists(workflowDir.resolve("offlinedb.0.status")));
+        assertFalse(Files.exists(workflowDir.resolve("offlinedb.0")));
+        try (Stream<Path> stream = Files.list(workflowDir)) {
+            assertTrue(stream.anyMatch(file -> file.getFileName().toString().startsWith("offlinedb.0.") && file.getFileName().toString().endsWith(".z")));
+        }
+        try (MMapOfflineDb offlineDb = new MMapOfflineDb(config, DB_NAME)) {
+            assertEquals(OfflineDbTableFormat.COLUMN, offlineDb.getTableFormat(workflowId));
+            assertEquals(csv, exportCsv(offlineDb, workflowId));
+            testNetworkAttributeValues(offlineDb, workflowId);
+
+            // writing in a compressed segment
+            Network network = EurostagTutorialExample1Factory.create();
+            network.getLoad("LOAD").getTerminal().setP(20);
+            offlineDb.storeState(workflowId, 0, network, null);
+            HistoDbNetworkAttributeId loadP = new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.P);
+            assertEquals(20f, offlineDb.getNetworkAttributeValues(workflowId, loadP, 0, 1)[0], 0f);
+            String csv2 = exportCsv(offlineDb, workflowId);
+            assertNotEquals(csv, csv2);
+
+            offlineDb.convertWorkflow(workflowId, OfflineDbTableFormat.ROW);
+            assertEquals(OfflineDbTableFormat.ROW, offlineDb.getTableFormat(workflowId));
+            assertEquals(20f, offlineDb.getNetworkAttributeValues(workflowId, loadP, 0, 1)[0], 0f);
+            assertEquals(csv2, exportCsv(offlineDb, workflowId));
+        }
+    }
+
 }
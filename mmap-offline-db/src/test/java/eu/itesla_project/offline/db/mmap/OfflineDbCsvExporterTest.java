@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.offline.db.mmap;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class OfflineDbCsvExporterTest {
+
+    private static String format(float f) throws IOException {
+        StringWriter writer = new StringWriter();
+        new OfflineDbCsvExporter.Block(0).append(f).writeTo(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testFloatFormat() throws IOException {
+        for (float f : new float[] {0f, -0f, 1f, -1f, 10f, 0.1f, -0.1f, 0.5f, 0.001f, 123.456f, 400.25f, 1234567f, 9999999f,
+                                    1e7f, 1e-4f, 3.4028235e38f, Float.MIN_VALUE, Float.POSITIVE_INFINITY}) {
+            assertEquals(Float.toString(f), format(f));
+        }
+    }
+
+    @Test
+    public void testFloatRoundTrip() throws IOException {
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            float f = Float.intBitsToFloat(random.nextInt());
+            if (!Float.isNaN(f)) {
+                String str = format(f);
+                assertEquals(str, Float.floatToIntBits(f), Float.floatToIntBits(Float.parseFloat(str)));
+                assertTrue(str.length() <= Float.toString(f).length());
+            }
+            float g = (random.nextFloat() - 0.5f) * 2000;
+            assertEquals(g, Float.parseFloat(format(g)), 0f);
+        }
+    }
+}
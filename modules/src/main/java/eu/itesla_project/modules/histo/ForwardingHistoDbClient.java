@@ -14,6 +14,7 @@ import org.joda.time.Interval;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
@@ -71,6 +72,11 @@ public class ForwardingHistoDbClient implements HistoDbClient {
         return delegate.queryCsv(queryType, countries, equips, attrs, interval, horizon, zipped, async);
     }
 
+    @Override
+    public CompletableFuture<Void> prefetchCsv(HistoQueryType queryType, Collection<Set<HistoDbAttributeId>> attrIdsList, Interval interval, HistoDbHorizon horizon, boolean zipped, boolean async) {
+        return delegate.prefetchCsv(queryType, attrIdsList, interval, horizon, zipped, async);
+    }
+
     @Override
     public HistoDbStats queryStats(Set<HistoDbAttributeId> attrIds, Interval interval, HistoDbHorizon horizon, boolean async) throws IOException, InterruptedException {
         return delegate.queryStats(attrIds, interval, horizon, async);
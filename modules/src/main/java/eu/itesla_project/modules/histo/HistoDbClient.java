@@ -11,7 +11,9 @@ import eu.itesla_project.iidm.network.Identifiable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
+import com.google.common.io.ByteStreams;
 import eu.itesla_project.modules.histo.cache.HistoDbCache;
 import org.joda.time.Interval;
 
@@ -31,6 +33,26 @@ public interface HistoDbClient extends AutoCloseable {
 
     InputStream queryCsv(HistoQueryType queryType, Set<HistoDbAttributeId> attrIds, Interval interval, HistoDbHorizon horizon, boolean zipped, boolean async) throws IOException, InterruptedException;
 
+    /**
+     * Run a batch of queries so that their results are available in the cache for later
+     * {@link #queryCsv(HistoQueryType, Set, Interval, HistoDbHorizon, boolean, boolean)} calls.
+     * Default implementation runs the queries one after the other in the calling thread.
+     */
+    default CompletableFuture<Void> prefetchCsv(HistoQueryType queryType, Collection<Set<HistoDbAttributeId>> attrIdsList, Interval interval, HistoDbHorizon horizon, boolean zipped, boolean async) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            for (Set<HistoDbAttributeId> attrIds : attrIdsList) {
+                try (InputStream is = queryCsv(queryType, attrIds, interval, horizon, zipped, async)) {
+                    ByteStreams.copy(is, ByteStreams.nullOutputStream());
+                }
+            }
+            future.complete(null);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     HistoDbStats queryStats(Set<Country> countries, Set<HistoDbEquip> equips, Set<HistoDbAttr> attrs, Interval interval, HistoDbHorizon horizon, boolean async) throws IOException, InterruptedException;
 
     HistoDbStats queryStats(Set<HistoDbAttributeId> attrIds, Interval interval, HistoDbHorizon horizon, boolean async) throws IOException, InterruptedException;
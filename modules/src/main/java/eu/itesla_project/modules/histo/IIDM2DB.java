@@ -9,7 +9,6 @@ package eu.itesla_project.modules.histo;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import eu.itesla_project.iidm.network.*;
-import eu.itesla_project.iidm.network.util.SV;
 import org.apache.commons.codec.binary.Base64;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -177,230 +176,37 @@ public class IIDM2DB {
         }
     }
 
-    private static class TerminalContext {
-        float p = Float.NaN;
-        float q = Float.NaN;
-        float v = Float.NaN;
-        float i = Float.NaN;
-
-        private void update(Terminal t) {
-            if (t.getBusView().getBus() != null) {
-                p = t.getP();
-                q = t.getQ();
-                v = t.getBusView().getBus().getV();
-                i = t.getI();
-            }
-        }
-
-        private static TerminalContext create(Terminal t) {
-            TerminalContext context = new TerminalContext();
-            context.update(t);
-            return context;
-        }
-    }
-
     public static CimValuesMap extractCimValues(Network n, Config config) {
 
         CimValuesMap valuesMap = new CimValuesMap();
 
-        for (Substation ss : n.getSubstations()) {
-
-            if (config.getCountryFilter() != null && !config.getCountryFilter().contains(ss.getCountry())) {
-                continue;
-            }
-
-            for (VoltageLevel vl : ss.getVoltageLevels()) {
-
-                if (vl.getNominalV() < config.getMinBaseVoltageFilter()) {
-                    continue;
-                }
-
-                String horizon = n.getForecastDistance() > 0 ? "DACF" : "SN"; // for backward compatibility
-                final LinkedHashMap<HistoDbAttributeId, Object> valueMap = valuesMap.getValueMap(new HorizonKey(n.getForecastDistance(), horizon));
-
-                if (config.getCimName() != null && !valueMap.containsKey(HistoDbMetaAttributeId.cimName)) valueMap.put(HistoDbMetaAttributeId.cimName, config.getCimName());
-
-                if (config.isExtractTemporalFields()) {
-                    if (!valueMap.containsKey(HistoDbMetaAttributeId.datetime)) valueMap.put(HistoDbMetaAttributeId.datetime, n.getCaseDate().toDate());
-                    if (!valueMap.containsKey(HistoDbMetaAttributeId.daytime)) valueMap.put(HistoDbMetaAttributeId.daytime, n.getCaseDate().getMillisOfDay());
-                    if (!valueMap.containsKey(HistoDbMetaAttributeId.month)) valueMap.put(HistoDbMetaAttributeId.month, n.getCaseDate().getMonthOfYear());
-                    if (!valueMap.containsKey(HistoDbMetaAttributeId.forecastTime)) valueMap.put(HistoDbMetaAttributeId.forecastTime, n.getForecastDistance());
-                    if (!valueMap.containsKey(HistoDbMetaAttributeId.horizon)) valueMap.put(HistoDbMetaAttributeId.horizon, horizon);
-                }
-
-                vl.visitEquipments(new AbstractTopologyVisitor() {
-
-                    private void visitInjection(SingleTerminalConnectable inj) {
-                        visitInjection(inj, new TerminalContext());
-                    }
-
-                    private void visitInjection(SingleTerminalConnectable inj, TerminalContext context) {
-                        Terminal t = inj.getTerminal();
-                        context.update(t);
-
-                        if (config.isReplaceMissingValues()) {
-                            if (Float.isNaN(context.p)) {
-                                context.p = 0f;
-                            }
-                            if (Float.isNaN(context.q)) {
-                                context.q = 0f;
-                            }
-                            if (Float.isNaN(context.v)) {
-                                // use connectable bus voltage, better than nothing...
-                                context.v = t.getBusBreakerView().getConnectableBus().getV();
-                            }
-                            if (Float.isNaN(context.v)) {
-                                context.v = 0f; // TODO is there a better value?
-                            }
-                            if (Float.isNaN(context.i)) {
-                                context.i = 0f;
-                            }
-                        }
-                        valueMap.put(new HistoDbNetworkAttributeId(inj.getId(), HistoDbAttr.P), context.p);
-                        valueMap.put(new HistoDbNetworkAttributeId(inj.getId(), HistoDbAttr.Q), context.q);
-                        valueMap.put(new HistoDbNetworkAttributeId(inj.getId(), HistoDbAttr.V), context.v);
-                        valueMap.put(new HistoDbNetworkAttributeId(inj.getId(), HistoDbAttr.I), context.i);
-                    }
-
-                    private void visitBranch(TwoTerminalsConnectable branch, TwoTerminalsConnectable.Side side, float r, float x, float g1, float b1, float g2, float b2, float ratio) {
-                        Terminal t = side == TwoTerminalsConnectable.Side.ONE ? branch.getTerminal1() : branch.getTerminal2();
-
-                        TerminalContext context = TerminalContext.create(t);
-
-                        if (config.isReplaceMissingValues()) {
-                            if (Float.isNaN(context.p)) {
-                                context.p = 0f;
-                            }
-                            if (Float.isNaN(context.q)) {
-                                context.q = 0f;
-                            }
-                            if (Float.isNaN(context.v)) {
-                                Terminal otherT = t == branch.getTerminal1() ? branch.getTerminal2() : branch.getTerminal1();
-                                Bus otherBus = otherT.getBusView().getBus();
-                                if (otherBus != null && !Float.isNaN(otherBus.getV())) {
-                                    // compute the voltage from the other side physical values
-                                    // TODO approx we do not consider voltage drop due to branch impedance
-                                    if (t == branch.getTerminal1()) {
-                                        // we are on side 1 disconnected and side 2 is connected
-                                        context.v = otherBus.getV() / ratio;
-                                    } else if (t == branch.getTerminal2()) {
-                                        // we are on side 2 disconnected and side 1 is connected
-                                        context.v = otherBus.getV() * ratio;
-                                    } else {
-                                        throw new AssertionError();
-                                    }
-                                } else {
-                                    // use connectable bus voltage, better than nothing...
-                                    context.v = t.getBusBreakerView().getConnectableBus().getV();
-                                }
-                            }
-                            if (Float.isNaN(context.v)) {
-                                context.v = 0;  // TODO is there a better value?
-                            }
-                            if (Float.isNaN(context.i)) {
-                                context.i = 0;
-                            }
-                        }
-                        valueMap.put(new HistoDbNetworkAttributeId(branch.getId(), t.getVoltageLevel().getId(), HistoDbAttr.P), context.p);
-                        valueMap.put(new HistoDbNetworkAttributeId(branch.getId(), t.getVoltageLevel().getId(), HistoDbAttr.Q), context.q);
-                        valueMap.put(new HistoDbNetworkAttributeId(branch.getId(), t.getVoltageLevel().getId(), HistoDbAttr.V), context.v);
-                        valueMap.put(new HistoDbNetworkAttributeId(branch.getId(), t.getVoltageLevel().getId(), HistoDbAttr.I), context.i);
-                    }
-
-                    @Override
-                    public void visitGenerator(Generator g) {
-                        TerminalContext context = new TerminalContext();
-                        visitInjection(g, context);
-                        // reactive limit
-                        float qmax = g.getReactiveLimits().getMaxQ(context.p);
-                        valueMap.put(new HistoDbNetworkAttributeId(g.getId(), HistoDbAttr.QR), Math.abs(qmax - context.q));
-                    }
-
-                    @Override
-                    public void visitLoad(Load l) {
-                        if (l.getLoadType() != LoadType.FICTITIOUS) {
-                            visitInjection(l);
-                        }
-                    }
-
-                    @Override
-                    public void visitShuntCompensator(ShuntCompensator sc) {
-                        visitInjection(sc);
-                    }
-
-                    @Override
-                    public void visitDanglingLine(DanglingLine dl) {
-                        visitInjection(dl);
-                        valueMap.put(new HistoDbNetworkAttributeId(dl.getId(), HistoDbAttr.P0), dl.getP0());
-                        valueMap.put(new HistoDbNetworkAttributeId(dl.getId(), HistoDbAttr.Q0), dl.getQ0());
-                    }
-
-                    @Override
-                    public void visitLine(Line l, Line.Side side) {
-                        visitBranch(l, side, l.getR(), l.getX(), l.getG1(), l.getB1(), l.getG2(), l.getB2(), 1);
-                    }
-
-                    @Override
-                    public void visitTwoWindingsTransformer(TwoWindingsTransformer twt, TwoWindingsTransformer.Side side) {
-                        visitBranch(twt, side, twt.getR(), twt.getX(), twt.getG(), twt.getB(), 0, 0, SV.getRatio(twt));
-                    }
+        // numerical values are extracted through the schema, topologies are inserted
+        // before the aggregated values of their voltage level
+        IIDM2DBSchema schema = new IIDM2DBSchema(n, config);
+        if (schema.isEmpty()) {
+            return valuesMap;
+        }
 
-                    @Override
-                    public void visitThreeWindingsTransformer(ThreeWindingsTransformer twt, ThreeWindingsTransformer.Side side) {
-                        Terminal t;
-                        switch (side) {
-                            case ONE:
-                                t = twt.getLeg1().getTerminal();
-                                break;
-                            case TWO:
-                                t = twt.getLeg2().getTerminal();
-                                break;
-                            case THREE:
-                                t = twt.getLeg3().getTerminal();
-                                break;
-                            default:
-                                throw new AssertionError();
-                        }
-                        TerminalContext context = TerminalContext.create(t);
-
-                        if (config.isReplaceMissingValues()) {
-                            if (Float.isNaN(context.p)) {
-                                context.p = 0f;
-                            }
-                            if (Float.isNaN(context.q)) {
-                                context.q = 0f;
-                            }
-                            if (Float.isNaN(context.v)) {
-                                context.v = 0; // TODO is possible to find a better replacement value?
-                            }
-                            if (Float.isNaN(context.i)) {
-                                context.i = 0f;
-                            }
-                        }
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), t.getVoltageLevel().getId(), HistoDbAttr.V), context.v);
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), t.getVoltageLevel().getId(), HistoDbAttr.I), context.i);
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), t.getVoltageLevel().getId(), HistoDbAttr.P), context.p);
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), t.getVoltageLevel().getId(), HistoDbAttr.Q), context.q);
+        String horizon = n.getForecastDistance() > 0 ? "DACF" : "SN"; // for backward compatibility
+        final LinkedHashMap<HistoDbAttributeId, Object> valueMap = valuesMap.getValueMap(new HorizonKey(n.getForecastDistance(), horizon));
 
-                    }
-                });
+        if (config.getCimName() != null) valueMap.put(HistoDbMetaAttributeId.cimName, config.getCimName());
 
-                // taps
-                for (TwoWindingsTransformer twt : ss.getTwoWindingsTransformers()) {
-                    if (twt.getPhaseTapChanger() != null) {
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), HistoDbAttr.PTC), twt.getPhaseTapChanger().getTapPosition());
-                    }
-                    if (twt.getRatioTapChanger() != null) {
-                        valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), HistoDbAttr.RTC), twt.getRatioTapChanger().getTapPosition());
-                    }
-                }
-                for (ThreeWindingsTransformer twt : ss.getThreeWindingsTransformers()) {
-                    valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), twt.getLeg2().getTerminal().getVoltageLevel().getId(), HistoDbAttr.RTC), twt.getLeg2().getRatioTapChanger().getTapPosition());
-                    valueMap.put(new HistoDbNetworkAttributeId(twt.getId(), twt.getLeg3().getTerminal().getVoltageLevel().getId(), HistoDbAttr.RTC), twt.getLeg3().getRatioTapChanger().getTapPosition());
-                }
+        if (config.isExtractTemporalFields()) {
+            valueMap.put(HistoDbMetaAttributeId.datetime, n.getCaseDate().toDate());
+            valueMap.put(HistoDbMetaAttributeId.daytime, n.getCaseDate().getMillisOfDay());
+            valueMap.put(HistoDbMetaAttributeId.month, n.getCaseDate().getMonthOfYear());
+            valueMap.put(HistoDbMetaAttributeId.forecastTime, n.getForecastDistance());
+            valueMap.put(HistoDbMetaAttributeId.horizon, horizon);
+        }
 
+        float[] values = schema.fill(schema.newValues());
+        List<HistoDbNetworkAttributeId> attributeIds = schema.getAttributeIds();
+        for (int column = 0; column < attributeIds.size(); column++) {
+            VoltageLevel vl = schema.getVoltageLevel(column);
+            if (vl != null) {
                 /**
-                 * Extract topologies and mean tension
+                 * Extract topologies
                  */
                 try {
                     JSONArray toposArray = toTopoSet(vl);
@@ -415,84 +221,8 @@ public class IIDM2DB {
                 } catch (JSONException e) {
                     throw new RuntimeException("Failed to gather topologies", e);
                 }
-
-                float pgen = 0;
-                float qgen = 0;
-                float pload = 0;
-                float qload = 0;
-                float qshunt = 0;
-
-                for (Generator g: vl.getGenerators()) {
-                    Terminal t = g.getTerminal();
-                    if (t.getBusView().getBus() != null) {
-                        if (!Float.isNaN(t.getP())) {
-                            pgen += t.getP();
-                        }
-                        if (!Float.isNaN(t.getQ())) {
-                            qgen += t.getQ();
-                        }
-                    }
-                }
-                for (Load l: vl.getLoads()) {
-                    Terminal t = l.getTerminal();
-                    if (t.getBusView().getBus() != null) {
-                        if (!Float.isNaN(t.getP())) {
-                            pload += t.getP();
-                        }
-                        if (!Float.isNaN(t.getQ())) {
-                            qload += t.getQ();
-                        }
-                    }
-                }
-                for (ShuntCompensator s: vl.getShunts()) {
-                    Terminal t = s.getTerminal();
-                    if (t.getBusView().getBus() != null) {
-                        if (!Float.isNaN(t.getQ())) {
-                            qshunt += t.getQ();
-                        }
-                    }
-                }
-
-                float vSum = 0;
-                int validBusCount = 0;
-                int busCount = 0;
-                float vMin = Float.NaN;
-                float vMax = Float.NaN;
-                for (Bus b : vl.getBusView().getBuses()) {
-                    if (!Float.isNaN(b.getV())) {
-                        vSum += b.getV();
-                        validBusCount++;
-                        vMin = Float.isNaN(vMin) ? b.getV() : Math.min(vMin, b.getV());
-                        vMax = Float.isNaN(vMax) ? b.getV() : Math.max(vMax, b.getV());
-                    }
-                    busCount++;
-                }
-                float meanV = Float.NaN;
-                if (validBusCount > 0) {
-                    meanV = vSum / validBusCount;
-                }
-                if (config.isReplaceMissingValues()) {
-                    if (Float.isNaN(meanV)) {
-                        meanV = 0; // TODO is there a better value?
-                    }
-                    if (Float.isNaN(vMin)) {
-                        vMin = 0; // TODO is there a better value?
-                    }
-                    if (Float.isNaN(vMax)) {
-                        vMax = 0; // TODO is there a better value?
-                    }
-                }
-
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.PGEN), pgen);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.QGEN), qgen);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.PLOAD), pload);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.QLOAD), qload);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.QSHUNT), qshunt);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.V), meanV);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.VMIN), vMin);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.VMAX), vMax);
-                valueMap.put(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.BC), busCount);
             }
+            valueMap.put(attributeIds.get(column), schema.getValue(values, column));
         }
 
         return valuesMap;
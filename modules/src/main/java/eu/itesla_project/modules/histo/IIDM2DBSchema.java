@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.histo;
+
+import eu.itesla_project.iidm.network.*;
+import eu.itesla_project.iidm.network.util.SV;
+
+import java.util.*;
+
+/**
+ * Schema of the numerical network attributes extracted by {@link IIDM2DB}, to extract
+ * them into a primitive vector of values.
+ * <p>
+ * The schema (the list of attributes and their column index) only depends on the
+ * equipments of the network, so it is built once per network and then used to fill a
+ * reusable <code>float[]</code> with the values of the working state, without creating
+ * any attribute id or boxed value. Values are the same as the ones extracted by
+ * {@link IIDM2DB#extractCimValues(Network, IIDM2DB.Config)}, in the same order, but
+ * metadata (case name, dates, horizon) and topology attributes are not part of the
+ * schema. Tap positions and bus counts are stored as floats and converted back to
+ * integers by {@link #toMap(float[])}. {@link IIDM2DB#extractCimValues(Network, IIDM2DB.Config)}
+ * is itself built from the schema.
+ * <p>
+ * A schema is immutable and can be shared by several threads, each one filling values
+ * from its own working state.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class IIDM2DBSchema {
+
+    /**
+     * Fill a group of columns from the state of an equipment.
+     */
+    private interface ColumnsFiller {
+
+        void fill(float[] values);
+    }
+
+    private final Network network;
+
+    private final List<HistoDbNetworkAttributeId> attributeIds = new ArrayList<>();
+
+    private final Map<HistoDbNetworkAttributeId, Integer> columnIndexes = new HashMap<>();
+
+    private final BitSet integerColumns = new BitSet();
+
+    private final List<ColumnsFiller> fillers = new ArrayList<>();
+
+    // first column of the aggregated values of each voltage level
+    private final Map<Integer, VoltageLevel> voltageLevelColumns = new HashMap<>();
+
+    public IIDM2DBSchema(Network network, IIDM2DB.Config config) {
+        this.network = Objects.requireNonNull(network);
+        Objects.requireNonNull(config);
+        boolean replaceMissingValues = config.isReplaceMissingValues();
+        for (Substation ss : network.getSubstations()) {
+            if (config.getCountryFilter() != null && !config.getCountryFilter().contains(ss.getCountry())) {
+                continue;
+            }
+            boolean tapsAdded = false;
+            for (VoltageLevel vl : ss.getVoltageLevels()) {
+                if (vl.getNominalV() < config.getMinBaseVoltageFilter()) {
+                    continue;
+                }
+
+                vl.visitEquipments(new AbstractTopologyVisitor() {
+
+                    @Override
+                    public void visitGenerator(Generator g) {
+                        int[] columns = addColumns(g.getId(), null, HistoDbAttr.P, HistoDbAttr.Q, HistoDbAttr.V, HistoDbAttr.I);
+                        int qrColumn = addColumn(new HistoDbNetworkAttributeId(g.getId(), HistoDbAttr.QR), false);
+                        fillers.add(values -> {
+                            fillInjection(g, columns, replaceMissingValues, values);
+                            // reactive limit
+                            float qmax = g.getReactiveLimits().getMaxQ(values[columns[0]]);
+                            values[qrColumn] = Math.abs(qmax - values[columns[1]]);
+                        });
+                    }
+
+                    @Override
+                    public void visitLoad(Load l) {
+                        if (l.getLoadType() != LoadType.FICTITIOUS) {
+                            int[] columns = addColumns(l.getId(), null, HistoDbAttr.P, HistoDbAttr.Q, HistoDbAttr.V, HistoDbAttr.I);
+                            fillers.add(values -> fillInjection(l, columns, replaceMissingValues, values));
+                        }
+                    }
+
+                    @Override
+                    public void visitShuntCompensator(ShuntCompensator sc) {
+                        int[] columns = addColumns(sc.getId(), null, HistoDbAttr.P, HistoDbAttr.Q, HistoDbAttr.V, HistoDbAttr.I);
+                        fillers.add(values -> fillInjection(sc, columns, replaceMissingValues, values));
+                    }
+
+                    @Override
+                    public void visitDanglingLine(DanglingLine dl) {
+                        int[] columns = addColumns(dl.getId(), null, HistoDbAttr.P, HistoDbAttr.Q, HistoDbAttr.V, HistoDbAttr.I,
+                                                   HistoDbAttr.P0, HistoDbAttr.Q0);
+                        fillers.add(values -> {
+                            fillInjection(dl, columns, replaceMissingValues, values);
+                            values[columns[4]] = dl.getP0();
+                            values[columns[5]] = dl.getQ0();
+                        });
+                    }
+
+                    private void visitBranch(TwoTerminalsConnectable branch, TwoTerminalsConnectable.Side side) {
+                        Terminal t = side == TwoTerminalsConnectable.Side.ONE ? branch.getTerminal1() : branch.getTerminal2();
+                        int[] columns = addColumns(branch.getId(), t.getVoltageLevel().getId(), HistoDbAttr.P, HistoDbAttr.Q, HistoDbAttr.V, HistoDbAttr.I);
+                        fillers.add(values -> fillBranch(branch, t, columns, replaceMissingValues, values));
+                    }
+
+                    @Override
+                    public void visitLine(Line l, Line.Side side) {
+                        visitBranch(l, side);
+                    }
+
+                    @Override
+                    public void visitTwoWindingsTransformer(TwoWindingsTransformer twt, TwoWindingsTransformer.Side side) {
+                        visitBranch(twt, side);
+                    }
+
+                    @Override
+                    public void visitThreeWindingsTransformer(ThreeWindingsTransformer twt, ThreeWindingsTransformer.Side side) {
+                        Terminal t;
+                        switch (side) {
+                            case ONE:
+                                t = twt.getLeg1().getTerminal();
+                                break;
+                            case TWO:
+                                t = twt.getLeg2().getTerminal();
+                                break;
+                            case THREE:
+                                t = twt.getLeg3().getTerminal();
+                                break;
+                            default:
+                                throw new AssertionError();
+                        }
+                        // same attribute order as IIDM2DB
+                        int[] columns = addColumns(twt.getId(), t.getVoltageLevel().getId(), HistoDbAttr.V, HistoDbAttr.I, HistoDbAttr.P, HistoDbAttr.Q);
+                        fillers.add(values -> fillThreeWindingsTransformerLeg(t, columns, replaceMissingValues, values));
+                    }
+                });
+
+                // taps, only once per substation
+                if (!tapsAdded) {
+                    for (TwoWindingsTransformer twt : ss.getTwoWindingsTransformers()) {
+                        if (twt.getPhaseTapChanger() != null) {
+                            int column = addColumn(new HistoDbNetworkAttributeId(twt.getId(), HistoDbAttr.PTC), true);
+                            fillers.add(values -> values[column] = twt.getPhaseTapChanger().getTapPosition());
+                        }
+                        if (twt.getRatioTapChanger() != null) {
+                            int column = addColumn(new HistoDbNetworkAttributeId(twt.getId(), HistoDbAttr.RTC), true);
+                            fillers.add(values -> values[column] = twt.getRatioTapChanger().getTapPosition());
+                        }
+                    }
+                    for (ThreeWindingsTransformer twt : ss.getThreeWindingsTransformers()) {
+                        int column2 = addColumn(new HistoDbNetworkAttributeId(twt.getId(), twt.getLeg2().getTerminal().getVoltageLevel().getId(), HistoDbAttr.RTC), true);
+                        int column3 = addColumn(new HistoDbNetworkAttributeId(twt.getId(), twt.getLeg3().getTerminal().getVoltageLevel().getId(), HistoDbAttr.RTC), true);
+                        fillers.add(values -> {
+                            values[column2] = twt.getLeg2().getRatioTapChanger().getTapPosition();
+                            values[column3] = twt.getLeg3().getRatioTapChanger().getTapPosition();
+                        });
+                    }
+                    tapsAdded = true;
+                }
+
+                // voltage level aggregated values
+                int[] columns = addColumns(vl.getId(), null, HistoDbAttr.PGEN, HistoDbAttr.QGEN, HistoDbAttr.PLOAD, HistoDbAttr.QLOAD,
+                                           HistoDbAttr.QSHUNT, HistoDbAttr.V, HistoDbAttr.VMIN, HistoDbAttr.VMAX);
+                int busCountColumn = addColumn(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.BC), true);
+                voltageLevelColumns.put(columns[0], vl);
+                fillers.add(values -> fillVoltageLevel(vl, columns, busCountColumn, replaceMissingValues, values));
+            }
+        }
+    }
+
+    private int addColumn(HistoDbNetworkAttributeId attributeId, boolean integer) {
+        // an attribute extracted several times (for instance a branch with both sides in
+        // the same voltage level) keeps its first column and its last value, like in a map
+        Integer column = columnIndexes.get(attributeId);
+        if (column == null) {
+            column = attributeIds.size();
+            attributeIds.add(attributeId);
+            columnIndexes.put(attributeId, column);
+            if (integer) {
+                integerColumns.set(column);
+            }
+        }
+        return column;
+    }
+
+    private int[] addColumns(String equipmentId, String side, HistoDbAttr... attributeTypes) {
+        int[] columns = new int[attributeTypes.length];
+        for (int i = 0; i < attributeTypes.length; i++) {
+            columns[i] = addColumn(side == null ? new HistoDbNetworkAttributeId(equipmentId, attributeTypes[i])
+                                                : new HistoDbNetworkAttributeId(equipmentId, side, attributeTypes[i]), false);
+        }
+        return columns;
+    }
+
+    private static void fillInjection(SingleTerminalConnectable inj, int[] columns, boolean replaceMissingValues, float[] values) {
+        Terminal t = inj.getTerminal();
+        float p = Float.NaN;
+        float q = Float.NaN;
+        float v = Float.NaN;
+        float i = Float.NaN;
+        Bus b = t.getBusView().getBus();
+        if (b != null) {
+            p = t.getP();
+            q = t.getQ();
+            v = b.getV();
+            i = t.getI();
+        }
+        if (replaceMissingValues) {
+            if (Float.isNaN(p)) {
+                p = 0f;
+            }
+            if (Float.isNaN(q)) {
+                q = 0f;
+            }
+            if (Float.isNaN(v)) {
+                // use connectable bus voltage, better than nothing...
+                v = t.getBusBreakerView().getConnectableBus().getV();
+            }
+            if (Float.isNaN(v)) {
+                v = 0f; // TODO is there a better value?
+            }
+            if (Float.isNaN(i)) {
+                i = 0f;
+            }
+        }
+        values[columns[0]] = p;
+        values[columns[1]] = q;
+        values[columns[2]] = v;
+        values[columns[3]] = i;
+    }
+
+    private static void fillBranch(TwoTerminalsConnectable branch, Terminal t, int[] columns, boolean replaceMissingValues, float[] values) {
+        float p = Float.NaN;
+        float q = Float.NaN;
+        float v = Float.NaN;
+        float i = Float.NaN;
+        Bus b = t.getBusView().getBus();
+        if (b != null) {
+            p = t.getP();
+            q = t.getQ();
+            v = b.getV();
+            i = t.getI();
+        }
+        if (replaceMissingValues) {
+            if (Float.isNaN(p)) {
+                p = 0f;
+            }
+            if (Float.isNaN(q)) {
+                q = 0f;
+            }
+            if (Float.isNaN(v)) {
+                Terminal otherT = t == branch.getTerminal1() ? branch.getTerminal2() : branch.getTerminal1();
+                Bus otherBus = otherT.getBusView().getBus();
+                if (otherBus != null && !Float.isNaN(otherBus.getV())) {
+                    // compute the voltage from the other side physical values
+                    // TODO approx we do not consider voltage drop due to branch impedance
+                    float ratio = branch instanceof TwoWindingsTransformer ? SV.getRatio((TwoWindingsTransformer) branch) : 1;
+                    if (t == branch.getTerminal1()) {
+                        // we are on side 1 disconnected and side 2 is connected
+                        v = otherBus.getV() / ratio;
+                    } else {
+                        // we are on side 2 disconnected and side 1 is connected
+                        v = otherBus.getV() * ratio;
+                    }
+                } else {
+                    // use connectable bus voltage, better than nothing...
+                    v = t.getBusBreakerView().getConnectableBus().getV();
+                }
+            }
+            if (Float.isNaN(v)) {
+                v = 0;  // TODO is there a better value?
+            }
+            if (Float.isNaN(i)) {
+                i = 0;
+            }
+        }
+        values[columns[0]] = p;
+        values[columns[1]] = q;
+        values[columns[2]] = v;
+        values[columns[3]] = i;
+    }
+
+    private static void fillThreeWindingsTransformerLeg(Terminal t, int[] columns, boolean replaceMissingValues, float[] values) {
+        float p = Float.NaN;
+        float q = Float.NaN;
+        float v = Float.NaN;
+        float i = Float.NaN;
+        Bus b = t.getBusView().getBus();
+        if (b != null) {
+            p = t.getP();
+            q = t.getQ();
+            v = b.getV();
+            i = t.getI();
+        }
+        if (replaceMissingValues) {
+            if (Float.isNaN(p)) {
+                p = 0f;
+            }
+            if (Float.isNaN(q)) {
+                q = 0f;
+            }
+            if (Float.isNaN(v)) {
+                v = 0; // TODO is possible to find a better replacement value?
+            }
+            if (Float.isNaN(i)) {
+                i = 0f;
+            }
+        }
+        values[columns[0]] = v;
+        values[columns[1]] = i;
+        values[columns[2]] = p;
+        values[columns[3]] = q;
+    }
+
+    private static void fillVoltageLevel(VoltageLevel vl, int[] columns, int busCountColumn, boolean replaceMissingValues, float[] values) {
+        float pgen = 0;
+        float qgen = 0;
+        float pload = 0;
+        float qload = 0;
+        float qshunt = 0;
+
+        for (Generator g : vl.getGenerators()) {
+            Terminal t = g.getTerminal();
+            if (t.getBusView().getBus() != null) {
+                if (!Float.isNaN(t.getP())) {
+                    pgen += t.getP();
+                }
+                if (!Float.isNaN(t.getQ())) {
+                    qgen += t.getQ();
+                }
+            }
+        }
+        for (Load l : vl.getLoads()) {
+            Terminal t = l.getTerminal();
+            if (t.getBusView().getBus() != null) {
+                if (!Float.isNaN(t.getP())) {
+                    pload += t.getP();
+                }
+                if (!Float.isNaN(t.getQ())) {
+                    qload += t.getQ();
+                }
+            }
+        }
+        for (ShuntCompensator s : vl.getShunts()) {
+            Terminal t = s.getTerminal();
+            if (t.getBusView().getBus() != null) {
+                if (!Float.isNaN(t.getQ())) {
+                    qshunt += t.getQ();
+                }
+            }
+        }
+
+        float vSum = 0;
+        int validBusCount = 0;
+        int busCount = 0;
+        float vMin = Float.NaN;
+        float vMax = Float.NaN;
+        for (Bus b : vl.getBusView().getBuses()) {
+            float v = b.getV();
+            if (!Float.isNaN(v)) {
+                vSum += v;
+                validBusCount++;
+                vMin = Float.isNaN(vMin) ? v : Math.min(vMin, v);
+                vMax = Float.isNaN(vMax) ? v : Math.max(vMax, v);
+            }
+            busCount++;
+        }
+        float meanV = Float.NaN;
+        if (validBusCount > 0) {
+            meanV = vSum / validBusCount;
+        }
+        if (replaceMissingValues) {
+            if (Float.isNaN(meanV)) {
+                meanV = 0; // TODO is there a better value?
+            }
+            if (Float.isNaN(vMin)) {
+                vMin = 0; // TODO is there a better value?
+            }
+            if (Float.isNaN(vMax)) {
+                vMax = 0; // TODO is there a better value?
+            }
+        }
+
+        values[columns[0]] = pgen;
+        values[columns[1]] = qgen;
+        values[columns[2]] = pload;
+        values[columns[3]] = qload;
+        values[columns[4]] = qshunt;
+        values[columns[5]] = meanV;
+        values[columns[6]] = vMin;
+        values[columns[7]] = vMax;
+        values[busCountColumn] = busCount;
+    }
+
+    /**
+     * The network the schema has been built from.
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    public int getColumnCount() {
+        return attributeIds.size();
+    }
+
+    /**
+     * Attributes of the schema, the index in the list being the column of the attribute.
+     */
+    public List<HistoDbNetworkAttributeId> getAttributeIds() {
+        return Collections.unmodifiableList(attributeIds);
+    }
+
+    /**
+     * Get the column of an attribute, or -1 if the attribute is not part of the schema.
+     */
+    public int getColumnIndex(HistoDbAttributeId attributeId) {
+        Integer column = columnIndexes.get(attributeId);
+        return column != null ? column : -1;
+    }
+
+    boolean isEmpty() {
+        return voltageLevelColumns.isEmpty();
+    }
+
+    /**
+     * Get the voltage level whose aggregated values start at a column, or null.
+     */
+    VoltageLevel getVoltageLevel(int column) {
+        return voltageLevelColumns.get(column);
+    }
+
+    Object getValue(float[] values, int column) {
+        float value = values[column];
+        return integerColumns.get(column) ? (Object) (int) value : (Object) value;
+    }
+
+    public float[] newValues() {
+        return new float[attributeIds.size()];
+    }
+
+    /**
+     * Fill a vector of values from the working state of the network.
+     *
+     * @param values vector of values, of at least {@link #getColumnCount()} elements
+     * @return the vector of values
+     */
+    public float[] fill(float[] values) {
+        if (values.length < attributeIds.size()) {
+            throw new IllegalArgumentException("Vector of values is too small (" + values.length + " < "
+                    + attributeIds.size() + ")");
+        }
+        for (ColumnsFiller filler : fillers) {
+            filler.fill(values);
+        }
+        return values;
+    }
+
+    /**
+     * Convert a vector of values to the map form of {@link IIDM2DB.CimValuesMap}.
+     */
+    public LinkedHashMap<HistoDbAttributeId, Object> toMap(float[] values) {
+        LinkedHashMap<HistoDbAttributeId, Object> map = new LinkedHashMap<>(attributeIds.size() * 4 / 3 + 1);
+        for (int column = 0; column < attributeIds.size(); column++) {
+            map.put(attributeIds.get(column), getValue(values, column));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.histo.cache;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A stream to store data of an url in a cache. Closing the stream publishes the data,
+ * aborting it discards the data written so far and leaves the cache unchanged.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public abstract class CacheOutputStream extends FilterOutputStream {
+
+    protected CacheOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Discard the data written so far. The stream is closed and a later call to
+     * {@link #close()} has no effect.
+     */
+    public abstract void abort() throws IOException;
+
+}
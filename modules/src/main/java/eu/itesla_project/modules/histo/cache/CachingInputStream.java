@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.histo.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * An input stream copying the data read to a cache. If the stream is closed before the end
+ * of the data has been reached, the incomplete data is discarded and the cache is left unchanged.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class CachingInputStream extends FilterInputStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingInputStream.class);
+
+    private final String url;
+
+    private final CacheOutputStream os;
+
+    private boolean eof = false;
+
+    private boolean closed = false;
+
+    public CachingInputStream(InputStream in, HistoDbCache cache, String url) throws IOException {
+        super(Objects.requireNonNull(in));
+        this.url = Objects.requireNonNull(url);
+        os = Objects.requireNonNull(cache).putData(url);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            eof = true;
+        } else {
+            os.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n == -1) {
+            eof = true;
+        } else {
+            os.write(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped data has to be written to the cache
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            if (eof) {
+                os.close();
+            } else {
+                LOGGER.debug("Data of {} partially read, not cached", url);
+                os.abort();
+            }
+        }
+    }
+}
@@ -8,7 +8,6 @@ package eu.itesla_project.modules.histo.cache;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -17,9 +16,23 @@ import java.util.List;
  */
 public interface HistoDbCache extends AutoCloseable {
 
+    /**
+     * Get cached data of an url.
+     *
+     * @return a stream to read the data or null if the url is not in the cache
+     */
     InputStream getData(String url) throws IOException;
 
-    OutputStream putData(String url) throws IOException;
+    /**
+     * Store data of an url, replacing existing data if any. Data is only visible to
+     * readers once the stream has been closed, an aborted stream leaves the cache unchanged.
+     */
+    CacheOutputStream putData(String url) throws IOException;
+
+    /**
+     * Remove data of an url, if any.
+     */
+    void removeData(String url) throws IOException;
 
     List<String> listUrls() throws IOException;
 
@@ -6,13 +6,11 @@
  */
 package eu.itesla_project.modules.histo.cache;
 
-import org.apache.commons.io.input.TeeInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -43,18 +41,23 @@ public class TwoLevelsHistoDbCache implements HistoDbCache {
             is = cache2.getData(url);
             if (is != null) {
                 // synchronize with the first cache
-                OutputStream os = cache1.putData(url);
-                is = new TeeInputStream(is, os, true);
+                is = new CachingInputStream(is, cache1, url);
             }
         }
         return is;
     }
 
     @Override
-    public OutputStream putData(String url) throws IOException {
+    public CacheOutputStream putData(String url) throws IOException {
         return cache1.putData(url);
     }
 
+    @Override
+    public void removeData(String url) throws IOException {
+        cache1.removeData(url);
+        cache2.removeData(url);
+    }
+
     @Override
     public List<String> listUrls() throws IOException {
         Set<String> urls = new LinkedHashSet<>();
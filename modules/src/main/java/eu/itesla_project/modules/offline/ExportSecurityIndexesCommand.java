@@ -73,6 +73,9 @@ public class ExportSecurityIndexesCommand implements Command {
         options.addOption(Option.builder().longOpt("keep-all-samples")
                                 .desc("keep unsuccessful samples")
                                 .build());
+        options.addOption(Option.builder().longOpt("compress")
+                                .desc("gzip the output file")
+                                .build());
         return options;
     }
 
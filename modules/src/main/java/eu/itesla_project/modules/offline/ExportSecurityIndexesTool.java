@@ -10,8 +10,7 @@ import eu.itesla_project.commons.tools.Tool;
 import eu.itesla_project.commons.tools.Command;
 import com.google.auto.service.AutoService;
 
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -50,8 +49,10 @@ public class ExportSecurityIndexesTool implements Tool {
         }
         boolean addSampleColumn = line.hasOption("add-sample-column");
         boolean keepAllSamples = line.hasOption("keep-all-samples");
-        try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
-            offlineDb.exportCsv(workflowId, writer, new OfflineDbCsvExportConfig(delimiter, stateAttrFilter, addSampleColumn, keepAllSamples));
+        OfflineDbCsvExportConfig exportConfig = new OfflineDbCsvExportConfig(delimiter, stateAttrFilter, addSampleColumn, keepAllSamples);
+        exportConfig.setCompress(line.hasOption("compress"));
+        try (OutputStream os = Files.newOutputStream(outputFile)) {
+            offlineDb.exportCsv(workflowId, os, exportConfig);
         }
     }
 
@@ -14,11 +14,13 @@ import eu.itesla_project.modules.histo.HistoDbNetworkAttributeId;
 import eu.itesla_project.simulation.securityindexes.SecurityIndex;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
 
-import java.io.Writer;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Offline database API.
@@ -157,6 +159,23 @@ public interface OfflineDb extends AutoCloseable {
      */
     void exportCsv(String workflowId, Writer writer, OfflineDbCsvExportConfig config);
 
+    /**
+     * For a given workflow, export the db content as a UTF-8 CSV, gzipped if requested by
+     * the configuration.
+     * @param workflowId the workflow id
+     * @param os the output stream, not closed
+     * @param config export configuration
+     */
+    default void exportCsv(String workflowId, OutputStream os, OfflineDbCsvExportConfig config) throws IOException {
+        OutputStream os2 = config.isCompress() ? new GZIPOutputStream(os) : os;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os2, StandardCharsets.UTF_8));
+        exportCsv(workflowId, writer, config);
+        writer.flush();
+        if (os2 instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) os2).finish();
+        }
+    }
+
     default void flush(String workflowId) {
     }
 
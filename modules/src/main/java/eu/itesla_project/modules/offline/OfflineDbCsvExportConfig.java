@@ -27,6 +27,8 @@ public class OfflineDbCsvExportConfig {
 
     private int maxSamples;
 
+    private boolean compress = false;
+
     private static int checkStartSampleValue(int startSample) {
         if (startSample < 0) {
             throw new RuntimeException("Invalid startSample value " + startSample);
@@ -110,4 +112,15 @@ public class OfflineDbCsvExportConfig {
     public void setMaxSamples(int maxSamples) {
         this.maxSamples = maxSamples;
     }
+
+    /**
+     * Gzip the CSV, only taken into account when exporting to a stream.
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
 }
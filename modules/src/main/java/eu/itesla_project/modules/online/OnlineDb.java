@@ -288,6 +288,15 @@ public interface OnlineDb extends AutoCloseable {
      */
     void storePostContingencyViolations(String workflowId, Integer stateId, String contingencyId, boolean loadflowConverge, List<LimitViolation> violations);
 
+    /**
+     * Store the limit violations of the post contingency states of a state of a workflow, at once
+     * @param workflowId the id of the workflow
+     * @param stateId the id of the state
+     * @param loadflowConvergence the convergence of the post contingency loadflow, for each contingency
+     * @param violations the list of limit violations, for each contingency
+     */
+    void storePostContingencyViolations(String workflowId, Integer stateId, Map<String, Boolean> loadflowConvergence, Map<String, List<LimitViolation>> violations);
+
     /**
      * Get the limit violations of a post contingency state of a workflow
      * @param workflowId the id of the workflow
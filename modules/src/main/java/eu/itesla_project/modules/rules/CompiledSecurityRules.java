@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.rules;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.itesla_project.modules.histo.HistoDbAttributeId;
+import eu.itesla_project.modules.histo.IIDM2DBSchema;
+import eu.itesla_project.modules.rules.expr.CompiledExpression;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A set of security rules compiled for a purity threshold.
+ * <p>
+ * Attributes of all the rules are given an index in a shared <code>double[]</code> vector
+ * of values, so that a state is converted once and then checked against every rule without
+ * any map lookup or boxing. The compilation of a rule is cached per rule and purity
+ * threshold, so building the same rules set several times (for instance for each
+ * contingency) is cheap.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class CompiledSecurityRules {
+
+    // compiled expressions by rule (identity) and purity threshold
+    private static final Cache<SecurityRule, ConcurrentMap<Double, CompiledExpression>> CACHE = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final List<RuleId> ruleIds;
+
+    private final CompiledExpression[] expressions;
+
+    private final List<HistoDbAttributeId> attributeIds;
+
+    private final Map<HistoDbAttributeId, Integer> attributeIndexes;
+
+    /**
+     * Column in a network attributes schema of each attribute of the rules.
+     */
+    private static final class SchemaMapping {
+
+        private final IIDM2DBSchema schema;
+
+        private final int[] columnIndexes;
+
+        private SchemaMapping(IIDM2DBSchema schema, List<HistoDbAttributeId> attributeIds) {
+            this.schema = schema;
+            columnIndexes = new int[attributeIds.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = schema.getColumnIndex(attributeIds.get(i));
+            }
+        }
+    }
+
+    private volatile SchemaMapping schemaMapping;
+
+    public CompiledSecurityRules(List<? extends SecurityRule> rules, double purityThreshold) {
+        Objects.requireNonNull(rules);
+        ruleIds = new ArrayList<>(rules.size());
+        expressions = new CompiledExpression[rules.size()];
+        attributeIds = new ArrayList<>();
+        attributeIndexes = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            SecurityRule rule = rules.get(i);
+            ruleIds.add(rule.getId());
+            CompiledExpression expression = compile(rule, purityThreshold);
+            // link the slots of the rule to the shared vector of values
+            int[] indexes = new int[expression.getAttributeIds().size()];
+            for (int slot = 0; slot < indexes.length; slot++) {
+                HistoDbAttributeId attributeId = expression.getAttributeIds().get(slot);
+                Integer index = attributeIndexes.get(attributeId);
+                if (index == null) {
+                    index = attributeIds.size();
+                    attributeIds.add(attributeId);
+                    attributeIndexes.put(attributeId, index);
+                }
+                indexes[slot] = index;
+            }
+            expressions[i] = expression.relink(indexes);
+        }
+    }
+
+    private static CompiledExpression compile(SecurityRuleExpression ruleExpression) {
+        switch (ruleExpression.getStatus()) {
+            case ALWAYS_SECURE:
+                return CompiledExpression.constant(true);
+            case ALWAYS_UNSECURE:
+                return CompiledExpression.constant(false);
+            case SECURE_IF:
+                return CompiledExpression.compile(ruleExpression.getCondition());
+            default:
+                throw new AssertionError(ruleExpression.getStatus().name());
+        }
+    }
+
+    /**
+     * Compile a rule for a purity threshold, or get it from the cache if already compiled.
+     */
+    public static CompiledExpression compile(SecurityRule rule, double purityThreshold) {
+        Objects.requireNonNull(rule);
+        try {
+            return CACHE.get(rule, ConcurrentHashMap::new)
+                        .computeIfAbsent(purityThreshold, threshold -> compile(rule.toExpression(threshold)));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public List<RuleId> getRuleIds() {
+        return Collections.unmodifiableList(ruleIds);
+    }
+
+    public int getRuleCount() {
+        return expressions.length;
+    }
+
+    /**
+     * Attributes read by the rules, the index in the list being the index of the attribute
+     * in the vector of values.
+     */
+    public List<HistoDbAttributeId> getAttributeIds() {
+        return Collections.unmodifiableList(attributeIds);
+    }
+
+    /**
+     * Convert a map of attribute values to a vector of values, missing attributes being NaN.
+     */
+    public double[] toValues(Map<HistoDbAttributeId, Object> attributeValues) {
+        Objects.requireNonNull(attributeValues);
+        double[] values = new double[attributeIds.size()];
+        for (int i = 0; i < values.length; i++) {
+            HistoDbAttributeId attributeId = attributeIds.get(i);
+            Object value = attributeValues.get(attributeId);
+            if (value == null) {
+                values[i] = Double.NaN;
+            } else if (value instanceof Double || value instanceof Float) {
+                values[i] = ((Number) value).doubleValue();
+            } else {
+                throw new RuntimeException("Attribute " + attributeId + " is not a float or a double");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Convert a vector of network attribute values filled by a schema to a vector of values,
+     * attributes not in the schema being NaN.
+     */
+    public double[] toValues(IIDM2DBSchema schema, float[] schemaValues) {
+        Objects.requireNonNull(schema);
+        Objects.requireNonNull(schemaValues);
+        SchemaMapping mapping = schemaMapping;
+        if (mapping == null || mapping.schema != schema) {
+            mapping = new SchemaMapping(schema, attributeIds);
+            schemaMapping = mapping;
+        }
+        double[] values = new double[attributeIds.size()];
+        for (int i = 0; i < values.length; i++) {
+            int column = mapping.columnIndexes[i];
+            values[i] = column != -1 ? schemaValues[column] : Double.NaN;
+        }
+        return values;
+    }
+
+    /**
+     * Check one rule.
+     *
+     * @param rule index of the rule
+     * @param values vector of values
+     */
+    public boolean isSafe(int rule, double[] values) {
+        return expressions[rule].eval(values);
+    }
+
+    /**
+     * Check all the rules on a state.
+     *
+     * @param values vector of values
+     * @param safe result of each rule
+     */
+    public void check(double[] values, boolean[] safe) {
+        for (int rule = 0; rule < expressions.length; rule++) {
+            safe[rule] = expressions[rule].eval(values);
+        }
+    }
+
+    /**
+     * Check all the rules on a batch of states.
+     *
+     * @param values vector of values of each state
+     * @return result of each rule (first dimension) on each state (second dimension)
+     */
+    public boolean[][] check(double[][] values) {
+        Objects.requireNonNull(values);
+        boolean[][] safe = new boolean[expressions.length][values.length];
+        // rule by rule, so that the program of a rule stays in cache while going through the states
+        for (int rule = 0; rule < expressions.length; rule++) {
+            CompiledExpression expression = expressions[rule];
+            for (int state = 0; state < values.length; state++) {
+                safe[rule][state] = expression.eval(values[state]);
+            }
+        }
+        return safe;
+    }
+}
@@ -8,8 +8,7 @@ package eu.itesla_project.modules.rules;
 
 import eu.itesla_project.simulation.securityindexes.SecurityIndexType;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 /**
  *
@@ -24,6 +23,24 @@ public interface RulesDbClient extends AutoCloseable {
 
     List<SecurityRule> getRules(String workflowId, RuleAttributeSet attributeSet, String contingencyId, SecurityIndexType securityIndexType);
 
+    /**
+     * Get the rules of a list of contingencies, for all attribute sets and security index types.
+     *
+     * @return rules indexed by contingency id
+     */
+    default Map<String, List<SecurityRule>> getRules(String workflowId, Collection<String> contingencyIds) {
+        Objects.requireNonNull(contingencyIds);
+        Map<String, List<SecurityRule>> rules = new HashMap<>();
+        for (String contingencyId : contingencyIds) {
+            List<SecurityRule> contingencyRules = new ArrayList<>();
+            for (RuleAttributeSet attributeSet : RuleAttributeSet.values()) {
+                contingencyRules.addAll(getRules(workflowId, attributeSet, contingencyId, null));
+            }
+            rules.put(contingencyId, contingencyRules);
+        }
+        return rules;
+    }
+
     Collection<RuleId> listRules(String workflowId, RuleAttributeSet attributeSet);
 
 }
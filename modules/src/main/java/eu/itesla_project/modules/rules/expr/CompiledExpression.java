@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.rules.expr;
+
+import eu.itesla_project.modules.histo.HistoDbAttributeId;
+
+import java.util.*;
+
+/**
+ * A boolean expression compiled to a flat program working on primitive values.
+ * <p>
+ * The program is a sequence of fixed size instructions (opcode, operand1, operand2) updating
+ * a single boolean register. Comparisons read the attribute values in a <code>double[]</code>
+ * through slots resolved at compile time, and logical operators are compiled to conditional
+ * jumps, so that evaluation is short-circuited like in {@link ExpressionEvaluator} without any
+ * boxing or map lookup. A missing attribute is represented by a NaN value, which makes the
+ * comparison true.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public final class CompiledExpression {
+
+    private static final int INSTRUCTION_SIZE = 3;
+
+    // register = value[operand1] < constant[operand2]
+    private static final int LESS = 0;
+
+    // register = value[operand1] >= constant[operand2]
+    private static final int GREATER_EQUAL = 1;
+
+    // jump to operand1 if register is false
+    private static final int JUMP_IF_FALSE = 2;
+
+    // jump to operand1 if register is true
+    private static final int JUMP_IF_TRUE = 3;
+
+    // register = operand1 != 0
+    private static final int CONSTANT = 4;
+
+    private final int[] code;
+
+    private final double[] constants;
+
+    private final List<HistoDbAttributeId> attributeIds;
+
+    private CompiledExpression(int[] code, double[] constants, List<HistoDbAttributeId> attributeIds) {
+        this.code = code;
+        this.constants = constants;
+        this.attributeIds = attributeIds;
+    }
+
+    private static final class Compiler implements ExpressionVisitor<Void, Void> {
+
+        private int[] code = new int[INSTRUCTION_SIZE * 8];
+
+        private int length = 0;
+
+        private final List<Double> constants = new ArrayList<>();
+
+        private final Map<HistoDbAttributeId, Integer> slots = new LinkedHashMap<>();
+
+        private int emit(int opcode, int operand1, int operand2) {
+            if (length + INSTRUCTION_SIZE > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            int position = length;
+            code[length++] = opcode;
+            code[length++] = operand1;
+            code[length++] = operand2;
+            return position;
+        }
+
+        @Override
+        public Void visit(Attribute node, Void arg) {
+            throw new IllegalArgumentException("Attribute " + node.getId() + " is not a boolean expression");
+        }
+
+        @Override
+        public Void visit(Litteral node, Void arg) {
+            throw new IllegalArgumentException("Litteral " + node.getValue() + " is not a boolean expression");
+        }
+
+        @Override
+        public Void visit(ComparisonOperator node, Void arg) {
+            Integer slot = slots.get(node.getNode1().getId());
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(node.getNode1().getId(), slot);
+            }
+            constants.add(node.getNode2().getValue());
+            int opcode;
+            switch (node.getType()) {
+                case LESS:
+                    opcode = LESS;
+                    break;
+                case GREATER_EQUAL:
+                    opcode = GREATER_EQUAL;
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            emit(opcode, slot, constants.size() - 1);
+            return null;
+        }
+
+        private void visitLogical(ExpressionNode node1, ExpressionNode node2, int jumpOpcode) {
+            node1.accept(this, null);
+            int jump = emit(jumpOpcode, -1, 0);
+            node2.accept(this, null);
+            code[jump + 1] = length; // patch the jump target
+        }
+
+        @Override
+        public Void visit(AndOperator node, Void arg) {
+            visitLogical(node.getNode1(), node.getNode2(), JUMP_IF_FALSE);
+            return null;
+        }
+
+        @Override
+        public Void visit(OrOperator node, Void arg) {
+            visitLogical(node.getNode1(), node.getNode2(), JUMP_IF_TRUE);
+            return null;
+        }
+
+        private CompiledExpression build() {
+            double[] constantArray = new double[constants.size()];
+            for (int i = 0; i < constantArray.length; i++) {
+                constantArray[i] = constants.get(i);
+            }
+            return new CompiledExpression(Arrays.copyOf(code, length), constantArray,
+                                          Collections.unmodifiableList(new ArrayList<>(slots.keySet())));
+        }
+    }
+
+    public static CompiledExpression compile(ExpressionNode node) {
+        Objects.requireNonNull(node);
+        Compiler compiler = new Compiler();
+        node.accept(compiler, null);
+        return compiler.build();
+    }
+
+    /**
+     * A compiled expression always evaluated to the same value.
+     */
+    public static CompiledExpression constant(boolean value) {
+        return new CompiledExpression(new int[] {CONSTANT, value ? 1 : 0, 0}, new double[0], Collections.emptyList());
+    }
+
+    /**
+     * Attributes read by the expression, the index in the list being the slot of the attribute.
+     */
+    public List<HistoDbAttributeId> getAttributeIds() {
+        return attributeIds;
+    }
+
+    /**
+     * Get a copy of this expression reading attribute values at other indexes, for instance
+     * to share a vector of values between several expressions. Attribute ids are kept in the
+     * original slot order.
+     *
+     * @param indexes new index of each slot
+     */
+    public CompiledExpression relink(int[] indexes) {
+        if (indexes.length != attributeIds.size()) {
+            throw new IllegalArgumentException("Expected " + attributeIds.size() + " indexes, got " + indexes.length);
+        }
+        int[] newCode = code.clone();
+        for (int pc = 0; pc < newCode.length; pc += INSTRUCTION_SIZE) {
+            if (newCode[pc] == LESS || newCode[pc] == GREATER_EQUAL) {
+                newCode[pc + 1] = indexes[newCode[pc + 1]];
+            }
+        }
+        return new CompiledExpression(newCode, constants, attributeIds);
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @param values attribute values indexed by slot, NaN if missing
+     */
+    public boolean eval(double[] values) {
+        boolean register = false;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case LESS: {
+                    double value = values[code[pc + 1]];
+                    double constant = constants[code[pc + 2]];
+                    // if value is undefined (no calculation?), we consider ok
+                    register = Double.isNaN(value) || Double.isNaN(constant) || value < constant;
+                    pc += INSTRUCTION_SIZE;
+                    break;
+                }
+                case GREATER_EQUAL: {
+                    double value = values[code[pc + 1]];
+                    double constant = constants[code[pc + 2]];
+                    register = Double.isNaN(value) || Double.isNaN(constant) || value >= constant;
+                    pc += INSTRUCTION_SIZE;
+                    break;
+                }
+                case JUMP_IF_FALSE:
+                    pc = register ? pc + INSTRUCTION_SIZE : code[pc + 1];
+                    break;
+                case JUMP_IF_TRUE:
+                    pc = register ? code[pc + 1] : pc + INSTRUCTION_SIZE;
+                    break;
+                case CONSTANT:
+                    register = code[pc + 1] != 0;
+                    pc += INSTRUCTION_SIZE;
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+        return register;
+    }
+}
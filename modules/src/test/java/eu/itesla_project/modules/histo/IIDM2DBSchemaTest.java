@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.histo;
+
+import eu.itesla_project.iidm.network.Country;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.VoltageLevel;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.iidm.network.test.NetworkTest1Factory;
+import eu.itesla_project.iidm.network.test.PhaseShifterTestCaseFactory;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class IIDM2DBSchemaTest {
+
+    private static List<Map.Entry<HistoDbAttributeId, Object>> extractCimValues(Network network, IIDM2DB.Config config) {
+        List<Map.Entry<HistoDbAttributeId, Object>> entries = new ArrayList<>();
+        for (Map.Entry<HistoDbAttributeId, Object> e : IIDM2DB.extractCimValues(network, config).getSingleValueMap().entrySet()) {
+            if (e.getKey() instanceof HistoDbNetworkAttributeId
+                    && ((HistoDbNetworkAttributeId) e.getKey()).getAttributeType() != HistoDbAttr.TOPO
+                    && ((HistoDbNetworkAttributeId) e.getKey()).getAttributeType() != HistoDbAttr.TOPOHASH) {
+                entries.add(e);
+            }
+        }
+        return entries;
+    }
+
+    private static void assertSameValues(Network network, IIDM2DB.Config config) {
+        IIDM2DBSchema schema = new IIDM2DBSchema(network, config);
+        float[] values = schema.fill(schema.newValues());
+        List<Map.Entry<HistoDbAttributeId, Object>> expected = extractCimValues(network, config);
+        assertEquals(expected, new ArrayList<>(schema.toMap(values).entrySet()));
+        assertEquals(expected.size(), schema.getColumnCount());
+    }
+
+    @Test
+    public void testSameValuesAsMap() {
+        Network network = EurostagTutorialExample1Factory.create();
+        network.getVoltageLevel("VLHV1").getBusBreakerView().getBus("NHV1").setV(400).setAngle(0);
+        network.getLine("NHV1_NHV2_1").getTerminal1().setP(300).setQ(100);
+        network.getGenerator("GEN").getTerminal().setP(-600).setQ(-200);
+        network.getLoad("LOAD").getTerminal().setP(600).setQ(200);
+        for (Network n : Arrays.asList(network, NetworkTest1Factory.create(), PhaseShifterTestCaseFactory.create())) {
+            assertSameValues(n, new IIDM2DB.Config(null, false));
+            assertSameValues(n, new IIDM2DB.Config(null, true, true));
+        }
+        assertSameValues(network, new IIDM2DB.Config(null, false, true, EnumSet.of(Country.FR), 200));
+    }
+
+    @Test
+    public void testTopologyAndMetadata() {
+        Network network = EurostagTutorialExample1Factory.create();
+        network.getLoad("LOAD").getTerminal().setP(600);
+        IIDM2DB.CimValuesMap valuesMap = IIDM2DB.extractCimValues(network, new IIDM2DB.Config("case", true));
+        List<HistoDbAttributeId> attributeIds = new ArrayList<>(valuesMap.getSingleValueMap().keySet());
+        assertEquals(HistoDbMetaAttributeId.cimName, attributeIds.get(0));
+        assertEquals("case", valuesMap.getSingleValueMap().get(HistoDbMetaAttributeId.cimName));
+        assertEquals(600f, valuesMap.getSingleValueMap().get(new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.P)));
+        assertEquals(1, valuesMap.getSingleValueMap().get(new HistoDbNetworkAttributeId("VLLOAD", HistoDbAttr.BC)));
+        // topology of a voltage level just before its aggregated values
+        for (VoltageLevel vl : network.getVoltageLevels()) {
+            int topo = attributeIds.indexOf(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.TOPO));
+            assertEquals(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.TOPOHASH), attributeIds.get(topo + 1));
+            assertEquals(new HistoDbNetworkAttributeId(vl.getId(), HistoDbAttr.PGEN), attributeIds.get(topo + 2));
+            assertTrue(valuesMap.getToposPerSubstation().containsKey(vl.getId()));
+        }
+
+        // nothing extracted if all voltage levels are filtered
+        assertTrue(IIDM2DB.extractCimValues(network, new IIDM2DB.Config(null, false, false, null, 1000)).isEmpty());
+    }
+
+    @Test
+    public void testFillWorkingState() {
+        Network network = EurostagTutorialExample1Factory.create();
+        IIDM2DBSchema schema = new IIDM2DBSchema(network, new IIDM2DB.Config(null, false));
+        int p = schema.getColumnIndex(new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.P));
+        int pload = schema.getColumnIndex(new HistoDbNetworkAttributeId("VLLOAD", HistoDbAttr.PLOAD));
+        assertTrue(p >= 0);
+        assertTrue(pload >= 0);
+        assertEquals(-1, schema.getColumnIndex(new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.QR)));
+
+        float[] values = schema.newValues();
+        network.getLoad("LOAD").getTerminal().setP(600);
+        schema.fill(values);
+        assertEquals(600f, values[p], 0f);
+        assertEquals(600f, values[pload], 0f);
+
+        // same vector reused for another state
+        network.getLoad("LOAD").getTerminal().setP(550);
+        schema.fill(values);
+        assertEquals(550f, values[p], 0f);
+        assertEquals(550f, values[pload], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooSmallVector() {
+        IIDM2DBSchema schema = new IIDM2DBSchema(EurostagTutorialExample1Factory.create(), new IIDM2DB.Config(null, false));
+        schema.fill(new float[schema.getColumnCount() - 1]);
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.modules.rules;
+
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.modules.histo.HistoDbAttr;
+import eu.itesla_project.modules.histo.HistoDbAttributeId;
+import eu.itesla_project.modules.histo.HistoDbNetworkAttributeId;
+import eu.itesla_project.modules.histo.IIDM2DB;
+import eu.itesla_project.modules.histo.IIDM2DBSchema;
+import eu.itesla_project.modules.rules.expr.*;
+import eu.itesla_project.simulation.securityindexes.SecurityIndexId;
+import eu.itesla_project.simulation.securityindexes.SecurityIndexType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class CompiledSecurityRulesTest {
+
+    private static class SecurityRuleTest implements SecurityRule {
+
+        private final RuleId id;
+
+        private final SecurityRuleStatus status;
+
+        private final ExpressionNode condition;
+
+        private int toExpressionCount = 0;
+
+        SecurityRuleTest(String contingencyId, SecurityRuleStatus status, ExpressionNode condition) {
+            this.id = new RuleId(RuleAttributeSet.MONTE_CARLO, new SecurityIndexId(contingencyId, SecurityIndexType.TSO_OVERLOAD));
+            this.status = status;
+            this.condition = condition;
+        }
+
+        @Override
+        public RuleId getId() {
+            return id;
+        }
+
+        @Override
+        public String getWorkflowId() {
+            return "workflow";
+        }
+
+        @Override
+        public SecurityRuleExpression toExpression() {
+            return toExpression(1);
+        }
+
+        @Override
+        public SecurityRuleExpression toExpression(double purityThreshold) {
+            toExpressionCount++;
+            return new SecurityRuleExpression(id, status, condition);
+        }
+    }
+
+    private final HistoDbAttributeId p1 = new HistoDbNetworkAttributeId("l1", HistoDbAttr.P);
+    private final HistoDbAttributeId p2 = new HistoDbNetworkAttributeId("l2", HistoDbAttr.P);
+    private final HistoDbAttributeId v3 = new HistoDbNetworkAttributeId("vl3", HistoDbAttr.V);
+
+    private SecurityRuleTest rule1;
+    private SecurityRuleTest rule2;
+    private List<SecurityRuleTest> rules;
+
+    private static ComparisonOperator less(HistoDbAttributeId id, double value) {
+        return new ComparisonOperator(new Attribute(id), new Litteral(value), ComparisonOperator.Type.LESS);
+    }
+
+    private static ComparisonOperator greaterEqual(HistoDbAttributeId id, double value) {
+        return new ComparisonOperator(new Attribute(id), new Litteral(value), ComparisonOperator.Type.GREATER_EQUAL);
+    }
+
+    @Before
+    public void setUp() {
+        // (p1 < 100 and p2 >= 50) or (p1 >= 100 and v3 < 400)
+        rule1 = new SecurityRuleTest("c1", SecurityRuleStatus.SECURE_IF,
+                                     new OrOperator(new AndOperator(less(p1, 100), greaterEqual(p2, 50)),
+                                                    new AndOperator(greaterEqual(p1, 100), less(v3, 400))));
+        // v3 >= 380
+        rule2 = new SecurityRuleTest("c2", SecurityRuleStatus.SECURE_IF, greaterEqual(v3, 380));
+        rules = Arrays.asList(rule1,
+                              rule2,
+                              new SecurityRuleTest("c3", SecurityRuleStatus.ALWAYS_SECURE, null),
+                              new SecurityRuleTest("c4", SecurityRuleStatus.ALWAYS_UNSECURE, null));
+    }
+
+    private static Map<HistoDbAttributeId, Object> values(HistoDbAttributeId id1, Object value1, HistoDbAttributeId id2, Object value2) {
+        Map<HistoDbAttributeId, Object> values = new HashMap<>();
+        values.put(id1, value1);
+        values.put(id2, value2);
+        return values;
+    }
+
+    @Test
+    public void testSameResultAsEvaluator() {
+        CompiledSecurityRules compiledRules = new CompiledSecurityRules(rules, 0.9);
+        assertEquals(4, compiledRules.getRuleCount());
+        assertEquals(Arrays.asList(p1, p2, v3), compiledRules.getAttributeIds());
+
+        List<Map<HistoDbAttributeId, Object>> states = new ArrayList<>();
+        for (double p1Value : new double[] {50, 100, 150, Double.NaN}) {
+            for (double p2Value : new double[] {0, 50}) {
+                for (float v3Value : new float[] {370, 390, 410}) {
+                    Map<HistoDbAttributeId, Object> state = values(p1, p1Value, p2, p2Value);
+                    state.put(v3, v3Value);
+                    states.add(state);
+                }
+            }
+        }
+        states.add(values(p1, 150d, p2, 0d)); // v3 missing
+
+        double[][] stateValues = new double[states.size()][];
+        for (int i = 0; i < states.size(); i++) {
+            stateValues[i] = compiledRules.toValues(states.get(i));
+        }
+        boolean[][] safe = compiledRules.check(stateValues);
+        boolean[] stateSafe = new boolean[rules.size()];
+        for (int i = 0; i < states.size(); i++) {
+            compiledRules.check(stateValues[i], stateSafe);
+            for (int rule = 0; rule < rules.size(); rule++) {
+                boolean expected = rules.get(rule).toExpression(0.9).check(states.get(i)).isSafe();
+                assertEquals(expected, compiledRules.isSafe(rule, stateValues[i]));
+                assertEquals(expected, stateSafe[rule]);
+                assertEquals(expected, safe[rule][i]);
+            }
+        }
+    }
+
+    @Test
+    public void testEval() {
+        CompiledExpression expression = CompiledSecurityRules.compile(rule1, 1);
+        assertEquals(Arrays.asList(p1, p2, v3), expression.getAttributeIds());
+        assertTrue(expression.eval(new double[] {50, 60, 500}));
+        assertFalse(expression.eval(new double[] {50, 40, 500}));
+        assertTrue(expression.eval(new double[] {120, 40, 300}));
+        assertFalse(expression.eval(new double[] {120, 40, 500}));
+        assertTrue(expression.eval(new double[] {120, 40, Double.NaN}));
+
+        // slots relinked to other indexes
+        CompiledExpression relinked = expression.relink(new int[] {2, 0, 1});
+        assertFalse(relinked.eval(new double[] {40, 500, 120}));
+        assertTrue(relinked.eval(new double[] {40, 300, 120}));
+    }
+
+    @Test
+    public void testCache() {
+        CompiledExpression expression = CompiledSecurityRules.compile(rule2, 0.8);
+        assertSame(expression, CompiledSecurityRules.compile(rule2, 0.8));
+        assertEquals(1, rule2.toExpressionCount);
+        assertNotSame(expression, CompiledSecurityRules.compile(rule2, 0.9));
+        assertEquals(2, rule2.toExpressionCount);
+    }
+
+    @Test
+    public void testSchemaValues() {
+        Network network = EurostagTutorialExample1Factory.create();
+        HistoDbAttributeId loadP = new HistoDbNetworkAttributeId("LOAD", HistoDbAttr.P);
+        SecurityRuleTest rule = new SecurityRuleTest("c1", SecurityRuleStatus.SECURE_IF,
+                                                     new AndOperator(less(loadP, 500), greaterEqual(v3, 380)));
+        CompiledSecurityRules compiledRules = new CompiledSecurityRules(Collections.singletonList(rule), 1);
+        IIDM2DBSchema schema = new IIDM2DBSchema(network, new IIDM2DB.Config(null, false));
+        network.getLoad("LOAD").getTerminal().setP(600);
+        double[] values = compiledRules.toValues(schema, schema.fill(schema.newValues()));
+        assertEquals(600, values[0], 0);
+        assertTrue(Double.isNaN(values[1])); // not in the schema
+        assertFalse(compiledRules.isSafe(0, values));
+        network.getLoad("LOAD").getTerminal().setP(400);
+        assertTrue(compiledRules.isSafe(0, compiledRules.toValues(schema, schema.fill(schema.newValues()))));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBadValueType() {
+        new CompiledSecurityRules(Collections.singletonList(rule2), 1).toValues(Collections.singletonMap(v3, "a"));
+    }
+}
@@ -102,11 +102,12 @@ void protobuf_AssignDesc_messages_2eproto() {
       ::google::protobuf::MessageFactory::generated_factory(),
       sizeof(Task));
   Task_InputFile_descriptor_ = Task_descriptor_->nested_type(0);
-  static const int Task_InputFile_offsets_[4] = {
+  static const int Task_InputFile_offsets_[5] = {
     GOOGLE_PROTOBUF_GENERATED_MESSAGE_FIELD_OFFSET(Task_InputFile, name_),
     GOOGLE_PROTOBUF_GENERATED_MESSAGE_FIELD_OFFSET(Task_InputFile, scope_),
     GOOGLE_PROTOBUF_GENERATED_MESSAGE_FIELD_OFFSET(Task_InputFile, data_),
     GOOGLE_PROTOBUF_GENERATED_MESSAGE_FIELD_OFFSET(Task_InputFile, preprocessor_),
+    GOOGLE_PROTOBUF_GENERATED_MESSAGE_FIELD_OFFSET(Task_InputFile, digest_),
   };
   Task_InputFile_reflection_ =
     new ::google::protobuf::internal::GeneratedMessageReflection(
@@ -285,34 +286,34 @@ void protobuf_AddDesc_messages_2eproto() {
   ::google::protobuf::DescriptorPool::InternalAddGeneratedFile(
     "\n\016messages.proto\022\010messages\"E\n\nCommonFile"
     "\022\014\n\004name\030\001 \002(\t\022\r\n\005chunk\030\002 \002(\005\022\014\n\004last\030\003 "
-    "\002(\010\022\014\n\004data\030\004 \002(\014\"\254\006\n\004Task\022\r\n\005jobId\030\001 \002("
+    "\002(\010\022\014\n\004data\030\004 \002(\014\"\274\006\n\004Task\022\r\n\005jobId\030\001 \002("
     "\005\022\r\n\005index\030\002 \002(\005\022\'\n\003env\030\003 \002(\0132\032.messages"
     ".Task.Environment\022\r\n\005cmdId\030\004 \002(\t\022\'\n\007comm"
     "and\030\005 \003(\0132\026.messages.Task.Command\022+\n\tinp"
     "utFile\030\006 \003(\0132\030.messages.Task.InputFile\022-"
     "\n\noutputFile\030\007 \003(\0132\031.messages.Task.Outpu"
     "tFile\022\017\n\007initJob\030\010 \002(\010\022\026\n\016completedJobId"
-    "\030\t \003(\005\032\366\001\n\tInputFile\022\014\n\004name\030\001 \002(\t\022-\n\005sc"
+    "\030\t \003(\005\032\206\002\n\tInputFile\022\014\n\004name\030\001 \002(\t\022-\n\005sc"
     "ope\030\002 \002(\0162\036.messages.Task.InputFile.Scop"
     "e\022\014\n\004data\030\003 \001(\014\022;\n\014preProcessor\030\004 \002(\0162%."
-    "messages.Task.InputFile.PreProcessor\"<\n\014"
-    "PreProcessor\022\010\n\004NONE\020\001\022\021\n\rARCHIVE_UNZIP\020"
-    "\002\022\017\n\013FILE_GUNZIP\020\003\"#\n\005Scope\022\007\n\003RUN\020\001\022\007\n\003"
-    "JOB\020\002\022\010\n\004TASK\020\003\032\204\001\n\nOutputFile\022\014\n\004name\030\001"
-    " \002(\t\022>\n\rpostProcessor\030\002 \002(\0162\'.messages.T"
-    "ask.OutputFile.PostProcessor\"(\n\rPostProc"
-    "essor\022\010\n\004NONE\020\001\022\r\n\tFILE_GZIP\020\002\032\'\n\010Variab"
-    "le\022\014\n\004name\030\001 \002(\t\022\r\n\005value\030\002 \002(\t\0328\n\013Envir"
-    "onment\022)\n\010variable\030\001 \003(\0132\027.messages.Task"
-    ".Variable\032=\n\007Command\022\017\n\007program\030\001 \002(\t\022\020\n"
-    "\010argument\030\002 \003(\t\022\017\n\007timeout\030\003 \001(\005\"\305\001\n\nTas"
-    "kResult\022\020\n\010exitCode\030\001 \002(\005\022\024\n\014taskDuratio"
-    "n\030\002 \002(\003\022\027\n\017commandDuration\030\003 \003(\003\022\027\n\017work"
-    "ingDataSize\030\004 \002(\003\0223\n\noutputFile\030\005 \003(\0132\037."
-    "messages.TaskResult.OutputFile\032(\n\nOutput"
-    "File\022\014\n\004name\030\001 \002(\t\022\014\n\004data\030\002 \001(\014B6\n*eu.i"
-    "tesla_project.computation.mpi.messagesB\010"
-    "Messages", 1168);
+    "messages.Task.InputFile.PreProcessor\022\016\n\006"
+    "digest\030\005 \001(\t\"<\n\014PreProcessor\022\010\n\004NONE\020\001\022\021"
+    "\n\rARCHIVE_UNZIP\020\002\022\017\n\013FILE_GUNZIP\020\003\"#\n\005Sc"
+    "ope\022\007\n\003RUN\020\001\022\007\n\003JOB\020\002\022\010\n\004TASK\020\003\032\204\001\n\nOutp"
+    "utFile\022\014\n\004name\030\001 \002(\t\022>\n\rpostProcessor\030\002 "
+    "\002(\0162\'.messages.Task.OutputFile.PostProce"
+    "ssor\"(\n\rPostProcessor\022\010\n\004NONE\020\001\022\r\n\tFILE_"
+    "GZIP\020\002\032\'\n\010Variable\022\014\n\004name\030\001 \002(\t\022\r\n\005valu"
+    "e\030\002 \002(\t\0328\n\013Environment\022)\n\010variable\030\001 \003(\013"
+    "2\027.messages.Task.Variable\032=\n\007Command\022\017\n\007"
+    "program\030\001 \002(\t\022\020\n\010argument\030\002 \003(\t\022\017\n\007timeo"
+    "ut\030\003 \001(\005\"\305\001\n\nTaskResult\022\020\n\010exitCode\030\001 \002("
+    "\005\022\024\n\014taskDuration\030\002 \002(\003\022\027\n\017commandDurati"
+    "on\030\003 \003(\003\022\027\n\017workingDataSize\030\004 \002(\003\0223\n\nout"
+    "putFile\030\005 \003(\0132\037.messages.TaskResult.Outp"
+    "utFile\032(\n\nOutputFile\022\014\n\004name\030\001 \002(\t\022\014\n\004da"
+    "ta\030\002 \001(\014B6\n*eu.itesla_project.computatio"
+    "n.mpi.messagesB\010Messages", 1184);
   ::google::protobuf::MessageFactory::InternalRegisterGeneratedFile(
     "messages.proto", &protobuf_RegisterTypes);
   CommonFile::default_instance_ = new CommonFile();
@@ -748,6 +749,7 @@ const int Task_InputFile::kNameFieldNumber;
 const int Task_InputFile::kScopeFieldNumber;
 const int Task_InputFile::kDataFieldNumber;
 const int Task_InputFile::kPreProcessorFieldNumber;
+const int Task_InputFile::kDigestFieldNumber;
 #endif  // !_MSC_VER
 
 Task_InputFile::Task_InputFile()
@@ -770,6 +772,7 @@ void Task_InputFile::SharedCtor() {
   scope_ = 1;
   data_ = const_cast< ::std::string*>(&::google::protobuf::internal::kEmptyString);
   preprocessor_ = 1;
+  digest_ = const_cast< ::std::string*>(&::google::protobuf::internal::kEmptyString);
   ::memset(_has_bits_, 0, sizeof(_has_bits_));
 }
 
@@ -784,6 +787,9 @@ void Task_InputFile::SharedDtor() {
   if (data_ != &::google::protobuf::internal::kEmptyString) {
     delete data_;
   }
+  if (digest_ != &::google::protobuf::internal::kEmptyString) {
+    delete digest_;
+  }
   if (this != default_instance_) {
   }
 }
@@ -823,6 +829,11 @@ void Task_InputFile::Clear() {
       }
     }
     preprocessor_ = 1;
+    if (has_digest()) {
+      if (digest_ != &::google::protobuf::internal::kEmptyString) {
+        digest_->clear();
+      }
+    }
   }
   ::memset(_has_bits_, 0, sizeof(_has_bits_));
   mutable_unknown_fields()->Clear();
@@ -902,6 +913,23 @@ bool Task_InputFile::MergePartialFromCodedStream(
         } else {
           goto handle_uninterpreted;
         }
+        if (input->ExpectTag(42)) goto parse_digest;
+        break;
+      }
+
+      // optional string digest = 5;
+      case 5: {
+        if (::google::protobuf::internal::WireFormatLite::GetTagWireType(tag) ==
+            ::google::protobuf::internal::WireFormatLite::WIRETYPE_LENGTH_DELIMITED) {
+         parse_digest:
+          DO_(::google::protobuf::internal::WireFormatLite::ReadString(
+                input, this->mutable_digest()));
+          ::google::protobuf::internal::WireFormat::VerifyUTF8String(
+            this->digest().data(), this->digest().length(),
+            ::google::protobuf::internal::WireFormat::PARSE);
+        } else {
+          goto handle_uninterpreted;
+        }
         if (input->ExpectAtEnd()) return true;
         break;
       }
@@ -951,6 +979,15 @@ void Task_InputFile::SerializeWithCachedSizes(
       4, this->preprocessor(), output);
   }
 
+  // optional string digest = 5;
+  if (has_digest()) {
+    ::google::protobuf::internal::WireFormat::VerifyUTF8String(
+      this->digest().data(), this->digest().length(),
+      ::google::protobuf::internal::WireFormat::SERIALIZE);
+    ::google::protobuf::internal::WireFormatLite::WriteString(
+      5, this->digest(), output);
+  }
+
   if (!unknown_fields().empty()) {
     ::google::protobuf::internal::WireFormat::SerializeUnknownFields(
         unknown_fields(), output);
@@ -988,6 +1025,16 @@ void Task_InputFile::SerializeWithCachedSizes(
       4, this->preprocessor(), target);
   }
 
+  // optional string digest = 5;
+  if (has_digest()) {
+    ::google::protobuf::internal::WireFormat::VerifyUTF8String(
+      this->digest().data(), this->digest().length(),
+      ::google::protobuf::internal::WireFormat::SERIALIZE);
+    target =
+      ::google::protobuf::internal::WireFormatLite::WriteStringToArray(
+        5, this->digest(), target);
+  }
+
   if (!unknown_fields().empty()) {
     target = ::google::protobuf::internal::WireFormat::SerializeUnknownFieldsToArray(
         unknown_fields(), target);
@@ -1025,6 +1072,13 @@ int Task_InputFile::ByteSize() const {
         ::google::protobuf::internal::WireFormatLite::EnumSize(this->preprocessor());
     }
 
+    // optional string digest = 5;
+    if (has_digest()) {
+      total_size += 1 +
+        ::google::protobuf::internal::WireFormatLite::StringSize(
+          this->digest());
+    }
+
   }
   if (!unknown_fields().empty()) {
     total_size +=
@@ -1064,6 +1118,9 @@ void Task_InputFile::MergeFrom(const Task_InputFile& from) {
     if (from.has_preprocessor()) {
       set_preprocessor(from.preprocessor());
     }
+    if (from.has_digest()) {
+      set_digest(from.digest());
+    }
   }
   mutable_unknown_fields()->MergeFrom(from.unknown_fields());
 }
@@ -1092,6 +1149,7 @@ void Task_InputFile::Swap(Task_InputFile* other) {
     std::swap(scope_, other->scope_);
     std::swap(data_, other->data_);
     std::swap(preprocessor_, other->preprocessor_);
+    std::swap(digest_, other->digest_);
     std::swap(_has_bits_[0], other->_has_bits_[0]);
     _unknown_fields_.Swap(&other->_unknown_fields_);
     std::swap(_cached_size_, other->_cached_size_);
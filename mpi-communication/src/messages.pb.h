@@ -369,6 +369,18 @@ class Task_InputFile : public ::google::protobuf::Message {
   inline ::messages::Task_InputFile_PreProcessor preprocessor() const;
   inline void set_preprocessor(::messages::Task_InputFile_PreProcessor value);
 
+  // optional string digest = 5;
+  inline bool has_digest() const;
+  inline void clear_digest();
+  static const int kDigestFieldNumber = 5;
+  inline const ::std::string& digest() const;
+  inline void set_digest(const ::std::string& value);
+  inline void set_digest(const char* value);
+  inline void set_digest(const char* value, size_t size);
+  inline ::std::string* mutable_digest();
+  inline ::std::string* release_digest();
+  inline void set_allocated_digest(::std::string* digest);
+
   // @@protoc_insertion_point(class_scope:messages.Task.InputFile)
  private:
   inline void set_has_name();
@@ -379,6 +391,8 @@ class Task_InputFile : public ::google::protobuf::Message {
   inline void clear_has_data();
   inline void set_has_preprocessor();
   inline void clear_has_preprocessor();
+  inline void set_has_digest();
+  inline void clear_has_digest();
 
   ::google::protobuf::UnknownFieldSet _unknown_fields_;
 
@@ -386,9 +400,10 @@ class Task_InputFile : public ::google::protobuf::Message {
   ::std::string* data_;
   int scope_;
   int preprocessor_;
+  ::std::string* digest_;
 
   mutable int _cached_size_;
-  ::google::protobuf::uint32 _has_bits_[(4 + 31) / 32];
+  ::google::protobuf::uint32 _has_bits_[(5 + 31) / 32];
 
   friend void  protobuf_AddDesc_messages_2eproto();
   friend void protobuf_AssignDesc_messages_2eproto();
@@ -1619,6 +1634,76 @@ inline void Task_InputFile::set_preprocessor(::messages::Task_InputFile_PreProce
   preprocessor_ = value;
 }
 
+// optional string digest = 5;
+inline bool Task_InputFile::has_digest() const {
+  return (_has_bits_[0] & 0x00000010u) != 0;
+}
+inline void Task_InputFile::set_has_digest() {
+  _has_bits_[0] |= 0x00000010u;
+}
+inline void Task_InputFile::clear_has_digest() {
+  _has_bits_[0] &= ~0x00000010u;
+}
+inline void Task_InputFile::clear_digest() {
+  if (digest_ != &::google::protobuf::internal::kEmptyString) {
+    digest_->clear();
+  }
+  clear_has_digest();
+}
+inline const ::std::string& Task_InputFile::digest() const {
+  return *digest_;
+}
+inline void Task_InputFile::set_digest(const ::std::string& value) {
+  set_has_digest();
+  if (digest_ == &::google::protobuf::internal::kEmptyString) {
+    digest_ = new ::std::string;
+  }
+  digest_->assign(value);
+}
+inline void Task_InputFile::set_digest(const char* value) {
+  set_has_digest();
+  if (digest_ == &::google::protobuf::internal::kEmptyString) {
+    digest_ = new ::std::string;
+  }
+  digest_->assign(value);
+}
+inline void Task_InputFile::set_digest(const char* value, size_t size) {
+  set_has_digest();
+  if (digest_ == &::google::protobuf::internal::kEmptyString) {
+    digest_ = new ::std::string;
+  }
+  digest_->assign(reinterpret_cast<const char*>(value), size);
+}
+inline ::std::string* Task_InputFile::mutable_digest() {
+  set_has_digest();
+  if (digest_ == &::google::protobuf::internal::kEmptyString) {
+    digest_ = new ::std::string;
+  }
+  return digest_;
+}
+inline ::std::string* Task_InputFile::release_digest() {
+  clear_has_digest();
+  if (digest_ == &::google::protobuf::internal::kEmptyString) {
+    return NULL;
+  } else {
+    ::std::string* temp = digest_;
+    digest_ = const_cast< ::std::string*>(&::google::protobuf::internal::kEmptyString);
+    return temp;
+  }
+}
+inline void Task_InputFile::set_allocated_digest(::std::string* digest) {
+  if (digest_ != &::google::protobuf::internal::kEmptyString) {
+    delete digest_;
+  }
+  if (digest) {
+    set_has_digest();
+    digest_ = digest;
+  } else {
+    clear_has_digest();
+    digest_ = const_cast< ::std::string*>(&::google::protobuf::internal::kEmptyString);
+  }
+}
+
 // -------------------------------------------------------------------
 
 // Task_OutputFile
@@ -45,6 +45,7 @@ namespace slave {
 const std::string COMMON_DIR_PREFIX = "itesla_common_";
 const std::string WORKING_DIR_PREFIX = "itesla_work_";
 const std::string JOB_DIR_PREFIX = "itesla_job_";
+const std::string CACHE_DIR_PREFIX = "itesla_cache_";
 
 boost::filesystem::path commonDir(const boost::filesystem::path& localDir, int rank) {
     return localDir / (COMMON_DIR_PREFIX + boost::lexical_cast<std::string>(rank));
@@ -58,6 +59,10 @@ boost::filesystem::path jobDir(const boost::filesystem::path& localDir, int rank
     return localDir / (JOB_DIR_PREFIX + boost::lexical_cast<std::string>(rank) + "_" + boost::lexical_cast<std::string>(jobId)); 
 }
 
+boost::filesystem::path cacheDir(const boost::filesystem::path& localDir, int rank) {
+    return localDir / (CACHE_DIR_PREFIX + boost::lexical_cast<std::string>(rank));
+}
+
 log4cpp::Category& createLogger(int rank, int threadNum, bool verbose) {
     std::string loggerName = "Slave" + boost::lexical_cast<std::string>(rank);
     if (threadNum >= 0) {
@@ -233,6 +238,9 @@ public:
         void waitForJobInitialization(int jobId);
         void notifyJobInitialization(int jobId);
 
+        void waitForCachedFile(const std::string& digest);
+        void notifyCachedFile(const std::string& digest);
+
         bool receiveFromMaster(const std::shared_ptr<WorkerThreadContext>& receivingContext);
         void sendToMaster(const std::shared_ptr<WorkerThreadContext>& sendingContext);
 
@@ -249,6 +257,11 @@ public:
         std::mutex _initializedJobsMutex;
         std::condition_variable _initializedJobsCond;
 
+        // digests of the job scoped files already written to the cache directory
+        std::set<std::string> _cachedFiles;
+        std::mutex _cachedFilesMutex;
+        std::condition_variable _cachedFilesCond;
+
         Step _step;
     };
 
@@ -337,6 +350,22 @@ void CommunicationManager::MpiThreadContext::notifyJobInitialization(int jobId)
     _initializedJobsCond.notify_all();
 }
 
+void CommunicationManager::MpiThreadContext::waitForCachedFile(const std::string& digest) {
+    while (true) {
+        std::unique_lock<std::mutex> cachedFilesLock(_cachedFilesMutex);
+        if (_cachedFiles.count(digest)) {
+            break;
+        }
+        _cachedFilesCond.wait(cachedFilesLock);
+    }
+}
+
+void CommunicationManager::MpiThreadContext::notifyCachedFile(const std::string& digest) {
+    std::unique_lock<std::mutex> cachedFilesLock(_cachedFilesMutex);
+    _cachedFiles.insert(digest);
+    _cachedFilesCond.notify_all();
+}
+
 bool CommunicationManager::MpiThreadContext::receiveFromMaster(const std::shared_ptr<WorkerThreadContext>& receivingContext) {
     std::unique_lock<std::mutex> lockCond(receivingContext->_mutexCond);
     {
@@ -690,6 +719,7 @@ void CommunicationManager::workerThread(const std::shared_ptr<CommunicationManag
         log4cpp::Category& logger = createLogger(mpiThreadContext->_rank, threadNum, mpiThreadContext->_verbose);
 
         boost::filesystem::path commonDir = itesla::slave::commonDir(mpiThreadContext->_localDir, mpiThreadContext->_rank);
+        boost::filesystem::path cacheDir = itesla::slave::cacheDir(mpiThreadContext->_localDir, mpiThreadContext->_rank);
 
         boost::filesystem::path workingDir = itesla::slave::workingDir(mpiThreadContext->_localDir, mpiThreadContext->_rank, threadNum);
         boost::filesystem::remove_all(workingDir);
@@ -719,9 +749,28 @@ void CommunicationManager::workerThread(const std::shared_ptr<CommunicationManag
                 for (int i = 0; i < task.inputfile_size(); i++) {
                     messages::Task_InputFile inputFile = task.inputfile(i);
                     if (inputFile.scope() == messages::Task_InputFile_Scope_JOB) {
-                        logger.debugStream() << "receiving job scoped file '" << inputFile.name() << "'" << log4cpp::eol;
                         boost::filesystem::path jobLevelFile = jobDir / inputFile.name();
-                        {
+                        if (inputFile.has_digest()) {
+                            // the master only sends the data the first time a digest is used on this rank,
+                            // the file is then kept in the cache directory and linked into each job directory
+                            boost::filesystem::path cachedFile = cacheDir / inputFile.digest();
+                            if (inputFile.has_data()) {
+                                logger.debugStream() << "receiving job scoped file '" << inputFile.name() << "' (" << inputFile.digest() << ")" << log4cpp::eol;
+                                boost::filesystem::path tmpFile = cacheDir / (inputFile.digest() + ".tmp");
+                                {
+                                    boost::filesystem::ofstream ofs(tmpFile, std::ios::binary);
+                                    ofs << inputFile.data();
+                                }
+                                boost::filesystem::rename(tmpFile, cachedFile);
+                                mpiThreadContext->notifyCachedFile(inputFile.digest());
+                            } else {
+                                logger.debugStream() << "reusing cached job scoped file '" << inputFile.name() << "' (" << inputFile.digest() << ")" << log4cpp::eol;
+                                // another worker thread may still be writing it for another job
+                                mpiThreadContext->waitForCachedFile(inputFile.digest());
+                            }
+                            boost::filesystem::create_hard_link(cachedFile, jobLevelFile);
+                        } else {
+                            logger.debugStream() << "receiving job scoped file '" << inputFile.name() << "'" << log4cpp::eol;
                             boost::filesystem::ofstream ofs(jobLevelFile, std::ios::binary);
                             ofs << inputFile.data();
                         }
@@ -956,10 +1005,14 @@ int main(int argc, char *argv[]) {
         boost::filesystem::path commonDir = itesla::slave::commonDir(localDir, rank);
         boost::filesystem::remove_all(commonDir);
         boost::filesystem::create_directory(commonDir);
+        boost::filesystem::path cacheDir = itesla::slave::cacheDir(localDir, rank);
+        boost::filesystem::remove_all(cacheDir);
+        boost::filesystem::create_directory(cacheDir);
 
         manager->wait();
 
         boost::filesystem::remove_all(commonDir);
+        boost::filesystem::remove_all(cacheDir);
 
         google::protobuf::ShutdownProtobufLibrary();
 
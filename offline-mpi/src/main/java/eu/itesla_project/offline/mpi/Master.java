@@ -98,6 +98,9 @@ public class Master {
                         .hasArg()
                         .argName("file")
                         .build());
+        OPTIONS.addOption(Option.builder().longOpt("compress-task-files")
+                        .desc("send task input files gzipped to the slaves")
+                        .build());
         OPTIONS.addOption(Option.builder().longOpt("workflow")
                         .desc("workflow id to work on, create a new one if not specified")
                         .hasArg()
@@ -123,6 +126,7 @@ public class Master {
             String statisticsDbName = line.getOptionValue("statistics-db-name");
             int coresPerRank = Integer.parseInt(line.getOptionValue("cores"));
             Path stdOutArchive = line.hasOption("stdout-archive") ? Paths.get(line.getOptionValue("stdout-archive")) : null;
+            boolean compressTaskFiles = line.hasOption("compress-task-files");
             String workflowId = line.hasOption("workflow") ? line.getOptionValue("workflow") : null;
 
             ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
@@ -164,7 +168,7 @@ public class Master {
             try {
                 MpiStatisticsFactory statisticsFactory = statisticsFactoryClass.asSubclass(MpiStatisticsFactory.class).newInstance();
                 try (MpiStatistics statistics = statisticsFactory.create(statisticsDbDir, statisticsDbName)) {
-                    try (ComputationManager computationManager = new MpiComputationManager(tmpDir, statistics, executorContext, coresPerRank, stdOutArchive)) {
+                    try (ComputationManager computationManager = new MpiComputationManager(tmpDir, statistics, executorContext, coresPerRank, stdOutArchive, compressTaskFiles)) {
                         OfflineConfig config = OfflineConfig.load();
                         try (LocalOfflineApplication application = new LocalOfflineApplication(config, computationManager, simulationDbName,
                                 rulesDbName, metricsDbName, scheduledExecutorService,
@@ -54,6 +54,8 @@ public class Master {
         Option stdOutArchiveOpt = new Option("o", "stdout-archive", true, "tasks standard output archive");
         stdOutArchiveOpt.setRequired(false);
         stdOutArchiveOpt.setArgName("file");
+        Option compressTaskFilesOpt = new Option("c", "compress-task-files", false, "send task input files gzipped to the slaves");
+        compressTaskFilesOpt.setRequired(false);
         OPTIONS.addOption(modeOpt);
         OPTIONS.addOption(tmpDirOpt);
         OPTIONS.addOption(statisticsFactoryClassOpt);
@@ -61,6 +63,7 @@ public class Master {
         OPTIONS.addOption(statisticsDbNameOpt);
         OPTIONS.addOption(coresOpt);
         OPTIONS.addOption(stdOutArchiveOpt);
+        OPTIONS.addOption(compressTaskFilesOpt);
     }
 
     public Master() {
@@ -78,6 +81,7 @@ public class Master {
             String statisticsDbName = line.getOptionValue("d");
             int coresPerRank = Integer.parseInt(line.getOptionValue("n"));
             Path stdOutArchive = line.hasOption("o") ? Paths.get(line.getOptionValue("o")) : null;
+            boolean compressTaskFiles = line.hasOption("c");
 
             ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
             ExecutorService executorService = MultiStateNetworkAwareExecutors.newCachedThreadPool();
@@ -116,7 +120,7 @@ public class Master {
                         return computationExecutorService;
                     }
                 };
-                try (ComputationManager computationManager = new MpiComputationManager(tmpDir, statistics, executorContext, coresPerRank, stdOutArchive)) {
+                try (ComputationManager computationManager = new MpiComputationManager(tmpDir, statistics, executorContext, coresPerRank, stdOutArchive, compressTaskFiles)) {
                     OnlineConfig config = OnlineConfig.load();
                     try (LocalOnlineApplication application = new LocalOnlineApplication(config, computationManager, scheduledExecutorService, executorService, true)) {
                         switch (mode) {
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Bounded executors shared by all the stages of an online workflow run: one for the analysis
+ * of the states, one for the analysis of the contingencies of the states.
+ * Contingency tasks are submitted by state tasks waiting for them, so they run on their own
+ * pool: state tasks cannot starve the contingency tasks they are waiting for.
+ *
+ * @author Quinary <itesla@quinary.com>
+ */
+class OnlineWorkflowExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OnlineWorkflowExecutor.class);
+
+    private final String workflowId;
+
+    private final ThreadPoolExecutor statesExecutor;
+
+    private final ThreadPoolExecutor contingenciesExecutor;
+
+    OnlineWorkflowExecutor(String workflowId, int statesThreads, int contingenciesThreads) {
+        this.workflowId = workflowId;
+        statesExecutor = newExecutor("online-" + workflowId + "-state-%d", statesThreads);
+        contingenciesExecutor = newExecutor("online-" + workflowId + "-contingency-%d", contingenciesThreads);
+        LOGGER.info("{}: {} threads for states analysis, {} threads for contingencies analysis", workflowId, statesThreads, contingenciesThreads);
+    }
+
+    private static ThreadPoolExecutor newExecutor(String nameFormat, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                                      new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * Run the analysis of states and wait for their completion.
+     */
+    <T> List<Future<T>> invokeStates(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return statesExecutor.invokeAll(tasks);
+    }
+
+    /**
+     * Run the analysis of contingencies of a state and wait for their completion.
+     */
+    <T> List<Future<T>> invokeContingencies(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        List<Future<T>> futures = contingenciesExecutor.invokeAll(tasks);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{}: contingencies executor {}", workflowId, statistics(contingenciesExecutor));
+        }
+        return futures;
+    }
+
+    private static String statistics(ThreadPoolExecutor executor) {
+        return "[completed tasks=" + executor.getCompletedTaskCount()
+                + ", active threads=" + executor.getActiveCount()
+                + ", queued tasks=" + executor.getQueue().size()
+                + ", largest pool size=" + executor.getLargestPoolSize() + "]";
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info("{}: states executor {}, contingencies executor {}", workflowId, statistics(statesExecutor), statistics(contingenciesExecutor));
+        statesExecutor.shutdownNow();
+        contingenciesExecutor.shutdownNow();
+    }
+}
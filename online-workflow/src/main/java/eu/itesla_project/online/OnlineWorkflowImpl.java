@@ -18,8 +18,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.joda.time.format.DateTimeFormat;
 import org.slf4j.Logger;
@@ -244,24 +242,25 @@ public class OnlineWorkflowImpl implements OnlineWorkflow {
         stabilization.init(simulationParameters, simulationInitContext);
         impactAnalysis.init(simulationParameters, simulationInitContext);
         optimizer.init(new CorrectiveControlOptimizerParameters());
-        if ( parameters.isHandleViolationsInN() && parameters.analyseBasecase() ) { // I need to analyze basecase before initializing the sampler
-            new StateAnalyzer(oCtx, sampler, loadflow, rulesFacade, optimizer, stabilization, impactAnalysis, onlineDb, stateListener, 
-                    constraintsModifier, parameters).call();
-        }
-        sampler.init(new MontecarloSamplerParameters(oCtx.getTimeHorizon(), parameters.getFeAnalysisId(), parameters.getStates()));
-
-        // run states analysis
-        int statesNumber = parameters.getStates();
-        if ( parameters.isHandleViolationsInN() && parameters.analyseBasecase() ) // I already analyzed basecase
-            statesNumber--;
-        List<Callable<Void>> tasks = new ArrayList<>(statesNumber);
-        for ( int i=0; i<statesNumber; i++ ) {
-            tasks.add(new StateAnalyzer(oCtx, sampler, loadflow, rulesFacade, optimizer, stabilization, impactAnalysis, onlineDb, stateListener, 
-                    constraintsModifier, parameters));
+        // bounded executors shared by the analysis of all the states
+        try (OnlineWorkflowExecutor executor = new OnlineWorkflowExecutor(id, startParameters.getThreads(), startParameters.getContingencyThreads())) {
+            if ( parameters.isHandleViolationsInN() && parameters.analyseBasecase() ) { // I need to analyze basecase before initializing the sampler
+                new StateAnalyzer(oCtx, sampler, loadflow, rulesFacade, optimizer, stabilization, impactAnalysis, onlineDb, stateListener, 
+                        constraintsModifier, parameters, executor).call();
+            }
+            sampler.init(new MontecarloSamplerParameters(oCtx.getTimeHorizon(), parameters.getFeAnalysisId(), parameters.getStates()));
+
+            // run states analysis
+            int statesNumber = parameters.getStates();
+            if ( parameters.isHandleViolationsInN() && parameters.analyseBasecase() ) // I already analyzed basecase
+                statesNumber--;
+            List<Callable<Void>> tasks = new ArrayList<>(statesNumber);
+            for ( int i=0; i<statesNumber; i++ ) {
+                tasks.add(new StateAnalyzer(oCtx, sampler, loadflow, rulesFacade, optimizer, stabilization, impactAnalysis, onlineDb, stateListener, 
+                        constraintsModifier, parameters, executor));
+            }
+            executor.invokeStates(tasks);
         }
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(startParameters.getThreads());
-        taskExecutor.invokeAll(tasks);
-        taskExecutor.shutdown();
         logger.info("{} Online workflow - Analysis of states, terminated.", id);
 
         logger.info("{} Online workflow processing, terminated.", id);
@@ -19,8 +19,10 @@ public class OnlineWorkflowStartParameters implements Serializable {
 
     private static final long serialVersionUID = 1L;
     public static final int DEFAULT_THREADS = 1;
+    public static final int DEFAULT_CONTINGENCY_THREADS = Runtime.getRuntime().availableProcessors();
 
     private int threads;
+    private int contingencyThreads;
     private String jmxHost;
     private int jmxPort;
     private Class<? extends OnlineApplicationListenerFactory> listenerFactoryClasses = null;
@@ -29,27 +31,40 @@ public class OnlineWorkflowStartParameters implements Serializable {
     public static OnlineWorkflowStartParameters loadDefault() {
         ModuleConfig config = PlatformConfig.defaultConfig().getModuleConfig("online-start-parameters");
         int threads = config.getIntProperty("threads", DEFAULT_THREADS);
+        int contingencyThreads = config.getIntProperty("contingencyThreads", DEFAULT_CONTINGENCY_THREADS);
         String jmxHost = config.getStringProperty("jmxHost");
         int jmxPort = config.getIntProperty("jmxPort");
         Class<? extends OnlineWorkflowFactory> onlineWorkflowFactory = config.getClassProperty("onlineWorkflowFactoryClass", OnlineWorkflowFactory.class, OnlineWorkflowFactoryImpl.class);
         Class<? extends OnlineApplicationListenerFactory> listenerFactoryClass = config.getClassProperty("listenerFactoryClasses", OnlineApplicationListenerFactory.class, null);
 
-        return new OnlineWorkflowStartParameters(threads, jmxHost, jmxPort, listenerFactoryClass, onlineWorkflowFactory);
+        return new OnlineWorkflowStartParameters(threads, contingencyThreads, jmxHost, jmxPort, listenerFactoryClass, onlineWorkflowFactory);
     }
 
     public OnlineWorkflowStartParameters(int threads, String jmxHost, int jmxPort, Class<? extends OnlineApplicationListenerFactory> listenerFactoryClass, Class<? extends OnlineWorkflowFactory> onlineWorkflowFactory) {
+        this(threads, DEFAULT_CONTINGENCY_THREADS, jmxHost, jmxPort, listenerFactoryClass, onlineWorkflowFactory);
+    }
+
+    public OnlineWorkflowStartParameters(int threads, int contingencyThreads, String jmxHost, int jmxPort, Class<? extends OnlineApplicationListenerFactory> listenerFactoryClass, Class<? extends OnlineWorkflowFactory> onlineWorkflowFactory) {
         Objects.requireNonNull(onlineWorkflowFactory);
         this.onlineWorkflowFactory = onlineWorkflowFactory;
         this.listenerFactoryClasses = listenerFactoryClass;
         setJmxHost(jmxHost);
         setJmxPort(jmxPort);
         setThreads(threads);
+        setContingencyThreads(contingencyThreads);
     }
 
     public int getThreads() {
         return threads;
     }
 
+    /**
+     * @return number of threads shared by all the states for the analysis of contingencies
+     */
+    public int getContingencyThreads() {
+        return contingencyThreads;
+    }
+
     public String getJmxHost() {
         return jmxHost;
     }
@@ -60,7 +75,7 @@ public class OnlineWorkflowStartParameters implements Serializable {
 
     @Override
     public String toString() {
-        return "OnlineWorkflowStartParameters [threads=" + threads + ", jmxHost=" + jmxHost + ", jmxPort=" + jmxPort
+        return "OnlineWorkflowStartParameters [threads=" + threads + ", contingencyThreads=" + contingencyThreads + ", jmxHost=" + jmxHost + ", jmxPort=" + jmxPort
                 + ", listenerFactoryClasses=" + listenerFactoryClasses + ", onlineWorkflowFactory="
                 + onlineWorkflowFactory + "]";
     }
@@ -72,6 +87,13 @@ public class OnlineWorkflowStartParameters implements Serializable {
         this.threads = threads;
     }
 
+    public void setContingencyThreads(int contingencyThreads) {
+        if (contingencyThreads <= 0) {
+            throw new IllegalArgumentException("contingencyThreads must be greater than zero: " + contingencyThreads);
+        }
+        this.contingencyThreads = contingencyThreads;
+    }
+
     public void setJmxHost(String jmxHost) {
         Objects.requireNonNull(jmxHost);
         this.jmxHost = jmxHost;
@@ -9,14 +9,15 @@ package eu.itesla_project.online;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -45,6 +46,7 @@ import eu.itesla_project.modules.optimizer.CorrectiveControlOptimizer;
 import eu.itesla_project.modules.optimizer.CorrectiveControlOptimizerResult;
 import eu.itesla_project.modules.optimizer.PostContingencyState;
 import eu.itesla_project.security.LimitViolation;
+import eu.itesla_project.security.LimitViolationChecker;
 import eu.itesla_project.security.Security;
 import eu.itesla_project.security.Security.CurrentLimitType;
 import eu.itesla_project.simulation.securityindexes.SecurityIndex;
@@ -77,11 +79,14 @@ public class StateAnalyzer implements Callable<Void> {
     private EnumMap<OnlineTaskType,OnlineTaskStatus> status=new EnumMap<OnlineTaskType, OnlineTaskStatus>(OnlineTaskType.class);
     Map<String, Boolean> loadflowResults = new HashMap<String, Boolean>();
     private ConstraintsModifier constraintsModifier; 
+    private final OnlineWorkflowExecutor executor;
+    // post contingency states cloned by this analyzer and not removed yet
+    private final Set<String> postContingencyStates = ConcurrentHashMap.newKeySet();
 
     public StateAnalyzer(OnlineWorkflowContext context, MontecarloSampler sampler, LoadFlow loadFlow,
             OnlineRulesFacade rulesFacade, CorrectiveControlOptimizer optimizer, Stabilization stabilization,
             ImpactAnalysis impactAnalysis, OnlineDb onlineDb, StateAnalizerListener stateListener, ConstraintsModifier constraintsModifier,
-            OnlineWorkflowParameters parameters) {
+            OnlineWorkflowParameters parameters, OnlineWorkflowExecutor executor) {
         this.context = context;
         this.sampler = sampler;
         this.loadFlow = loadFlow;
@@ -93,6 +98,7 @@ public class StateAnalyzer implements Callable<Void> {
         this.stateListener=stateListener;
         this.constraintsModifier = constraintsModifier;
         this.parameters = parameters;
+        this.executor = Objects.requireNonNull(executor, "executor is null");
         //stateId = "STATE-" + context.incrementStateCounter();
         stateId =  context.incrementStateCounter();
         initStatus();
@@ -228,7 +234,11 @@ public class StateAnalyzer implements Callable<Void> {
                 }
                 status.put(currentStatus, OnlineTaskStatus.SUCCESS);
                 stateListener.onUpdate(stateId, status,context.timeHorizon);
-                computeAndStorePostContingencyViolations(context.getNetwork(), context.getContingenciesToAnalyze());
+                // post contingency states are kept for the optimizer, if it is going to run on them
+                Set<String> optimizerContingencyIds = isStateSafe && !parameters.validation()
+                        ? Collections.emptySet()
+                        : OnlineUtils.getContingencyIds(contingenciesForOptimizer);
+                computeAndStorePostContingencyViolations(context.getNetwork(), context.getContingenciesToAnalyze(), optimizerContingencyIds);
                 if ( isStateSafe && !parameters.validation() ) {
                     // state is safe: stop analysis and destroy the state
                     logger.info("{}: is safe for every contingency: stopping analysis", stateId);
@@ -293,6 +303,8 @@ public class StateAnalyzer implements Callable<Void> {
             //TODO  manage string ifo detail 
             stateListener.onUpdate(stateId, status,context.timeHorizon ,currentStatus +" failed ... ");
             logger.error("{}: Error working on state: {}", stateId, t.toString(), t);
+        } finally {
+            removePostContingencyStates(context.getNetwork(), String.valueOf(stateId));
         }
         return null;
     }
@@ -308,74 +320,87 @@ public class StateAnalyzer implements Callable<Void> {
                         @Override
                         public Void call() throws Exception {
                             String postContingencyStateId = stateId + "-post-" + contingency.getId();
-                            boolean loadflowConverge = computePostContingencyState(network, stateId, contingency, postContingencyStateId);
-                            if ( loadflowConverge ) {
-                                logger.info("{}: adding state {} to post contingency states for optimizer", stateId, postContingencyStateId);
-                                PostContingencyState postContingencyState = new PostContingencyState(network, postContingencyStateId, contingency);
-                                logger.info("{}: running optimizer on post contingency state {} of contingency {}", stateId, postContingencyStateId, contingency.getId());
-                                CorrectiveControlOptimizerResult optimizerResult = null;
-                                try {
-                                    optimizerResult = optimizer.run(postContingencyState);
-                                } catch (Throwable t) {
-                                    logger.error("{}: Error running optimizer on contingency {}: {}", stateId, contingency.getId(), t.getMessage(), t);
-                                    optimizerResult = new CorrectiveControlOptimizerResult(contingency.getId(), false);
-                                    optimizerResult.setFinalStatus(CCOFinalStatus.OPTIMIZER_EXECUTION_ERROR);
-                                    optimizerResult.setCause(t.getMessage());
-                                }
-                                logger.info("{}: optimizer results for contingency {}: action found = {}, status = {}, cause = {}", stateId, contingency.getId(), optimizerResult.areActionsFound(), optimizerResult.getFinalStatus(), optimizerResult.getCause());
-                                Map<String, Map<String,ActionParameters>> actions = null;
-                                if ( optimizerResult.areActionsFound() ) {
-                                    logger.info("{}: optimizer results: action plan {}, actions {} for contingency {}", stateId, optimizerResult.getActionPlan(), optimizerResult.getActionsIds(), contingency.getId());
-                                    actions = new HashMap<String, Map<String,ActionParameters>>();
-                                    for(String actionId : optimizerResult.getActionsIds())
-                                        actions.put(actionId, optimizerResult.getEquipmentsWithParameters(actionId));
-                                } else {
-                                    logger.error("{}: Error: optimizer didn't find actions for post contingency state {}", stateId, postContingencyStateId);
-                                    if ( !parameters.validation() ) { // if validation -> all the [contingency,state] pairs have already been added to the list for simulation -> no need to do it here
-                                        // add to contingencies for simulator
-                                        synchronized(contingenciesForSimulator) {
-                                            contingenciesForSimulator.add(contingency);
-                                        }
-                                    }
-                                }
-                                synchronized(results) {
-                                    results.addStateWithActions(contingency.getId(), 
-                                            Integer.valueOf(stateId),
-                                            optimizerResult.areActionsFound(),
-                                            optimizerResult.getFinalStatus(),
-                                            optimizerResult.getCause(),
-                                            optimizerResult.getActionPlan(), 
-                                            actions);
-                                }
-                            } else {
-                                logger.info("{}: loadflow does not converge on post contigency state {}, the contingency {} will be analyzed by T-D simulation", stateId, postContingencyStateId, contingency.getId());
-                                if ( !parameters.validation() ) { // if validation -> all the [contingency,state] pairs have already been added to the list for simulation -> no need to do it here
-                                    // add to contingencies for simulator
-                                    synchronized(contingenciesForSimulator) {
-                                        contingenciesForSimulator.add(contingency);
-                                    }
-                                }
+                            try {
+                                optimize(network, stateId, contingency, postContingencyStateId, contingenciesForSimulator, results);
+                            } finally {
+                                // optimizer results are stored, the post contingency state is not needed anymore
+                                removePostContingencyState(network, stateId, postContingencyStateId);
                             }
-
                             return null;
                         }
 
                     }
                     );
         }
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(contingencies.size());
         try {
-            taskExecutor.invokeAll(postContingencyStateComputations);
+            executor.invokeContingencies(postContingencyStateComputations);
         } catch (InterruptedException e) {
             logger.error("{}: Error running optimizer: {}", stateId, e.getMessage());
+            Thread.currentThread().interrupt();
         }
-        taskExecutor.shutdown();
         network.getStateManager().setWorkingState(stateId);
     }
 
-    private void computeAndStorePostContingencyViolations(Network network, List<Contingency> contingencies) {
+    private void optimize(Network network, String stateId, Contingency contingency, String postContingencyStateId,
+                          List<Contingency> contingenciesForSimulator, ForecastAnalysisResults results) {
+        boolean loadflowConverge = computePostContingencyState(network, stateId, contingency, postContingencyStateId);
+        if ( loadflowConverge ) {
+            logger.info("{}: adding state {} to post contingency states for optimizer", stateId, postContingencyStateId);
+            PostContingencyState postContingencyState = new PostContingencyState(network, postContingencyStateId, contingency);
+            logger.info("{}: running optimizer on post contingency state {} of contingency {}", stateId, postContingencyStateId, contingency.getId());
+            CorrectiveControlOptimizerResult optimizerResult = null;
+            try {
+                optimizerResult = optimizer.run(postContingencyState);
+            } catch (Throwable t) {
+                logger.error("{}: Error running optimizer on contingency {}: {}", stateId, contingency.getId(), t.getMessage(), t);
+                optimizerResult = new CorrectiveControlOptimizerResult(contingency.getId(), false);
+                optimizerResult.setFinalStatus(CCOFinalStatus.OPTIMIZER_EXECUTION_ERROR);
+                optimizerResult.setCause(t.getMessage());
+            }
+            logger.info("{}: optimizer results for contingency {}: action found = {}, status = {}, cause = {}", stateId, contingency.getId(), optimizerResult.areActionsFound(), optimizerResult.getFinalStatus(), optimizerResult.getCause());
+            Map<String, Map<String,ActionParameters>> actions = null;
+            if ( optimizerResult.areActionsFound() ) {
+                logger.info("{}: optimizer results: action plan {}, actions {} for contingency {}", stateId, optimizerResult.getActionPlan(), optimizerResult.getActionsIds(), contingency.getId());
+                actions = new HashMap<String, Map<String,ActionParameters>>();
+                for(String actionId : optimizerResult.getActionsIds())
+                    actions.put(actionId, optimizerResult.getEquipmentsWithParameters(actionId));
+            } else {
+                logger.error("{}: Error: optimizer didn't find actions for post contingency state {}", stateId, postContingencyStateId);
+                if ( !parameters.validation() ) { // if validation -> all the [contingency,state] pairs have already been added to the list for simulation -> no need to do it here
+                    // add to contingencies for simulator
+                    synchronized(contingenciesForSimulator) {
+                        contingenciesForSimulator.add(contingency);
+                    }
+                }
+            }
+            synchronized(results) {
+                results.addStateWithActions(contingency.getId(), 
+                        Integer.valueOf(stateId),
+                        optimizerResult.areActionsFound(),
+                        optimizerResult.getFinalStatus(),
+                        optimizerResult.getCause(),
+                        optimizerResult.getActionPlan(), 
+                        actions);
+            }
+        } else {
+            logger.info("{}: loadflow does not converge on post contigency state {}, the contingency {} will be analyzed by T-D simulation", stateId, postContingencyStateId, contingency.getId());
+            if ( !parameters.validation() ) { // if validation -> all the [contingency,state] pairs have already been added to the list for simulation -> no need to do it here
+                // add to contingencies for simulator
+                synchronized(contingenciesForSimulator) {
+                    contingenciesForSimulator.add(contingency);
+                }
+            }
+        }
+    }
+
+    private void computeAndStorePostContingencyViolations(Network network, List<Contingency> contingencies, Set<String> keptContingencyIds) {
         String stateId = network.getStateManager().getWorkingStateId();
         logger.info("{}: computing post contingency violations", stateId);
+        // limits are not modified while computing post contingency violations, index them once for all the contingencies
+        LimitViolationChecker limitViolationChecker = new LimitViolationChecker(network);
+        // results of all the contingencies are stored at once in the online db
+        Map<String, Boolean> postContingencyLoadflowConvergence = new ConcurrentHashMap<String, Boolean>();
+        Map<String, List<LimitViolation>> postContingencyViolations = new ConcurrentHashMap<String, List<LimitViolation>>();
         List<Callable<Void>> postContingencyViolationsComputations = new ArrayList<>(contingencies.size());
         for (Contingency contingency : contingencies) {
             postContingencyViolationsComputations.add(
@@ -389,7 +414,7 @@ public class StateAnalyzer implements Callable<Void> {
                             boolean loadflowConverge = computePostContingencyState(network, stateId, contingency, postContingencyStateId);
                             if ( loadflowConverge ) {
                                 logger.info("{}: computing post contingency violations for contingency {}", stateId, contingency.getId());
-                                violations = Security.checkLimits(network, CurrentLimitType.PATL, parameters.getLimitReduction());
+                                violations = limitViolationChecker.checkLimits(CurrentLimitType.PATL, parameters.getLimitReduction());
                                 if ( violations == null || violations.isEmpty() ) {
                                     logger.info("{}: no post contingency violations for contingency {}", stateId, contingency.getId());
                                     violations = new ArrayList<LimitViolation>();
@@ -397,22 +422,25 @@ public class StateAnalyzer implements Callable<Void> {
                             } else {
                                 logger.info("{}: post contingency loadflow does not converge for contingency {}, skipping computing post contingency violations", stateId, contingency.getId());
                             }
-                            logger.info("{}: storing post contingency violations/loadflow results for contingency {} in online db", stateId, contingency.getId());
-                            onlineDb.storePostContingencyViolations(context.getWorkflowId(), Integer.valueOf(stateId), contingency.getId(), loadflowConverge, violations);
-                            network.getStateManager().setWorkingState(stateId);
-                            //							network.getStateManager().removeState(postContingencyStateId);
+                            postContingencyViolations.put(contingency.getId(), violations);
+                            postContingencyLoadflowConvergence.put(contingency.getId(), loadflowConverge);
+                            if ( keptContingencyIds.contains(contingency.getId()) )
+                                network.getStateManager().setWorkingState(stateId);
+                            else
+                                removePostContingencyState(network, stateId, postContingencyStateId);
                             return null;
                         }
                     }
                     );
         }
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(contingencies.size());
         try {
-            taskExecutor.invokeAll(postContingencyViolationsComputations);
+            executor.invokeContingencies(postContingencyViolationsComputations);
         } catch (InterruptedException e) {
             logger.error("{}: Error computing post contingency vioations: {}", stateId, e.getMessage());
+            Thread.currentThread().interrupt();
         }
-        taskExecutor.shutdown();
+        logger.info("{}: storing post contingency violations/loadflow results for {} contingencies in online db", stateId, postContingencyLoadflowConvergence.size());
+        onlineDb.storePostContingencyViolations(context.getWorkflowId(), Integer.valueOf(stateId), postContingencyLoadflowConvergence, postContingencyViolations);
     }
 
     private boolean computePostContingencyState(Network network, String stateId, Contingency contingency, String postContingencyStateId) {
@@ -433,7 +461,8 @@ public class StateAnalyzer implements Callable<Void> {
         } else {
             // create post contingency state
             logger.info("{}: creating post contingency state {}", stateId, postContingencyStateId);
-            network.getStateManager().cloneState(stateId, postContingencyStateId);
+            network.getStateManager().cloneState(stateId, postContingencyStateId, true);
+            postContingencyStates.add(postContingencyStateId);
             network.getStateManager().setWorkingState(postContingencyStateId);
             // apply contingency to post contingency state
             logger.info("{}: applying contingency {} to post contingency state {}", stateId, contingency.getId(), postContingencyStateId);
@@ -461,6 +490,22 @@ public class StateAnalyzer implements Callable<Void> {
         return loadflowConverge;
     }
 
+    private void removePostContingencyState(Network network, String stateId, String postContingencyStateId) {
+        network.getStateManager().setWorkingState(stateId);
+        if ( postContingencyStates.remove(postContingencyStateId) ) {
+            logger.debug("{}: removing post contingency state {}", stateId, postContingencyStateId);
+            network.getStateManager().removeState(postContingencyStateId);
+        }
+    }
+
+    private void removePostContingencyStates(Network network, String stateId) {
+        if ( !postContingencyStates.isEmpty() && network.getStateManager().getStateIds().contains(stateId) ) {
+            for (String postContingencyStateId : new ArrayList<>(postContingencyStates)) {
+                removePostContingencyState(network, stateId, postContingencyStateId);
+            }
+        }
+    }
+
     private void putResultsIntoContext(Integer stateId, ImpactAnalysisResult simulationResult, ForecastAnalysisResults results) {
         Objects.requireNonNull(stateId, "state id is null");
         Objects.requireNonNull(simulationResult, "simulation result is null");
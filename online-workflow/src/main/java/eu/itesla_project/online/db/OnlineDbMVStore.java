@@ -7,11 +7,16 @@
  */
 package eu.itesla_project.online.db;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -29,8 +34,11 @@ import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.Cursor;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVMapConcurrent;
 import org.h2.mvstore.MVStore;
@@ -53,6 +61,8 @@ import eu.itesla_project.iidm.import_.Importer;
 import eu.itesla_project.iidm.import_.Importers;
 import eu.itesla_project.iidm.network.Country;
 import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.xml.NetworkXml;
+import eu.itesla_project.iidm.xml.XmlImportConfig;
 import eu.itesla_project.modules.contingencies.ActionParameters;
 import eu.itesla_project.modules.histo.HistoDbAttributeId;
 import eu.itesla_project.modules.histo.IIDM2DB;
@@ -128,20 +138,27 @@ public class OnlineDbMVStore implements OnlineDb {
     private static final String STORED_STATE_PROCESSING_STATUS_MAP_SUFFIX = "_processingstatus";
     private static final String STORED_WORKFLOW_STATES_FOLDER_PREFIX = "states-wf-";
     private static final String STORED_STATE_PREFIX = "state-";
-    private static final String STORED_VIOLATIONS_STEPS_MAP_NAME = "storedViolationsSteps";
-    private static final String STORED_VIOLATIONS_STATES_MAP_SUFFIX = "_violationsstates";
-    private static final String STORED_VIOLATIONS_STATES_MAP_NAME = "storedViolationsStates";
-    private static final String STORED_VIOLATIONS_STEPS_MAP_SUFFIX = "_violationssteps";
-    private static final String STORED_VIOLATIONS_MAP_PREFIX = "violations_";
-    private static final String STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_NAME = "storedPCViolationsContingencies";
-    private static final String STORED_PC_VIOLATIONS_STATES_MAP_SUFFIX = "_pcviolationsstates";
-    private static final String STORED_PC_VIOLATIONS_STATES_MAP_NAME = "storedPCViolationsStates";
-    private static final String STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX = "_pcviolationscontigencies";
-    private static final String STORED_PC_VIOLATIONS_MAP_PREFIX = "pcviolations_";
-    private static final String STORED_PC_LOADFLOW_CONTINGENCIES_MAP_NAME = "storedPCLoadflowContingencies";
-    private static final String STORED_PC_LOADFLOW_STATES_MAP_SUFFIX = "_pcloadflowstates";;
-    private static final String STORED_PC_LOADFLOW_STATES_MAP_NAME = "storedPCLoadflowStates";
-    private static final String STORED_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX = "_pcloadflowcontigencies";
+    private static final String STORED_VIOLATIONS_MAP_NAME = "violations";
+    private static final String STORED_PC_VIOLATIONS_MAP_NAME = "pcViolations";
+    private static final String STORED_PC_LOADFLOW_MAP_NAME = "pcLoadflowConvergence";
+    // index of the keys of a results map sorted by step or contingency first
+    private static final String STORED_RESULTS_BY_NAME_MAP_SUFFIX = "ByName";
+    private static final String[] STORED_RESULTS_MAP_NAMES = { STORED_VIOLATIONS_MAP_NAME, STORED_PC_VIOLATIONS_MAP_NAME, STORED_PC_LOADFLOW_MAP_NAME };
+    // maps of violations and post contingency loadflow convergence before typed maps, moved when a store is opened
+    private static final String LEGACY_VIOLATIONS_STEPS_MAP_NAME = "storedViolationsSteps";
+    private static final String LEGACY_VIOLATIONS_STATES_MAP_SUFFIX = "_violationsstates";
+    private static final String LEGACY_VIOLATIONS_STATES_MAP_NAME = "storedViolationsStates";
+    private static final String LEGACY_VIOLATIONS_STEPS_MAP_SUFFIX = "_violationssteps";
+    private static final String LEGACY_VIOLATIONS_MAP_PREFIX = "violations_";
+    private static final String LEGACY_PC_VIOLATIONS_CONTINGENCIES_MAP_NAME = "storedPCViolationsContingencies";
+    private static final String LEGACY_PC_VIOLATIONS_STATES_MAP_SUFFIX = "_pcviolationsstates";
+    private static final String LEGACY_PC_VIOLATIONS_STATES_MAP_NAME = "storedPCViolationsStates";
+    private static final String LEGACY_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX = "_pcviolationscontigencies";
+    private static final String LEGACY_PC_VIOLATIONS_MAP_PREFIX = "pcviolations_";
+    private static final String LEGACY_PC_LOADFLOW_CONTINGENCIES_MAP_NAME = "storedPCLoadflowContingencies";
+    private static final String LEGACY_PC_LOADFLOW_STATES_MAP_SUFFIX = "_pcloadflowstates";
+    private static final String LEGACY_PC_LOADFLOW_STATES_MAP_NAME = "storedPCLoadflowStates";
+    private static final String LEGACY_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX = "_pcloadflowcontigencies";
     private static final String STORED_WCA_RULES_RESULTS_MAP_NAME = "wfWcaRulesResults";
     private static final String STORED_WCA_RULES_RESULTS_STATE_RESULTS_MAP_SUFFIX = "_wcarulesresults";
     private static final String STORED_WCA_RULES_RESULTS_STATE_STATUS_MAP_SUFFIX = "_wcarulesstatus";
@@ -149,6 +166,11 @@ public class OnlineDbMVStore implements OnlineDb {
     private static final String STORED_WCA_RULES_RESULTS_STATE_INVALID_RULES_MAP_SUFFIX = "_wcarulesinvalid";
     private static final String SERIALIZED_STATES_FILENAME = "network-states.csv";
     private final String[] XIIDMEXTENSIONS = { ".xiidm", ".iidm", ".xml" };
+    private static final String STORED_STATES_BASE_FOLDER = "base";
+    private static final String STORED_STATES_BASE_HASH_FILENAME = "base.hash";
+    private static final String STORED_STATES_BASE_STATE_VARIABLES_FILENAME = "base.state";
+    private static final String STORED_STATE_VARIABLES_EXTENSION = ".state";
+    private static final String STORED_STATE_VARIABLES_DELTA_EXTENSION = ".delta";
 
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OnlineDbMVStore.class);
@@ -160,6 +182,30 @@ public class OnlineDbMVStore implements OnlineDb {
     ConcurrentHashMap<String, ConcurrentHashMap<Integer, Map<HistoDbAttributeId, Object>>> workflowsStates = new ConcurrentHashMap<String, ConcurrentHashMap<Integer,Map<HistoDbAttributeId,Object>>>();
 
     MVMapConcurrent.Builder<String, String> mapBuilder;
+    MVMapConcurrent.Builder<ResultKey, List<StoredViolation>> violationsMapBuilder;
+    MVMapConcurrent.Builder<ResultKey, Boolean> loadflowMapBuilder;
+    MVMapConcurrent.Builder<ResultKey, Boolean> resultsByNameMapBuilder;
+
+    // base of the stored states of each workflow, states with the same topology being stored as a delta of its state variables
+    private final ConcurrentHashMap<String, StatesBase> statesBases = new ConcurrentHashMap<>();
+
+    // gzipped xml of the base network of the stored states of each workflow, each restored state being imported from it
+    private final ConcurrentHashMap<String, byte[]> statesBaseNetworks = new ConcurrentHashMap<>();
+
+    // state 0 of each workflow, only read to get the equipments of the limit violations
+    private final ConcurrentHashMap<String, Network> violationsNetworks = new ConcurrentHashMap<>();
+
+    private static final class StatesBase {
+
+        private final long topologyHash;
+
+        private final byte[] stateVariables;
+
+        private StatesBase(long topologyHash, byte[] stateVariables) {
+            this.topologyHash = topologyHash;
+            this.stateVariables = stateVariables;
+        }
+    }
 
 
     public OnlineDbMVStore(OnlineDbMVStoreConfig config) {
@@ -176,6 +222,13 @@ public class OnlineDbMVStore implements OnlineDb {
             }
         }
         mapBuilder = new MVMapConcurrent.Builder<String, String>();
+        violationsMapBuilder = new MVMapConcurrent.Builder<ResultKey, List<StoredViolation>>()
+                .keyType(ResultKey.TYPE)
+                .valueType(StoredViolation.LIST_TYPE);
+        loadflowMapBuilder = new MVMapConcurrent.Builder<ResultKey, Boolean>()
+                .keyType(ResultKey.TYPE);
+        resultsByNameMapBuilder = new MVMapConcurrent.Builder<ResultKey, Boolean>()
+                .keyType(ResultKey.BY_NAME_TYPE);
     }
 
     public OnlineDbMVStore() {
@@ -201,6 +254,8 @@ public class OnlineDbMVStore implements OnlineDb {
         else {
             LOGGER.debug("Opening file for workflow {}", workflowId);
             wfMVStore = MVStore.open(config.getOnlineDbDir().toString() + File.separator + STORED_WORKFLOW_PREFIX + workflowId);
+            migrateLegacyResults(workflowId, wfMVStore);
+            indexResults(workflowId, wfMVStore);
             storedWFMetrics.put(workflowId, wfMVStore);
         }
         return wfMVStore;
@@ -1001,8 +1056,14 @@ public class OnlineDbMVStore implements OnlineDb {
             Path stateFolder = Paths.get(workflowStatesFolder.toString(), STORED_STATE_PREFIX + stateId);
             if ( Files.exists(stateFolder) ) {
                 //remove current state file, if it already exists
+                List<String> stateFileNames = new ArrayList<>();
                 for (int i = 0; i < XIIDMEXTENSIONS.length; i++) {
-                    Path stateFile = Paths.get(stateFolder.toString(), network.getId() + XIIDMEXTENSIONS[i]);
+                    stateFileNames.add(network.getId() + XIIDMEXTENSIONS[i]);
+                }
+                stateFileNames.add(network.getId() + STORED_STATE_VARIABLES_EXTENSION);
+                stateFileNames.add(network.getId() + STORED_STATE_VARIABLES_DELTA_EXTENSION);
+                for (String stateFileName : stateFileNames) {
+                    Path stateFile = Paths.get(stateFolder.toString(), stateFileName);
                     try {
                         Files.deleteIfExists(stateFile);
                     } catch (IOException e) {
@@ -1022,13 +1083,28 @@ public class OnlineDbMVStore implements OnlineDb {
                     throw new RuntimeException(errorMessage);
                 }
             }
-            DataSource dataSource = new FileDataSource(stateFolder, network.getId());
-            Properties parameters = new Properties();
-            parameters.setProperty("iidm.export.xml.indent", "true");
-            parameters.setProperty("iidm.export.xml.with-branch-state-variables", "true");
-            parameters.setProperty("iidm.export.xml.with-breakers", "true");
-            parameters.setProperty("iidm.export.xml.with-properties", "true");
-            Exporters.export("XIIDM", network, parameters, dataSource);
+            StatesBase statesBase = getStatesBase(workflowId, network);
+            if ( statesBase.topologyHash == NetworkXml.getStateTopologyHash(network) ) {
+                // only store the state variables, the topology being the one of the base network
+                byte[] stateVariables = writeStateVariables(network);
+                byte[] delta = StateVariablesDelta.encode(statesBase.stateVariables, stateVariables);
+                try {
+                    if ( delta != null )
+                        Files.write(Paths.get(stateFolder.toString(), network.getId() + STORED_STATE_VARIABLES_DELTA_EXTENSION), delta);
+                    else
+                        Files.write(Paths.get(stateFolder.toString(), network.getId() + STORED_STATE_VARIABLES_EXTENSION), stateVariables);
+                } catch (IOException e) {
+                    String errorMessage = "online db: folder " + workflowStatesFolder + " for workflow " + workflowId
+                            + " , state " + stateIdStr + " ; cannot store state variables: " + e.getMessage();
+                    LOGGER.error(errorMessage);
+                    throw new RuntimeException(errorMessage);
+                }
+            } else {
+                LOGGER.warn("Topology of state {} of workflow {} differs from the one of the base network, storing the whole network", stateIdStr, workflowId);
+                exportNetwork(network, stateFolder);
+            }
+            if ( stateId == 0 )
+                violationsNetworks.remove(workflowId);
             // store network state values, for later serialization
             Map<HistoDbAttributeId, Object> networkValues = IIDM2DB.extractCimValues(network, new IIDM2DB.Config(network.getId(), true, true)).getSingleValueMap();
             ConcurrentHashMap<Integer, Map<HistoDbAttributeId, Object>> workflowStates = new ConcurrentHashMap<Integer, Map<HistoDbAttributeId,Object>>();
@@ -1119,23 +1195,134 @@ public class OnlineDbMVStore implements OnlineDb {
         if ( Files.exists(stateFolder) && Files.isDirectory(stateFolder) ) {
             if ( stateFolder.toFile().list().length == 1 ) {
                 File stateFile = stateFolder.toFile().listFiles()[0];
-                String basename = stateFile.getName();
-                int extIndex = basename.lastIndexOf(".");
-                if (extIndex > 0) {
-                    basename = basename.substring(0, extIndex);
-                }
-                DataSource dataSource = new FileDataSource(stateFolder, basename);
-                //Network network = Importers.import_("XIIDM", dataSource, null);
-                // with the new post processors configuration, the post processing is applied also to xml import
-                Importer xmlImporter = Importers.getImporter("XIIDM");
-                Importer noppImporter = Importers.removePostProcessors(xmlImporter);
-                Network network = noppImporter.import_(dataSource, null);
-                return network;
+                if ( stateFile.getName().endsWith(STORED_STATE_VARIABLES_DELTA_EXTENSION) )
+                    return restoreState(workflowId, stateFile.toPath(), true);
+                if ( stateFile.getName().endsWith(STORED_STATE_VARIABLES_EXTENSION) )
+                    return restoreState(workflowId, stateFile.toPath(), false);
+                return importNetwork(stateFolder, stateFile);
             }
         }
         return null;
     }
 
+    private Network importNetwork(Path folder, File networkFile) {
+        String basename = networkFile.getName();
+        int extIndex = basename.lastIndexOf(".");
+        if (extIndex > 0) {
+            basename = basename.substring(0, extIndex);
+        }
+        DataSource dataSource = new FileDataSource(folder, basename);
+        //Network network = Importers.import_("XIIDM", dataSource, null);
+        // with the new post processors configuration, the post processing is applied also to xml import
+        Importer xmlImporter = Importers.getImporter("XIIDM");
+        Importer noppImporter = Importers.removePostProcessors(xmlImporter);
+        Properties parameters = new Properties();
+        parameters.setProperty("parallelParsing", "true");
+        return noppImporter.import_(dataSource, parameters);
+    }
+
+    private void exportNetwork(Network network, Path folder) {
+        DataSource dataSource = new FileDataSource(folder, network.getId());
+        Properties parameters = new Properties();
+        parameters.setProperty("iidm.export.xml.indent", "true");
+        parameters.setProperty("iidm.export.xml.with-branch-state-variables", "true");
+        parameters.setProperty("iidm.export.xml.with-breakers", "true");
+        parameters.setProperty("iidm.export.xml.with-properties", "true");
+        Exporters.export("XIIDM", network, parameters, dataSource);
+    }
+
+    private static byte[] writeStateVariables(Network network) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        NetworkXml.writeState(network, os);
+        return os.toByteArray();
+    }
+
+    /*
+     * the base network of the stored states of a workflow is the first stored state: it is exported once, with
+     * the hash of its topology and its state variables, in the base folder of the workflow states
+     */
+    private synchronized StatesBase getStatesBase(String workflowId, Network network) {
+        StatesBase statesBase = statesBases.get(workflowId);
+        if ( statesBase == null ) {
+            Path baseFolder = Paths.get(getWorkflowStatesFolder(workflowId).toString(), STORED_STATES_BASE_FOLDER);
+            Path baseHashFile = Paths.get(baseFolder.toString(), STORED_STATES_BASE_HASH_FILENAME);
+            Path baseStateVariablesFile = Paths.get(baseFolder.toString(), STORED_STATES_BASE_STATE_VARIABLES_FILENAME);
+            try {
+                if ( Files.exists(baseHashFile) ) {
+                    long topologyHash = Long.parseLong(new String(Files.readAllBytes(baseHashFile), StandardCharsets.UTF_8).trim());
+                    statesBase = new StatesBase(topologyHash, Files.readAllBytes(baseStateVariablesFile));
+                } else if ( network != null ) {
+                    LOGGER.info("Storing base network of states of workflow {}", workflowId);
+                    Files.createDirectories(baseFolder);
+                    exportNetwork(network, baseFolder);
+                    statesBase = new StatesBase(NetworkXml.getStateTopologyHash(network), writeStateVariables(network));
+                    Files.write(baseStateVariablesFile, statesBase.stateVariables);
+                    Files.write(baseHashFile, Long.toString(statesBase.topologyHash).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    throw new IOException("base network not found");
+                }
+            } catch (IOException e) {
+                String errorMessage = "online db: folder " + baseFolder + " for workflow " + workflowId
+                        + " ; cannot access base network of states: " + e.getMessage();
+                LOGGER.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+            statesBases.put(workflowId, statesBase);
+        }
+        return statesBase;
+    }
+
+    /*
+     * the xml of the base network of the stored states of a workflow is read once and kept gzipped in memory,
+     * each restored state is then imported from it, so that the caller gets a network of its own
+     */
+    private Network importStatesBaseNetwork(String workflowId) {
+        byte[] baseNetworkXml = statesBaseNetworks.computeIfAbsent(workflowId, id -> {
+            Path baseFolder = Paths.get(getWorkflowStatesFolder(workflowId).toString(), STORED_STATES_BASE_FOLDER);
+            File[] baseNetworkFiles = baseFolder.toFile().listFiles((dir, name) -> !name.equals(STORED_STATES_BASE_HASH_FILENAME)
+                                                                                   && !name.equals(STORED_STATES_BASE_STATE_VARIABLES_FILENAME));
+            if ( baseNetworkFiles == null || baseNetworkFiles.length != 1 ) {
+                String errorMessage = "online db: folder " + baseFolder + " for workflow " + workflowId + " ; base network not found";
+                LOGGER.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzos = new GZIPOutputStream(os)) {
+                Files.copy(baseNetworkFiles[0].toPath(), gzos);
+            } catch (IOException e) {
+                String errorMessage = "online db: folder " + baseFolder + " for workflow " + workflowId
+                        + " ; cannot read base network: " + e.getMessage();
+                LOGGER.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+            return os.toByteArray();
+        });
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(baseNetworkXml))) {
+            return NetworkXml.read(is, new XmlImportConfig(false, true), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * the state is restored in the initial state of a newly imported base network, which is owned by the caller
+     */
+    private Network restoreState(String workflowId, Path stateFile, boolean delta) {
+        byte[] stateVariables;
+        try {
+            stateVariables = Files.readAllBytes(stateFile);
+        } catch (IOException e) {
+            String errorMessage = "online db: workflow " + workflowId + " ; cannot read state file " + stateFile + ": " + e.getMessage();
+            LOGGER.error(errorMessage);
+            throw new RuntimeException(errorMessage);
+        }
+        if ( delta )
+            stateVariables = StateVariablesDelta.decode(getStatesBase(workflowId, null).stateVariables, stateVariables);
+        Network network = importStatesBaseNetwork(workflowId);
+        NetworkXml.readState(network, new ByteArrayInputStream(stateVariables));
+        return network;
+    }
+
     @Override
     public void exportState(String workflowId, Integer stateId, Path folder) {
         LOGGER.info("Exporting network data of workflow {} and state {} to folder {}", workflowId, stateId, folder);
@@ -1177,6 +1364,9 @@ public class OnlineDbMVStore implements OnlineDb {
         Path workflowStatesFolder = Paths.get(config.getOnlineDbDir().toFile().toString(), STORED_WORKFLOW_STATES_FOLDER_PREFIX + workflowId);
         if ( workflowStatesFolder.toFile().exists() && workflowStatesFolder.toFile().isDirectory() )
             try {
+                statesBases.remove(workflowId);
+                statesBaseNetworks.remove(workflowId);
+                violationsNetworks.remove(workflowId);
                 FileUtils.deleteDirectory(workflowStatesFolder.toFile());
                 workflowStatesDeleted = true;
             } catch (IOException e) {
@@ -1239,472 +1429,427 @@ public class OnlineDbMVStore implements OnlineDb {
     public void storeViolations(String workflowId, Integer stateId, OnlineStep step, List<LimitViolation> violations) {
         String stateIdStr=String.valueOf(stateId);
         LOGGER.info("Storing violations for wf {}, step {} and state {}", workflowId, step.name(), stateIdStr);
-        storeViolations(workflowId, STORED_VIOLATIONS_MAP_PREFIX + step.name() + "_" + stateIdStr, violations);
-        LOGGER.info("Storing violations metadata for wf {}, step {} and state {}", workflowId, step.name(), stateIdStr);
-        storeViolationsMetadata(workflowId, stateIdStr, step, violations);
-    }
-
-    private void storeViolations(String workflowId, String mapName, List<LimitViolation> violations) {
         try {
             MVStore wfMVStore = getStore(workflowId);
-            Map<String, String> metricsMap = wfMVStore.openMap(mapName, mapBuilder);
-            int violationIndex = 0;
-            for ( LimitViolation limitViolation : violations ) {
-                String violationId = limitViolation.getSubject().getId() + "_" + violationIndex;
-                metricsMap.put(violationId, OnlineDbMVStoreUtils.limitViolationToJson(limitViolation));
-                violationIndex++;
-            }
+            MVMap<ResultKey, List<StoredViolation>> violationsMap = wfMVStore.openMap(STORED_VIOLATIONS_MAP_NAME, violationsMapBuilder);
+            putResult(wfMVStore, violationsMap, new ResultKey(stateId, step.name()), StoredViolation.of(violations));
             wfMVStore.commit();
         } catch(Throwable e) {
-            String errorMessage = "Error storing violations for wf " +  workflowId + " in map " + mapName + ": " + e.getMessage();
+            String errorMessage = "Error storing violations for wf " +  workflowId + ", step "+ step.name() + ", state " + stateIdStr + ": " + e.getMessage();
             LOGGER.error(errorMessage);
             throw new RuntimeException(errorMessage);
         }
     }
 
-    private void storeViolationsMetadata(String workflowId, String stateId, OnlineStep step, List<LimitViolation> violations) {
-        try {
-            MVStore wfMVStore = getStore(workflowId);
+    // results of a state, keys of a state being contiguous in the map
+    private static <V> Map<String, V> getStateResults(MVMap<ResultKey, V> map, int stateId) {
+        Map<String, V> results = new HashMap<String, V>();
+        Cursor<ResultKey, V> cursor = map.cursor(new ResultKey(stateId, ""));
+        while ( cursor.hasNext() ) {
+            ResultKey key = cursor.next();
+            if ( key.getStateId() != stateId )
+                break;
+            results.put(key.getName(), cursor.getValue());
+        }
+        return results;
+    }
 
-            // save info about stored wf steps
-            MVMap<String, String> storedStepsMap = wfMVStore.openMap(STORED_VIOLATIONS_STEPS_MAP_NAME, mapBuilder);
-            storedStepsMap.putIfAbsent(step.name(), "1");
-            // save info about stored states per step
-            MVMap<String, String> stepStateMap = wfMVStore.openMap(step.name() + STORED_VIOLATIONS_STATES_MAP_SUFFIX, mapBuilder);
-            stepStateMap.putIfAbsent(stateId, "");
+    private MVMap<ResultKey, Boolean> openResultsByNameMap(MVStore wfMVStore, MVMap<ResultKey, ?> map) {
+        return wfMVStore.openMap(map.getName() + STORED_RESULTS_BY_NAME_MAP_SUFFIX, resultsByNameMapBuilder);
+    }
 
-            // save info about stored wf states
-            MVMap<String, String> storedStatesMap = wfMVStore.openMap(STORED_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            storedStatesMap.putIfAbsent(stateId, "1");
-            // save info about stored steps per state
-            MVMap<String, String> stepStepMap = wfMVStore.openMap(stateId + STORED_VIOLATIONS_STEPS_MAP_SUFFIX, mapBuilder);
-            stepStepMap.putIfAbsent(step.name(), "");				
+    private <V> void putResult(MVStore wfMVStore, MVMap<ResultKey, V> map, ResultKey key, V value) {
+        map.put(key, value);
+        openResultsByNameMap(wfMVStore, map).put(key, Boolean.TRUE);
+    }
 
-            wfMVStore.commit();
-        } catch(Throwable e) {
-            String errorMessage = "Error storing violations metadata for wf " +  workflowId + ", step "+ step.name() + ", state " + stateId + ": " + e.getMessage();
-            LOGGER.error(errorMessage);
-            throw new RuntimeException(errorMessage);
+    // results of a step or of a contingency, for all the states, keys of a name being contiguous in the index
+    private <V> Map<Integer, V> getNameResults(MVStore wfMVStore, MVMap<ResultKey, V> map, String name) {
+        Map<Integer, V> results = new HashMap<Integer, V>();
+        Cursor<ResultKey, Boolean> cursor = openResultsByNameMap(wfMVStore, map).cursor(new ResultKey(Integer.MIN_VALUE, name));
+        while ( cursor.hasNext() ) {
+            ResultKey key = cursor.next();
+            if ( !key.getName().equals(name) )
+                break;
+            V value = map.get(key);
+            if ( value != null )
+                results.put(key.getStateId(), value);
+        }
+        return results;
+    }
+
+    private static <V> Map<Integer, Map<String, V>> getAllResults(MVMap<ResultKey, V> map) {
+        Map<Integer, Map<String, V>> results = new HashMap<Integer, Map<String, V>>();
+        Cursor<ResultKey, V> cursor = map.cursor(null);
+        while ( cursor.hasNext() ) {
+            ResultKey key = cursor.next();
+            results.computeIfAbsent(key.getStateId(), k -> new HashMap<String, V>()).put(key.getName(), cursor.getValue());
+        }
+        return results;
+    }
+
+    private MVMap<ResultKey, List<StoredViolation>> getViolationsMap(String workflowId, String mapName) {
+        if ( isWorkflowStored(workflowId) ) {
+            MVStore wfMVStore = getStore(workflowId);
+            if ( wfMVStore.hasMap(mapName) )
+                return wfMVStore.openMap(mapName, violationsMapBuilder);
+            LOGGER.warn("No map {} in wf {}", mapName, workflowId);
+        } else {
+            LOGGER.warn("No data about wf {}", workflowId);
+        }
+        return null;
+    }
+
+    private Network getViolationsNetwork(String workflowId) {
+        // load network: used to get equipment from equipment id, when creating limit violations
+        // only read, so restored once and shared by the violations queries
+        Network network = violationsNetworks.get(workflowId);
+        if ( network == null ) {
+            network = getState(workflowId, 0);
+            if ( network != null )
+                violationsNetworks.putIfAbsent(workflowId, network);
         }
+        if ( network == null )
+            LOGGER.warn("No network data (states) stored for wf {}, cannot get violations", workflowId);
+        return network;
     }
 
     @Override
     public List<LimitViolation> getViolations(String workflowId, Integer stateId, OnlineStep step) {
         String stateIdStr=String.valueOf(stateId);
         LOGGER.info("Getting violations for wf {}, step {} and state {}", workflowId, step.name(), stateIdStr);
-        return getStoredViolations(workflowId, STORED_VIOLATIONS_MAP_PREFIX + step.name() + "_" + stateIdStr, null);
+        return getViolations(workflowId, STORED_VIOLATIONS_MAP_NAME, new ResultKey(stateId, step.name()));
     }
 
-    private List<LimitViolation> getStoredViolations(String workflowId, String mapName, Network network) {
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            if ( wfMVStore.getMapNames().contains(mapName) ) {
-                if ( network==null )
-                    // load network: used to get equipment from equipment id, when creating limit violations
-                    network = getState(workflowId, 0);
-                if ( network!=null ) {
-                    List<LimitViolation> violations = new ArrayList<LimitViolation>();
-                    Map<String, String> storedMap = wfMVStore.openMap(mapName, mapBuilder);
-                    for ( String violationId : storedMap.keySet() ) {
-                        LimitViolation violation = OnlineDbMVStoreUtils.jsonToLimitViolation(storedMap.get(violationId), network);
-                        if ( violation != null )
-                            violations.add(violation);
-                    }
-                    return violations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get violations", workflowId);
-                    return null;
-                }	
+    private List<LimitViolation> getViolations(String workflowId, String mapName, ResultKey key) {
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, mapName);
+        if ( violationsMap != null ) {
+            List<StoredViolation> storedViolations = violationsMap.get(key);
+            if ( storedViolations != null ) {
+                Network network = getViolationsNetwork(workflowId);
+                if ( network != null )
+                    return StoredViolation.toLimitViolations(storedViolations, network);
             } else {
-                LOGGER.warn("No map {} in wf {}", mapName, workflowId);
-                return null;
+                LOGGER.warn("No violations {} in wf {}", key, workflowId);
             }
-        } else {
-            LOGGER.warn("No data about wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
     @Override
     public Map<OnlineStep, List<LimitViolation>> getViolations(String workflowId, Integer stateId) {
         String stateIdStr = Integer.toString(stateId);
         LOGGER.info("Getting violations for wf {} and state {}", workflowId, stateIdStr);
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            if ( storedStatesMap.containsKey(stateIdStr) ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, STORED_VIOLATIONS_MAP_NAME);
+        if ( violationsMap != null ) {
+            Map<String, List<StoredViolation>> storedViolations = getStateResults(violationsMap, stateId);
+            if ( !storedViolations.isEmpty() ) {
+                Network network = getViolationsNetwork(workflowId);
                 if ( network!=null ) {
                     Map<OnlineStep, List<LimitViolation>> stateViolations = new HashMap<OnlineStep, List<LimitViolation>>();
-                    MVMap<String, String> storedStepsMap = wfMVStore.openMap(stateIdStr + STORED_VIOLATIONS_STEPS_MAP_SUFFIX, mapBuilder);
-                    for ( String stepName : storedStepsMap.keySet() ) {
-                        OnlineStep step = OnlineStep.valueOf(stepName);
-                        List<LimitViolation> violations = getStoredViolations(workflowId, STORED_VIOLATIONS_MAP_PREFIX + step.name() + "_" + stateId, network);
-                        if ( violations!=null )
-                            stateViolations.put(step, violations);
+                    for ( Map.Entry<String, List<StoredViolation>> e : storedViolations.entrySet() ) {
+                        stateViolations.put(OnlineStep.valueOf(e.getKey()), StoredViolation.toLimitViolations(e.getValue(), network));
                     }
                     return stateViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get violations", workflowId);
-                    return null;
                 }
             } else {
                 LOGGER.warn("No violations for wf {} and state {}", workflowId, stateIdStr);
-                return null;
             }
-        } else {
-            LOGGER.warn("No data about wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
-
     @Override
     public Map<Integer, List<LimitViolation>> getViolations(String workflowId, OnlineStep step) {
         LOGGER.info("Getting violations for wf {} and step {}", workflowId, step.name());
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedStepsMap = wfMVStore.openMap(STORED_VIOLATIONS_STEPS_MAP_NAME, mapBuilder);
-            if ( storedStepsMap.containsKey(step.name()) ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
+        return getNameViolations(workflowId, STORED_VIOLATIONS_MAP_NAME, step.name());
+    }
+
+    private Map<Integer, List<LimitViolation>> getNameViolations(String workflowId, String mapName, String name) {
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, mapName);
+        if ( violationsMap != null ) {
+            Map<Integer, List<StoredViolation>> storedViolations = getNameResults(getStore(workflowId), violationsMap, name);
+            if ( !storedViolations.isEmpty() ) {
+                Network network = getViolationsNetwork(workflowId);
                 if ( network!=null ) {
-                    Map<Integer, List<LimitViolation>> stepViolations = new HashMap<Integer, List<LimitViolation>>();
-                    MVMap<String, String> storedStatesMap = wfMVStore.openMap(step.name() + STORED_VIOLATIONS_STATES_MAP_SUFFIX, mapBuilder);
-                    for ( String stateId : storedStatesMap.keySet() ) {
-                        List<LimitViolation> violations = getStoredViolations(workflowId, STORED_VIOLATIONS_MAP_PREFIX + step.name() + "_" + stateId, network);
-                        if ( violations!=null )
-                            stepViolations.put(Integer.valueOf(stateId), violations);
+                    Map<Integer, List<LimitViolation>> violations = new HashMap<Integer, List<LimitViolation>>();
+                    for ( Map.Entry<Integer, List<StoredViolation>> e : storedViolations.entrySet() ) {
+                        violations.put(e.getKey(), StoredViolation.toLimitViolations(e.getValue(), network));
                     }
-                    return stepViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get violations", workflowId);
-                    return null;
+                    return violations;
                 }
             } else {
-                LOGGER.warn("No violations for wf {} and step {}", workflowId, step.name());
-                return null;
+                LOGGER.warn("No violations for wf {} and {}", workflowId, name);
             }
-        } else {
-            LOGGER.warn("No data for wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
     @Override
     public Map<Integer, Map<OnlineStep, List<LimitViolation>>> getViolations(String workflowId) {
         LOGGER.info("Getting violations for wf {}", workflowId);
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            if ( !storedStatesMap.isEmpty() ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, STORED_VIOLATIONS_MAP_NAME);
+        if ( violationsMap != null ) {
+            Map<Integer, Map<String, List<StoredViolation>>> storedViolations = getAllResults(violationsMap);
+            if ( !storedViolations.isEmpty() ) {
+                Network network = getViolationsNetwork(workflowId);
                 if ( network!=null ) {
                     Map<Integer, Map<OnlineStep, List<LimitViolation>>> wfViolations = new HashMap<Integer, Map<OnlineStep,List<LimitViolation>>>();
-                    for(String stateIdStr : storedStatesMap.keySet()) {
-                        Integer stateId = Integer.parseInt(stateIdStr);
+                    for ( Map.Entry<Integer, Map<String, List<StoredViolation>>> e : storedViolations.entrySet() ) {
                         Map<OnlineStep, List<LimitViolation>> stateViolations = new HashMap<OnlineStep, List<LimitViolation>>();
-                        MVMap<String, String> storedStepsMap = wfMVStore.openMap(stateIdStr + STORED_VIOLATIONS_STEPS_MAP_SUFFIX, mapBuilder);
-                        if ( !storedStepsMap.isEmpty() ) {
-                            for ( String stepName : storedStepsMap.keySet() ) {
-                                OnlineStep step = OnlineStep.valueOf(stepName);
-                                List<LimitViolation> violations = getStoredViolations(workflowId, STORED_VIOLATIONS_MAP_PREFIX + step.name() + "_" + stateId, network);
-                                if ( violations!=null )
-                                    stateViolations.put(step, violations);
-                            }
-                            wfViolations.put(stateId, stateViolations);
+                        for ( Map.Entry<String, List<StoredViolation>> e2 : e.getValue().entrySet() ) {
+                            stateViolations.put(OnlineStep.valueOf(e2.getKey()), StoredViolation.toLimitViolations(e2.getValue(), network));
                         }
+                        wfViolations.put(e.getKey(), stateViolations);
                     }
                     return wfViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get violations", workflowId);
-                    return null;
                 }
             } else {
                 LOGGER.warn("No violations for wf {}", workflowId);
-                return null;
             }
-        } else {
-            LOGGER.warn("No data for wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
     @Override
     public void storePostContingencyViolations(String workflowId, Integer stateId, String contingencyId, 
             boolean loadflowConverge, List<LimitViolation> violations) {
         String stateIdStr=String.valueOf(stateId);
-        LOGGER.info("Storing post contingency violations for wf {}, contingency {} and state {}", workflowId, contingencyId, stateIdStr);
-        storeViolations(workflowId, STORED_PC_VIOLATIONS_MAP_PREFIX + contingencyId + "_" + stateIdStr, violations);
-        LOGGER.info("Storing post contingency violations metadata for wf {}, contingency {} and state {}", workflowId, contingencyId, stateIdStr);
-        storePCViolationsMetadata(workflowId, stateIdStr, contingencyId, violations);
-        LOGGER.info("Storing post contingency loadflow convergence for wf {}, contingency {} and state {}", workflowId, contingencyId, stateIdStr);
-        storePSLoadflowConvergence(workflowId, stateIdStr, contingencyId, loadflowConverge);
-    }
-
-    private synchronized void storePCViolationsMetadata(String workflowId, String stateId, String contingencyId, List<LimitViolation> violations) {
+        LOGGER.info("Storing post contingency violations and loadflow convergence for wf {}, contingency {} and state {}", workflowId, contingencyId, stateIdStr);
         try {
             MVStore wfMVStore = getStore(workflowId);
-
-            // save info about stored wf contingencies
-            MVMap<String, String> storedContingenciesMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_NAME, mapBuilder);
-            storedContingenciesMap.putIfAbsent(contingencyId, "1");
-            // save info about stored states per contingency
-            MVMap<String, String> contingencyStateMap = wfMVStore.openMap(contingencyId + STORED_PC_VIOLATIONS_STATES_MAP_SUFFIX, mapBuilder);
-            contingencyStateMap.putIfAbsent(stateId, "");
-
-            // save info about stored wf states
-            MVMap<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            storedStatesMap.putIfAbsent(stateId, "1");
-            // save info about stored contingencies per state
-            MVMap<String, String> stateContingencyMap = wfMVStore.openMap(stateId + STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-            LOGGER.info("storePCViolationsMetadata: Adding contingency {} to map {} for workflow {}, state {}", 
-                    contingencyId,
-                    stateId + STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX, 
-                    workflowId, 
-                    stateId
-                    );
-            //stateContingencyMap.putIfAbsent(contingencyId, "");				
-            stateContingencyMap.put(contingencyId, "");
-
+            putPostContingencyResults(wfMVStore, new ResultKey(stateId, contingencyId), loadflowConverge, violations);
             wfMVStore.commit();
         } catch(Throwable e) {
-            String errorMessage = "Error storing pc violations metadata for wf " +  workflowId + ", contingency "+ contingencyId + ", state " + stateId + ": " + e.getMessage();
+            String errorMessage = "Error storing pc violations for wf " +  workflowId + ", contingency "+ contingencyId + ", state " + stateIdStr + ": " + e.getMessage();
             LOGGER.error(errorMessage);
             throw new RuntimeException(errorMessage);
         }
     }
 
-    private synchronized void storePSLoadflowConvergence(String workflowId, String stateId, String contingencyId, boolean loadflowConverge) {
+    @Override
+    public void storePostContingencyViolations(String workflowId, Integer stateId, Map<String, Boolean> loadflowConvergence,
+            Map<String, List<LimitViolation>> violations) {
+        String stateIdStr=String.valueOf(stateId);
+        LOGGER.info("Storing post contingency violations and loadflow convergence for wf {}, {} contingencies and state {}", workflowId, loadflowConvergence.size(), stateIdStr);
         try {
             MVStore wfMVStore = getStore(workflowId);
-
-            // save info about stored wf contingencies
-            MVMap<String, String> storedContingenciesMap = wfMVStore.openMap(STORED_PC_LOADFLOW_CONTINGENCIES_MAP_NAME, mapBuilder);
-            storedContingenciesMap.putIfAbsent(contingencyId, "1");
-            // save info about stored states per contingency
-            MVMap<String, String> contingencyStateMap = wfMVStore.openMap(contingencyId + STORED_PC_LOADFLOW_STATES_MAP_SUFFIX, mapBuilder);
-            contingencyStateMap.putIfAbsent(stateId, Boolean.toString(loadflowConverge));
-
-            // save info about stored wf states
-            MVMap<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_LOADFLOW_STATES_MAP_NAME, mapBuilder);
-            storedStatesMap.putIfAbsent(stateId, "1");
-            // save info about stored contingencies per state
-            MVMap<String, String> stateContingencyMap = wfMVStore.openMap(stateId + STORED_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-            LOGGER.info("storePSLoadflowConvergence: Adding contingency {} to map {} for workflow {}, state {}", 
-                    contingencyId,
-                    stateId + STORED_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX, 
-                    workflowId, 
-                    stateId
-                    );
-            //stateContingencyMap.putIfAbsent(contingencyId, Boolean.toString(loadflowConverge));				
-            stateContingencyMap.put(contingencyId, Boolean.toString(loadflowConverge));
-
+            for ( Map.Entry<String, Boolean> e : loadflowConvergence.entrySet() ) {
+                List<LimitViolation> contingencyViolations = violations.get(e.getKey());
+                putPostContingencyResults(wfMVStore, new ResultKey(stateId, e.getKey()), e.getValue(),
+                        contingencyViolations != null ? contingencyViolations : Collections.<LimitViolation>emptyList());
+            }
+            // results of all the contingencies of the state in a single commit
             wfMVStore.commit();
         } catch(Throwable e) {
-            String errorMessage = "Error storing pc loadflow convergence for wf " +  workflowId + ", contingency "+ contingencyId + ", state " + stateId + ": " + e.getMessage();
+            String errorMessage = "Error storing pc violations for wf " +  workflowId + ", state " + stateIdStr + ": " + e.getMessage();
             LOGGER.error(errorMessage);
             throw new RuntimeException(errorMessage);
         }
     }
 
+    private void putPostContingencyResults(MVStore wfMVStore, ResultKey key, boolean loadflowConverge, List<LimitViolation> violations) {
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_MAP_NAME, violationsMapBuilder);
+        putResult(wfMVStore, violationsMap, key, StoredViolation.of(violations));
+        MVMap<ResultKey, Boolean> loadflowMap = wfMVStore.openMap(STORED_PC_LOADFLOW_MAP_NAME, loadflowMapBuilder);
+        putResult(wfMVStore, loadflowMap, key, loadflowConverge);
+    }
+
     @Override
     public List<LimitViolation> getPostContingencyViolations(String workflowId, Integer stateId, String contingencyId) {
         String stateIdStr=String.valueOf(stateId);
         LOGGER.info("Getting post contingency violations for wf {}, contingency {} and state {}", workflowId, contingencyId, stateIdStr);
-        return getStoredViolations(workflowId, STORED_PC_VIOLATIONS_MAP_PREFIX + contingencyId + "_" + stateIdStr, null);
+        return getViolations(workflowId, STORED_PC_VIOLATIONS_MAP_NAME, new ResultKey(stateId, contingencyId));
     }
 
     @Override
     public Map<String, List<LimitViolation>> getPostContingencyViolations(String workflowId, Integer stateId) {
         String stateIdStr = Integer.toString(stateId);
         LOGGER.info("Getting post contingency violations for wf {} and state {}", workflowId, stateIdStr);
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            if ( storedStatesMap.containsKey(stateIdStr) ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, STORED_PC_VIOLATIONS_MAP_NAME);
+        if ( violationsMap != null ) {
+            Map<String, List<StoredViolation>> storedViolations = getStateResults(violationsMap, stateId);
+            if ( !storedViolations.isEmpty() ) {
+                Network network = getViolationsNetwork(workflowId);
                 if ( network!=null ) {
                     Map<String, List<LimitViolation>> stateViolations = new HashMap<String, List<LimitViolation>>();
-                    MVMap<String, String> storedContingenciesMap = wfMVStore.openMap(stateIdStr + STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-                    for ( String contingencyId : storedContingenciesMap.keySet() ) {
-                        List<LimitViolation> violations = getStoredViolations(workflowId, STORED_PC_VIOLATIONS_MAP_PREFIX + contingencyId + "_" + stateId, network);
-                        if ( violations!=null )
-                            stateViolations.put(contingencyId, violations);
+                    for ( Map.Entry<String, List<StoredViolation>> e : storedViolations.entrySet() ) {
+                        stateViolations.put(e.getKey(), StoredViolation.toLimitViolations(e.getValue(), network));
                     }
                     return stateViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get post contingency violations", workflowId);
-                    return null;
                 }
             } else {
                 LOGGER.warn("No post contingency violations for wf {} and state {}", workflowId, stateIdStr);
-                return null;
             }
-        } else {
-            LOGGER.warn("No data about wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
     @Override
     public Map<Integer, List<LimitViolation>> getPostContingencyViolations(String workflowId, String contingencyId) {
         LOGGER.info("Getting post contingency violations for wf {} and contingency {}", workflowId, contingencyId);
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedContingenciesMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_NAME, mapBuilder);
-            if ( storedContingenciesMap.containsKey(contingencyId) ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
-                if ( network!=null ) {
-                    Map<Integer, List<LimitViolation>> contingencyViolations = new HashMap<Integer, List<LimitViolation>>();
-                    MVMap<String, String> storedStatesMap = wfMVStore.openMap(contingencyId + STORED_PC_VIOLATIONS_STATES_MAP_SUFFIX, mapBuilder);
-                    for ( String stateId : storedStatesMap.keySet() ) {
-                        List<LimitViolation> violations = getStoredViolations(workflowId, STORED_PC_VIOLATIONS_MAP_PREFIX + contingencyId + "_" + stateId, network);
-                        if ( violations!=null )
-                            contingencyViolations.put(Integer.valueOf(stateId), violations);
-                    }
-                    return contingencyViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get post contingency violations", workflowId);
-                    return null;
-                }
-            } else {
-                LOGGER.warn("No post contingency violations for wf {} and contingency {}", workflowId, contingencyId);
-                return null;
-            }
-        } else {
-            LOGGER.warn("No data for wf {}", workflowId);
-            return null;
-        }
+        return getNameViolations(workflowId, STORED_PC_VIOLATIONS_MAP_NAME, contingencyId);
     }
 
     @Override
     public Map<Integer, Map<String, List<LimitViolation>>> getPostContingencyViolations(String workflowId) {
         LOGGER.info("Getting post contingency violations for wf {}", workflowId);
-        if ( isWorkflowStored(workflowId) ) {
-            MVStore wfMVStore = getStore(workflowId);
-            // check if there are stored violations
-            Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_VIOLATIONS_STATES_MAP_NAME, mapBuilder);
-            if ( !storedStatesMap.isEmpty() ) {
-                // load network: used to get equipment from equipment id, when creating limit violations
-                Network network = getState(workflowId, 0);
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = getViolationsMap(workflowId, STORED_PC_VIOLATIONS_MAP_NAME);
+        if ( violationsMap != null ) {
+            Map<Integer, Map<String, List<StoredViolation>>> storedViolations = getAllResults(violationsMap);
+            if ( !storedViolations.isEmpty() ) {
+                Network network = getViolationsNetwork(workflowId);
                 if ( network!=null ) {
                     Map<Integer, Map<String, List<LimitViolation>>> wfViolations = new HashMap<Integer, Map<String,List<LimitViolation>>>();
-                    for(String stateIdStr : storedStatesMap.keySet()) {
-                        Integer stateId = Integer.parseInt(stateIdStr);
+                    for ( Map.Entry<Integer, Map<String, List<StoredViolation>>> e : storedViolations.entrySet() ) {
                         Map<String, List<LimitViolation>> stateViolations = new HashMap<String, List<LimitViolation>>();
-                        MVMap<String, String> storedContingenciesMap = wfMVStore.openMap(stateIdStr + STORED_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-                        if ( !storedContingenciesMap.isEmpty() ) {
-                            for ( String contingencyId : storedContingenciesMap.keySet() ) {
-                                List<LimitViolation> violations = getStoredViolations(workflowId, STORED_PC_VIOLATIONS_MAP_PREFIX + contingencyId + "_" + stateId, network);
-                                if ( violations!=null )
-                                    stateViolations.put(contingencyId, violations);
-                            }
-                            wfViolations.put(stateId, stateViolations);
+                        for ( Map.Entry<String, List<StoredViolation>> e2 : e.getValue().entrySet() ) {
+                            stateViolations.put(e2.getKey(), StoredViolation.toLimitViolations(e2.getValue(), network));
                         }
+                        wfViolations.put(e.getKey(), stateViolations);
                     }
                     return wfViolations;
-                } else {
-                    LOGGER.warn("No network data (states) stored for wf {}, cannot get post contingency violations", workflowId);
-                    return null;
                 }
             } else {
                 LOGGER.warn("No post contingency violations for wf {}", workflowId);
-                return null;
             }
-        } else {
-            LOGGER.warn("No data for wf {}", workflowId);
-            return null;
         }
+        return null;
     }
 
-    @Override
-    public Map<String, Boolean> getPostContingencyLoadflowConvergence(String workflowId, Integer stateId) {
-        String stateIdStr = Integer.toString(stateId);
+    private MVMap<ResultKey, Boolean> getLoadflowMap(String workflowId) {
         if ( isWorkflowStored(workflowId) ) {
-            Map<String, Boolean> loadflowConvergence = new HashMap<String, Boolean>();
             MVStore wfMVStore = getStore(workflowId);
-            if ( wfMVStore.getMapNames().contains(STORED_PC_LOADFLOW_STATES_MAP_NAME) ) {
-                Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_LOADFLOW_STATES_MAP_NAME, mapBuilder);
-                if ( storedStatesMap.containsKey(stateIdStr)) {
-                    MVMap<String, String> stateContingencyMap = wfMVStore.openMap(stateIdStr + STORED_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-                    for ( String contingencyId : stateContingencyMap.keySet() ) {
-                        loadflowConvergence.put(contingencyId, Boolean.valueOf(stateContingencyMap.get(contingencyId)));
-                    }
-                    return loadflowConvergence;
-                } else {
-                    LOGGER.warn("No post contingency loadflow data for state {} in wf {}", stateIdStr, workflowId);
-                    return null;
-                }
-            } else {
-                LOGGER.warn("No post contingency loadflow data in wf {}", workflowId);
-                return null;
-            }
+            if ( wfMVStore.hasMap(STORED_PC_LOADFLOW_MAP_NAME) )
+                return wfMVStore.openMap(STORED_PC_LOADFLOW_MAP_NAME, loadflowMapBuilder);
+            LOGGER.warn("No post contingency loadflow data in wf {}", workflowId);
         } else {
             LOGGER.warn("No data about wf {}", workflowId);
-            return null;
         }
+        return null;
+    }
+
+    @Override
+    public Map<String, Boolean> getPostContingencyLoadflowConvergence(String workflowId, Integer stateId) {
+        MVMap<ResultKey, Boolean> loadflowMap = getLoadflowMap(workflowId);
+        if ( loadflowMap != null ) {
+            Map<String, Boolean> loadflowConvergence = getStateResults(loadflowMap, stateId);
+            if ( !loadflowConvergence.isEmpty() )
+                return loadflowConvergence;
+            LOGGER.warn("No post contingency loadflow data for state {} in wf {}", stateId, workflowId);
+        }
+        return null;
     }
 
     @Override
     public Map<Integer, Boolean> getPostContingencyLoadflowConvergence(String workflowId, String contingencyId) {
-        if ( isWorkflowStored(workflowId) ) {
-            Map<Integer, Boolean> loadflowConvergence = new HashMap<Integer, Boolean>();
-            MVStore wfMVStore = getStore(workflowId);
-            if ( wfMVStore.getMapNames().contains(STORED_PC_LOADFLOW_CONTINGENCIES_MAP_NAME) ) {
-                Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_LOADFLOW_CONTINGENCIES_MAP_NAME, mapBuilder);
-                if ( storedStatesMap.containsKey(contingencyId)) {
-                    MVMap<String, String> contingencyStateMap = wfMVStore.openMap(contingencyId + STORED_PC_LOADFLOW_STATES_MAP_SUFFIX, mapBuilder);
-                    for ( String stateId : contingencyStateMap.keySet() ) {
-                        loadflowConvergence.put(Integer.valueOf(stateId), Boolean.valueOf(contingencyStateMap.get(stateId)));
-                    }
-                    return loadflowConvergence;
-                } else {
-                    LOGGER.warn("No post contingency loadflow data for contingency {} in wf {}", contingencyId, workflowId);
-                    return null;
-                }
-            } else {
-                LOGGER.warn("No post contingency loadflow data in wf {}", workflowId);
-                return null;
-            }
-        } else {
-            LOGGER.warn("No data about wf {}", workflowId);
-            return null;
+        MVMap<ResultKey, Boolean> loadflowMap = getLoadflowMap(workflowId);
+        if ( loadflowMap != null ) {
+            Map<Integer, Boolean> loadflowConvergence = getNameResults(getStore(workflowId), loadflowMap, contingencyId);
+            if ( !loadflowConvergence.isEmpty() )
+                return loadflowConvergence;
+            LOGGER.warn("No post contingency loadflow data for contingency {} in wf {}", contingencyId, workflowId);
         }
+        return null;
     }
 
     @Override
     public Map<Integer, Map<String, Boolean>> getPostContingencyLoadflowConvergence(String workflowId) {
-        if ( isWorkflowStored(workflowId) ) {
-            Map<Integer, Map<String, Boolean>> loadflowConvergence = new HashMap<Integer, Map<String, Boolean>>();
-            MVStore wfMVStore = getStore(workflowId);
-            if ( wfMVStore.getMapNames().contains(STORED_PC_LOADFLOW_STATES_MAP_NAME) ) {
-                Map<String, String> storedStatesMap = wfMVStore.openMap(STORED_PC_LOADFLOW_STATES_MAP_NAME, mapBuilder);
-                for ( String stateId : storedStatesMap.keySet() ) {
-                    MVMap<String, String> stateContingencyMap = wfMVStore.openMap(stateId + STORED_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
-                    HashMap<String, Boolean> stateLoadflowConvergence = new HashMap<String, Boolean>();
-                    for ( String contingencyId : stateContingencyMap.keySet() ) {
-                        stateLoadflowConvergence.put(contingencyId, Boolean.valueOf(stateContingencyMap.get(contingencyId)));
+        MVMap<ResultKey, Boolean> loadflowMap = getLoadflowMap(workflowId);
+        if ( loadflowMap != null )
+            return getAllResults(loadflowMap);
+        return null;
+    }
+
+    /*
+     * violations and post contingency loadflow convergence used to be stored in string maps, one per step or
+     * contingency and state, plus index maps: they are moved to the typed maps the first time the store is opened
+     */
+    private void migrateLegacyResults(String workflowId, MVStore wfMVStore) {
+        boolean migrated = false;
+        if ( wfMVStore.hasMap(LEGACY_VIOLATIONS_STATES_MAP_NAME) ) {
+            migrateLegacyViolations(wfMVStore, STORED_VIOLATIONS_MAP_NAME, LEGACY_VIOLATIONS_STATES_MAP_NAME, LEGACY_VIOLATIONS_STEPS_MAP_SUFFIX, LEGACY_VIOLATIONS_MAP_PREFIX);
+            removeLegacyIndex(wfMVStore, LEGACY_VIOLATIONS_STEPS_MAP_NAME, LEGACY_VIOLATIONS_STATES_MAP_SUFFIX);
+            migrated = true;
+        }
+        if ( wfMVStore.hasMap(LEGACY_PC_VIOLATIONS_STATES_MAP_NAME) ) {
+            migrateLegacyViolations(wfMVStore, STORED_PC_VIOLATIONS_MAP_NAME, LEGACY_PC_VIOLATIONS_STATES_MAP_NAME, LEGACY_PC_VIOLATIONS_CONTINGENCIES_MAP_SUFFIX, LEGACY_PC_VIOLATIONS_MAP_PREFIX);
+            removeLegacyIndex(wfMVStore, LEGACY_PC_VIOLATIONS_CONTINGENCIES_MAP_NAME, LEGACY_PC_VIOLATIONS_STATES_MAP_SUFFIX);
+            migrated = true;
+        }
+        if ( wfMVStore.hasMap(LEGACY_PC_LOADFLOW_STATES_MAP_NAME) ) {
+            MVMap<ResultKey, Boolean> loadflowMap = wfMVStore.openMap(STORED_PC_LOADFLOW_MAP_NAME, loadflowMapBuilder);
+            MVMap<String, String> statesMap = wfMVStore.openMap(LEGACY_PC_LOADFLOW_STATES_MAP_NAME, mapBuilder);
+            for ( String stateId : statesMap.keySet() ) {
+                MVMap<String, String> stateContingencyMap = wfMVStore.openMap(stateId + LEGACY_PC_LOADFLOW_CONTINGENCIES_MAP_SUFFIX, mapBuilder);
+                for ( Map.Entry<String, String> e : stateContingencyMap.entrySet() ) {
+                    putResult(wfMVStore, loadflowMap, new ResultKey(Integer.parseInt(stateId), e.getKey()), Boolean.valueOf(e.getValue()));
+                }
+                wfMVStore.removeMap(stateContingencyMap);
+            }
+            wfMVStore.removeMap(statesMap);
+            removeLegacyIndex(wfMVStore, LEGACY_PC_LOADFLOW_CONTINGENCIES_MAP_NAME, LEGACY_PC_LOADFLOW_STATES_MAP_SUFFIX);
+            migrated = true;
+        }
+        if ( migrated ) {
+            LOGGER.info("Stored violations of wf {} moved to typed maps", workflowId);
+            wfMVStore.commit();
+        }
+    }
+
+    /*
+     * results maps written before the index by step or contingency are indexed the first time the store is opened
+     */
+    private void indexResults(String workflowId, MVStore wfMVStore) {
+        boolean indexed = false;
+        for ( String mapName : STORED_RESULTS_MAP_NAMES ) {
+            if ( wfMVStore.hasMap(mapName) && !wfMVStore.hasMap(mapName + STORED_RESULTS_BY_NAME_MAP_SUFFIX) ) {
+                MVMap<ResultKey, ?> map = STORED_PC_LOADFLOW_MAP_NAME.equals(mapName)
+                        ? wfMVStore.openMap(mapName, loadflowMapBuilder)
+                        : wfMVStore.openMap(mapName, violationsMapBuilder);
+                MVMap<ResultKey, Boolean> resultsByNameMap = openResultsByNameMap(wfMVStore, map);
+                for ( ResultKey key : map.keySet() ) {
+                    resultsByNameMap.put(key, Boolean.TRUE);
+                }
+                indexed = true;
+            }
+        }
+        if ( indexed ) {
+            LOGGER.info("Stored violations of wf {} indexed by step and contingency", workflowId);
+            wfMVStore.commit();
+        }
+    }
+
+    private void migrateLegacyViolations(MVStore wfMVStore, String mapName, String statesMapName, String stateNamesMapSuffix, String violationsMapPrefix) {
+        MVMap<ResultKey, List<StoredViolation>> violationsMap = wfMVStore.openMap(mapName, violationsMapBuilder);
+        MVMap<String, String> statesMap = wfMVStore.openMap(statesMapName, mapBuilder);
+        for ( String stateId : statesMap.keySet() ) {
+            MVMap<String, String> stateNamesMap = wfMVStore.openMap(stateId + stateNamesMapSuffix, mapBuilder);
+            for ( String name : stateNamesMap.keySet() ) {
+                List<StoredViolation> violations = new ArrayList<StoredViolation>();
+                String legacyMapName = violationsMapPrefix + name + "_" + stateId;
+                if ( wfMVStore.hasMap(legacyMapName) ) {
+                    MVMap<String, String> legacyMap = wfMVStore.openMap(legacyMapName, mapBuilder);
+                    for ( String json : legacyMap.values() ) {
+                        violations.add(OnlineDbMVStoreUtils.jsonToStoredViolation(json));
                     }
-                    loadflowConvergence.put(Integer.valueOf(stateId), stateLoadflowConvergence);
+                    wfMVStore.removeMap(legacyMap);
                 }
-                return loadflowConvergence;
-            } else {
-                LOGGER.warn("No post contingency loadflow data in wf {}", workflowId);
-                return null;
+                putResult(wfMVStore, violationsMap, new ResultKey(Integer.parseInt(stateId), name), violations);
             }
-        } else {
-            LOGGER.warn("No data about wf {}", workflowId);
-            return null;
+            wfMVStore.removeMap(stateNamesMap);
+        }
+        wfMVStore.removeMap(statesMap);
+    }
+
+    private void removeLegacyIndex(MVStore wfMVStore, String namesMapName, String nameStatesMapSuffix) {
+        if ( wfMVStore.hasMap(namesMapName) ) {
+            MVMap<String, String> namesMap = wfMVStore.openMap(namesMapName, mapBuilder);
+            for ( String name : namesMap.keySet() ) {
+                if ( wfMVStore.hasMap(name + nameStatesMapSuffix) )
+                    wfMVStore.removeMap(wfMVStore.openMap(name + nameStatesMapSuffix, mapBuilder));
+            }
+            wfMVStore.removeMap(namesMap);
         }
     }
 
@@ -1883,9 +2028,17 @@ public class OnlineDbMVStore implements OnlineDb {
             if ( wfMVStore.hasMap(mapName) ) {
                 StringBuffer storedMapContent = new StringBuffer();
                 storedMapContent.append("Map " + mapName + "\n");
-                MVMap<String, String> storedMap = wfMVStore.openMap(mapName, mapBuilder);
-                for (String key : storedMap.keySet()) {
-                    storedMapContent.append(key + " = " + storedMap.get(key) + "\n");
+                MVMap<?, ?> storedMap;
+                if ( STORED_VIOLATIONS_MAP_NAME.equals(mapName) || STORED_PC_VIOLATIONS_MAP_NAME.equals(mapName) )
+                    storedMap = wfMVStore.openMap(mapName, violationsMapBuilder);
+                else if ( STORED_PC_LOADFLOW_MAP_NAME.equals(mapName) )
+                    storedMap = wfMVStore.openMap(mapName, loadflowMapBuilder);
+                else if ( Arrays.asList(STORED_RESULTS_MAP_NAMES).contains(mapName.replaceFirst(STORED_RESULTS_BY_NAME_MAP_SUFFIX + "$", "")) )
+                    storedMap = wfMVStore.openMap(mapName, resultsByNameMapBuilder);
+                else
+                    storedMap = wfMVStore.openMap(mapName, mapBuilder);
+                for (Map.Entry<?, ?> entry : storedMap.entrySet()) {
+                    storedMapContent.append(entry.getKey() + " = " + entry.getValue() + "\n");
                 }
                 return storedMapContent.toString();
             } else {
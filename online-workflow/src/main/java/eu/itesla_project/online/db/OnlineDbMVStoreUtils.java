@@ -17,7 +17,6 @@ import java.util.stream.Collectors;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 import eu.itesla_project.iidm.network.Country;
-import eu.itesla_project.iidm.network.Identifiable;
 import eu.itesla_project.iidm.network.Network;
 import eu.itesla_project.modules.contingencies.ActionParameterBooleanValue;
 import eu.itesla_project.modules.contingencies.ActionParameterFloatValue;
@@ -111,29 +110,29 @@ public class OnlineDbMVStoreUtils {
 	}
 	
 	public static LimitViolation jsonToLimitViolation(String json, Network network) {
+		return jsonToStoredViolation(json).toLimitViolation(network);
+	}
+	
+	static StoredViolation jsonToStoredViolation(String json) {
 		JSONObject jsonObj = (JSONObject) JSONSerializer.toJSON(json);
 		Map<String,String> limitViolation = (Map<String, String>) JSONObject.toBean(jsonObj, Map.class);
-		Identifiable subject = network.getIdentifiable(limitViolation.get("Subject"));
-		if ( subject != null ) {
-			Country country = null;
-			if ( limitViolation.containsKey("Country") )
-				country = Country.valueOf(limitViolation.get("Country"));
-			float baseVoltage = Float.NaN;
-			if ( limitViolation.containsKey("BaseVoltage") )
-				baseVoltage = Float.parseFloat(limitViolation.get("BaseVoltage"));
-			float limitReduction = 1f;
-			if ( limitViolation.containsKey("LimitReduction") )
-				limitReduction = Float.parseFloat(limitViolation.get("LimitReduction"));
-			return new LimitViolation(subject, 
-								 LimitViolationType.valueOf(limitViolation.get("LimitType")), 
-								 Float.parseFloat(limitViolation.get("Limit")),
-							 	 null,
-								 limitReduction,
-								 Float.parseFloat(limitViolation.get("Value")),
-								 country,
-								 baseVoltage);
-		}
-		return null;
+		Country country = null;
+		if ( limitViolation.containsKey("Country") )
+			country = Country.valueOf(limitViolation.get("Country"));
+		float baseVoltage = Float.NaN;
+		if ( limitViolation.containsKey("BaseVoltage") )
+			baseVoltage = Float.parseFloat(limitViolation.get("BaseVoltage"));
+		float limitReduction = 1f;
+		if ( limitViolation.containsKey("LimitReduction") )
+			limitReduction = Float.parseFloat(limitViolation.get("LimitReduction"));
+		return new StoredViolation(limitViolation.get("Subject"), 
+								   LimitViolationType.valueOf(limitViolation.get("LimitType")), 
+								   Float.parseFloat(limitViolation.get("Limit")),
+								   null,
+								   limitReduction,
+								   Float.parseFloat(limitViolation.get("Value")),
+								   country,
+								   baseVoltage);
 	}
 	
 	public static String actionParametersToJson(ActionParameters actionParameters) {
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Objects;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+/**
+ * Key of a result stored in the online db: the state and the name of the step
+ * or of the contingency the result refers to.
+ * <p>
+ * Keys are sorted by state first, so that the results of a state are contiguous
+ * in a map. Index maps use keys sorted by name first, so that the results of a step
+ * or of a contingency are contiguous.
+ *
+ * @author Quinary <itesla@quinary.com>
+ */
+final class ResultKey implements Comparable<ResultKey> {
+
+    static final DataType TYPE = new KeyDataType(ResultKey::compareTo);
+
+    static final DataType BY_NAME_TYPE = new KeyDataType(Comparator.comparing(ResultKey::getName).thenComparingInt(ResultKey::getStateId));
+
+    private final int stateId;
+
+    private final String name;
+
+    ResultKey(int stateId, String name) {
+        this.stateId = stateId;
+        this.name = Objects.requireNonNull(name);
+    }
+
+    int getStateId() {
+        return stateId;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    @Override
+    public int compareTo(ResultKey other) {
+        int c = Integer.compare(stateId, other.stateId);
+        return c != 0 ? c : name.compareTo(other.name);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ResultKey) {
+            ResultKey other = (ResultKey) obj;
+            return stateId == other.stateId && name.equals(other.name);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stateId, name);
+    }
+
+    @Override
+    public String toString() {
+        return stateId + "_" + name;
+    }
+
+    private static final class KeyDataType implements DataType {
+
+        private final Comparator<ResultKey> comparator;
+
+        private KeyDataType(Comparator<ResultKey> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(Object a, Object b) {
+            return comparator.compare((ResultKey) a, (ResultKey) b);
+        }
+
+        @Override
+        public int getMemory(Object obj) {
+            return 24 + 2 * ((ResultKey) obj).name.length();
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object obj) {
+            ResultKey key = (ResultKey) obj;
+            buff.putVarInt(key.stateId)
+                .putVarInt(key.name.length())
+                .putStringData(key.name, key.name.length());
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+            for (int i = 0; i < len; i++) {
+                write(buff, obj[i]);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buff) {
+            int stateId = DataUtils.readVarInt(buff);
+            int length = DataUtils.readVarInt(buff);
+            return new ResultKey(stateId, DataUtils.readString(buff, length));
+        }
+
+        @Override
+        public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+            for (int i = 0; i < len; i++) {
+                obj[i] = read(buff);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Delta between the state variables file of a state and the one of the base network of the
+ * stored states of a workflow.
+ * <p>
+ * State variables files of networks with the same topology hold the same values at the same
+ * positions, so only the byte ranges that differ are kept: offset from the end of the previous
+ * range, length and bytes of each range.
+ *
+ * @author Quinary <itesla@quinary.com>
+ */
+final class StateVariablesDelta {
+
+    private static final int MAGIC = 0x49534456;
+
+    // equal bytes between two ranges below which the ranges are merged, a range costing two ints
+    private static final int MIN_GAP = 8;
+
+    private StateVariablesDelta() {
+    }
+
+    /**
+     * Encode the delta of the state variables against the base ones, or return null if they do not
+     * have the same length (the state variables then have to be stored as is).
+     */
+    static byte[] encode(byte[] base, byte[] stateVariables) {
+        if (base.length != stateVariables.length) {
+            return null;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(stateVariables.length);
+            int end = 0;
+            int i = 0;
+            while (i < stateVariables.length) {
+                if (base[i] == stateVariables[i]) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                int last = i;
+                while (i < stateVariables.length && i - last <= MIN_GAP) {
+                    if (base[i] != stateVariables[i]) {
+                        last = i;
+                    }
+                    i++;
+                }
+                dos.writeInt(start - end);
+                dos.writeInt(last + 1 - start);
+                dos.write(stateVariables, start, last + 1 - start);
+                end = last + 1;
+                i = end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Rebuild the state variables from the base ones and the delta.
+     */
+    static byte[] decode(byte[] base, byte[] delta) {
+        byte[] stateVariables = Arrays.copyOf(base, base.length);
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(delta))) {
+            if (dis.readInt() != MAGIC) {
+                throw new IOException("Not a state variables delta");
+            }
+            if (dis.readInt() != base.length) {
+                throw new IOException("State variables delta does not match the base state variables");
+            }
+            int end = 0;
+            while (dis.available() > 0) {
+                int start = end + dis.readInt();
+                int length = dis.readInt();
+                dis.readFully(stateVariables, start, length);
+                end = start + length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stateVariables;
+    }
+}
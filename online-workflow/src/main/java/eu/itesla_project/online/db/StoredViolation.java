@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+import eu.itesla_project.iidm.network.Country;
+import eu.itesla_project.iidm.network.Identifiable;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.security.LimitViolation;
+import eu.itesla_project.security.LimitViolationType;
+
+/**
+ * Limit violation as stored in the online db: the subject of the violation is kept as
+ * an id, and resolved against a network when the violation is read back.
+ *
+ * @author Quinary <itesla@quinary.com>
+ */
+final class StoredViolation {
+
+    /**
+     * Compact binary encoding of a list of violations, used as MVStore value type. Enums are written
+     * by name, so that stored violations do not depend on the order of the constants.
+     */
+    static final DataType LIST_TYPE = new ListDataType();
+
+    private final String subjectId;
+    private final LimitViolationType limitType;
+    private final float limit;
+    private final String limitName;
+    private final float limitReduction;
+    private final float value;
+    private final Country country;
+    private final float baseVoltage;
+
+    StoredViolation(String subjectId, LimitViolationType limitType, float limit, String limitName, float limitReduction,
+                    float value, Country country, float baseVoltage) {
+        this.subjectId = Objects.requireNonNull(subjectId);
+        this.limitType = Objects.requireNonNull(limitType);
+        this.limit = limit;
+        this.limitName = limitName;
+        this.limitReduction = limitReduction;
+        this.value = value;
+        this.country = country;
+        this.baseVoltage = baseVoltage;
+    }
+
+    static StoredViolation of(LimitViolation violation) {
+        return new StoredViolation(violation.getSubject().getId(), violation.getLimitType(), violation.getLimit(),
+                                   violation.getLimitName(), violation.getLimitReduction(), violation.getValue(),
+                                   violation.getCountry(), violation.getBaseVoltage());
+    }
+
+    static List<StoredViolation> of(List<LimitViolation> violations) {
+        List<StoredViolation> storedViolations = new ArrayList<>(violations.size());
+        for (LimitViolation violation : violations) {
+            storedViolations.add(of(violation));
+        }
+        return storedViolations;
+    }
+
+    /**
+     * @return the limit violation, null if the subject is not in the network
+     */
+    LimitViolation toLimitViolation(Network network) {
+        Identifiable subject = network.getIdentifiable(subjectId);
+        if (subject == null) {
+            return null;
+        }
+        return new LimitViolation(subject, limitType, limit, limitName, limitReduction, value, country, baseVoltage);
+    }
+
+    static List<LimitViolation> toLimitViolations(List<StoredViolation> storedViolations, Network network) {
+        List<LimitViolation> violations = new ArrayList<>(storedViolations.size());
+        for (StoredViolation storedViolation : storedViolations) {
+            LimitViolation violation = storedViolation.toLimitViolation(network);
+            if (violation != null) {
+                violations.add(violation);
+            }
+        }
+        return violations;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredViolation(subjectId=" + subjectId + ", limitType=" + limitType + ", limit=" + limit
+                + ", limitName=" + limitName + ", limitReduction=" + limitReduction + ", value=" + value
+                + ", country=" + country + ", baseVoltage=" + baseVoltage + ")";
+    }
+
+    private static final class ListDataType implements DataType {
+
+        @Override
+        public int compare(Object a, Object b) {
+            throw new UnsupportedOperationException("Violations cannot be used as keys");
+        }
+
+        @Override
+        public int getMemory(Object obj) {
+            int memory = 24;
+            for (StoredViolation violation : asList(obj)) {
+                memory += 64 + 2 * violation.subjectId.length() + (violation.limitName != null ? 2 * violation.limitName.length() : 0);
+            }
+            return memory;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<StoredViolation> asList(Object obj) {
+            return (List<StoredViolation>) obj;
+        }
+
+        private static void putString(WriteBuffer buff, String s) {
+            // length + 1, 0 for null
+            if (s == null) {
+                buff.putVarInt(0);
+            } else {
+                buff.putVarInt(s.length() + 1).putStringData(s, s.length());
+            }
+        }
+
+        private static String readString(ByteBuffer buff) {
+            int length = DataUtils.readVarInt(buff);
+            return length == 0 ? null : DataUtils.readString(buff, length - 1);
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object obj) {
+            List<StoredViolation> violations = asList(obj);
+            buff.putVarInt(violations.size());
+            for (StoredViolation violation : violations) {
+                putString(buff, violation.subjectId);
+                putString(buff, violation.limitType.name());
+                buff.putFloat(violation.limit);
+                putString(buff, violation.limitName);
+                buff.putFloat(violation.limitReduction);
+                buff.putFloat(violation.value);
+                putString(buff, violation.country != null ? violation.country.name() : null);
+                buff.putFloat(violation.baseVoltage);
+            }
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+            for (int i = 0; i < len; i++) {
+                write(buff, obj[i]);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buff) {
+            int size = DataUtils.readVarInt(buff);
+            List<StoredViolation> violations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String subjectId = readString(buff);
+                LimitViolationType limitType = LimitViolationType.valueOf(readString(buff));
+                float limit = buff.getFloat();
+                String limitName = readString(buff);
+                float limitReduction = buff.getFloat();
+                float value = buff.getFloat();
+                String country = readString(buff);
+                float baseVoltage = buff.getFloat();
+                violations.add(new StoredViolation(subjectId, limitType, limit, limitName, limitReduction, value,
+                                                   country != null ? Country.valueOf(country) : null, baseVoltage));
+            }
+            return violations;
+        }
+
+        @Override
+        public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+            for (int i = 0; i < len; i++) {
+                obj[i] = read(buff);
+            }
+        }
+    }
+}
@@ -21,8 +21,10 @@ import eu.itesla_project.iidm.network.Network;
 import eu.itesla_project.contingency.Contingency;
 import eu.itesla_project.modules.histo.HistoDbAttributeId;
 import eu.itesla_project.modules.histo.IIDM2DB;
+import eu.itesla_project.modules.histo.IIDM2DBSchema;
 import eu.itesla_project.modules.online.RulesFacadeResults;
 import eu.itesla_project.modules.online.StateStatus;
+import eu.itesla_project.modules.rules.CompiledSecurityRules;
 import eu.itesla_project.modules.rules.SecurityRule;
 import eu.itesla_project.simulation.securityindexes.SecurityIndexType;
 
@@ -38,6 +40,9 @@ public class ContingencyEvaluator {
     private final List<SecurityRule> mcRules;
     private final double purityThreshold;
     private List<SecurityRule> wcaRules = new ArrayList<SecurityRule>();
+    private final CompiledSecurityRules mcCompiledRules;
+    private final CompiledSecurityRules wcaCompiledRules;
+    private volatile IIDM2DBSchema schema; // network attributes schema of the last evaluated network
     private Map<SecurityIndexType, List<String>> mcViolatedEquipment = new HashMap<>();
     private Map<SecurityIndexType, List<String>> wcaViolatedEquipment = new HashMap<>();
     private final boolean checkRules;
@@ -53,6 +58,8 @@ public class ContingencyEvaluator {
         this.purityThreshold = purityThreshold;
         this.mcViolatedEquipment = mcViolatedEquipment;
         this.checkRules = checkRules;
+        this.mcCompiledRules = new CompiledSecurityRules(mcRules, purityThreshold);
+        this.wcaCompiledRules = new CompiledSecurityRules(wcaRules, purityThreshold);
     }
 
     public ContingencyEvaluator(Contingency contingency, List<SecurityRule> mcRules, List<SecurityRule> wcaRules, double purityThreshold,
@@ -68,6 +75,8 @@ public class ContingencyEvaluator {
         this.mcViolatedEquipment = mcViolatedEquipment;
         this.wcaViolatedEquipment = wcaViolatedEquipment;
         this.checkRules = checkRules;
+        this.mcCompiledRules = new CompiledSecurityRules(mcRules, purityThreshold);
+        this.wcaCompiledRules = new CompiledSecurityRules(wcaRules, purityThreshold);
     }
 
     public Contingency getContingency() {
@@ -75,30 +84,46 @@ public class ContingencyEvaluator {
     }
 
     public RulesFacadeResults evaluate(Network network) {
-        return evaluate(network, mcRules, bacecaseInvalidMcRulesIndexes);
+        return evaluate(network, mcRules, mcCompiledRules, bacecaseInvalidMcRulesIndexes);
     }
 
     public RulesFacadeResults evaluate(String networkId, String stateId, Map<HistoDbAttributeId, Object> networkValues) {
-        return evaluate(networkId, stateId, networkValues, mcRules, bacecaseInvalidMcRulesIndexes);
+        return evaluate(networkId, stateId, networkValues, mcRules, mcCompiledRules, bacecaseInvalidMcRulesIndexes);
     }
 
     public RulesFacadeResults wcaEvaluate(Network network) {
-        return evaluate(network, wcaRules, bacecaseInvalidWcaRulesIndexes);
+        return evaluate(network, wcaRules, wcaCompiledRules, bacecaseInvalidWcaRulesIndexes);
     }
 
     public RulesFacadeResults wcaEvaluate(String networkId, String stateId, Map<HistoDbAttributeId, Object> networkValues) {
-        return evaluate(networkId, stateId, networkValues, wcaRules, bacecaseInvalidWcaRulesIndexes);
+        return evaluate(networkId, stateId, networkValues, wcaRules, wcaCompiledRules, bacecaseInvalidWcaRulesIndexes);
     }
 
-    private RulesFacadeResults evaluate(Network network, List<SecurityRule> rules, List<SecurityIndexType> bacecaseInvalidRulesIndexes) {
+    private IIDM2DBSchema getSchema(Network network) {
+        IIDM2DBSchema schema = this.schema;
+        if (schema == null || schema.getNetwork() != network) {
+            schema = new IIDM2DBSchema(network, new IIDM2DB.Config(null, false));
+            this.schema = schema;
+        }
+        return schema;
+    }
+
+    private RulesFacadeResults evaluate(Network network, List<SecurityRule> rules, CompiledSecurityRules compiledRules,
+            List<SecurityIndexType> bacecaseInvalidRulesIndexes) {
         Objects.requireNonNull(network, "network is null");
-        HashMap<HistoDbAttributeId, Object> networkValues = IIDM2DB.extractCimValues(network, new IIDM2DB.Config(null, true)).getSingleValueMap();
-        return evaluate(network.getId(), network.getStateManager().getWorkingStateId(), networkValues, rules, bacecaseInvalidRulesIndexes);
+        IIDM2DBSchema schema = getSchema(network);
+        double[] values = compiledRules.toValues(schema, schema.fill(schema.newValues()));
+        return evaluate(network.getId(), network.getStateManager().getWorkingStateId(), values, rules, compiledRules, bacecaseInvalidRulesIndexes);
     }
 
     private RulesFacadeResults evaluate(String networkId, String stateId, Map<HistoDbAttributeId, Object> networkValues, List<SecurityRule> rules,
-            List<SecurityIndexType> bacecaseInvalidRulesIndexes) {
+            CompiledSecurityRules compiledRules, List<SecurityIndexType> bacecaseInvalidRulesIndexes) {
         Objects.requireNonNull(networkValues, "networkValues is null");
+        return evaluate(networkId, stateId, compiledRules.toValues(networkValues), rules, compiledRules, bacecaseInvalidRulesIndexes);
+    }
+
+    private RulesFacadeResults evaluate(String networkId, String stateId, double[] values, List<SecurityRule> rules,
+            CompiledSecurityRules compiledRules, List<SecurityIndexType> bacecaseInvalidRulesIndexes) {
         LOGGER.info("Evaluating {} network, {} state, {} contingency", networkId, stateId, contingency.getId());
         StateStatus stateStatus = StateStatus.SAFE;
         List<SecurityIndexType> invalidRulesIndexes = new ArrayList<SecurityIndexType>();
@@ -110,8 +135,10 @@ public class ContingencyEvaluator {
                 bacecaseInvalidRulesIndexes = invalidRulesIndexes; // keep for samples evaluation -> rules invalid on basecase are invalid for all samples
         }
         Map<SecurityIndexType, StateStatus> indexesResults = new EnumMap<>(SecurityIndexType.class);
-        for (SecurityRule rule : rules) {
-            boolean safe = rule.toExpression(purityThreshold).check(networkValues).isSafe();
+        // rules are compiled once for all the states, values are converted once for all the rules
+        for (int i = 0; i < rules.size(); i++) {
+            SecurityRule rule = rules.get(i);
+            boolean safe = compiledRules.isSafe(i, values);
             LOGGER.debug("{}: Result on {} network, {} state, {} contingency, {} index: safe = {}",
                     rule.getId(), networkId, stateId, contingency.getId(), rule.getId().getSecurityIndexId().getSecurityIndexType(), safe);
             if ( safe ) {
@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import eu.itesla_project.iidm.network.Country;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.StateManager;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.modules.online.OnlineStep;
+import eu.itesla_project.security.LimitViolation;
+import eu.itesla_project.security.LimitViolationType;
+import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Quinary <itesla@quinary.com>
+ */
+public class OnlineDbMVStoreTest {
+
+    private static final String WORKFLOW_ID = "test";
+
+    private Path onlineDbDir;
+
+    private Network network;
+
+    @Before
+    public void setUp() throws IOException {
+        onlineDbDir = Files.createTempDirectory("online-db-test");
+        network = EurostagTutorialExample1Factory.create();
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "0");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(onlineDbDir.toFile());
+    }
+
+    private LimitViolation currentViolation(float value) {
+        return new LimitViolation(network.getLine("NHV1_NHV2_1"), LimitViolationType.CURRENT, 500f, "20'", 0.95f, value, Country.FR, 380f);
+    }
+
+    private static void assertViolation(float expectedValue, List<LimitViolation> violations) {
+        assertNotNull(violations);
+        assertEquals(1, violations.size());
+        assertEquals("NHV1_NHV2_1", violations.get(0).getSubject().getId());
+        assertEquals(LimitViolationType.CURRENT, violations.get(0).getLimitType());
+        assertEquals(expectedValue, violations.get(0).getValue(), 0f);
+        assertEquals(Country.FR, violations.get(0).getCountry());
+    }
+
+    @Test
+    public void testPostContingencyResults() throws Exception {
+        try (OnlineDbMVStore onlineDb = new OnlineDbMVStore(new OnlineDbMVStoreConfig(onlineDbDir))) {
+            onlineDb.storeState(WORKFLOW_ID, 0, network);
+            onlineDb.storeViolations(WORKFLOW_ID, 0, OnlineStep.LOAD_FLOW, Collections.singletonList(currentViolation(510f)));
+            for (int stateId = 0; stateId < 3; stateId++) {
+                Map<String, Boolean> loadflowConvergence = new HashMap<>();
+                Map<String, List<LimitViolation>> violations = new HashMap<>();
+                loadflowConvergence.put("c1", true);
+                violations.put("c1", Collections.singletonList(currentViolation(600f + stateId)));
+                loadflowConvergence.put("c2", stateId != 1);
+                violations.put("c2", Collections.emptyList());
+                onlineDb.storePostContingencyViolations(WORKFLOW_ID, stateId, loadflowConvergence, violations);
+            }
+            onlineDb.storePostContingencyViolations(WORKFLOW_ID, 3, "c1", false, Collections.emptyList());
+
+            assertViolation(510f, onlineDb.getViolations(WORKFLOW_ID, OnlineStep.LOAD_FLOW).get(0));
+            assertNull(onlineDb.getViolations(WORKFLOW_ID, OnlineStep.POSTCONTINGENCY_LOAD_FLOW));
+
+            // by contingency, through the index
+            Map<Integer, List<LimitViolation>> c1Violations = onlineDb.getPostContingencyViolations(WORKFLOW_ID, "c1");
+            assertEquals(4, c1Violations.size());
+            for (int stateId = 0; stateId < 3; stateId++) {
+                assertViolation(600f + stateId, c1Violations.get(stateId));
+            }
+            assertTrue(c1Violations.get(3).isEmpty());
+            Map<Integer, Boolean> c2Convergence = onlineDb.getPostContingencyLoadflowConvergence(WORKFLOW_ID, "c2");
+            assertEquals(3, c2Convergence.size());
+            assertTrue(c2Convergence.get(0));
+            assertFalse(c2Convergence.get(1));
+            assertNull(onlineDb.getPostContingencyLoadflowConvergence(WORKFLOW_ID, "c3"));
+
+            // by state
+            Map<String, Boolean> state1Convergence = onlineDb.getPostContingencyLoadflowConvergence(WORKFLOW_ID, 1);
+            assertEquals(2, state1Convergence.size());
+            assertTrue(state1Convergence.get("c1"));
+            assertViolation(602f, onlineDb.getPostContingencyViolations(WORKFLOW_ID, 2, "c1"));
+        }
+    }
+
+    @Test
+    public void testStates() throws Exception {
+        network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "1");
+        network.getStateManager().setWorkingState("1");
+        network.getLine("NHV1_NHV2_1").getTerminal1().disconnect();
+        network.getLine("NHV1_NHV2_1").getTerminal2().disconnect();
+        network.getLoad("LOAD").setP0(700f);
+        // same equipments, connected to another bus
+        Network network2 = EurostagTutorialExample1Factory.create();
+        network2.getVoltageLevel("VLLOAD").getBusBreakerView().newBus()
+                .setId("NLOAD2")
+            .add();
+        network2.getLoad("LOAD").getTerminal().getBusBreakerView().setConnectableBus("NLOAD2");
+        network2.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, "2");
+
+        try (OnlineDbMVStore onlineDb = new OnlineDbMVStore(new OnlineDbMVStoreConfig(onlineDbDir))) {
+            onlineDb.storeState(WORKFLOW_ID, 0, network);
+            onlineDb.storeState(WORKFLOW_ID, 1, network);
+            onlineDb.storeState(WORKFLOW_ID, 2, network2);
+        }
+
+        Path statesFolder = onlineDbDir.resolve("states-wf-" + WORKFLOW_ID);
+        assertTrue(Files.exists(statesFolder.resolve("state-0").resolve(network.getId() + ".delta")));
+        assertTrue(Files.exists(statesFolder.resolve("state-1").resolve(network.getId() + ".delta")));
+        assertFalse(Files.exists(statesFolder.resolve("state-2").resolve(network.getId() + ".delta")));
+        assertTrue(Files.size(statesFolder.resolve("state-1").resolve(network.getId() + ".delta"))
+                < Files.size(statesFolder.resolve("base").resolve("base.state")));
+
+        try (OnlineDbMVStore onlineDb = new OnlineDbMVStore(new OnlineDbMVStoreConfig(onlineDbDir))) {
+            assertEquals(Arrays.asList(0, 1, 2), onlineDb.listStoredStates(WORKFLOW_ID));
+
+            // restored from the state variables delta, in a network of its own
+            Network state1 = onlineDb.getState(WORKFLOW_ID, 1);
+            assertEquals(Collections.singleton(StateManager.INITIAL_STATE_ID), state1.getStateManager().getStateIds());
+            assertFalse(state1.getLine("NHV1_NHV2_1").getTerminal1().isConnected());
+            assertFalse(state1.getLine("NHV1_NHV2_1").getTerminal2().isConnected());
+            assertEquals(700f, state1.getLoad("LOAD").getP0(), 0f);
+            Network state0 = onlineDb.getState(WORKFLOW_ID, 0);
+            assertNotSame(state1, state0);
+            assertTrue(state0.getLine("NHV1_NHV2_1").getTerminal1().isConnected());
+            assertEquals(600f, state0.getLoad("LOAD").getP0(), 0f);
+            assertFalse(state1.getLine("NHV1_NHV2_1").getTerminal1().isConnected());
+
+            // changes of a restored state are not seen by the next restorations
+            state1.getLoad("LOAD").setP0(800f);
+            Network state1Again = onlineDb.getState(WORKFLOW_ID, 1);
+            assertNotSame(state1, state1Again);
+            assertEquals(700f, state1Again.getLoad("LOAD").getP0(), 0f);
+
+            // stored as a whole network
+            Network state2 = onlineDb.getState(WORKFLOW_ID, 2);
+            assertEquals("NLOAD2", state2.getLoad("LOAD").getTerminal().getBusBreakerView().getConnectableBus().getId());
+        }
+    }
+
+    private void createLegacyStore() {
+        String json = OnlineDbMVStoreUtils.limitViolationToJson(currentViolation(550f));
+        MVStore store = MVStore.open(onlineDbDir.resolve("wf-" + WORKFLOW_ID).toString());
+        try {
+            // violations of steps
+            store.openMap("storedViolationsSteps").put("LOAD_FLOW", "");
+            store.openMap("LOAD_FLOW_violationsstates").put("0", "");
+            store.openMap("storedViolationsStates").put("0", "");
+            store.openMap("0_violationssteps").put("LOAD_FLOW", "");
+            store.openMap("violations_LOAD_FLOW_0").put("NHV1_NHV2_1", json);
+            // post contingency violations
+            store.openMap("storedPCViolationsContingencies").put("c1", "");
+            store.openMap("c1_pcviolationsstates").put("0", "");
+            store.openMap("storedPCViolationsStates").put("0", "");
+            store.openMap("0_pcviolationscontigencies").put("c1", "");
+            store.openMap("pcviolations_c1_0").put("NHV1_NHV2_1", json);
+            // post contingency loadflow convergence
+            store.openMap("storedPCLoadflowContingencies").put("c1", "");
+            store.openMap("c1_pcloadflowstates").put("0", "");
+            store.openMap("storedPCLoadflowStates").put("0", "");
+            MVMap<String, String> loadflowMap = store.openMap("0_pcloadflowcontigencies");
+            loadflowMap.put("c1", "true");
+            loadflowMap.put("c2", "false");
+            store.commit();
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testLegacyResultsMigration() throws Exception {
+        createLegacyStore();
+        try (OnlineDbMVStore onlineDb = new OnlineDbMVStore(new OnlineDbMVStoreConfig(onlineDbDir))) {
+            onlineDb.storeState(WORKFLOW_ID, 0, network);
+
+            assertViolation(550f, onlineDb.getViolations(WORKFLOW_ID, 0, OnlineStep.LOAD_FLOW));
+            assertViolation(550f, onlineDb.getViolations(WORKFLOW_ID, OnlineStep.LOAD_FLOW).get(0));
+            assertViolation(550f, onlineDb.getPostContingencyViolations(WORKFLOW_ID, 0, "c1"));
+            assertViolation(550f, onlineDb.getPostContingencyViolations(WORKFLOW_ID, "c1").get(0));
+            assertTrue(onlineDb.getPostContingencyLoadflowConvergence(WORKFLOW_ID, "c1").get(0));
+            assertFalse(onlineDb.getPostContingencyLoadflowConvergence(WORKFLOW_ID, 0).get("c2"));
+        }
+
+        // legacy maps are removed, typed maps and their index are kept
+        MVStore store = MVStore.open(onlineDbDir.resolve("wf-" + WORKFLOW_ID).toString());
+        try {
+            for (String mapName : new String[] {"storedViolationsSteps", "LOAD_FLOW_violationsstates", "storedViolationsStates", "0_violationssteps",
+                                                "violations_LOAD_FLOW_0", "storedPCViolationsContingencies", "c1_pcviolationsstates",
+                                                "storedPCViolationsStates", "0_pcviolationscontigencies", "pcviolations_c1_0",
+                                                "storedPCLoadflowContingencies", "c1_pcloadflowstates", "storedPCLoadflowStates",
+                                                "0_pcloadflowcontigencies"}) {
+                assertFalse(mapName, store.hasMap(mapName));
+            }
+            for (String mapName : new String[] {"violations", "violationsByName", "pcViolations", "pcViolationsByName",
+                                                "pcLoadflowConvergence", "pcLoadflowConvergenceByName"}) {
+                assertTrue(mapName, store.hasMap(mapName));
+            }
+        } finally {
+            store.close();
+        }
+    }
+}
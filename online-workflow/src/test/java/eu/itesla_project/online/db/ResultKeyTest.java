@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Quinary <itesla@quinary.com>
+ */
+public class ResultKeyTest {
+
+    private static ResultKey writeRead(DataType type, ResultKey key) {
+        WriteBuffer buff = new WriteBuffer();
+        type.write(buff, key);
+        ByteBuffer bb = buff.getBuffer();
+        bb.flip();
+        ResultKey key2 = (ResultKey) type.read(bb);
+        assertFalse(bb.hasRemaining());
+        return key2;
+    }
+
+    @Test
+    public void testWriteRead() {
+        for (ResultKey key : new ResultKey[] {new ResultKey(0, "LOAD_FLOW"), new ResultKey(12345, "contingency éè"),
+                                              new ResultKey(Integer.MIN_VALUE, ""), new ResultKey(7, "")}) {
+            assertEquals(key, writeRead(ResultKey.TYPE, key));
+            assertEquals(key, writeRead(ResultKey.BY_NAME_TYPE, key));
+        }
+    }
+
+    @Test
+    public void testCompare() {
+        ResultKey key1 = new ResultKey(1, "b");
+        ResultKey key2 = new ResultKey(2, "a");
+        // by state first
+        assertTrue(ResultKey.TYPE.compare(key1, key2) < 0);
+        assertTrue(ResultKey.TYPE.compare(key2, new ResultKey(2, "b")) < 0);
+        // by name first
+        assertTrue(ResultKey.BY_NAME_TYPE.compare(key1, key2) > 0);
+        assertTrue(ResultKey.BY_NAME_TYPE.compare(key2, new ResultKey(3, "a")) < 0);
+        assertEquals(0, ResultKey.BY_NAME_TYPE.compare(key1, new ResultKey(1, "b")));
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Quinary <itesla@quinary.com>
+ */
+public class StateVariablesDeltaTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        byte[] base = data(1000);
+        byte[] stateVariables = Arrays.copyOf(base, base.length);
+        stateVariables[0] = 42;
+        stateVariables[3] = 42;
+        stateVariables[500] = 42;
+        stateVariables[999] = 42;
+        byte[] delta = StateVariablesDelta.encode(base, stateVariables);
+        assertNotNull(delta);
+        assertTrue(delta.length < 100);
+        assertArrayEquals(stateVariables, StateVariablesDelta.decode(base, delta));
+    }
+
+    @Test
+    public void testSameStateVariables() {
+        byte[] base = data(1000);
+        byte[] delta = StateVariablesDelta.encode(base, Arrays.copyOf(base, base.length));
+        assertEquals(8, delta.length);
+        assertArrayEquals(base, StateVariablesDelta.decode(base, delta));
+    }
+
+    @Test
+    public void testDifferentLength() {
+        assertNull(StateVariablesDelta.encode(data(1000), data(1001)));
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.online.db;
+
+import eu.itesla_project.iidm.network.Country;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.security.LimitViolation;
+import eu.itesla_project.security.LimitViolationType;
+import org.h2.mvstore.WriteBuffer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Quinary <itesla@quinary.com>
+ */
+public class StoredViolationTest {
+
+    @SuppressWarnings("unchecked")
+    private static List<StoredViolation> writeRead(List<StoredViolation> violations) {
+        WriteBuffer buff = new WriteBuffer();
+        StoredViolation.LIST_TYPE.write(buff, violations);
+        ByteBuffer bb = buff.getBuffer();
+        bb.flip();
+        List<StoredViolation> violations2 = (List<StoredViolation>) StoredViolation.LIST_TYPE.read(bb);
+        assertFalse(bb.hasRemaining());
+        return violations2;
+    }
+
+    @Test
+    public void testWriteRead() {
+        List<StoredViolation> violations = Arrays.asList(
+                new StoredViolation("NHV1_NHV2_1", LimitViolationType.CURRENT, 500f, "20'", 0.9f, 550f, Country.FR, 380f),
+                new StoredViolation("VLHV1", LimitViolationType.HIGH_VOLTAGE, 420f, null, 1f, 430f, null, Float.NaN));
+        List<StoredViolation> violations2 = writeRead(violations);
+        assertEquals(violations.size(), violations2.size());
+        for (int i = 0; i < violations.size(); i++) {
+            assertEquals(violations.get(i).toString(), violations2.get(i).toString());
+        }
+        assertTrue(writeRead(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testToLimitViolation() {
+        Network network = EurostagTutorialExample1Factory.create();
+        LimitViolation violation = new LimitViolation(network.getLine("NHV1_NHV2_1"), LimitViolationType.CURRENT, 500f, "20'", 0.9f, 550f, Country.FR, 380f);
+        List<LimitViolation> violations = StoredViolation.toLimitViolations(writeRead(StoredViolation.of(Collections.singletonList(violation))), network);
+        assertEquals(1, violations.size());
+        LimitViolation violation2 = violations.get(0);
+        assertSame(violation.getSubject(), violation2.getSubject());
+        assertEquals(violation.getLimitType(), violation2.getLimitType());
+        assertEquals(violation.getLimit(), violation2.getLimit(), 0f);
+        assertEquals(violation.getLimitName(), violation2.getLimitName());
+        assertEquals(violation.getLimitReduction(), violation2.getLimitReduction(), 0f);
+        assertEquals(violation.getValue(), violation2.getValue(), 0f);
+        assertEquals(violation.getCountry(), violation2.getCountry());
+        assertEquals(violation.getBaseVoltage(), violation2.getBaseVoltage(), 0f);
+
+        // violations of equipments not in the network are dropped
+        StoredViolation unknown = new StoredViolation("UNKNOWN", LimitViolationType.CURRENT, 500f, null, 1f, 550f, null, Float.NaN);
+        assertTrue(StoredViolation.toLimitViolations(Collections.singletonList(unknown), network).isEmpty());
+    }
+}
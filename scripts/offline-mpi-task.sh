@@ -37,6 +37,7 @@ if [ $rank = 0 ]; then
     options+=" -Dlogback.configurationFile="
     [ -f "$itesla_config_dir/logback.xml" ] && options+="$itesla_config_dir" || options+="$installDir/etc"
     options+="/logback.xml"
+    [ "$mpi_compress_task_files" = "true" ] && masterOptions+=" --compress-task-files"
     $JAVA_HOME/bin/java \
 -Xmx8G \
 -verbose:gc -XX:+PrintGCTimeStamps -Xloggc:$tmpdir/gc.log \
@@ -48,7 +49,8 @@ eu.itesla_project.offline.mpi.Master \
 --statistics-db-dir=$HOME \
 --statistics-db-name="statistics" \
 --cores=$CORES \
---stdout-archive=$tmpdir/stdout-archive.zip
+--stdout-archive=$tmpdir/stdout-archive.zip \
+$masterOptions
 else
 	# valgrind --show-reachable=yes --track-origins=yes --track-fds=yes --log-file=/tmp/val.log --error-limit=no
     mkdir $HOME/archive > /dev/null 2>&1
@@ -42,6 +42,7 @@ if [ $rank = 0 ]; then
     options+=" -Dlogback.configurationFile="
     [ -f "$itesla_config_dir/logback-wp5.xml" ] && options+="$itesla_config_dir" || options+="$installDir/etc"
     options+="/logback-wp5.xml"
+    [ "$mpi_compress_task_files" = "true" ] && masterOptions+=" --compress-task-files"
     $JAVA_HOME/bin/java \
 -Xmx2048m \
 -verbose:gc -XX:+PrintGCTimeStamps -Xloggc:$installDir/logs/gc.log \
@@ -53,7 +54,8 @@ eu.itesla_project.online.mpi.Master \
 --statistics-db-dir=$installDir/logs \
 --statistics-db-name="statistics" \
 --cores=$CORES \
---stdout-archive=$tmpdir/stdout-archive.zip
+--stdout-archive=$tmpdir/stdout-archive.zip \
+$masterOptions
 else
 	# valgrind --show-reachable=yes --track-origins=yes --track-fds=yes --log-file=/tmp/val.log --error-limit=no
     mkdir $installDir/archive > /dev/null 2>&1
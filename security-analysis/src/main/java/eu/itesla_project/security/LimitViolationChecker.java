@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.security;
+
+import com.google.common.collect.Iterables;
+import eu.itesla_project.iidm.network.*;
+
+import java.util.*;
+
+/**
+ * Limit violations checker based on an index of the limits of a network.
+ * <p>
+ * Limits, countries and nominal voltages are not state dependent, so they are collected
+ * once in flat arrays when the checker is created, and only currents and voltages are read
+ * from the working state at each check. The checker can restrict the check to a set of
+ * monitored equipments, or to the branches whose current has changed since a reference
+ * state, and violations are returned sorted by decreasing severity (value to limit ratio),
+ * optionally keeping only the most severe ones.
+ * <p>
+ * The checker is thread safe but has to be re-created if limits are modified.
+ *
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class LimitViolationChecker {
+
+    private static final Comparator<LimitViolation> SEVERITY_COMPARATOR = Comparator.comparingDouble(LimitViolationChecker::getSeverity);
+
+    // one element per branch side having a permanent current limit
+
+    private final TwoTerminalsConnectable[] branches;
+
+    private final Terminal[] terminals;
+
+    private final float[] permanentLimits;
+
+    // temporary limits by ascending value
+    private final float[][] temporaryLimitValues;
+
+    private final String[][] temporaryLimitNames;
+
+    private final Country[] countries;
+
+    private final float[] baseVoltages;
+
+    // voltage levels having at least a voltage limit
+    private final VoltageLevel[] voltageLevels;
+
+    // indexes of the branch sides and voltage levels by equipment id
+    private final Map<String, int[]> branchSideIndexes = new HashMap<>();
+
+    private final Map<String, Integer> voltageLevelIndexes = new HashMap<>();
+
+    // currents of the reference state, null if not saved
+    private volatile float[] referenceCurrents;
+
+    public LimitViolationChecker(Network network) {
+        Objects.requireNonNull(network);
+        List<TwoTerminalsConnectable> sideBranches = new ArrayList<>();
+        List<Terminal> sideTerminals = new ArrayList<>();
+        List<CurrentLimits> sideLimits = new ArrayList<>();
+        for (TwoTerminalsConnectable branch : Iterables.<TwoTerminalsConnectable>concat(network.getLines(), network.getTwoWindingsTransformers())) {
+            addBranchSide(branch, branch.getTerminal1(), branch.getCurrentLimits1(), sideBranches, sideTerminals, sideLimits);
+            addBranchSide(branch, branch.getTerminal2(), branch.getCurrentLimits2(), sideBranches, sideTerminals, sideLimits);
+        }
+        int sideCount = sideBranches.size();
+        branches = sideBranches.toArray(new TwoTerminalsConnectable[sideCount]);
+        terminals = sideTerminals.toArray(new Terminal[sideCount]);
+        permanentLimits = new float[sideCount];
+        temporaryLimitValues = new float[sideCount][];
+        temporaryLimitNames = new String[sideCount][];
+        countries = new Country[sideCount];
+        baseVoltages = new float[sideCount];
+        for (int side = 0; side < sideCount; side++) {
+            TwoTerminalsConnectable branch = branches[side];
+            CurrentLimits limits = sideLimits.get(side);
+            permanentLimits[side] = limits.getPermanentLimit();
+            Collection<CurrentLimits.TemporaryLimit> temporaryLimits = limits.getTemporaryLimits();
+            temporaryLimitValues[side] = new float[temporaryLimits.size()];
+            temporaryLimitNames[side] = new String[temporaryLimits.size()];
+            int i = 0;
+            for (CurrentLimits.TemporaryLimit temporaryLimit : temporaryLimits) {
+                temporaryLimitValues[side][i] = temporaryLimit.getValue();
+                temporaryLimitNames[side][i] = temporaryLimit.getName();
+                i++;
+            }
+            countries[side] = terminals[side].getVoltageLevel().getSubstation().getCountry();
+            baseVoltages[side] = Math.max(branch.getTerminal1().getVoltageLevel().getNominalV(),
+                                          branch.getTerminal2().getVoltageLevel().getNominalV());
+            int[] indexes = branchSideIndexes.get(branch.getId());
+            branchSideIndexes.put(branch.getId(), indexes == null ? new int[] {side} : new int[] {indexes[0], side});
+        }
+
+        List<VoltageLevel> limitedVoltageLevels = new ArrayList<>();
+        for (VoltageLevel vl : network.getVoltageLevels()) {
+            if (!Float.isNaN(vl.getLowVoltageLimit()) || !Float.isNaN(vl.getHighVoltageLimit())) {
+                voltageLevelIndexes.put(vl.getId(), limitedVoltageLevels.size());
+                limitedVoltageLevels.add(vl);
+            }
+        }
+        voltageLevels = limitedVoltageLevels.toArray(new VoltageLevel[limitedVoltageLevels.size()]);
+    }
+
+    private static void addBranchSide(TwoTerminalsConnectable branch, Terminal terminal, CurrentLimits limits,
+                                      List<TwoTerminalsConnectable> sideBranches, List<Terminal> sideTerminals, List<CurrentLimits> sideLimits) {
+        // a side without permanent limit cannot be violated
+        if (limits != null && !Float.isNaN(limits.getPermanentLimit())) {
+            sideBranches.add(branch);
+            sideTerminals.add(terminal);
+            sideLimits.add(limits);
+        }
+    }
+
+    /**
+     * Severity of a violation, the ratio between the value and the (reduced) limit, inverted
+     * for low voltage violations.
+     */
+    public static double getSeverity(LimitViolation violation) {
+        double limit = violation.getLimit() * violation.getLimitReduction();
+        return violation.getLimitType() == LimitViolationType.LOW_VOLTAGE ? limit / violation.getValue()
+                                                                           : violation.getValue() / limit;
+    }
+
+    /**
+     * Collect violations, keeping only the most severe ones if a max number is given.
+     */
+    private static final class Collector {
+
+        private final int maxViolations;
+
+        // min heap, so that the less severe violation is removed first
+        private final PriorityQueue<LimitViolation> violations = new PriorityQueue<>(SEVERITY_COMPARATOR);
+
+        private Collector(int maxViolations) {
+            if (maxViolations < -1 || maxViolations == 0) {
+                throw new IllegalArgumentException("Invalid max number of violations " + maxViolations);
+            }
+            this.maxViolations = maxViolations;
+        }
+
+        private void add(LimitViolation violation) {
+            violations.add(violation);
+            if (maxViolations != -1 && violations.size() > maxViolations) {
+                violations.poll();
+            }
+        }
+
+        private List<LimitViolation> toSortedList() {
+            List<LimitViolation> list = new ArrayList<>(violations);
+            list.sort(SEVERITY_COMPARATOR.reversed());
+            return list;
+        }
+    }
+
+    private void checkBranchSide(int side, float i, Security.CurrentLimitType currentLimitType, float limitReduction, Collector collector) {
+        if (Float.isNaN(i)) {
+            return;
+        }
+        float permanentLimit = permanentLimits[side];
+        switch (currentLimitType) {
+            case PATL:
+                if (i > permanentLimit * limitReduction) {
+                    collector.add(new LimitViolation(branches[side], LimitViolationType.CURRENT, permanentLimit, null, limitReduction, i,
+                                                     countries[side], baseVoltages[side]));
+                }
+                break;
+
+            case TATL:
+                // same as TwoTerminalsConnectable.checkTemporaryLimits
+                float previousLimit = permanentLimit;
+                float[] values = temporaryLimitValues[side];
+                for (int k = 0; k < values.length; k++) {
+                    if (i >= previousLimit * limitReduction && i < values[k] * limitReduction) {
+                        collector.add(new LimitViolation(branches[side], LimitViolationType.CURRENT, previousLimit, temporaryLimitNames[side][k],
+                                                         limitReduction, i, countries[side], baseVoltages[side]));
+                        break;
+                    }
+                    previousLimit = values[k];
+                }
+                break;
+
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private void checkVoltageLevel(VoltageLevel vl, Collector collector) {
+        float lowVoltageLimit = vl.getLowVoltageLimit();
+        float highVoltageLimit = vl.getHighVoltageLimit();
+        for (Bus b : vl.getBusView().getBuses()) {
+            float v = b.getV();
+            if (!Float.isNaN(v)) {
+                if (v < lowVoltageLimit) {
+                    collector.add(new LimitViolation(vl, LimitViolationType.LOW_VOLTAGE, lowVoltageLimit, null,
+                                                     1, v, vl.getSubstation().getCountry(), vl.getNominalV()));
+                }
+                if (v > highVoltageLimit) {
+                    collector.add(new LimitViolation(vl, LimitViolationType.HIGH_VOLTAGE, highVoltageLimit, null,
+                                                     1, v, vl.getSubstation().getCountry(), vl.getNominalV()));
+                }
+            }
+        }
+    }
+
+    private static void checkLimitReduction(float limitReduction) {
+        // allow to increase the limits
+        if (limitReduction <= 0) {
+            throw new IllegalArgumentException("Bad limit reduction " + limitReduction);
+        }
+    }
+
+    /**
+     * Check limits of all the equipments on the working state.
+     */
+    public List<LimitViolation> checkLimits(Security.CurrentLimitType currentLimitType, float limitReduction) {
+        return checkLimits(currentLimitType, limitReduction, null, -1);
+    }
+
+    /**
+     * Check limits of a set of monitored equipments on the working state.
+     *
+     * @param currentLimitType the type of current limits to check
+     * @param limitReduction the current limit reduction factor
+     * @param monitoredIds ids of the monitored branches and voltage levels, null to monitor all equipments
+     * @param maxViolations max number of violations to return, the most severe ones being kept, or -1 for no limit
+     * @return violations sorted by decreasing severity
+     */
+    public List<LimitViolation> checkLimits(Security.CurrentLimitType currentLimitType, float limitReduction, Set<String> monitoredIds,
+                                            int maxViolations) {
+        Objects.requireNonNull(currentLimitType);
+        checkLimitReduction(limitReduction);
+        Collector collector = new Collector(maxViolations);
+        if (monitoredIds == null) {
+            for (int side = 0; side < terminals.length; side++) {
+                checkBranchSide(side, terminals[side].getI(), currentLimitType, limitReduction, collector);
+            }
+            for (VoltageLevel vl : voltageLevels) {
+                checkVoltageLevel(vl, collector);
+            }
+        } else {
+            for (String id : monitoredIds) {
+                int[] sides = branchSideIndexes.get(id);
+                if (sides != null) {
+                    for (int side : sides) {
+                        checkBranchSide(side, terminals[side].getI(), currentLimitType, limitReduction, collector);
+                    }
+                }
+                Integer vlIndex = voltageLevelIndexes.get(id);
+                if (vlIndex != null) {
+                    checkVoltageLevel(voltageLevels[vlIndex], collector);
+                }
+            }
+        }
+        return collector.toSortedList();
+    }
+
+    /**
+     * Save the currents of the working state as reference for {@link #checkChangedLimits}.
+     */
+    public void saveReference() {
+        float[] currents = new float[terminals.length];
+        for (int side = 0; side < terminals.length; side++) {
+            currents[side] = terminals[side].getI();
+        }
+        referenceCurrents = currents;
+    }
+
+    /**
+     * Check limits on the working state of the branches whose current has changed since the
+     * reference state, and of all the voltage levels.
+     *
+     * @param currentLimitType the type of current limits to check
+     * @param limitReduction the current limit reduction factor
+     * @param minCurrentChange the min absolute current change in A for a branch to be checked
+     * @param maxViolations max number of violations to return, the most severe ones being kept, or -1 for no limit
+     * @return violations sorted by decreasing severity
+     */
+    public List<LimitViolation> checkChangedLimits(Security.CurrentLimitType currentLimitType, float limitReduction, float minCurrentChange,
+                                                   int maxViolations) {
+        Objects.requireNonNull(currentLimitType);
+        checkLimitReduction(limitReduction);
+        float[] currents = referenceCurrents;
+        if (currents == null) {
+            throw new IllegalStateException("Reference state currents have not been saved");
+        }
+        Collector collector = new Collector(maxViolations);
+        for (int side = 0; side < terminals.length; side++) {
+            float i = terminals[side].getI();
+            float referenceI = currents[side];
+            if (Float.isNaN(i) != Float.isNaN(referenceI) || Math.abs(i - referenceI) > minCurrentChange) {
+                checkBranchSide(side, i, currentLimitType, limitReduction, collector);
+            }
+        }
+        for (VoltageLevel vl : voltageLevels) {
+            checkVoltageLevel(vl, collector);
+        }
+        return collector.toSortedList();
+    }
+}
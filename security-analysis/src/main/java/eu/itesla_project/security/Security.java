@@ -30,112 +30,13 @@ public class Security {
         TATL
     }
 
-    private static Country getCountry(TwoTerminalsConnectable branch, Terminal terminal) {
-        return terminal == branch.getTerminal1() ? branch.getTerminal1().getVoltageLevel().getSubstation().getCountry()
-                                                 : branch.getTerminal2().getVoltageLevel().getSubstation().getCountry();
-    }
-
-    private static float getBaseVoltage(TwoTerminalsConnectable branch) {
-        return Math.max(branch.getTerminal1().getVoltageLevel().getNominalV(),
-                        branch.getTerminal2().getVoltageLevel().getNominalV());
-    }
-
-    private static void checkCurrentLimits(Iterable<? extends TwoTerminalsConnectable> branches, CurrentLimitType currentLimitType,
-                                           float limitReduction, List<LimitViolation> violations) {
-        for (TwoTerminalsConnectable branch : branches) {
-            switch (currentLimitType) {
-                case PATL:
-                    if (branch.checkPermanentLimit1(limitReduction)) {
-                        violations.add(new LimitViolation(branch,
-                                                          LimitViolationType.CURRENT,
-                                                          branch.getCurrentLimits1().getPermanentLimit(),
-                                                          null,
-                                                          limitReduction,
-                                                          branch.getTerminal1().getI(),
-                                                          getCountry(branch, branch.getTerminal1()),
-                                                          getBaseVoltage(branch)));
-                    }
-                    if (branch.checkPermanentLimit2(limitReduction)) {
-                        violations.add(new LimitViolation(branch,
-                                                          LimitViolationType.CURRENT,
-                                                          branch.getCurrentLimits2().getPermanentLimit(),
-                                                          null,
-                                                          limitReduction,
-                                                          branch.getTerminal2().getI(),
-                                                          getCountry(branch, branch.getTerminal2()),
-                                                          getBaseVoltage(branch)));
-                    }
-                    break;
-
-                case TATL:
-                    TwoTerminalsConnectable.Overload o1 = branch.checkTemporaryLimits1(limitReduction);
-                    if (o1 != null) {
-                        violations.add(new LimitViolation(branch,
-                                                          LimitViolationType.CURRENT,
-                                                          o1.getPreviousLimit(),
-                                                          o1.getTemporaryLimit().getName(),
-                                                          limitReduction,
-                                                          branch.getTerminal1().getI(),
-                                                          getCountry(branch, branch.getTerminal1()),
-                                                          getBaseVoltage(branch)));
-                    }
-                    TwoTerminalsConnectable.Overload o2 = branch.checkTemporaryLimits2(limitReduction);
-                    if (o2 != null) {
-                        violations.add(new LimitViolation(branch,
-                                                          LimitViolationType.CURRENT,
-                                                          o2.getPreviousLimit(),
-                                                          o2.getTemporaryLimit().getName(),
-                                                          limitReduction,
-                                                          branch.getTerminal2().getI(),
-                                                          getCountry(branch, branch.getTerminal2()),
-                                                          getBaseVoltage(branch)));
-                    }
-                    break;
-
-                default:
-                    throw new AssertionError();
-            }
-        }
-    }
-
     public static List<LimitViolation> checkLimits(Network network) {
         return checkLimits(network, CurrentLimitType.PATL, 1f);
     }
 
     public static List<LimitViolation> checkLimits(Network network, CurrentLimitType currentLimitType, float limitReduction) {
         Objects.requireNonNull(network);
-        Objects.requireNonNull(currentLimitType);
-        //if (limitReduction <= 0 || limitReduction > 1) {
-        // allow to increase the limits
-        if (limitReduction <= 0) {
-            throw new IllegalArgumentException("Bad limit reduction " + limitReduction);
-        }
-        List<LimitViolation> violations = new ArrayList<>();
-        checkCurrentLimits(network.getLines(), currentLimitType, limitReduction, violations);
-        checkCurrentLimits(network.getTwoWindingsTransformers(), currentLimitType, limitReduction, violations);
-        for (VoltageLevel vl : network.getVoltageLevels()) {
-            if (!Float.isNaN(vl.getLowVoltageLimit())) {
-                for (Bus b : vl.getBusView().getBuses()) {
-                    if (!Float.isNaN(b.getV())) {
-                        if (b.getV() < vl.getLowVoltageLimit()) {
-                            violations.add(new LimitViolation(vl, LimitViolationType.LOW_VOLTAGE, vl.getLowVoltageLimit(), null,
-                                    1, b.getV(), vl.getSubstation().getCountry(), vl.getNominalV()));
-                        }
-                    }
-                }
-            }
-            if (!Float.isNaN(vl.getHighVoltageLimit())) {
-                for (Bus b : vl.getBusView().getBuses()) {
-                    if (!Float.isNaN(b.getV())) {
-                        if (b.getV() > vl.getHighVoltageLimit()) {
-                            violations.add(new LimitViolation(vl, LimitViolationType.HIGH_VOLTAGE, vl.getHighVoltageLimit(), null,
-                                    1, b.getV(), vl.getSubstation().getCountry(), vl.getNominalV()));
-                        }
-                    }
-                }
-            }
-        }
-        return violations;
+        return new LimitViolationChecker(network).checkLimits(currentLimitType, limitReduction);
     }
 
     public static String printLimitsViolations(Network network) {
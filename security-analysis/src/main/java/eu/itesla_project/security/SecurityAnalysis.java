@@ -10,6 +10,7 @@ import eu.itesla_project.contingency.ContingenciesProvider;
 import eu.itesla_project.loadflow.api.LoadFlowParameters;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
@@ -21,4 +22,25 @@ public interface SecurityAnalysis {
     CompletableFuture<SecurityAnalysisResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId);
 
     CompletableFuture<SecurityAnalysisResult> runAsync(ContingenciesProvider contingenciesProvider);
+
+    /**
+     * Run the security analysis, streaming post-contingency results to a consumer instead
+     * of accumulating them. The consumer is never called concurrently, but may be called
+     * from any thread.
+     *
+     * @param contingenciesProvider the contingencies to simulate
+     * @param workingStateId the pre-contingency state
+     * @param parameters the load flow parameters
+     * @param postContingencyResultConsumer the consumer of the post-contingency results
+     * @return the pre-contingency result, completed once all the post-contingency results
+     *         have been consumed
+     */
+    default CompletableFuture<PreContingencyResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId, LoadFlowParameters parameters,
+                                                             Consumer<PostContingencyResult> postContingencyResultConsumer) {
+        return runAsync(contingenciesProvider, workingStateId, parameters)
+                .thenApply(result -> {
+                    result.getPostContingencyResults().forEach(postContingencyResultConsumer);
+                    return result.getPreContingencyResult();
+                });
+    }
 }
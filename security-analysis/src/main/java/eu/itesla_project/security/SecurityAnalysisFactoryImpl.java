@@ -7,6 +7,8 @@
 package eu.itesla_project.security;
 
 import eu.itesla_project.commons.config.ComponentDefaultConfig;
+import eu.itesla_project.commons.config.ModuleConfig;
+import eu.itesla_project.commons.config.PlatformConfig;
 import eu.itesla_project.computation.ComputationManager;
 import eu.itesla_project.iidm.network.Network;
 import eu.itesla_project.loadflow.api.LoadFlowFactory;
@@ -20,7 +22,14 @@ public class SecurityAnalysisFactoryImpl implements SecurityAnalysisFactory {
         ComponentDefaultConfig defaultConfig = new ComponentDefaultConfig();
         try {
             LoadFlowFactory loadFlowFactory = defaultConfig.findFactoryImplClass(LoadFlowFactory.class).newInstance();
-            return new SecurityAnalysisImpl(network, computationManager, loadFlowFactory);
+            ModuleConfig config = PlatformConfig.defaultConfig().getModuleConfigIfExists("security-analysis");
+            int maxInFlightStates = SecurityAnalysisImpl.DEFAULT_MAX_IN_FLIGHT_STATES;
+            int loadFlowBatchSize = SecurityAnalysisImpl.DEFAULT_LOAD_FLOW_BATCH_SIZE;
+            if (config != null) {
+                maxInFlightStates = config.getIntProperty("maxInFlightStates", maxInFlightStates);
+                loadFlowBatchSize = config.getIntProperty("loadFlowBatchSize", loadFlowBatchSize);
+            }
+            return new SecurityAnalysisImpl(network, computationManager, loadFlowFactory, maxInFlightStates, loadFlowBatchSize);
         } catch (InstantiationException|IllegalAccessException e) {
             throw new RuntimeException(e);
         }
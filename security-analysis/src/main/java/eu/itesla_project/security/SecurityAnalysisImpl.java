@@ -13,110 +13,227 @@ import eu.itesla_project.iidm.network.StateManager;
 import eu.itesla_project.loadflow.api.LoadFlow;
 import eu.itesla_project.loadflow.api.LoadFlowFactory;
 import eu.itesla_project.loadflow.api.LoadFlowParameters;
-import eu.itesla_project.loadflow.api.LoadFlowResult;
 import eu.itesla_project.contingency.Contingency;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiFunction;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
+ * Security analysis running one load flow per contingency.
+ * <p>
+ * The number of post-contingency states alive at the same time is bounded: contingencies
+ * are processed by a fixed number of workers, each one owning state slots (state ids)
+ * which are recycled from one contingency to the next. Contingencies can be grouped in
+ * batches computed by a single {@link LoadFlow#runBatchAsync} call, so that load flow
+ * engines supporting multi-case runs pay their setup cost once per batch.
+ *
  * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
  */
 public class SecurityAnalysisImpl implements SecurityAnalysis {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SecurityAnalysisImpl.class);
 
+    public static final int DEFAULT_MAX_IN_FLIGHT_STATES = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Batch size meaning one batch per available core of the computation manager.
+     */
+    public static final int AUTO_BATCH_SIZE = 0;
+
+    public static final int DEFAULT_LOAD_FLOW_BATCH_SIZE = 1;
+
     private final Network network;
     private final ComputationManager computationManager;
     private final LoadFlowFactory loadFlowFactory;
+    private final int maxInFlightStates;
+    private final int loadFlowBatchSize;
 
     public SecurityAnalysisImpl(Network network, ComputationManager computationManager, LoadFlowFactory loadFlowFactory) {
+        this(network, computationManager, loadFlowFactory, DEFAULT_MAX_IN_FLIGHT_STATES);
+    }
+
+    public SecurityAnalysisImpl(Network network, ComputationManager computationManager, LoadFlowFactory loadFlowFactory, int maxInFlightStates) {
+        this(network, computationManager, loadFlowFactory, maxInFlightStates, DEFAULT_LOAD_FLOW_BATCH_SIZE);
+    }
+
+    /**
+     * @param maxInFlightStates max number of post-contingency states alive at the same time
+     * @param loadFlowBatchSize number of post-contingency states computed by a single batched load flow run,
+     *                          or {@link #AUTO_BATCH_SIZE} to use the number of available cores
+     */
+    public SecurityAnalysisImpl(Network network, ComputationManager computationManager, LoadFlowFactory loadFlowFactory, int maxInFlightStates,
+                                int loadFlowBatchSize) {
+        if (maxInFlightStates < 1) {
+            throw new IllegalArgumentException("Invalid max number of in flight states " + maxInFlightStates);
+        }
+        if (loadFlowBatchSize < 0) {
+            throw new IllegalArgumentException("Invalid load flow batch size " + loadFlowBatchSize);
+        }
         this.network = Objects.requireNonNull(network);
         this.computationManager = Objects.requireNonNull(computationManager);
         this.loadFlowFactory = Objects.requireNonNull(loadFlowFactory);
+        this.maxInFlightStates = maxInFlightStates;
+        this.loadFlowBatchSize = loadFlowBatchSize;
     }
 
-    private static List<LimitViolation> checkLimits(Network network) {
-        return Security.checkLimits(network, Security.CurrentLimitType.TATL, 1f);
+    private static List<LimitViolation> checkLimits(LimitViolationChecker limitViolationChecker) {
+        return limitViolationChecker.checkLimits(Security.CurrentLimitType.TATL, 1f);
+    }
+
+    /**
+     * Post-contingency computations shared by the workers.
+     */
+    private final class PostContingencyContext {
+
+        private final LoadFlow loadFlow;
+
+        private final String workingStateId;
+
+        private final LoadFlowParameters parameters;
+
+        private final List<Contingency> contingencies;
+
+        private final AtomicInteger nextContingency = new AtomicInteger();
+
+        private final Consumer<PostContingencyResult> consumer;
+
+        private final LimitViolationChecker limitViolationChecker;
+
+        private PostContingencyContext(LoadFlow loadFlow, String workingStateId, LoadFlowParameters parameters, List<Contingency> contingencies,
+                                       Consumer<PostContingencyResult> consumer, LimitViolationChecker limitViolationChecker) {
+            this.loadFlow = loadFlow;
+            this.workingStateId = workingStateId;
+            this.parameters = parameters;
+            this.contingencies = contingencies;
+            this.consumer = consumer;
+            this.limitViolationChecker = limitViolationChecker;
+        }
+
+        private void consume(PostContingencyResult result) {
+            synchronized (consumer) {
+                consumer.accept(result);
+            }
+        }
+
+        /**
+         * Run the post-contingency load flows of the remaining contingencies, one batch after
+         * the other, using a set of state slots (one per contingency of a batch).
+         */
+        private CompletableFuture<Void> runWorker(List<String> slotStateIds) {
+            int from = nextContingency.getAndAdd(slotStateIds.size());
+            if (from >= contingencies.size()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            List<Contingency> batch = contingencies.subList(from, Math.min(contingencies.size(), from + slotStateIds.size()));
+            List<String> stateIds = slotStateIds.subList(0, batch.size());
+            StateManager stateManager = network.getStateManager();
+
+            return CompletableFuture
+                    .runAsync(() -> {
+                        // copy on write, so only modified equipments cost memory
+                        stateManager.cloneState(workingStateId, stateIds, true);
+
+                        // apply the contingencies on the network
+                        for (int i = 0; i < batch.size(); i++) {
+                            Contingency contingency = batch.get(i);
+                            stateManager.runOnState(stateIds.get(i), () -> contingency.toTask().modify(network));
+                        }
+                    }, computationManager.getExecutor())
+                    .thenComposeAsync(aVoid -> loadFlow.runBatchAsync(stateIds, parameters), computationManager.getExecutor())
+                    .handleAsync((loadFlowResults, throwable) -> {
+                        try {
+                            for (int i = 0; i < batch.size(); i++) {
+                                Contingency contingency = batch.get(i);
+                                if (throwable != null) {
+                                    LOGGER.error("Post-contingency computation failed for contingency '{}'", contingency.getId(), throwable);
+                                    consume(new PostContingencyResult(contingency, false, Collections.emptyList()));
+                                } else {
+                                    List<LimitViolation> limitViolations = stateManager.supplyOnState(stateIds.get(i), () -> checkLimits(limitViolationChecker));
+                                    consume(new PostContingencyResult(contingency, loadFlowResults.get(i).isOk(), limitViolations));
+                                }
+                            }
+                        } finally {
+                            // release the slots
+                            Collection<String> existingStateIds = stateManager.getStateIds();
+                            for (String stateId : stateIds) {
+                                if (existingStateIds.contains(stateId)) {
+                                    stateManager.removeState(stateId);
+                                }
+                            }
+                        }
+                        return null;
+                    }, computationManager.getExecutor())
+                    .thenComposeAsync(aVoid -> runWorker(slotStateIds), computationManager.getExecutor());
+        }
+
+        private CompletableFuture<Void> run() {
+            int batchSize = loadFlowBatchSize == AUTO_BATCH_SIZE
+                    ? Math.max(1, computationManager.getResourcesStatus().getAvailableCores())
+                    : loadFlowBatchSize;
+            // a batch cannot exceed the max number of in flight states
+            batchSize = Math.min(batchSize, maxInFlightStates);
+            int batchCount = (contingencies.size() + batchSize - 1) / batchSize;
+            int workerCount = Math.min(Math.max(1, maxInFlightStates / batchSize), batchCount);
+            LOGGER.debug("Running {} post-contingency load flows in batches of {} with {} state slots",
+                    contingencies.size(), batchSize, workerCount * batchSize);
+            String hash = UUID.randomUUID().toString();
+            CompletableFuture[] futures = new CompletableFuture[workerCount];
+            for (int worker = 0; worker < workerCount; worker++) {
+                List<String> slotStateIds = new ArrayList<>(batchSize);
+                for (int slot = 0; slot < batchSize; slot++) {
+                    slotStateIds.add(hash + "_" + (worker * batchSize + slot));
+                }
+                futures[worker] = runWorker(slotStateIds);
+            }
+            return CompletableFuture.allOf(futures);
+        }
     }
 
     @Override
-    public CompletableFuture<SecurityAnalysisResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId, LoadFlowParameters parameters) {
+    public CompletableFuture<PreContingencyResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId, LoadFlowParameters parameters,
+                                                            Consumer<PostContingencyResult> postContingencyResultConsumer) {
         Objects.requireNonNull(contingenciesProvider);
         Objects.requireNonNull(workingStateId);
         Objects.requireNonNull(parameters);
+        Objects.requireNonNull(postContingencyResultConsumer);
 
         LoadFlow loadFlow = loadFlowFactory.create(network, computationManager, 0);
 
-        final boolean[] preContingencyComputationOk = new boolean[1];
-        final List<LimitViolation> preContingencyLimitViolations = new ArrayList<>();
-        final List<PostContingencyResult> postContingencyResults = Collections.synchronizedList(new ArrayList<>());
-
         // start post contingency LF from pre-contingency state variables
         LoadFlowParameters postContParameters = parameters.clone().setVoltageInitMode(LoadFlowParameters.VoltageInitMode.PREVIOUS_VALUES);
 
         return loadFlow.runAsync(workingStateId, parameters) // run base load flow
                 .thenComposeAsync(loadFlowResult -> {
-                    preContingencyComputationOk[0] = loadFlowResult.isOk();
-                    preContingencyLimitViolations.addAll(checkLimits(network));
-
-                    CompletableFuture<Void>[] futures;
-
-                    if (loadFlowResult.isOk()) {
-                        List<Contingency> contingencies = contingenciesProvider.getContingencies(network);
+                    // limits are indexed once for the pre-contingency and all the post-contingency states
+                    LimitViolationChecker limitViolationChecker = new LimitViolationChecker(network);
 
-                        futures = new CompletableFuture[contingencies.size()];
+                    PreContingencyResult preContingencyResult = new PreContingencyResult(loadFlowResult.isOk(),
+                            network.getStateManager().supplyOnState(workingStateId, () -> checkLimits(limitViolationChecker)));
 
-                        String hash = UUID.randomUUID().toString();
-                        for (int i = 0; i < contingencies.size(); i++) {
-                            Contingency contingency = contingencies.get(i);
-
-                            String postContStateId = hash + "_" + contingency.getId();
-
-                            // run one loadflow per contingency
-                            futures[i] = CompletableFuture
-                                    .supplyAsync(new Supplier<Void>() {
-                                        @Override
-                                        public Void get() {
-                                            network.getStateManager().cloneState(StateManager.INITIAL_STATE_ID, postContStateId);
-                                            network.getStateManager().setWorkingState(postContStateId);
-
-                                            // apply the contingency on the network
-                                            contingency.toTask().modify(network);
-
-                                            return null;
-                                        }
-                                    }, computationManager.getExecutor())
-                                    .thenComposeAsync(aVoid -> loadFlow.runAsync(postContStateId, postContParameters), computationManager.getExecutor())
-                                    .handleAsync(new BiFunction<LoadFlowResult, Throwable, Void>() {
-                                        @Override
-                                        public Void apply(LoadFlowResult loadFlowResult, Throwable throwable) {
-                                            network.getStateManager().setWorkingState(postContStateId);
-
-                                            postContingencyResults.add(new PostContingencyResult(contingency,
-                                                                                                    loadFlowResult.isOk(),
-                                                                                                    checkLimits(network)));
-
-                                            network.getStateManager().removeState(postContStateId);
-
-                                            return null;
-                                        }
-                                    }, computationManager.getExecutor());
-                        }
-                    }
-                    else {
-                        futures = new CompletableFuture[0];
+                    if (!loadFlowResult.isOk()) {
+                        return CompletableFuture.completedFuture(preContingencyResult);
                     }
 
-                    return CompletableFuture.allOf(futures)
-                            .thenApplyAsync(aVoid -> new SecurityAnalysisResult(new PreContingencyResult(preContingencyComputationOk[0], preContingencyLimitViolations), postContingencyResults));
+                    List<Contingency> contingencies = contingenciesProvider.getContingencies(network);
+
+                    return new PostContingencyContext(loadFlow, workingStateId, postContParameters, contingencies, postContingencyResultConsumer,
+                                                      limitViolationChecker)
+                            .run()
+                            .thenApply(aVoid -> preContingencyResult);
                 }, computationManager.getExecutor());
     }
 
+    @Override
+    public CompletableFuture<SecurityAnalysisResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId, LoadFlowParameters parameters) {
+        List<PostContingencyResult> postContingencyResults = new ArrayList<>();
+        return runAsync(contingenciesProvider, workingStateId, parameters, postContingencyResults::add)
+                .thenApply(preContingencyResult -> new SecurityAnalysisResult(preContingencyResult, postContingencyResults));
+    }
+
     @Override
     public CompletableFuture<SecurityAnalysisResult> runAsync(ContingenciesProvider contingenciesProvider, String workingStateId) {
         return runAsync(contingenciesProvider, workingStateId, LoadFlowParameters.load());
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2016, All partners of the iTesla project (http://www.itesla-project.eu/consortium)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.security;
+
+import com.google.common.collect.ImmutableSet;
+import eu.itesla_project.iidm.network.Line;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.VoltageLevel;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class LimitViolationCheckerTest {
+
+    private Network network;
+
+    private static void setCurrent(Line line, float i) {
+        // I = P / (sqrt(3) * V) with V = 400 kV
+        float p = (float) (i * Math.sqrt(3) * 400 / 1000);
+        line.getTerminal1().setP(p).setQ(0);
+        line.getTerminal2().setP(-p).setQ(0);
+    }
+
+    @Before
+    public void setUp() {
+        network = EurostagTutorialExample1Factory.create();
+        network.getVoltageLevel("VLHV1").getBusBreakerView().getBus("NHV1").setV(400);
+        network.getVoltageLevel("VLHV2").getBusBreakerView().getBus("NHV2").setV(400);
+        for (Line line : network.getLines()) {
+            line.newCurrentLimits1()
+                    .setPermanentLimit(1000)
+                    .beginTemporaryLimit()
+                        .setName("20'")
+                        .setAcceptableDuration(20 * 60)
+                        .setValue(1200)
+                    .endTemporaryLimit()
+                    .beginTemporaryLimit()
+                        .setName("5'")
+                        .setAcceptableDuration(5 * 60)
+                        .setValue(1400)
+                    .endTemporaryLimit()
+                .add();
+        }
+        setCurrent(network.getLine("NHV1_NHV2_1"), 1100);
+        setCurrent(network.getLine("NHV1_NHV2_2"), 1300);
+        VoltageLevel vlhv1 = network.getVoltageLevel("VLHV1");
+        vlhv1.setLowVoltageLimit(410).setHighVoltageLimit(450);
+    }
+
+    @Test
+    public void testCheckLimits() {
+        LimitViolationChecker checker = new LimitViolationChecker(network);
+
+        // sorted by decreasing severity: 1300 / 1000, 1100 / 1000, 410 / 400
+        List<LimitViolation> violations = checker.checkLimits(Security.CurrentLimitType.PATL, 1f);
+        assertEquals(3, violations.size());
+        assertEquals("NHV1_NHV2_2", violations.get(0).getSubject().getId());
+        assertEquals("NHV1_NHV2_1", violations.get(1).getSubject().getId());
+        assertEquals(LimitViolationType.LOW_VOLTAGE, violations.get(2).getLimitType());
+        assertNull(violations.get(0).getLimitName());
+
+        // severity is relative to the previous limit: 1100 / 1000, 1300 / 1200, 410 / 400
+        violations = checker.checkLimits(Security.CurrentLimitType.TATL, 1f);
+        assertEquals(3, violations.size());
+        assertEquals("20'", violations.get(0).getLimitName());
+        assertEquals(1000f, violations.get(0).getLimit(), 0f);
+        assertEquals("5'", violations.get(1).getLimitName());
+        assertEquals(1200f, violations.get(1).getLimit(), 0f);
+
+        // same violations as the branch by branch check
+        assertEquals(3, Security.checkLimits(network, Security.CurrentLimitType.TATL, 1f).size());
+
+        // limit reduction
+        assertEquals(2, checker.checkLimits(Security.CurrentLimitType.PATL, 1.2f).size());
+
+        // monitored equipments and max number of violations
+        violations = checker.checkLimits(Security.CurrentLimitType.PATL, 1f, ImmutableSet.of("NHV1_NHV2_1", "VLHV1"), -1);
+        assertEquals(2, violations.size());
+        assertEquals("NHV1_NHV2_1", violations.get(0).getSubject().getId());
+        violations = checker.checkLimits(Security.CurrentLimitType.PATL, 1f, null, 1);
+        assertEquals(1, violations.size());
+        assertEquals("NHV1_NHV2_2", violations.get(0).getSubject().getId());
+    }
+
+    @Test
+    public void testCheckChangedLimits() {
+        LimitViolationChecker checker = new LimitViolationChecker(network);
+        try {
+            checker.checkChangedLimits(Security.CurrentLimitType.PATL, 1f, 1f, -1);
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+        checker.saveReference();
+
+        // only voltage violations as currents have not changed
+        List<LimitViolation> violations = checker.checkChangedLimits(Security.CurrentLimitType.PATL, 1f, 1f, -1);
+        assertEquals(1, violations.size());
+        assertEquals(LimitViolationType.LOW_VOLTAGE, violations.get(0).getLimitType());
+
+        setCurrent(network.getLine("NHV1_NHV2_1"), 1150);
+        violations = checker.checkChangedLimits(Security.CurrentLimitType.PATL, 1f, 1f, -1);
+        assertEquals(2, violations.size());
+        assertEquals("NHV1_NHV2_1", violations.get(0).getSubject().getId());
+        assertEquals(1150f, violations.get(0).getValue(), 0.1f);
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2016, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package eu.itesla_project.security;
+
+import eu.itesla_project.computation.*;
+import eu.itesla_project.contingency.Contingency;
+import eu.itesla_project.contingency.ContingencyImpl;
+import eu.itesla_project.contingency.LineContingency;
+import eu.itesla_project.iidm.network.Network;
+import eu.itesla_project.iidm.network.StateManager;
+import eu.itesla_project.iidm.network.test.EurostagTutorialExample1Factory;
+import eu.itesla_project.loadflow.api.LoadFlow;
+import eu.itesla_project.loadflow.api.LoadFlowFactory;
+import eu.itesla_project.loadflow.api.LoadFlowParameters;
+import eu.itesla_project.loadflow.api.LoadFlowResult;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Geoffroy Jamgotchian <geoffroy.jamgotchian at rte-france.com>
+ */
+public class SecurityAnalysisImplTest {
+
+    private static class ComputationManagerMock implements ComputationManager {
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public OutputStream newCommonFile(String fileName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CommandExecutor newCommandExecutor(Map<String, String> env, String workingDirPrefix, boolean debug) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> CompletableFuture<R> execute(ExecutionEnvironment environment, ExecutionHandler<R> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ComputationResourcesStatus getResourcesStatus() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return ForkJoinPool.commonPool();
+        }
+
+        @Override
+        public Path getLocalDir() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class LoadFlowMock implements LoadFlow {
+
+        private final Network network;
+
+        private final AtomicInteger maxStateCount = new AtomicInteger();
+
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        private LoadFlowMock(Network network) {
+            this.network = network;
+        }
+
+        @Override
+        public String getName() {
+            return "mock";
+        }
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public LoadFlowResult run(LoadFlowParameters parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public LoadFlowResult run() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<LoadFlowResult> runAsync(String workingStateId, LoadFlowParameters parameters) {
+            maxStateCount.accumulateAndGet(network.getStateManager().getStateIds().size(), Math::max);
+            // the contingency has been applied on the post-contingency state only
+            boolean tripped = network.getStateManager().supplyOnState(workingStateId,
+                () -> !network.getLine("NHV1_NHV2_1").getTerminal1().isConnected() || !network.getLine("NHV1_NHV2_2").getTerminal1().isConnected());
+            boolean ok = StateManager.INITIAL_STATE_ID.equals(workingStateId) != tripped;
+            return CompletableFuture.completedFuture(new LoadFlowResult() {
+                @Override
+                public boolean isOk() {
+                    return ok;
+                }
+
+                @Override
+                public Map<String, String> getMetrics() {
+                    return Collections.emptyMap();
+                }
+
+                @Override
+                public String getLogs() {
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        public CompletableFuture<List<LoadFlowResult>> runBatchAsync(List<String> stateIds, LoadFlowParameters parameters) {
+            batchSizes.add(stateIds.size());
+            return LoadFlow.super.runBatchAsync(stateIds, parameters);
+        }
+    }
+
+    private static List<Contingency> createContingencies(int count) {
+        List<Contingency> contingencies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            contingencies.add(new ContingencyImpl("c" + i, new LineContingency(i % 2 == 0 ? "NHV1_NHV2_1" : "NHV1_NHV2_2")));
+        }
+        return contingencies;
+    }
+
+    @Test
+    public void testBoundedStates() {
+        Network network = EurostagTutorialExample1Factory.create();
+        network.getStateManager().allowStateMultiThreadAccess(true);
+        LoadFlowMock loadFlow = new LoadFlowMock(network);
+        LoadFlowFactory loadFlowFactory = (network1, computationManager, priority) -> loadFlow;
+
+        List<Contingency> contingencies = createContingencies(20);
+
+        SecurityAnalysis securityAnalysis = new SecurityAnalysisImpl(network, new ComputationManagerMock(), loadFlowFactory, 2);
+        List<PostContingencyResult> postContingencyResults = new ArrayList<>();
+        PreContingencyResult preContingencyResult = securityAnalysis.runAsync(n -> contingencies, StateManager.INITIAL_STATE_ID,
+                                                                              new LoadFlowParameters(), postContingencyResults::add)
+                .join();
+        assertTrue(preContingencyResult.isComputationOk());
+        assertEquals(20, postContingencyResults.size());
+        Set<String> contingencyIds = new HashSet<>();
+        for (PostContingencyResult postContingencyResult : postContingencyResults) {
+            assertTrue(postContingencyResult.isComputationOk());
+            contingencyIds.add(postContingencyResult.getContingency().getId());
+        }
+        assertEquals(20, contingencyIds.size());
+
+        // initial state plus at most 2 post-contingency states
+        assertTrue(loadFlow.maxStateCount.get() <= 3);
+        assertEquals(Collections.singleton(StateManager.INITIAL_STATE_ID), new HashSet<>(network.getStateManager().getStateIds()));
+        // initial state has not been modified
+        assertNotNull(network.getLine("NHV1_NHV2_1").getTerminal1().getBusBreakerView().getBus());
+
+        SecurityAnalysisResult result = securityAnalysis.runAsync(n -> contingencies, StateManager.INITIAL_STATE_ID, new LoadFlowParameters()).join();
+        assertEquals(20, result.getPostContingencyResults().size());
+        assertEquals(Collections.nCopies(40, 1), loadFlow.batchSizes);
+    }
+
+    @Test
+    public void testBatches() {
+        Network network = EurostagTutorialExample1Factory.create();
+        network.getStateManager().allowStateMultiThreadAccess(true);
+        LoadFlowMock loadFlow = new LoadFlowMock(network);
+        List<Contingency> contingencies = createContingencies(20);
+
+        SecurityAnalysis securityAnalysis = new SecurityAnalysisImpl(network, new ComputationManagerMock(), (network1, computationManager, priority) -> loadFlow, 4, 3);
+        SecurityAnalysisResult result = securityAnalysis.runAsync(n -> contingencies, StateManager.INITIAL_STATE_ID, new LoadFlowParameters()).join();
+        assertEquals(20, result.getPostContingencyResults().size());
+        assertTrue(result.getPostContingencyResults().stream().allMatch(LimitViolationsResult::isComputationOk));
+        // 6 batches of 3 contingencies and a last one of 2, computed by a single worker
+        assertEquals(Arrays.asList(3, 3, 3, 3, 3, 3, 2), loadFlow.batchSizes);
+        assertTrue(loadFlow.maxStateCount.get() <= 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxInFlightStates() {
+        new SecurityAnalysisImpl(EurostagTutorialExample1Factory.create(), new ComputationManagerMock(), (network, computationManager, priority) -> null, 0);
+    }
+}